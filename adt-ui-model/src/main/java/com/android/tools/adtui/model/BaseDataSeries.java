@@ -47,9 +47,21 @@ public abstract class BaseDataSeries<E> implements DataSeries<E> {
       return getDataSubList(0, 0);
     }
 
-    int fromIndex = getNearestXIndex((long)xRange.getMin());
-    int toIndex = getNearestXIndex((long)xRange.getMax()) + 1;
-    return getDataSubList(fromIndex, toIndex);
+    return getDataSubList(getFromIndex(xRange), getToIndex(xRange));
+  }
+
+  /**
+   * Returns the index of the first sample to include when querying the given range.
+   */
+  protected int getFromIndex(@NotNull Range xRange) {
+    return getNearestXIndex((long)xRange.getMin());
+  }
+
+  /**
+   * Returns the index one past the last sample to include when querying the given range.
+   */
+  protected int getToIndex(@NotNull Range xRange) {
+    return getNearestXIndex((long)xRange.getMax()) + 1;
   }
 
   public ImmutableList<SeriesData<E>> getAllData() {
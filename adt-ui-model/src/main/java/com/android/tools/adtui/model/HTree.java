@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable tree of timed nodes, equivalent to a tree of {@link HNode} but stored as parallel primitive arrays indexed by node, which
+ * takes a fraction of the memory for large trees (e.g. call trees with millions of calls).
+ *
+ * Nodes are numbered in depth-first order, the root being node 0, so the subtree of a node is stored right after it. Each distinct data
+ * value is stored once and nodes refer to it by id, see {@link #getDataId(int)}.
+ */
+public final class HTree<T> {
+
+  public static final int NO_NODE = -1;
+
+  @NotNull private final int[] myParents;
+  @NotNull private final int[] myFirstChildren;
+  @NotNull private final int[] myNextSiblings;
+  @NotNull private final int[] myDepths;
+  @NotNull private final int[] myDataIds;
+  @NotNull private final long[] myStarts;
+  @NotNull private final long[] myEnds;
+  @NotNull private final List<T> myData;
+  private final int myMaxDepth;
+  private final boolean myNested;
+
+  private HTree(@NotNull Builder<T> builder) {
+    myParents = builder.myParents.toNativeArray();
+    myFirstChildren = builder.myFirstChildren.toNativeArray();
+    myNextSiblings = builder.myNextSiblings.toNativeArray();
+    myDepths = builder.myDepths.toNativeArray();
+    myDataIds = builder.myDataIds.toNativeArray();
+    myStarts = builder.myStarts.toNativeArray();
+    myEnds = builder.myEnds.toNativeArray();
+    myData = new ArrayList<>(builder.myData);
+    myMaxDepth = builder.myMaxDepth;
+    myNested = builder.myNested;
+  }
+
+  /**
+   * Copies a tree of {@link HNode}, keeping the depth of its nodes.
+   */
+  @NotNull
+  public static <T> HTree<T> fromHNode(@NotNull HNode<T> root) {
+    Builder<T> builder = new Builder<>();
+    Deque<HNode<T>> nodes = new ArrayDeque<>();
+    Deque<Integer> parents = new ArrayDeque<>();
+    nodes.push(root);
+    parents.push(NO_NODE);
+    while (!nodes.isEmpty()) {
+      HNode<T> node = nodes.pop();
+      int index = builder.addNode(parents.pop(), node.getData(), node.getStart(), node.getEnd(), node.getDepth());
+      List<HNode<T>> children = node.getChildren();
+      // Pushed in reverse so that the children are added in order.
+      for (int i = children.size() - 1; i >= 0; i--) {
+        nodes.push(children.get(i));
+        parents.push(index);
+      }
+    }
+    return builder.build();
+  }
+
+  public int size() {
+    return myParents.length;
+  }
+
+  public int getParent(int node) {
+    return myParents[node];
+  }
+
+  public int getFirstChild(int node) {
+    return myFirstChildren[node];
+  }
+
+  public int getNextSibling(int node) {
+    return myNextSiblings[node];
+  }
+
+  /**
+   * @return the node following the subtree of the given one in depth-first order, or {@link #NO_NODE} if it's the last subtree.
+   */
+  public int getNextAfterSubtree(int node) {
+    while (node != NO_NODE && myNextSiblings[node] == NO_NODE) {
+      node = myParents[node];
+    }
+    return node == NO_NODE ? NO_NODE : myNextSiblings[node];
+  }
+
+  public int getDepth(int node) {
+    return myDepths[node];
+  }
+
+  public int getMaxDepth() {
+    return myMaxDepth;
+  }
+
+  /**
+   * @return whether every node lies within the time span of its parent, as in call trees. Subtrees can then be skipped when their root
+   * is outside of a time range.
+   */
+  public boolean isNested() {
+    return myNested;
+  }
+
+  public long getStart(int node) {
+    return myStarts[node];
+  }
+
+  public long getEnd(int node) {
+    return myEnds[node];
+  }
+
+  public long duration(int node) {
+    return myEnds[node] - myStarts[node];
+  }
+
+  @Nullable
+  public T getData(int node) {
+    return myData.get(myDataIds[node]);
+  }
+
+  /**
+   * @return the id of the data of the node. Nodes with equal data share the same id.
+   */
+  public int getDataId(int node) {
+    return myDataIds[node];
+  }
+
+  /**
+   * @return the number of distinct data values, data ids range from 0 to this value excluded.
+   */
+  public int getDataCount() {
+    return myData.size();
+  }
+
+  @Nullable
+  public T getDataById(int id) {
+    return myData.get(id);
+  }
+
+  public static final class Builder<T> {
+    private final TIntArrayList myParents = new TIntArrayList();
+    private final TIntArrayList myFirstChildren = new TIntArrayList();
+    private final TIntArrayList myNextSiblings = new TIntArrayList();
+    private final TIntArrayList myLastChildren = new TIntArrayList();
+    private final TIntArrayList myDepths = new TIntArrayList();
+    private final TIntArrayList myDataIds = new TIntArrayList();
+    private final TLongArrayList myStarts = new TLongArrayList();
+    private final TLongArrayList myEnds = new TLongArrayList();
+    private final List<T> myData = new ArrayList<>();
+    private final Map<T, Integer> myDataIdsByValue = new HashMap<>();
+    /**
+     * The path from the root to the last node added, i.e. the nodes the next node can be a child of.
+     */
+    private final TIntArrayList myLastPath = new TIntArrayList();
+    private int myMaxDepth;
+    private boolean myNested = true;
+
+    /**
+     * Adds a node. Nodes must be added in depth-first order: the first node is the root, and the parent of any other node is the last node
+     * added or one of its ancestors.
+     *
+     * @return the index of the new node.
+     */
+    public int addNode(int parent, @Nullable T data, long start, long end, int depth) {
+      int index = myParents.size();
+      assert (index == 0) == (parent == NO_NODE) : "Only the root has no parent";
+      // Every node is pushed and popped at most once, so this takes constant amortized time.
+      while (!myLastPath.isEmpty() && myLastPath.get(myLastPath.size() - 1) != parent) {
+        myLastPath.remove(myLastPath.size() - 1);
+      }
+      assert parent == NO_NODE || !myLastPath.isEmpty() : "Nodes must be added in depth-first order";
+      myLastPath.add(index);
+
+      Integer dataId = myDataIdsByValue.get(data);
+      if (dataId == null) {
+        dataId = myData.size();
+        myData.add(data);
+        myDataIdsByValue.put(data, dataId);
+      }
+
+      myParents.add(parent);
+      myFirstChildren.add(NO_NODE);
+      myNextSiblings.add(NO_NODE);
+      myLastChildren.add(NO_NODE);
+      myDepths.add(depth);
+      myDataIds.add(dataId);
+      myStarts.add(start);
+      myEnds.add(end);
+      myMaxDepth = Math.max(myMaxDepth, depth);
+
+      if (parent != NO_NODE) {
+        myNested &= start >= myStarts.get(parent) && end <= myEnds.get(parent);
+        int previous = myLastChildren.get(parent);
+        if (previous == NO_NODE) {
+          myFirstChildren.set(parent, index);
+        }
+        else {
+          myNextSiblings.set(previous, index);
+        }
+        myLastChildren.set(parent, index);
+      }
+      return index;
+    }
+
+    @NotNull
+    public HTree<T> build() {
+      assert !myParents.isEmpty() : "A tree needs a root";
+      return new HTree<>(this);
+    }
+  }
+}
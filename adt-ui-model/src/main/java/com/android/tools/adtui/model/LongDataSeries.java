@@ -18,7 +18,7 @@ package com.android.tools.adtui.model;
 import gnu.trove.TLongArrayList;
 import org.jetbrains.annotations.NotNull;
 
-public class LongDataSeries extends BaseDataSeries<Long> {
+public class LongDataSeries extends BaseDataSeries<Long> implements NumericDataSeries<Long> {
 
   @NotNull
   private final TLongArrayList mY = new TLongArrayList();
@@ -33,4 +33,27 @@ public class LongDataSeries extends BaseDataSeries<Long> {
   public Long getY(int index) {
     return mY.get(index);
   }
+
+  @NotNull
+  @Override
+  public NumericSeriesData getNumericDataForXRange(@NotNull Range xRange) {
+    final int fromIndex = size() == 0 ? 0 : getFromIndex(xRange);
+    final int toIndex = size() == 0 ? 0 : getToIndex(xRange);
+    return new NumericSeriesData() {
+      @Override
+      public int size() {
+        return toIndex - fromIndex;
+      }
+
+      @Override
+      public long getX(int index) {
+        return mX.get(index + fromIndex);
+      }
+
+      @Override
+      public double getY(int index) {
+        return mY.get(index + fromIndex);
+      }
+    };
+  }
 }
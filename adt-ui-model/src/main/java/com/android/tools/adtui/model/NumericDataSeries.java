@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link DataSeries} whose values are numbers stored as primitives, which can be read without boxing through
+ * {@link #getNumericDataForXRange(Range)}.
+ */
+public interface NumericDataSeries<E extends Number> extends DataSeries<E> {
+
+  /**
+   * Same as {@link #getDataForXRange(Range)}, but returns a view that reads samples without allocating.
+   */
+  @NotNull
+  NumericSeriesData getNumericDataForXRange(@NotNull Range xRange);
+
+  /**
+   * Same as {@link #getNumericDataForXRange(Range)}, but lets the series summarize its data (e.g. with min/max aggregates) when it
+   * holds more than {@code maxSamples} samples in the range. By default, all the samples are returned.
+   */
+  @NotNull
+  default NumericSeriesData getNumericDataForXRange(@NotNull Range xRange, int maxSamples) {
+    return getNumericDataForXRange(xRange);
+  }
+}
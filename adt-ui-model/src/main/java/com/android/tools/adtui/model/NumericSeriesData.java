@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import com.intellij.util.containers.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Index based view over a range of numeric samples. Unlike iterating an {@link ImmutableList} of {@link SeriesData}, reading the
+ * samples through this interface does not require allocating an object per sample.
+ */
+public interface NumericSeriesData {
+
+  int size();
+
+  long getX(int index);
+
+  double getY(int index);
+
+  /**
+   * Wraps arrays of x and y values of the same length, which must not be modified afterwards.
+   */
+  @NotNull
+  static NumericSeriesData of(@NotNull long[] xs, @NotNull long[] ys) {
+    assert xs.length == ys.length;
+    return new NumericSeriesData() {
+      @Override
+      public int size() {
+        return xs.length;
+      }
+
+      @Override
+      public long getX(int index) {
+        return xs[index];
+      }
+
+      @Override
+      public double getY(int index) {
+        return ys[index];
+      }
+    };
+  }
+
+  /**
+   * Wraps a list of {@link SeriesData}, used as a fallback when the underlying series cannot provide primitive access.
+   */
+  @NotNull
+  static NumericSeriesData wrap(@NotNull ImmutableList<? extends SeriesData<? extends Number>> list) {
+    return new NumericSeriesData() {
+      private int myCachedIndex = -1;
+      private SeriesData<? extends Number> myCachedData;
+
+      @Override
+      public int size() {
+        return list.size();
+      }
+
+      @Override
+      public long getX(int index) {
+        return getData(index).x;
+      }
+
+      @Override
+      public double getY(int index) {
+        return getData(index).value.doubleValue();
+      }
+
+      private SeriesData<? extends Number> getData(int index) {
+        // Callers usually read x and y of the same sample in a row, only fetch it once.
+        if (index != myCachedIndex) {
+          myCachedData = list.get(index);
+          myCachedIndex = index;
+        }
+        return myCachedData;
+      }
+    };
+  }
+}
@@ -36,6 +36,27 @@ public class RangedContinuousSeries extends RangedSeries<Long> {
     mLabel = label;
   }
 
+  /**
+   * Returns the samples within the x range as a {@link NumericSeriesData}. If the underlying series is a {@link NumericDataSeries} this
+   * does not allocate per sample, otherwise it falls back to wrapping {@link #getSeries()}.
+   */
+  @NotNull
+  public NumericSeriesData getNumericSeries() {
+    return getNumericSeries(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Same as {@link #getNumericSeries()}, but lets the underlying series summarize its data if it has more than {@code maxSamples}
+   * samples in the x range, see {@link NumericDataSeries#getNumericDataForXRange(Range, int)}.
+   */
+  @NotNull
+  public NumericSeriesData getNumericSeries(int maxSamples) {
+    if (mSeries instanceof NumericDataSeries) {
+      return ((NumericDataSeries<Long>)mSeries).getNumericDataForXRange(mXRange, maxSamples);
+    }
+    return NumericSeriesData.wrap(getSeries());
+  }
+
   @NotNull
   public Range getYRange() {
     return mYRange;
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HTreeTest {
+
+  @Test
+  public void testFromHNode() {
+    // Creates a tree with the following shape:
+    //        A
+    //    B --+-- C
+    //          B-+-E
+    HNode<String> nodeA = new HNode<>("A", 0, 30);
+    HNode<String> nodeB = new HNode<>("B", 0, 10);
+    HNode<String> nodeC = new HNode<>("C", 10, 30);
+    HNode<String> nodeB2 = new HNode<>("B", 10, 20);
+    HNode<String> nodeE = new HNode<>("E", 20, 30);
+    nodeA.addHNode(nodeB);
+    nodeA.addHNode(nodeC);
+    nodeC.addHNode(nodeB2);
+    nodeC.addHNode(nodeE);
+    nodeB.setDepth(1);
+    nodeC.setDepth(1);
+    nodeB2.setDepth(2);
+    nodeE.setDepth(2);
+
+    HTree<String> tree = HTree.fromHNode(nodeA);
+    assertEquals(5, tree.size());
+    assertEquals(2, tree.getMaxDepth());
+
+    // Nodes are numbered in depth-first order.
+    assertEquals("A", tree.getData(0));
+    assertEquals("B", tree.getData(1));
+    assertEquals("C", tree.getData(2));
+    assertEquals("B", tree.getData(3));
+    assertEquals("E", tree.getData(4));
+
+    assertEquals(HTree.NO_NODE, tree.getParent(0));
+    assertEquals(1, tree.getFirstChild(0));
+    assertEquals(2, tree.getNextSibling(1));
+    assertEquals(HTree.NO_NODE, tree.getFirstChild(1));
+    assertEquals(3, tree.getFirstChild(2));
+    assertEquals(4, tree.getNextSibling(3));
+    assertEquals(2, tree.getParent(4));
+    assertEquals(2, tree.getDepth(4));
+
+    assertEquals(10, tree.getStart(2));
+    assertEquals(30, tree.getEnd(2));
+    assertEquals(20, tree.duration(2));
+
+    // Equal data is stored once.
+    assertEquals(4, tree.getDataCount());
+    assertEquals(tree.getDataId(1), tree.getDataId(3));
+  }
+
+  @Test
+  public void testBuilder() {
+    HTree.Builder<String> builder = new HTree.Builder<>();
+    int root = builder.addNode(HTree.NO_NODE, "A", 0, 30, 0);
+    int b = builder.addNode(root, "B", 0, 10, 1);
+    int d = builder.addNode(b, "D", 0, 5, 2);
+    int c = builder.addNode(root, "C", 10, 30, 1);
+    HTree<String> tree = builder.build();
+
+    assertEquals(b, tree.getFirstChild(root));
+    assertEquals(c, tree.getNextSibling(b));
+    assertEquals(d, tree.getFirstChild(b));
+    assertEquals(HTree.NO_NODE, tree.getNextSibling(d));
+    assertEquals(HTree.NO_NODE, tree.getNextSibling(c));
+    assertEquals(root, tree.getParent(c));
+    assertTrue(tree.isNested());
+
+    assertEquals(c, tree.getNextAfterSubtree(b));
+    assertEquals(c, tree.getNextAfterSubtree(d));
+    assertEquals(HTree.NO_NODE, tree.getNextAfterSubtree(c));
+    assertEquals(HTree.NO_NODE, tree.getNextAfterSubtree(root));
+  }
+
+  @Test(expected = AssertionError.class)
+  public void testBuilderRejectsNodesOutOfDepthFirstOrder() {
+    HTree.Builder<String> builder = new HTree.Builder<>();
+    int root = builder.addNode(HTree.NO_NODE, "A", 0, 30, 0);
+    int b = builder.addNode(root, "B", 0, 10, 1);
+    builder.addNode(root, "C", 10, 30, 1);
+    // B's subtree is complete once its sibling C was added.
+    builder.addNode(b, "D", 0, 5, 2);
+  }
+
+  @Test
+  public void testBuilderWithDeepChain() {
+    HTree.Builder<String> builder = new HTree.Builder<>();
+    int parent = builder.addNode(HTree.NO_NODE, "root", 0, 100000, 0);
+    for (int depth = 1; depth < 100000; depth++) {
+      parent = builder.addNode(parent, "node", depth, 100000, depth);
+    }
+    HTree<String> tree = builder.build();
+    assertEquals(100000, tree.size());
+    assertEquals(99999, tree.getMaxDepth());
+    assertEquals(99998, tree.getParent(99999));
+  }
+
+  @Test
+  public void testNotNested() {
+    HTree.Builder<String> builder = new HTree.Builder<>();
+    int root = builder.addNode(HTree.NO_NODE, "A", 0, 10, 0);
+    builder.addNode(root, "B", 5, 15, 1);
+    assertFalse(builder.build().isNested());
+  }
+}
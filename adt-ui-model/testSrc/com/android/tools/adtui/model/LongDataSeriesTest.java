@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import com.intellij.util.containers.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LongDataSeriesTest {
+
+  private static final double DELTA = 0;
+
+  @Test
+  public void testNumericDataMatchesSeriesData() {
+    LongDataSeries series = new LongDataSeries();
+    for (int i = 0; i < 10; i++) {
+      series.add(i * 10, (long)i * i);
+    }
+
+    Range range = new Range(15, 55);
+    ImmutableList<SeriesData<Long>> data = series.getDataForXRange(range);
+    NumericSeriesData numericData = series.getNumericDataForXRange(range);
+    assertEquals(data.size(), numericData.size());
+    for (int i = 0; i < data.size(); i++) {
+      assertEquals(data.get(i).x, numericData.getX(i));
+      assertEquals(data.get(i).value, numericData.getY(i), DELTA);
+    }
+  }
+
+  @Test
+  public void testNumericDataOfEmptySeries() {
+    LongDataSeries series = new LongDataSeries();
+    assertEquals(0, series.getNumericDataForXRange(new Range(0, 100)).size());
+  }
+
+  @Test
+  public void testWrappedSeriesData() {
+    DefaultDataSeries<Long> series = new DefaultDataSeries<>();
+    series.add(0, 5L);
+    series.add(10, 7L);
+
+    NumericSeriesData numericData = NumericSeriesData.wrap(series.getAllData());
+    assertEquals(2, numericData.size());
+    assertEquals(10, numericData.getX(1));
+    assertEquals(7, numericData.getY(1), DELTA);
+  }
+}
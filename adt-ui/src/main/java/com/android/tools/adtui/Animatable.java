@@ -39,6 +39,15 @@ public interface Animatable {
   default void postAnimate() {
   }
 
+  /**
+   * Whether the last animation cycle changed anything this {@link Animatable} displays or exposes to others. When the
+   * {@link Choreographer} skips idle frames, it only repaints the components that are dirty, and nothing at all when none is.
+   * Since a stale frame is worse than a redundant one, this is conservatively true unless overridden.
+   */
+  default boolean isDirty() {
+    return true;
+  }
+
   /**
    * An auxiliary function to allow an {@link Animatable} to configure its interpolation speed when calling the
    * {@link Choreographer#lerp(float, float, float, float, float)} method.
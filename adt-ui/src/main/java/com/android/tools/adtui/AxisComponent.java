@@ -144,6 +144,21 @@ public final class AxisComponent extends AnimatedComponent {
    */
   private boolean myFirstUpdate = true;
 
+  /**
+   * The range length the labels were last formatted for.
+   */
+  private double myLabelRange;
+
+  /**
+   * Whether the markers and labels must be recomputed even if the range didn't change, e.g. because the formatter changed.
+   */
+  private boolean myMarkersInvalid = true;
+
+  /**
+   * Whether the markers or labels changed during the last frame, see {@link #isDirty()}.
+   */
+  private boolean myDirty = true;
+
   private AxisComponent(@NotNull Builder builder) {
     myRange = builder.myRange;
     myGlobalRange = builder.myGlobalRange;
@@ -226,6 +241,7 @@ public final class AxisComponent extends AnimatedComponent {
    */
   public void setAxisFormatter(BaseAxisFormatter formatter) {
     myFormatter = formatter;
+    myMarkersInvalid = true;
   }
 
   @NotNull
@@ -331,13 +347,24 @@ public final class AxisComponent extends AnimatedComponent {
 
   @Override
   public void postAnimate() {
+    double minValueRelative = myRange.getMin() - myOffset;
+    double maxValueRelative = myRange.getMax() - myOffset;
+    double range = myRange.getLength();
+    double labelRange = myGlobalRange == null ? range : myGlobalRange.getLength();
+    // The markers and labels only depend on the range values, so there is nothing to recompute or repaint if none changed.
+    myDirty = myMarkersInvalid || minValueRelative != myCurrentMinValueRelative || maxValueRelative != myCurrentMaxValueRelative ||
+              labelRange != myLabelRange;
+    if (!myDirty) {
+      return;
+    }
+    myMarkersInvalid = false;
+    myLabelRange = labelRange;
+
     myMarkerLabels.clear();
     myMajorMarkerPositions.reset();
     myMinorMarkerPositions.reset();
-    myCurrentMinValueRelative = myRange.getMin() - myOffset;
-    myCurrentMaxValueRelative = myRange.getMax() - myOffset;
-    double range = myRange.getLength();
-    double labelRange = myGlobalRange == null ? range : myGlobalRange.getLength();
+    myCurrentMinValueRelative = minValueRelative;
+    myCurrentMaxValueRelative = maxValueRelative;
 
     // During the postAnimate phase, use the interpolated min/max/range values to calculate the current major and minor intervals that
     // should be used. Based on the interval values, cache the normalized marker positions which will be used during the draw call.
@@ -383,6 +410,11 @@ public final class AxisComponent extends AnimatedComponent {
     }
   }
 
+  @Override
+  public boolean isDirty() {
+    return myDirty;
+  }
+
   @Override
   protected void draw(Graphics2D g, Dimension dim) {
     // Calculate drawing parameters.
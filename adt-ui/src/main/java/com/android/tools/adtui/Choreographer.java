@@ -19,6 +19,7 @@ package com.android.tools.adtui;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.HierarchyListener;
@@ -36,6 +37,12 @@ public class Choreographer implements ActionListener {
   private static final float NANOSECONDS_IN_SECOND = 1000000000.0f;
   private static final float DEFAULT_FRAME_LENGTH = 1.0f / DEFAULT_FPS;
 
+  /**
+   * When skipping idle frames, number of consecutive idle frames after which the update loop slows down to {@link #IDLE_FRAME_DELAY_MS}.
+   */
+  private static final int IDLE_FRAMES_BEFORE_THROTTLING = 30;
+  private static final int IDLE_FRAME_DELAY_MS = 200;
+
   private final List<Animatable> mComponents;
   private List<Animatable> mToRegister;
   private List<Animatable> mToUnregister;
@@ -43,6 +50,11 @@ public class Choreographer implements ActionListener {
   private boolean mUpdate;
   private long mFrameTime;
   private boolean mReset;
+  private final int mFrameDelayMs;
+  private boolean mSkipIdleFrames;
+  private int mIdleFrames;
+  @NotNull
+  private final FrameStats mFrameStats = new FrameStats();
 
   /**
    * At the end of each update loop, repaint is trigger on the parent container so that all its
@@ -66,7 +78,8 @@ public class Choreographer implements ActionListener {
     mToUnregister = new LinkedList<>();
     mUpdate = true;
     mUpdating = false;
-    mTimer = new Timer(1000 / fps, this);
+    mFrameDelayMs = 1000 / fps;
+    mTimer = new Timer(mFrameDelayMs, this);
     if (fps >= 0) {
       mTimer.start();
     }
@@ -141,6 +154,23 @@ public class Choreographer implements ActionListener {
     mUpdate = update;
   }
 
+  /**
+   * When enabled, each frame only repaints the bounds of the registered components reporting they are {@link Animatable#isDirty() dirty}
+   * (or the whole parent container if a dirty {@link Animatable} isn't one of its components), and doesn't repaint anything if nothing
+   * changed. After a while without any change, the update loop also slows down until something changes again.
+   */
+  public void setSkipIdleFrames(boolean skipIdleFrames) {
+    mSkipIdleFrames = skipIdleFrames;
+    if (!skipIdleFrames) {
+      setIdle(false);
+    }
+  }
+
+  @NotNull
+  public FrameStats getFrameStats() {
+    return mFrameStats;
+  }
+
   public void step() {
     step(DEFAULT_FRAME_LENGTH);
   }
@@ -150,7 +180,9 @@ public class Choreographer implements ActionListener {
   }
 
   private void step(float frameLength) {
+    long startTime = System.nanoTime();
     mUpdating = true;
+    boolean reset = mReset;
     if (mReset) {
       mComponents.forEach(Animatable::reset);
       mReset = false;
@@ -166,7 +198,109 @@ public class Choreographer implements ActionListener {
     mToUnregister.clear();
     mToRegister.clear();
 
-    mParentContainer.repaint();
+    boolean repainted = true;
+    if (!mSkipIdleFrames || reset) {
+      mParentContainer.repaint();
+    }
+    else {
+      repainted = repaintDirtyRegion();
+      setIdle(!repainted && ++mIdleFrames >= IDLE_FRAMES_BEFORE_THROTTLING);
+    }
+    mFrameStats.addFrame(System.nanoTime() - startTime, repainted);
+  }
+
+  /**
+   * Repaints the union of the bounds of the dirty components, or the whole parent container if a dirty {@link Animatable} is not one of
+   * its components (e.g. a range, which any component could be displaying).
+   *
+   * @return whether anything was repainted.
+   */
+  private boolean repaintDirtyRegion() {
+    Rectangle dirtyRegion = null;
+    for (Animatable animatable : mComponents) {
+      if (!animatable.isDirty()) {
+        continue;
+      }
+      if (!(animatable instanceof Component) || animatable == mParentContainer ||
+          !SwingUtilities.isDescendingFrom((Component)animatable, mParentContainer)) {
+        mParentContainer.repaint();
+        return true;
+      }
+      Component component = (Component)animatable;
+      Rectangle bounds = SwingUtilities.convertRectangle(component.getParent(), component.getBounds(), mParentContainer);
+      if (dirtyRegion == null) {
+        dirtyRegion = bounds;
+      }
+      else {
+        dirtyRegion.add(bounds);
+      }
+    }
+    if (dirtyRegion == null) {
+      return false;
+    }
+    mParentContainer.repaint(dirtyRegion);
+    return true;
+  }
+
+  private void setIdle(boolean idle) {
+    if (!idle) {
+      mIdleFrames = 0;
+    }
+    int delay = idle ? Math.max(mFrameDelayMs, IDLE_FRAME_DELAY_MS) : mFrameDelayMs;
+    if (mTimer.getDelay() != delay) {
+      mTimer.setDelay(delay);
+    }
+  }
+
+  /**
+   * Frame counters of a {@link Choreographer}, updated on the EDT.
+   */
+  public static final class FrameStats {
+    private long myFrameCount;
+    private long mySkippedFrameCount;
+    private long myTotalFrameTimeNs;
+    private long myMaxFrameTimeNs;
+
+    private void addFrame(long frameTimeNs, boolean repainted) {
+      myFrameCount++;
+      if (!repainted) {
+        mySkippedFrameCount++;
+      }
+      myTotalFrameTimeNs += frameTimeNs;
+      myMaxFrameTimeNs = Math.max(myMaxFrameTimeNs, frameTimeNs);
+    }
+
+    /**
+     * @return the number of update cycles run.
+     */
+    public long getFrameCount() {
+      return myFrameCount;
+    }
+
+    /**
+     * @return the number of update cycles which didn't repaint anything because nothing changed.
+     */
+    public long getSkippedFrameCount() {
+      return mySkippedFrameCount;
+    }
+
+    /**
+     * @return the average time spent animating the registered {@link Animatable}s per cycle. Painting happens later and isn't included.
+     */
+    public long getAverageFrameTimeNs() {
+      return myFrameCount == 0 ? 0 : myTotalFrameTimeNs / myFrameCount;
+    }
+
+    public long getMaxFrameTimeNs() {
+      return myMaxFrameTimeNs;
+    }
+
+    public void reset() {
+      myFrameCount = 0;
+      mySkippedFrameCount = 0;
+      myTotalFrameTimeNs = 0;
+      myMaxFrameTimeNs = 0;
+    }
   }
 
   /**
@@ -73,6 +73,11 @@ public class LegendComponent extends AnimatedComponent {
 
   private Orientation mOrientation;
 
+  /**
+   * Whether any label changed during the last frame, see {@link #isDirty()}.
+   */
+  private boolean mDirty = true;
+
   /**
    * Legend component that renders a label, and icon for each series in a chart.
    *
@@ -96,6 +101,8 @@ public class LegendComponent extends AnimatedComponent {
       label.setFont(AdtUiUtils.DEFAULT_FONT);
       mLabelsToDraw.add(label);
     }
+    // Fills the new labels on the next frame.
+    mLastUpdate = 0;
   }
 
   @Override
@@ -103,15 +110,16 @@ public class LegendComponent extends AnimatedComponent {
     long now = System.currentTimeMillis();
     if (now - mLastUpdate > mFrequencyMillis) {
       mLastUpdate = now;
+      boolean dirty = false;
       for (int i = 0; i < mLegendRenderData.size(); ++i) {
         LegendRenderData data = mLegendRenderData.get(i);
         JLabel label = mLabelsToDraw.get(i);
-        if (data.hasData()) {
-          label.setText(String.format("%s: %s", data.getLabel(), data.getFormattedData()));
-        }
-        else {
-          label.setText(data.getLabel());
+        String text = data.hasData() ? String.format("%s: %s", data.getLabel(), data.getFormattedData()) : data.getLabel();
+        if (text.equals(label.getText())) {
+          continue;
         }
+        dirty = true;
+        label.setText(text);
         Dimension preferredSize = label.getPreferredSize();
         if (preferredSize.getWidth() < LABEL_MIN_WIDTH_PX) {
           preferredSize.width = LABEL_MIN_WIDTH_PX;
@@ -123,14 +131,23 @@ public class LegendComponent extends AnimatedComponent {
       // As we adjust the size of the label we need to adjust our own size
       // to tell our parent to give us enough room to draw.
       Dimension newSize = getLegendPreferredSize();
-      if (newSize != getPreferredSize()) {
+      if (dirty && !newSize.equals(getPreferredSize())) {
         setPreferredSize(newSize);
         // Set the minimum height of the component to avoid hiding all the labels
         // in case they are longer than the component's total width
         setMinimumSize(new Dimension(getMinimumSize().width, newSize.height));
         revalidate();
       }
+      mDirty = dirty;
     }
+    else {
+      mDirty = false;
+    }
+  }
+
+  @Override
+  public boolean isDirty() {
+    return mDirty;
   }
 
   @Override
@@ -32,4 +32,12 @@ public class RangedList implements Animatable {
   public void animate(float frameLength) {
     myModel.update(myRange);
   }
+
+  /**
+   * The model notifies the list displaying it of its changes, so the list repaints itself.
+   */
+  @Override
+  public boolean isDirty() {
+    return false;
+  }
 }
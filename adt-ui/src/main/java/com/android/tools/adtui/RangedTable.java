@@ -32,4 +32,12 @@ public class RangedTable implements Animatable {
   public void animate(float frameLength) {
     myModel.update(myRange);
   }
+
+  /**
+   * The model notifies the table displaying it of its changes, so the table repaints itself.
+   */
+  @Override
+  public boolean isDirty() {
+    return false;
+  }
 }
@@ -42,4 +42,12 @@ public class RangedTree implements Animatable {
   public void setModel(@Nullable RangedTreeModel model) {
     myModel = model;
   }
+
+  /**
+   * The model notifies the tree displaying it of its changes, so the tree repaints itself.
+   */
+  @Override
+  public boolean isDirty() {
+    return false;
+  }
 }
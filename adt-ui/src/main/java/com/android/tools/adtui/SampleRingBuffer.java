@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Fixed capacity ring of samples for a single writer and any number of readers, none of which ever blocks.
+ *
+ * Samples are addressed by their sequence number, which grows forever, rather than by their position in the ring. The sample times and
+ * types are stored here in parallel primitive arrays, and any additional column (e.g. the values of a stream) can use {@link #slot(long)}
+ * to store its values alongside.
+ *
+ * Writing a sample first claims its sequence, then fills its slot and finally publishes it, all while holding the write lock of a
+ * {@link StampedLock}. Readers never take the lock: they get a stamp from {@link #startRead()} before reading and must check it with
+ * {@link #validate(long)} afterwards, discarding what they read if a write happened in the meantime. Besides detecting the writes, the
+ * validation orders the plain reads of the slots before it, so a validated read is never torn nor stale.
+ */
+final class SampleRingBuffer {
+
+  private final int myCapacity;
+
+  private final float[] myTimes;
+
+  private final int[] myTypes;
+
+  private final StampedLock myLock = new StampedLock();
+
+  /**
+   * Stamp of the write lock held between {@link #claim()} and {@link #publish(long, float, int)}. Only accessed by the writer.
+   */
+  private long myWriteStamp;
+
+  /**
+   * Sequence following the last sample published by the writer.
+   */
+  private volatile long myPublished;
+
+  /**
+   * Sequence of the first sample following the last {@link #clear()}.
+   */
+  private volatile long myCleared;
+
+  SampleRingBuffer(int capacity) {
+    assert capacity > 0;
+    myCapacity = capacity;
+    myTimes = new float[capacity];
+    myTypes = new int[capacity];
+  }
+
+  int getCapacity() {
+    return myCapacity;
+  }
+
+  int slot(long sequence) {
+    return (int)(sequence % myCapacity);
+  }
+
+  /**
+   * Claims the slot of the next sample. Only the writer may call this, and must then fill the columns of the slot and call
+   * {@link #publish(long, float, int)}.
+   *
+   * @return the sequence of the new sample.
+   */
+  long claim() {
+    myWriteStamp = myLock.writeLock();
+    return myPublished;
+  }
+
+  void publish(long sequence, float time, int type) {
+    int slot = slot(sequence);
+    myTimes[slot] = time;
+    myTypes[slot] = type;
+    myPublished = sequence + 1;
+    myLock.unlockWrite(myWriteStamp);
+  }
+
+  /**
+   * Drops all the samples. Only the writer may call this.
+   */
+  void clear() {
+    long stamp = myLock.writeLock();
+    myCleared = myPublished;
+    myLock.unlockWrite(stamp);
+  }
+
+  /**
+   * Starts reading samples, see {@link #validate(long)}.
+   *
+   * @return the stamp to validate what was read with, which is invalid if the writer is busy.
+   */
+  long startRead() {
+    return myLock.tryOptimisticRead();
+  }
+
+  /**
+   * @return whether nothing was written since {@link #startRead()} returned the given stamp, i.e. whether what was read is valid.
+   */
+  boolean validate(long stamp) {
+    return myLock.validate(stamp);
+  }
+
+  /**
+   * @return the sequence of the oldest retained sample.
+   */
+  long getStart() {
+    return Math.max(myCleared, myPublished - myCapacity);
+  }
+
+  /**
+   * @return the sequence following the newest sample.
+   */
+  long getEnd() {
+    return myPublished;
+  }
+
+  int size() {
+    long end = myPublished;
+    return (int)(end - Math.max(myCleared, end - myCapacity));
+  }
+
+  float getTime(long sequence) {
+    return myTimes[slot(sequence)];
+  }
+
+  int getType(long sequence) {
+    return myTypes[slot(sequence)];
+  }
+}
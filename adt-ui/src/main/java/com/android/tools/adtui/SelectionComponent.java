@@ -49,6 +49,11 @@ public final class SelectionComponent extends AnimatedComponent {
   private float myEndX;
   private boolean myEmpty;
 
+  /**
+   * Whether the selection moved on screen during the last frame, see {@link #isDirty()}.
+   */
+  private boolean myDirty = true;
+
   private enum Mode {
     /** The default mode: nothing is happening */
     NONE,
@@ -124,6 +129,8 @@ public final class SelectionComponent extends AnimatedComponent {
       public void mouseReleased(MouseEvent e) {
         if (myMode == Mode.CREATE) {
           fireSelectionEvent();
+          // The handles, hidden while creating the selection, are shown again even if the selection doesn't change anymore.
+          repaint();
         }
         myMode = Mode.NONE;
       }
@@ -185,11 +192,20 @@ public final class SelectionComponent extends AnimatedComponent {
 
   @Override
   protected void updateData() {
-    myEmpty = mySelectionRange.isEmpty();
-    myStartX = (float)((mySelectionRange.getMin() - myRange.getMin()) / (myRange.getMax() - myRange.getMin()));
-    myEndX = (float)((mySelectionRange.getMax() - myRange.getMin()) / (myRange.getMax() - myRange.getMin()));
+    boolean empty = mySelectionRange.isEmpty();
+    float startX = (float)((mySelectionRange.getMin() - myRange.getMin()) / (myRange.getMax() - myRange.getMin()));
+    float endX = (float)((mySelectionRange.getMax() - myRange.getMin()) / (myRange.getMax() - myRange.getMin()));
+    // An empty selection isn't drawn, so it doesn't matter where it is.
+    myDirty = empty != myEmpty || !empty && (Float.compare(startX, myStartX) != 0 || Float.compare(endX, myEndX) != 0);
+    myEmpty = empty;
+    myStartX = startX;
+    myEndX = endX;
   }
 
+  @Override
+  public boolean isDirty() {
+    return myDirty;
+  }
 
   @Override
   protected void draw(Graphics2D g, Dimension dim) {
@@ -41,6 +41,15 @@ public class SimpleEventComponent<E extends Enum<E>> extends AnimatedComponent {
   @NotNull
   private final ArrayList<EventRenderData> mIconsToDraw;
 
+  private double mLastMin;
+
+  private double mLastMax;
+
+  /**
+   * Whether the events or their position changed during the last frame, see {@link #isDirty()}.
+   */
+  private boolean mDirty = true;
+
   /**
    * Component that renders EventActions as a series of icons.
    */
@@ -55,19 +64,33 @@ public class SimpleEventComponent<E extends Enum<E>> extends AnimatedComponent {
   @Override
   protected void updateData() {
     //TODO Pull logic of combining events out of component and into EventHandler
+    double min = mData.getXRange().getMin();
     double max = mData.getXRange().getMax();
-    mIconsToDraw.clear();
     ImmutableList<SeriesData<EventAction<EventAction.Action, E>>> series = mData.getSeries();
     int size = series.size();
+    ArrayList<EventRenderData> icons = new ArrayList<>(size);
 
     for (int i = 0; i < size; i++) {
       SeriesData<EventAction<EventAction.Action, E>> seriesData = series.get(i);
       EventAction<EventAction.Action, ? extends Enum> data = seriesData.value;
       long endTimeUs = data.getEndUs() == 0L ? (long)max : data.getEndUs();
-      mIconsToDraw.add(new EventRenderData(data.getValueData(), data.getStartUs(), endTimeUs));
+      icons.add(new EventRenderData(data.getValueData(), data.getStartUs(), endTimeUs));
+    }
+
+    mDirty = min != mLastMin || max != mLastMax || !icons.equals(mIconsToDraw);
+    mLastMin = min;
+    mLastMax = max;
+    if (mDirty) {
+      mIconsToDraw.clear();
+      mIconsToDraw.addAll(icons);
     }
   }
 
+  @Override
+  public boolean isDirty() {
+    return mDirty;
+  }
+
   @Override
   protected void draw(Graphics2D g2d, Dimension dim) {
     g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -111,6 +134,20 @@ public class SimpleEventComponent<E extends Enum<E>> extends AnimatedComponent {
       mStartTimestamp = startTimestamp;
       mEndTimestamp = endTimestamp;
     }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof EventRenderData)) {
+        return false;
+      }
+      EventRenderData other = (EventRenderData)o;
+      return mKey.equals(other.mKey) && mStartTimestamp == other.mStartTimestamp && mEndTimestamp == other.mEndTimestamp;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * mKey.hashCode() + Long.hashCode(mStartTimestamp)) + Long.hashCode(mEndTimestamp);
+    }
   }
 }
 
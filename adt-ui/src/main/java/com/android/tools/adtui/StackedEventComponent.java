@@ -56,6 +56,15 @@ public class StackedEventComponent extends AnimatedComponent {
   private HashMap<EventAction<EventAction.ActivityAction, String>, EventRenderData> myActionToDrawLocationMap = new HashMap<>();
   private List<EventRenderData> myActivities = new ArrayList<>();
 
+  private double myLastMin;
+
+  private double myLastMax;
+
+  /**
+   * Whether the activities or their position changed during the last frame, see {@link #isDirty()}.
+   */
+  private boolean myDirty = true;
+
   /**
    * @param data The state chart data.
    */
@@ -68,6 +77,8 @@ public class StackedEventComponent extends AnimatedComponent {
   protected void updateData() {
     double min = mData.getXRange().getMin();
     double max = mData.getXRange().getMax();
+    List<EventRenderData> previousActivities = myActivities;
+    myActivities = new ArrayList<>(previousActivities.size());
 
     // A map of EventAction started events to their start time, so we can correlate these to
     // EventAction competed events with the EventAction start events. This is done this way as
@@ -75,7 +86,6 @@ public class StackedEventComponent extends AnimatedComponent {
 
     // A queue of open index values, this allows us to pack our events without leaving gaps.
 
-    myActivities.clear();
     myActionToDrawLocationMap.clear();
     ImmutableList<SeriesData<EventAction<EventAction.ActivityAction, String>>> series = mData.getSeries();
     int size = series.size();
@@ -110,6 +120,33 @@ public class StackedEventComponent extends AnimatedComponent {
       }
       return erd1.getAction().getStartUs() - erd2.getAction().getStartUs() >= 0 ? 1 : -1;
     });
+
+    myDirty = min != myLastMin || max != myLastMax || !hasSameActions(previousActivities, myActivities);
+    myLastMin = min;
+    myLastMax = max;
+  }
+
+  @Override
+  public boolean isDirty() {
+    return myDirty;
+  }
+
+  /**
+   * The actions are recreated on every query, so this compares what they display rather than their identity.
+   */
+  private static boolean hasSameActions(@NotNull List<EventRenderData> activities, @NotNull List<EventRenderData> otherActivities) {
+    if (activities.size() != otherActivities.size()) {
+      return false;
+    }
+    for (int i = 0; i < activities.size(); i++) {
+      EventAction<EventAction.ActivityAction, String> action = activities.get(i).getAction();
+      EventAction<EventAction.ActivityAction, String> otherAction = otherActivities.get(i).getAction();
+      if (action.getStartUs() != otherAction.getStartUs() || action.getEndUs() != otherAction.getEndUs() ||
+          !action.getValueData().equals(otherAction.getValueData())) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
@@ -724,13 +724,13 @@ public final class TimelineComponent extends AnimatedComponent {
     }
   }
 
-  private void updateStreams() {
-    int streamCountFromData = mData.getStreamCount();
+  private void updateStreams(@NotNull TimelineData.Stream[] streamsFromData) {
+    int streamCountFromData = streamsFromData.length;
     int streamIndex = 0;
     Iterator<StreamComponent> iterator = mStreamComponents.iterator();
     while (iterator.hasNext()) {
       StreamComponent streamComponent = iterator.next();
-      if (streamIndex < streamCountFromData && streamComponent.id.equals(mData.getStream(streamIndex).getId())) {
+      if (streamIndex < streamCountFromData && streamComponent.id.equals(streamsFromData[streamIndex].getId())) {
         streamIndex++;
       }
       else {
@@ -739,109 +739,109 @@ public final class TimelineComponent extends AnimatedComponent {
       }
     }
     for (int i = streamIndex; i < streamCountFromData; i++) {
-      addStream(mData.getStream(i).getId());
+      addStream(streamsFromData[i].getId());
     }
   }
 
   @Override
   protected void updateData() {
     long start;
-    synchronized (mData) {
-      updateStreams();
-
-      start = mData.getStartTime();
-      mSize = mData.size();
-      float lastUpdatedTime = mTimes != null ? mTimes[mTimes.length - 1] : 0;
-      if (mTimes == null || mTimes.length < mSize) {
-        int alloc = Math.max(mSize, mTimes == null ? 64 : mTimes.length * 2);
-        mTimes = new float[alloc];
-        mTypes = new int[alloc];
-        for (int j = 0; j < mData.getStreamCount(); ++j) {
-          mStreamComponents.get(j).values = new float[alloc];
-        }
+    // The data is read without locking it, so that painting never blocks the sampling thread.
+    TimelineData.Stream[] streamsFromData = mData.getStreams();
+    updateStreams(streamsFromData);
+
+    start = mData.getStartTime();
+    int size = mData.size();
+    float lastUpdatedTime = mTimes != null ? mTimes[mTimes.length - 1] : 0;
+    if (mTimes == null || mTimes.length < size) {
+      int alloc = Math.max(size, mTimes == null ? 64 : mTimes.length * 2);
+      mTimes = new float[alloc];
+      mTypes = new int[alloc];
+      for (int j = 0; j < streamsFromData.length; ++j) {
+        mStreamComponents.get(j).values = new float[alloc];
       }
+    }
+
+    // Copy the raw values, they are mirrored and stacked in place below.
+    float[][] values = new float[streamsFromData.length][];
+    for (int j = 0; j < streamsFromData.length; ++j) {
+      values[j] = mStreamComponents.get(j).values;
+    }
+    mSize = mData.copy(mTimes, mTypes, streamsFromData, values);
 
+    float cappedMax = 0;
+    float cappedMin = 0;
+    StreamComponent lastStreamForNonMirroredStack = null;
+    StreamComponent lastStreamForMirroredStack = null;
+    for (int streamIndex = 0; streamIndex < mStreamComponents.size(); streamIndex++) {
+      StreamComponent streamComponent = mStreamComponents.get(streamIndex);
+      if (mSize > 0) {
+        streamComponent.currentValue = streamComponent.values[mSize - 1];
+      }
       for (int i = 0; i < mSize; ++i) {
-        TimelineData.SampleInfo info = mData.getSampleInfo(i);
-        mTimes[i] = info.time;
-        mTypes[i] = info.type;
-      }
-
-      float cappedMax = 0;
-      float cappedMin = 0;
-      StreamComponent lastStreamForNonMirroredStack = null;
-      StreamComponent lastStreamForMirroredStack = null;
-      for (int streamIndex = 0; streamIndex < mStreamComponents.size(); streamIndex++) {
-        StreamComponent streamComponent = mStreamComponents.get(streamIndex);
-        TimelineData.Stream streamFromData = mData.getStream(streamIndex);
-        for (int i = 0; i < mSize; ++i) {
-          float value = streamFromData.get(i);
-          if (streamComponent.isMirrored) {
-            value = -Math.abs(value);
-          }
-          if (mStackStreams) {
-            if (streamComponent.isMirrored && lastStreamForMirroredStack != null) {
-              value += lastStreamForMirroredStack.values[i];
-            }
-            else if (!streamComponent.isMirrored && lastStreamForNonMirroredStack != null) {
-              value += lastStreamForNonMirroredStack.values[i];
-            }
+        float value = streamComponent.values[i];
+        if (streamComponent.isMirrored) {
+          value = -Math.abs(value);
+        }
+        if (mStackStreams) {
+          if (streamComponent.isMirrored && lastStreamForMirroredStack != null) {
+            value += lastStreamForMirroredStack.values[i];
           }
-          streamComponent.values[i] = value;
-          if (mTimes[i] > lastUpdatedTime) {
-            cappedMax = Math.max(cappedMax, value);
-            cappedMin = Math.min(cappedMin, value);
+          else if (!streamComponent.isMirrored && lastStreamForNonMirroredStack != null) {
+            value += lastStreamForNonMirroredStack.values[i];
           }
         }
-        if (mSize > 0) {
-          streamComponent.currentValue = streamFromData.get(mSize - 1);
-        }
-        if (streamComponent.isMirrored) {
-          lastStreamForMirroredStack = streamComponent;
-        }
-        else {
-          lastStreamForNonMirroredStack = streamComponent;
+        streamComponent.values[i] = value;
+        if (mTimes[i] > lastUpdatedTime) {
+          cappedMax = Math.max(cappedMax, value);
+          cappedMin = Math.min(cappedMin, value);
         }
       }
+      if (streamComponent.isMirrored) {
+        lastStreamForMirroredStack = streamComponent;
+      }
+      else {
+        lastStreamForNonMirroredStack = streamComponent;
+      }
+    }
 
-      // Calculate begin and end times in seconds.
-      mEndTime = mData.getEndTime() - mBufferTime;
-      mBeginTime = mEndTime - (mRight - LEFT_MARGIN) / X_SCALE;
-      // Animate the current maximum towards the real one.
-      cappedMax = Math.min(mAbsoluteMax, Math.max(mCurrentMax, cappedMax));
-      cappedMin = Math.max(-mAbsoluteMax, Math.min(mCurrentMin, cappedMin));
-      if (cappedMax > mCurrentMax) {
-        mCurrentMax = Choreographer.lerp(mCurrentMax, cappedMax,
-                                         mFirstFrame ? 1.f : .95f, mFrameLength);
-      }
-      if (cappedMin == 0.0f || cappedMin < mCurrentMin) {
-        mCurrentMin = Choreographer.lerp(mCurrentMin, cappedMin,
-                                         mFirstFrame ? 1.f : .95f, mFrameLength);
-      }
-
-      // Animate the fade in/out of markers.
-      FontMetrics metrics = getFontMetrics(AdtUiUtils.DEFAULT_FONT);
-      int ascent = metrics.getAscent();
-      float distance = mMarkerSeparation * mYScale;
-      float evenMarkersTarget = 1.0f;
-      if (distance < ascent * 2) { // Too many markers
-        if (mEvenMarkersAlpha < 0.1f) {
-          mMarkerSeparation *= 2;
-          mEvenMarkersAlpha = 1.0f;
-        }
-        else {
-          evenMarkersTarget = 0.0f;
-        }
+    // Calculate begin and end times in seconds.
+    mEndTime = mData.getEndTime() - mBufferTime;
+    mBeginTime = mEndTime - (mRight - LEFT_MARGIN) / X_SCALE;
+    // Animate the current maximum towards the real one.
+    cappedMax = Math.min(mAbsoluteMax, Math.max(mCurrentMax, cappedMax));
+    cappedMin = Math.max(-mAbsoluteMax, Math.min(mCurrentMin, cappedMin));
+    if (cappedMax > mCurrentMax) {
+      mCurrentMax = Choreographer.lerp(mCurrentMax, cappedMax,
+                                       mFirstFrame ? 1.f : .95f, mFrameLength);
+    }
+    if (cappedMin == 0.0f || cappedMin < mCurrentMin) {
+      mCurrentMin = Choreographer.lerp(mCurrentMin, cappedMin,
+                                       mFirstFrame ? 1.f : .95f, mFrameLength);
+    }
+
+    // Animate the fade in/out of markers.
+    FontMetrics metrics = getFontMetrics(AdtUiUtils.DEFAULT_FONT);
+    int ascent = metrics.getAscent();
+    float distance = mMarkerSeparation * mYScale;
+    float evenMarkersTarget = 1.0f;
+    if (distance < ascent * 2) { // Too many markers
+      if (mEvenMarkersAlpha < 0.1f) {
+        mMarkerSeparation *= 2;
+        mEvenMarkersAlpha = 1.0f;
       }
-      else if (distance > ascent * 5) { // Not enough
-        if (mEvenMarkersAlpha > 0.9f) {
-          mMarkerSeparation /= 2;
-          mEvenMarkersAlpha = 0.0f;
-        }
+      else {
+        evenMarkersTarget = 0.0f;
+      }
+    }
+    else if (distance > ascent * 5) { // Not enough
+      if (mEvenMarkersAlpha > 0.9f) {
+        mMarkerSeparation /= 2;
+        mEvenMarkersAlpha = 0.0f;
       }
-      mEvenMarkersAlpha = Choreographer.lerp(mEvenMarkersAlpha, evenMarkersTarget,
-                                             0.999f, mFrameLength);
     }
+    mEvenMarkersAlpha = Choreographer.lerp(mEvenMarkersAlpha, evenMarkersTarget,
+                                           0.999f, mFrameLength);
     synchronized (mEvents) {
       mEventsSize = mEvents.size();
       if (mEventStart == null || mEventStart.length < mEventsSize) {
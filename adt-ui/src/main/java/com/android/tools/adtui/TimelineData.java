@@ -22,12 +22,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 /**
  * A group of streams of data sampled over time. This object is thread safe as it can be
- * read/modified from any thread. It uses itself as the mutex object so it is possible to
- * synchronize on it if modifications from other threads want to be prevented.
+ * read/modified from any thread. Modifications are expected from a single sampling thread and use
+ * this object as the mutex, so it is possible to synchronize on it if modifications from other
+ * threads want to be prevented. Reads never lock: samples are kept in a {@link SampleRingBuffer},
+ * and {@link #copy} gives readers a consistent view without blocking the sampling thread.
  */
 public class TimelineData {
 
@@ -36,16 +39,13 @@ public class TimelineData {
   @GuardedBy("this")
   private final SampleTransform mTransform;
 
-  @GuardedBy("this")
-  private long mStart;
+  private volatile long mStart;
 
   // Streams' id and values.
   public final List<Stream> mStreams;
 
   // Information related to sampling, for example sample time, sample type.
-  private final List<SampleInfo> mSampleInfos;
-
-  private final int mCapacity;
+  private final SampleRingBuffer mSamples;
 
   // TODO: The streams parameter may not be needed, improve stream initial set up.
   public TimelineData(int streams, int capacity) {
@@ -53,11 +53,10 @@ public class TimelineData {
   }
 
   public TimelineData(int streams, int capacity, @NotNull SampleTransform transform) {
-    mCapacity = capacity;
-    mSampleInfos = new CircularArrayList<SampleInfo>(capacity);
+    mSamples = new SampleRingBuffer(capacity);
     mTransform = transform;
     mTransform.init(streams);
-    mStreams = new ArrayList<Stream>();
+    mStreams = new CopyOnWriteArrayList<Stream>();
     addDefaultStreams(streams);
     clear();
   }
@@ -68,7 +67,7 @@ public class TimelineData {
     }
   }
 
-  public synchronized long getStartTime() {
+  public long getStartTime() {
     return mStart;
   }
 
@@ -80,8 +79,62 @@ public class TimelineData {
     return mStreams.get(index);
   }
 
+  /**
+   * @return a snapshot of the current streams, which doesn't change if streams are added or removed afterwards.
+   */
+  @NotNull
+  public Stream[] getStreams() {
+    return mStreams.toArray(new Stream[0]);
+  }
+
   public SampleInfo getSampleInfo(int index) {
-    return mSampleInfos.get(index);
+    while (true) {
+      long stamp = mSamples.startRead();
+      long start = mSamples.getStart();
+      long end = mSamples.getEnd();
+      long sequence = start + index;
+      boolean inBounds = index >= 0 && sequence < end;
+      float time = inBounds ? mSamples.getTime(sequence) : 0;
+      int type = inBounds ? mSamples.getType(sequence) : 0;
+      // The bounds may only be trusted once the stamp is validated, the samples may have been cleared in the meantime.
+      if (!mSamples.validate(stamp)) {
+        continue;
+      }
+      if (!inBounds) {
+        throw new IndexOutOfBoundsException(String.format("Index %1$d out of sample bound %2$d", index, end - start));
+      }
+      return new SampleInfo(time, type);
+    }
+  }
+
+  /**
+   * Copies the newest samples, at most as many as {@code times} can hold, without blocking the sampling thread. If samples are written
+   * in the meantime, the copy starts over, so the arrays always end up holding consistent data.
+   *
+   * @param times   receives the time of each sample.
+   * @param types   receives the type of each sample.
+   * @param streams the streams to copy the values of, typically obtained from {@link #getStreams()}.
+   * @param values  receives the values of each of the streams, each array must be at least as large as {@code times}.
+   * @return the number of samples copied.
+   */
+  public int copy(@NotNull float[] times, @NotNull int[] types, @NotNull Stream[] streams, @NotNull float[][] values) {
+    while (true) {
+      long stamp = mSamples.startRead();
+      long end = mSamples.getEnd();
+      long start = Math.max(mSamples.getStart(), end - times.length);
+      int count = (int)(end - start);
+      for (int i = 0; i < count; i++) {
+        long sequence = start + i;
+        times[i] = mSamples.getTime(sequence);
+        types[i] = mSamples.getType(sequence);
+        for (int s = 0; s < streams.length; s++) {
+          values[s][i] = streams[s].getAt(sequence);
+        }
+      }
+      if (mSamples.validate(stamp)) {
+        return count;
+      }
+    }
   }
 
   /**
@@ -99,8 +152,7 @@ public class TimelineData {
     for (Stream stream : mStreams) {
       assert !id.equals(stream.getId()) : String.format("Attempt to add duplicate stream of id %1$s", id);
     }
-    int startSize = mSampleInfos.size();
-    Stream stream = new Stream(id, mCapacity, startSize);
+    Stream stream = new Stream(id, mSamples);
     mStreams.add(stream);
     mTransform.add(mStreams.size() - 1);
   }
@@ -142,23 +194,26 @@ public class TimelineData {
   private void add(Sample sample) {
     float[] values = sample.values;
     assert values.length == mStreams.size();
-    for (int i = 0; i < mStreams.size(); i++) {
-      mStreams.get(i).add(values[i]);
+    long sequence = mSamples.claim();
+    try {
+      for (int i = 0; i < mStreams.size(); i++) {
+        mStreams.get(i).set(sequence, values[i]);
+      }
+    }
+    finally {
+      // Publishing releases the write lock, which readers would otherwise wait for forever.
+      mSamples.publish(sequence, sample.time, sample.type);
     }
-    mSampleInfos.add(new SampleInfo(sample.time, sample.type));
   }
 
   public synchronized void clear() {
-    mSampleInfos.clear();
+    mSamples.clear();
     mTransform.reset();
-    for (Stream stream : mStreams) {
-      stream.reset();
-    }
     mStart = System.currentTimeMillis();
   }
 
   public int size() {
-    return mSampleInfos.size();
+    return mSamples.size();
   }
 
   /**
@@ -166,7 +221,7 @@ public class TimelineData {
    */
   @Deprecated
   public Sample get(int index) {
-    SampleInfo info = mSampleInfos.get(index);
+    SampleInfo info = getSampleInfo(index);
     float[] values = new float[mStreams.size()];
     for (int i = 0; i < mStreams.size(); i++) {
       values[i] = mStreams.get(i).get(index);
@@ -174,40 +229,35 @@ public class TimelineData {
     return new Sample(info.time, info.type, values);
   }
 
-  public synchronized float getEndTime() {
+  public float getEndTime() {
     return size() > 0 ? (System.currentTimeMillis() - mStart) / 1000.f : 0.0f;
   }
 
+  /**
+   * The values of a stream, stored in a column of the {@link SampleRingBuffer} of its {@link TimelineData}. A stream added after some
+   * samples reads 0 for them.
+   */
   public static class Stream {
 
     public final String mId;
 
     public final float[] mCircularValues;
 
-    private int mStartIndex;
-
-    private int mValueSize;
+    @NotNull
+    private final SampleRingBuffer mSamples;
 
-    public Stream(@NotNull String id, int maxValueSize, int startSize) {
+    Stream(@NotNull String id, @NotNull SampleRingBuffer samples) {
       mId = id;
-      mCircularValues = new float[maxValueSize];
-      mStartIndex = 0;
-      mValueSize = startSize;
+      mSamples = samples;
+      mCircularValues = new float[samples.getCapacity()];
     }
 
     public int getValueSize() {
-      return mValueSize;
+      return mSamples.size();
     }
 
-    public void add(float value) {
-      if (mValueSize == mCircularValues.length) {
-        mCircularValues[mStartIndex] = value;
-        mStartIndex = (mStartIndex + 1) % mValueSize;
-      }
-      else {
-        mCircularValues[mValueSize] = value;
-        mValueSize++;
-      }
+    private void set(long sequence, float value) {
+      mCircularValues[mSamples.slot(sequence)] = value;
     }
 
     public String getId() {
@@ -215,13 +265,24 @@ public class TimelineData {
     }
 
     public float get(int index) {
-      assert index >= 0 && index < mValueSize : String.format("Index %1$d out of value length bound %2$d", index, mValueSize);
-      return mCircularValues[(mStartIndex + index) % mValueSize];
+      while (true) {
+        long stamp = mSamples.startRead();
+        long start = mSamples.getStart();
+        long end = mSamples.getEnd();
+        boolean inBounds = index >= 0 && start + index < end;
+        float value = inBounds ? getAt(start + index) : 0;
+        if (!mSamples.validate(stamp)) {
+          continue;
+        }
+        if (!inBounds) {
+          throw new IndexOutOfBoundsException(String.format("Index %1$d out of value length bound %2$d", index, end - start));
+        }
+        return value;
+      }
     }
 
-    public void reset() {
-      mStartIndex = 0;
-      mValueSize = 0;
+    private float getAt(long sequence) {
+      return mCircularValues[mSamples.slot(sequence)];
     }
   }
 
@@ -34,6 +34,7 @@ import java.awt.geom.RoundRectangle2D;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * A chart component that renders series of state change events as rectangles.
@@ -71,6 +72,16 @@ public class StateChart<E extends Enum<E>> extends AnimatedComponent {
   @NotNull
   private StateChartReducer<E> myReducer;
 
+  /**
+   * Whether the series or the way they are drawn changed since the last frame.
+   */
+  private boolean mConfigChanged = true;
+
+  /**
+   * Whether any rectangle changed during the last frame, see {@link #isDirty()}.
+   */
+  private boolean mDirty = true;
+
   /**
    * @param colors map of a state to corresponding color
    */
@@ -94,10 +105,12 @@ public class StateChart<E extends Enum<E>> extends AnimatedComponent {
 
   public void setRenderMode(RenderMode mode) {
     mRenderMode = mode;
+    mConfigChanged = true;
   }
 
   public void addSeries(@NotNull RangedSeries<E> series) {
     mSeriesList.add(series);
+    mConfigChanged = true;
   }
 
   /**
@@ -105,6 +118,7 @@ public class StateChart<E extends Enum<E>> extends AnimatedComponent {
    */
   public void setArcWidth(float arcWidth) {
     mArcWidth = arcWidth;
+    mConfigChanged = true;
   }
 
   /**
@@ -112,6 +126,7 @@ public class StateChart<E extends Enum<E>> extends AnimatedComponent {
    */
   public void setArcHeight(float arcHeight) {
     mArcHeight = arcHeight;
+    mConfigChanged = true;
   }
 
   /**
@@ -121,11 +136,14 @@ public class StateChart<E extends Enum<E>> extends AnimatedComponent {
    */
   public void setHeightGap(float gap) {
     mHeightGap = gap;
+    mConfigChanged = true;
   }
 
   @Override
   protected void updateData() {
     int seriesSize = mSeriesList.size();
+    mDirty = mConfigChanged;
+    mConfigChanged = false;
 
     if (seriesSize == 0) {
       return;
@@ -134,7 +152,6 @@ public class StateChart<E extends Enum<E>> extends AnimatedComponent {
     // TODO support adding series on the fly and interpolation.
     float height = 1f / seriesSize;
     float gap = height * mHeightGap;
-    mValues.clear();
 
     int seriesIndex = 0, rectCount = 0;
     for (RangedSeries<E> data : mSeriesList) {
@@ -194,9 +211,16 @@ public class StateChart<E extends Enum<E>> extends AnimatedComponent {
 
     if (rectCount < mRectangles.size()) {
       mRectangles.subList(rectCount, mRectangles.size()).clear();
+      mValues.subList(rectCount, mValues.size()).clear();
+      mDirty = true;
     }
   }
 
+  @Override
+  public boolean isDirty() {
+    return mDirty;
+  }
+
   @Override
   protected void draw(Graphics2D g2d, Dimension dim) {
     g2d.setFont(getFont());
@@ -255,18 +279,22 @@ public class StateChart<E extends Enum<E>> extends AnimatedComponent {
     if (rectCount == mRectangles.size()) {
       rect = new RoundRectangle2D.Float();
       mRectangles.add(rect);
+      mValues.add(previousValue);
+      mDirty = true;
     } else {
       rect = mRectangles.get(rectCount);
+      if (!Objects.equals(mValues.set(rectCount, previousValue), previousValue)) {
+        mDirty = true;
+      }
     }
 
-    mValues.add(previousValue);
-
-    rect.setRoundRect((previousX - minX) / (maxX - minX),
-                      rectY,
-                      (currentX - previousX) / (maxX - minX),
-                      rectHeight,
-                      mArcWidth,
-                      mArcHeight);
+    float x = (float)((previousX - minX) / (maxX - minX));
+    float width = (float)((currentX - previousX) / (maxX - minX));
+    if (rect.x != x || rect.y != rectY || rect.width != width || rect.height != rectHeight || rect.arcwidth != mArcWidth ||
+        rect.archeight != mArcHeight) {
+      rect.setRoundRect(x, rectY, width, rectHeight, mArcWidth, mArcHeight);
+      mDirty = true;
+    }
   }
 }
 
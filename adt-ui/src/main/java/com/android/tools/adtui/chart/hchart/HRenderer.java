@@ -50,6 +50,12 @@ public abstract class HRenderer<T> {
 
   // This method is not thread-safe. In order to limit object allocation, mRect is being re-used.
   public void render(Graphics2D g, T node, Rectangle2D drawingArea) {
+    renderRect(g, node, drawingArea);
+    renderText(g, node, drawingArea);
+  }
+
+  // Draws the background and the outline of the node, see render(). Not thread-safe either.
+  public void renderRect(Graphics2D g, T node, Rectangle2D drawingArea) {
     mRect.x = (float)drawingArea.getX();
     mRect.y = (float)drawingArea.getY();
     mRect.width = (float)drawingArea.getWidth();
@@ -64,7 +70,10 @@ public abstract class HRenderer<T> {
     Color bordColor = getBordColor(node);
     g.setPaint(bordColor);
     g.draw(mRect);
+  }
 
+  // Draws the label of the node, centered in the drawing area, see render().
+  public void renderText(Graphics2D g, T node, Rectangle2D drawingArea) {
     // Draw text
     FontMetrics fontMetrics = g.getFontMetrics(mFont);
     String text = generateFittingText(node, drawingArea, fontMetrics);
@@ -19,7 +19,9 @@ package com.android.tools.adtui.chart.hchart;
 import com.android.tools.adtui.AnimatedComponent;
 import com.android.tools.adtui.common.AdtUiUtils;
 import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.HTree;
 import com.android.tools.adtui.model.Range;
+import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -27,7 +29,10 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.Rectangle2D;
-import java.util.Stack;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListener, MouseListener {
 
@@ -41,12 +46,28 @@ public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListen
   private static final String ACTION_MOVE_LEFT = "move left";
   private static final String ACTION_MOVE_RIGHT = "move right";
   private static final int ACTION_MOVEMENT_FACTOR = 5;
+  /**
+   * Nodes narrower than this, in pixels, are merged with their neighbours and their subtrees are not rendered.
+   */
+  private static final double MIN_NODE_WIDTH = 1;
+  private static final int TILE_WIDTH = 256;
+  /**
+   * Number of tiles kept cached on each side of the visible ones.
+   */
+  private static final int TILE_MARGIN = 2;
+  /**
+   * Relative change of scale under which the tiles are still considered to be at the same zoom level.
+   */
+  private static final double SCALE_TOLERANCE = 1e-9;
 
   private Orientation mOrientation;
   @Nullable
   private HRenderer<T> mHRenderer;
+  /**
+   * The tree to render. Its root is not rendered, only its descendants are.
+   */
   @Nullable
-  private HNode<T> mRoot;
+  private HTree<T> mTree;
   @Nullable
   private Range mXRange;
   @NotNull
@@ -54,8 +75,46 @@ public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListen
   @NotNull
   private Rectangle2D.Float mRect;
 
+  /**
+   * Per row, the first node of the block of merged nodes being rendered, or {@link HTree#NO_NODE}, and the edges of the block.
+   */
+  @NotNull
+  private int[] mBlockNodes = new int[0];
+  @NotNull
+  private double[] mBlockLefts = new double[0];
+  @NotNull
+  private double[] mBlockRights = new double[0];
+
+  private boolean mTileCaching;
+  /**
+   * The cached tiles, by index from {@link #mTileOrigin}. Only the tiles in view or within {@link #TILE_MARGIN} of it are kept.
+   */
+  @NotNull
+  private final Map<Long, Image> mTiles = new HashMap<>();
+  /**
+   * The state the cached tiles were rendered for.
+   */
+  @Nullable
+  private HTree<T> mTileTree;
+  private int mTileHeight;
+  private double mTileYMin;
+  private Orientation mTileOrientation;
+  private double mTileScale;
+  private double mTileOrigin;
+
+  /**
+   * Whether the tree or the way it is rendered changed since the last frame.
+   */
+  private boolean mConfigChanged = true;
+  private double mLastXMin;
+  private double mLastXMax;
+  private double mLastYMin;
+  /**
+   * Whether the tree or the visible part of it changed during the last frame, see {@link #isDirty()}.
+   */
+  private boolean mDirty = true;
+
   public HTreeChart() {
-    mRoot = new HNode<>();
     mRect = new Rectangle2D.Float();
     mYRange = new Range(0, 0);
     addMouseWheelListener(this);
@@ -71,6 +130,19 @@ public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListen
 
   @Override
   protected void updateData() {
+    double xMin = mXRange == null ? 0 : mXRange.getMin();
+    double xMax = mXRange == null ? 0 : mXRange.getMax();
+    double yMin = mYRange.getMin();
+    mDirty = mConfigChanged || xMin != mLastXMin || xMax != mLastXMax || yMin != mLastYMin;
+    mConfigChanged = false;
+    mLastXMin = xMin;
+    mLastXMax = xMax;
+    mLastYMin = yMin;
+  }
+
+  @Override
+  public boolean isDirty() {
+    return mDirty;
   }
 
   @Override
@@ -78,7 +150,7 @@ public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListen
 
     g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-    if (mRoot == null || mRoot.getChildren().size() == 0) {
+    if (mTree == null || mTree.size() <= 1) {
       g.drawString(NO_HTREE, dim.width / 2 - mDefaultFontMetrics.stringWidth(NO_HTREE),
                    dim.height / 2);
       return;
@@ -90,56 +162,159 @@ public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListen
       return;
     }
 
-    // Render using a LIFO Stack instead of recursion to limit the depth of the Java call
-    // stack.
-    Stack<HNode<T>> stack = new Stack<>();
-    stack.addAll(mRoot.getChildren());
-    while (!stack.isEmpty()) {
-      HNode<T> n = stack.pop();
-      renderHNode(g, n);
-      stack.addAll(n.getChildren());
+    if (mTileCaching) {
+      drawTiles(g, dim);
+    }
+    else {
+      renderNodes(g, mXRange.getMin(), dim.width / mXRange.getLength(), dim.width, dim.height, RenderPass.ALL);
     }
   }
 
-  // This method is not thread-safe: It re-uses mRect.
-  private void renderHNode(Graphics2D g, HNode<T> n) {
+  /**
+   * Draws the node rectangles from image tiles of {@link #TILE_WIDTH} pixels, rendering only the tiles not already cached, then draws
+   * the labels over them. The tiles are aligned on a fixed origin, so that panning reuses them as long as the zoom level doesn't change.
+   * The labels are not cached, as they are centered within the visible part of their node and would be clipped at the tile edges.
+   */
+  private void drawTiles(Graphics2D g, Dimension dim) {
+    double scale = dim.width / mXRange.getLength();
+    if (mTileTree != mTree || mTileHeight != dim.height || mTileYMin != mYRange.getMin() || mTileOrientation != mOrientation ||
+        Math.abs(scale - mTileScale) > mTileScale * SCALE_TOLERANCE) {
+      mTiles.clear();
+      mTileTree = mTree;
+      mTileHeight = dim.height;
+      mTileYMin = mYRange.getMin();
+      mTileOrientation = mOrientation;
+      mTileScale = scale;
+      mTileOrigin = mXRange.getMin();
+    }
 
-    // 1. Cull node to view Range.
-    if (n.getStart() > getXRange().getMax() || n.getEnd() < getXRange().getMin()) {
-      return;
+    double viewLeft = (mXRange.getMin() - mTileOrigin) * mTileScale;
+    long firstTile = (long)Math.floor(viewLeft / TILE_WIDTH);
+    long lastTile = (long)Math.floor((viewLeft + dim.width) / TILE_WIDTH);
+    for (long tile = firstTile; tile <= lastTile; tile++) {
+      Image image = mTiles.get(tile);
+      if (image == null) {
+        image = renderTile(tile, dim.height);
+        mTiles.put(tile, image);
+      }
+      UIUtil.drawImage(g, image, (int)Math.round(tile * TILE_WIDTH - viewLeft), 0, null);
     }
+    mTiles.keySet().removeIf(tile -> tile < firstTile - TILE_MARGIN || tile > lastTile + TILE_MARGIN);
 
-    // 2. Clip node.
-    double leftEdge = rangeToPosition(n.getStart());
-    if (leftEdge < 0) {
-      leftEdge = 0;
+    renderNodes(g, mXRange.getMin(), scale, dim.width, dim.height, RenderPass.LABELS);
+  }
+
+  @NotNull
+  private Image renderTile(long tile, int height) {
+    BufferedImage image = UIUtil.createImage(TILE_WIDTH, height, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      renderNodes(g, mTileOrigin + tile * TILE_WIDTH / mTileScale, mTileScale, TILE_WIDTH, height, RenderPass.RECTANGLES);
     }
-    double rightEdge = rangeToPosition(n.getEnd());
-    if (rightEdge > getWidth()) {
-      rightEdge = getWidth();
+    finally {
+      g.dispose();
     }
-    double width = rightEdge - leftEdge;
+    return image;
+  }
 
-    // 3. Calculate node position and dimension.
+  /**
+   * Renders the nodes visible in an area of the given size, whose left edge is at {@code rangeMin} and with {@code scale} pixels per
+   * range unit.
+   *
+   * Subtrees outside of the area are skipped when the tree is nested. Consecutive nodes of the same row narrower than
+   * {@link #MIN_NODE_WIDTH} are merged into a single block, and their subtrees (even narrower) are skipped.
+   *
+   * This method is not thread-safe: It re-uses mRect and the block arrays.
+   */
+  private void renderNodes(Graphics2D g, double rangeMin, double scale, int width, int height, @NotNull RenderPass pass) {
+    HTree<T> tree = mTree;
+    double rangeMax = rangeMin + width / scale;
+    int rows = tree.getMaxDepth() + 1;
+    if (mBlockNodes.length < rows) {
+      mBlockNodes = new int[rows];
+      mBlockLefts = new double[rows];
+      mBlockRights = new double[rows];
+    }
+    Arrays.fill(mBlockNodes, 0, rows, HTree.NO_NODE);
+
+    int node = 1;
+    while (node != HTree.NO_NODE && node < tree.size()) {
+      // 1. Cull node to the range.
+      if (tree.getStart(node) > rangeMax || tree.getEnd(node) < rangeMin) {
+        node = tree.isNested() ? tree.getNextAfterSubtree(node) : node + 1;
+        continue;
+      }
+
+      // 2. Clip node.
+      double leftEdge = Math.max(0, (tree.getStart(node) - rangeMin) * scale);
+      double rightEdge = Math.min(width, (tree.getEnd(node) - rangeMin) * scale);
+
+      // 3. Merge the nodes too narrow to be told apart.
+      if (rightEdge - leftEdge < MIN_NODE_WIDTH) {
+        int depth = tree.getDepth(node);
+        if (mBlockNodes[depth] != HTree.NO_NODE && leftEdge - mBlockRights[depth] > MIN_NODE_WIDTH) {
+          renderBlock(g, tree, depth, height, pass);
+        }
+        if (mBlockNodes[depth] == HTree.NO_NODE) {
+          mBlockNodes[depth] = node;
+          mBlockLefts[depth] = leftEdge;
+        }
+        mBlockRights[depth] = Math.max(mBlockRights[depth], rightEdge);
+        node = tree.isNested() ? tree.getNextAfterSubtree(node) : node + 1;
+        continue;
+      }
+
+      renderNode(g, tree.getData(node), tree.getDepth(node), leftEdge, rightEdge, height, pass);
+      node++;
+    }
+
+    for (int depth = 0; depth < rows; depth++) {
+      if (mBlockNodes[depth] != HTree.NO_NODE) {
+        renderBlock(g, tree, depth, height, pass);
+      }
+    }
+  }
+
+  /**
+   * Renders the pending block of merged nodes of the given row, with the data of its first node, and clears it.
+   */
+  private void renderBlock(Graphics2D g, HTree<T> tree, int depth, int height, @NotNull RenderPass pass) {
+    double right = Math.max(mBlockRights[depth], mBlockLefts[depth] + MIN_NODE_WIDTH);
+    renderNode(g, tree.getData(mBlockNodes[depth]), depth, mBlockLefts[depth], right, height, pass);
+    mBlockNodes[depth] = HTree.NO_NODE;
+    mBlockRights[depth] = 0;
+  }
+
+  private void renderNode(Graphics2D g, T data, int depth, double leftEdge, double rightEdge, int height, @NotNull RenderPass pass) {
+    // 1. Calculate node position and dimension.
     mRect.x = (float)leftEdge;
-    mRect.y = (float)((mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * n.getDepth()
+    mRect.y = (float)((mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * depth
                       - getYRange().getMin());
-    mRect.width = (float)width - BORDER_PLUS_PADDING;
+    mRect.width = (float)(rightEdge - leftEdge) - BORDER_PLUS_PADDING;
     mRect.height = mDefaultFontMetrics.getHeight();
 
     if (mOrientation == HTreeChart.Orientation.BOTTOM_UP) {
-      mRect.y = (float)(getHeight() - mRect.y - mRect.getHeight());
+      mRect.y = (float)(height - mRect.y - mRect.getHeight());
     }
 
-    // 4. Render node
-    mHRenderer.render(g, n.getData(), mRect);
-  }
+    // 2. Cull rows out of view.
+    if (mRect.y + mRect.height < 0 || mRect.y > height) {
+      return;
+    }
 
-  // This could be done with an Axis. But that seems overkill. A simple method will do for now.
-  private double rangeToPosition(double v) {
-    double translate = -getXRange().getMin();
-    double scale = this.getWidth() / (getXRange().getMax() - getXRange().getMin());
-    return (v + translate) * scale;
+    // 3. Render node
+    switch (pass) {
+      case ALL:
+        mHRenderer.render(g, data, mRect);
+        break;
+      case RECTANGLES:
+        mHRenderer.renderRect(g, data, mRect);
+        break;
+      case LABELS:
+        mHRenderer.renderText(g, data, mRect);
+        break;
+    }
   }
 
   private double positionToRange(double x) {
@@ -149,10 +324,30 @@ public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListen
   public void setHRenderer(HRenderer<T> r) {
     this.mHRenderer = r;
     this.mHRenderer.setFont(AdtUiUtils.DEFAULT_FONT);
+    mTiles.clear();
+    mConfigChanged = true;
   }
 
+  /**
+   * Enables caching the rendered chart as image tiles, which are reused while panning and rendered again only when zooming, scrolling
+   * vertically or changing the tree. Only the node rectangles are cached, the labels are drawn on every frame.
+   */
+  public void setTileCaching(boolean tileCaching) {
+    mTileCaching = tileCaching;
+    mTiles.clear();
+    mConfigChanged = true;
+  }
+
+  /**
+   * Copies the given tree, see {@link #setTree(HTree)} to avoid the copy.
+   */
   public void setHTree(@Nullable HNode<T> root) {
-    this.mRoot = root;
+    setTree(root == null ? null : HTree.fromHNode(root));
+  }
+
+  public void setTree(@Nullable HTree<T> tree) {
+    this.mTree = tree;
+    mConfigChanged = true;
   }
 
   public Range getXRange() {
@@ -161,6 +356,7 @@ public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListen
 
   public void setXRange(Range XRange) {
     mXRange = XRange;
+    mConfigChanged = true;
 
     getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_UP, 0), ACTION_ZOOM_IN);
     getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, 0), ACTION_ZOOM_OUT);
@@ -205,24 +401,10 @@ public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListen
   }
 
   public int getMaximumHeight() {
-    if (mRoot == null) {
+    if (mTree == null || mTree.size() <= 1) {
       return 0;
     }
-
-    int maxDepth = -1;
-    // Traverse the tree FIFO instead of recursion to limit the depth of the Java call
-    // stack.
-    Stack<HNode<T>> stack = new Stack<>();
-    stack.addAll(mRoot.getChildren());
-    while (!stack.isEmpty()) {
-      HNode<T> n = stack.pop();
-      if (n.getDepth() > maxDepth) {
-        maxDepth = n.getDepth();
-      }
-      stack.addAll(n.getChildren());
-    }
-    maxDepth += 1;
-    return (mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * maxDepth;
+    return (mDefaultFontMetrics.getHeight() + BORDER_PLUS_PADDING) * (mTree.getMaxDepth() + 1);
   }
 
   // TODO we probably want to extract/abstract this logic out later so the zooming behavior
@@ -263,4 +445,9 @@ public class HTreeChart<T> extends AnimatedComponent implements MouseWheelListen
   }
 
   public enum Orientation {TOP_DOWN, BOTTOM_UP}
+
+  /**
+   * What {@link #renderNodes} draws of each node: Everything, or only the parts cached in tiles or drawn over them.
+   */
+  private enum RenderPass {ALL, RECTANGLES, LABELS}
 }
\ No newline at end of file
@@ -77,6 +77,11 @@ public final class DurationDataRenderer<E extends DurationData> implements Anima
   private Point myMousePosition;
   private boolean myClick;
 
+  /**
+   * Whether the regions or labels changed during the last frame, see {@link #isDirty()}.
+   */
+  private boolean myDirty = true;
+
   public DurationDataRenderer(@NotNull Builder builder) {
     mySeries = builder.mySeries;
     myColor = builder.myColor;
@@ -100,6 +105,10 @@ public final class DurationDataRenderer<E extends DurationData> implements Anima
 
   @Override
   public void postAnimate() {
+    List<Rectangle2D.Float> previousPaths = new ArrayList<>(myPathCache);
+    List<Rectangle2D.Float> previousClickRegions = new ArrayList<>(myClickRegionCache);
+    List<String> previousLabels = getLabelTexts();
+
     // Generate the rectangle regions for the duration data series
     myDataCache.clear();
     myClickRegionCache.clear();
@@ -165,6 +174,24 @@ public final class DurationDataRenderer<E extends DurationData> implements Anima
         clickRegion.setRect(xStart + DISPLAY_OFFSET_PERCENTAGE, attachY - DISPLAY_OFFSET_PERCENTAGE, regionWidth, regionHeight);
       }
     }
+
+    // The data objects are recreated on every query, so compare what is drawn instead.
+    myDirty = !myPathCache.equals(previousPaths) || !myClickRegionCache.equals(previousClickRegions) ||
+              !getLabelTexts().equals(previousLabels);
+  }
+
+  @Override
+  public boolean isDirty() {
+    return myDirty;
+  }
+
+  @NotNull
+  private List<String> getLabelTexts() {
+    List<String> texts = new ArrayList<>(myLabelCache.size());
+    for (JLabel label : myLabelCache) {
+      texts.add(label.getText());
+    }
+    return texts;
   }
 
   @Override
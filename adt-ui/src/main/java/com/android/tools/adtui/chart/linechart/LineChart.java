@@ -21,17 +21,17 @@ import com.android.tools.adtui.Choreographer;
 import com.android.tools.adtui.LegendRenderData;
 import com.android.tools.adtui.LineChartLegendRenderData;
 import com.android.tools.adtui.common.datareducer.DataReducer;
+import com.android.tools.adtui.common.datareducer.LineChartReducer;
 import com.android.tools.adtui.common.formatter.BaseAxisFormatter;
+import com.android.tools.adtui.model.NumericSeriesData;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
-import com.android.tools.adtui.model.SeriesData;
-import com.intellij.util.containers.ImmutableList;
 import gnu.trove.TDoubleArrayList;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.awt.*;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
 import java.util.*;
@@ -40,6 +40,11 @@ import java.util.concurrent.TimeUnit;
 
 public class LineChart extends AnimatedComponent {
 
+  /**
+   * Number of samples per pixel column needed to preserve the visual envelope of a line (its min and max).
+   */
+  private static final int SAMPLES_PER_PIXEL = 2;
+
   /**
    * Maps the series to their correspondent visual line configuration.
    * The keys insertion order is preserved.
@@ -47,8 +52,23 @@ public class LineChart extends AnimatedComponent {
   @NotNull
   private final Map<RangedContinuousSeries, LineConfig> myLinesConfig = new LinkedHashMap<>();
 
+  /**
+   * Geometry of each line, reused across frames.
+   */
+  @NotNull
+  private final Map<RangedContinuousSeries, LineBuffer> myLineBuffers = new HashMap<>();
+
+  /**
+   * The lines in drawing order, matching {@link #myLinePathConfigs}.
+   */
+  @NotNull
+  private final ArrayList<LineBuffer> myOrderedLines = new ArrayList<>();
+
+  /**
+   * Scaled and reduced paths passed to {@link #drawLines} and the custom renderers, reused across frames.
+   */
   @NotNull
-  private final ArrayList<Path2D> myLinePaths;
+  private final ArrayList<Path2D> myTransformedPaths = new ArrayList<>();
 
   @NotNull
   private final ArrayList<LineConfig> myLinePathConfigs;
@@ -70,8 +90,19 @@ public class LineChart extends AnimatedComponent {
    */
   private boolean myFirstUpdate = true;
 
+  private boolean myReduceSourceData;
+
+  /**
+   * Whether lines were added or removed since the last frame.
+   */
+  private boolean myLinesChanged = true;
+
+  /**
+   * Whether any line changed during the last frame, see {@link #isDirty()}.
+   */
+  private boolean myDirty = true;
+
   public LineChart() {
-    myLinePaths = new ArrayList<>();
     myLinePathConfigs = new ArrayList<>();
     // TODO: Replace with myReducer = new LineChartReducer
     // Having a real reducer will be important for the final release, but we don't want to risk
@@ -105,6 +136,7 @@ public class LineChart extends AnimatedComponent {
    */
   public void addLine(@NotNull RangedContinuousSeries series, @NotNull LineConfig config) {
     myLinesConfig.put(series, config);
+    myLinesChanged = true;
   }
 
   /**
@@ -137,7 +169,11 @@ public class LineChart extends AnimatedComponent {
    */
   public void clearConfigs() {
     myLinesConfig.clear();
+    myLineBuffers.clear();
+    myOrderedLines.clear();
+    myLinePathConfigs.clear();
     myCustomRenderers.clear();
+    myLinesChanged = true;
   }
 
   @NotNull
@@ -153,9 +189,9 @@ public class LineChart extends AnimatedComponent {
       Range range = ranged.getYRange();
       double yMax = Double.MIN_VALUE;
 
-      ImmutableList<SeriesData<Long>> seriesList = ranged.getSeries();
-      for (int i = 0; i < seriesList.size(); i++) {
-        double value = seriesList.get(i).value;
+      NumericSeriesData seriesData = ranged.getNumericSeries(getMaxSamples());
+      for (int i = 0; i < seriesData.size(); i++) {
+        double value = seriesData.getY(i);
         if (yMax < value) {
           yMax = value;
         }
@@ -216,118 +252,93 @@ public class LineChart extends AnimatedComponent {
   public void postAnimate() {
     long duration = System.nanoTime();
     int p = 0;
+    int maxSamples = getMaxSamples();
+    int reduceWidth = myReduceSourceData ? getWidth() : 0;
 
-    // Store the Y coordinates of the last stacked series to use them to increment the Y values
-    // of the current stacked series.
-    TDoubleArrayList lastStackedSeriesY = null;
-
-    Deque<Path2D> orderedPaths = new ArrayDeque<>(myLinesConfig.size());
-    Deque<LineConfig> orderedConfigs = new ArrayDeque<>(myLinesConfig.size());
+    // The last stacked line, which the current stacked line is stacked on, and whether it had to be rebuilt.
+    LineBuffer lastStacked = null;
+    boolean stackChanged = false;
+    boolean dirty = myLinesChanged;
 
+    myOrderedLines.clear();
+    myLinePathConfigs.clear();
     for (Map.Entry<RangedContinuousSeries, LineConfig> lineConfig : myLinesConfig.entrySet()) {
       final RangedContinuousSeries ranged = lineConfig.getKey();
       final LineConfig config = lineConfig.getValue();
-      // Stores the y coordinates of the current series in case it's used as a stacked series
-      final TDoubleArrayList currentSeriesY = new TDoubleArrayList();
-
-      Path2D path = new Path2D.Float();
-
-      double xMin = ranged.getXRange().getMin();
-      double xMax = ranged.getXRange().getMax();
-      double yMin = ranged.getYRange().getMin();
-      double yMax = ranged.getYRange().getMax();
 
-      // X coordinate of the first point
-      double firstXd = 0f;
-
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
-      for (int i = 0; i < seriesList.size(); i++) {
-        // TODO: refactor to allow different types (e.g. double)
-        SeriesData<Long> seriesData = seriesList.get(i);
-        long currX = seriesData.x;
-        long currY = seriesData.value;
-        double xd = (currX - xMin) / (xMax - xMin);
-        double yd = (currY - yMin) / (yMax - yMin);
-
-        // If the current series is stacked, increment its yd by the yd of the last stacked
-        // series if it's not null.
-        // As the series are constantly populated, the current series might have one more
-        // point than the last stacked series (meaning that the last one was populated in a
-        // prior iteration). In this case, yd of the current series shouldn't change.
-        if (config.isStacked() && lastStackedSeriesY != null &&
-            i < lastStackedSeriesY.size()) {
-          yd += lastStackedSeriesY.get(i);
-        }
-        currentSeriesY.add(yd);
-        // Swing's (0, 0) coordinate is in top-left. As we use bottom-left (0, 0), we need to adjust the y coordinate.
-        float adjustedYd = 1 - (float)yd;
-
-        if (i == 0) {
-          path.moveTo(xd, adjustedYd);
-          firstXd = xd;
-        }
-        else {
-          // If the chart is stepped, a horizontal line should be drawn from the current
-          // point (e.g. (x0, y0)) to the destination's X value (e.g. (x1, y0)) before
-          // drawing a line to the destination point itself (e.g. (x1, y1)).
-          if (config.isStepped()) {
-            float y = (float)path.getCurrentPoint().getY();
-            path.lineTo(xd, y);
-          }
-          path.lineTo(xd, adjustedYd);
-        }
-      }
-
-      if (config.isFilled() && path.getCurrentPoint() != null) {
-        // If the chart is filled, but not stacked, draw a line from the last point to X
-        // axis and another one from this new point to the first destination point.
-        path.lineTo(path.getCurrentPoint().getX(), 1f);
-        path.lineTo(firstXd, 1f);
+      LineBuffer line = myLineBuffers.get(ranged);
+      if (line == null) {
+        line = new LineBuffer();
+        myLineBuffers.put(ranged, line);
       }
 
+      NumericSeriesData seriesData = ranged.getNumericSeries(maxSamples);
       if (config.isStacked()) {
-        lastStackedSeriesY = currentSeriesY;
+        stackChanged |= line.update(ranged, config, seriesData, lastStacked, stackChanged, 0);
+        dirty |= stackChanged;
+        lastStacked = line;
+      }
+      else {
+        dirty |= line.update(ranged, config, seriesData, null, false, reduceWidth);
       }
 
       if (config.isFilled()) {
         // Draw the filled lines first, otherwise other lines won't be visible.
         // Also, to draw stacked and filled lines correctly, they need to be drawn in reverse order to their adding order.
-        orderedPaths.addFirst(path);
-        orderedConfigs.addFirst(config);
+        myOrderedLines.add(0, line);
+        myLinePathConfigs.add(0, config);
       }
       else {
-        orderedPaths.addLast(path);
-        orderedConfigs.addLast(config);
+        myOrderedLines.add(line);
+        myLinePathConfigs.add(config);
       }
 
-      addDebugInfo("Range[%d] Max: %.2f", p, xMax);
+      addDebugInfo("Range[%d] Max: %.2f", p, ranged.getXRange().getMax());
       p++;
     }
 
-    myLinePaths.clear();
-    myLinePaths.addAll(orderedPaths);
+    myDirty = dirty;
+    myLinesChanged = false;
+    addDebugInfo("postAnimate time: %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - duration));
+  }
+
+  @Override
+  public boolean isDirty() {
+    return myDirty;
+  }
 
-    myLinePathConfigs.clear();
-    myLinePathConfigs.addAll(orderedConfigs);
+  /**
+   * When enabled, lines which are not stacked are reduced to a few points per pixel column directly from their data, before any
+   * geometry is built. See {@link LineChartReducer#reduce(float[], int, float)}.
+   */
+  public void setReduceSourceData(boolean reduceSourceData) {
+    myReduceSourceData = reduceSourceData;
+  }
 
-    addDebugInfo("postAnimate time: %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - duration));
+  /**
+   * Returns the number of samples per line needed to draw the chart at its current width: a min and a max per pixel column.
+   * Series holding more samples than that in the visible range may return aggregates instead.
+   */
+  private int getMaxSamples() {
+    int width = getWidth();
+    return width > 0 ? SAMPLES_PER_PIXEL * width : Integer.MAX_VALUE;
   }
 
   @Override
   protected void draw(Graphics2D g2d, Dimension dim) {
-    if (myLinePaths.size() != myLinesConfig.size()) {
+    if (myOrderedLines.size() != myLinesConfig.size()) {
       // Early return if the cached paths have not been sync'd with the configs.
       // e.g. updateData/postAnimate has not been invoked before this draw call.
       return;
     }
 
     g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-    AffineTransform scale = AffineTransform.getScaleInstance(dim.getWidth(), dim.getHeight());
 
     // Cache the transformed line paths for reuse below.
-    List<Path2D> transformedPaths = new ArrayList<>(myLinePaths.size());
-    for (int i = 0; i < myLinePaths.size(); ++i) {
-      Path2D scaledPath = new Path2D.Float(myLinePaths.get(i), scale);
+    List<Path2D> transformedPaths = myTransformedPaths;
+    transformedPaths.clear();
+    for (int i = 0; i < myOrderedLines.size(); ++i) {
+      Path2D scaledPath = myOrderedLines.get(i).getScaledPath(dim.getWidth(), dim.getHeight());
       scaledPath = myReducer.reduce(scaledPath, myLinePathConfigs.get(i));
       transformedPaths.add(scaledPath);
 
@@ -374,5 +385,167 @@ public class LineChart extends AnimatedComponent {
       }
     }
   }
-}
 
+  /**
+   * Normalized coordinates of a line, along with the scaled path drawn from them. Both are only rebuilt when the ranges or the data tail
+   * of the series changed, and their storage is reused, so that drawing an unchanged chart doesn't allocate anything.
+   */
+  private static final class LineBuffer {
+    /**
+     * Interleaved x and y coordinates, between 0 and 1, y growing downwards.
+     */
+    private float[] myCoords = new float[64];
+    private int myPointCount;
+
+    /**
+     * Normalized y of each data point, before the swing adjustment, for the line stacked on top of this one.
+     */
+    private final TDoubleArrayList myStackY = new TDoubleArrayList();
+
+    private final Path2D.Float myScaledPath = new Path2D.Float();
+    private int myVersion;
+    private int myScaledVersion = -1;
+    private double myScaledWidth;
+    private double myScaledHeight;
+
+    // What the coordinates were built from.
+    private double myXMin;
+    private double myXMax;
+    private double myYMin;
+    private double myYMax;
+    private int mySize = -1;
+    private long myFirstX;
+    private long myLastX;
+    private double myLastY;
+    private boolean myStepped;
+    private boolean myFilled;
+    private int myReduceWidth;
+
+    /**
+     * Rebuilds the coordinates of the line if anything they depend on changed.
+     *
+     * @param stackedOn   the line this one is stacked on, if any.
+     * @param force       whether to rebuild regardless, e.g. because the line this one is stacked on changed.
+     * @param reduceWidth width to reduce the line to, see {@link LineChartReducer#reduce(float[], int, float)}, or 0 not to reduce it.
+     * @return true if the coordinates were rebuilt.
+     */
+    private boolean update(@NotNull RangedContinuousSeries ranged,
+                           @NotNull LineConfig config,
+                           @NotNull NumericSeriesData seriesData,
+                           @Nullable LineBuffer stackedOn,
+                           boolean force,
+                           int reduceWidth) {
+      double xMin = ranged.getXRange().getMin();
+      double xMax = ranged.getXRange().getMax();
+      double yMin = ranged.getYRange().getMin();
+      double yMax = ranged.getYRange().getMax();
+      int size = seriesData.size();
+      long firstX = size > 0 ? seriesData.getX(0) : 0;
+      long lastX = size > 0 ? seriesData.getX(size - 1) : 0;
+      double lastY = size > 0 ? seriesData.getY(size - 1) : 0;
+
+      if (!force && size == mySize && firstX == myFirstX && lastX == myLastX && lastY == myLastY &&
+          xMin == myXMin && xMax == myXMax && yMin == myYMin && yMax == myYMax &&
+          config.isStepped() == myStepped && config.isFilled() == myFilled && reduceWidth == myReduceWidth) {
+        return false;
+      }
+      myXMin = xMin;
+      myXMax = xMax;
+      myYMin = yMin;
+      myYMax = yMax;
+      mySize = size;
+      myFirstX = firstX;
+      myLastX = lastX;
+      myLastY = lastY;
+      myStepped = config.isStepped();
+      myFilled = config.isFilled();
+      myReduceWidth = reduceWidth;
+
+      // Room for the step points and the two points closing a filled line.
+      ensureCapacity(2 * (2 * size + 2));
+      myStackY.resetQuick();
+      for (int i = 0; i < size; i++) {
+        double xd = (seriesData.getX(i) - xMin) / (xMax - xMin);
+        double yd = (seriesData.getY(i) - yMin) / (yMax - yMin);
+
+        // If the current series is stacked, increment its yd by the yd of the last stacked
+        // series if it's not null.
+        // As the series are constantly populated, the current series might have one more
+        // point than the last stacked series (meaning that the last one was populated in a
+        // prior iteration). In this case, yd of the current series shouldn't change.
+        if (stackedOn != null && i < stackedOn.myStackY.size()) {
+          yd += stackedOn.myStackY.getQuick(i);
+        }
+        if (config.isStacked()) {
+          myStackY.add(yd);
+        }
+        // Swing's (0, 0) coordinate is in top-left. As we use bottom-left (0, 0), we need to adjust the y coordinate.
+        myCoords[2 * i] = (float)xd;
+        myCoords[2 * i + 1] = 1 - (float)yd;
+      }
+
+      int count = size;
+      if (reduceWidth > 0 && count > SAMPLES_PER_PIXEL * reduceWidth) {
+        count = LineChartReducer.reduce(myCoords, count, reduceWidth);
+      }
+
+      if (config.isStepped() && count > 1) {
+        // If the chart is stepped, a horizontal line should be drawn from the current
+        // point (e.g. (x0, y0)) to the destination's X value (e.g. (x1, y0)) before
+        // drawing a line to the destination point itself (e.g. (x1, y1)).
+        // Points are spread from the end, so that none is overwritten before being moved.
+        for (int i = count - 1; i > 0; i--) {
+          myCoords[4 * i] = myCoords[2 * i];
+          myCoords[4 * i + 1] = myCoords[2 * i + 1];
+          myCoords[4 * i - 2] = myCoords[2 * i];
+          myCoords[4 * i - 1] = myCoords[2 * i - 1];
+        }
+        count = 2 * count - 1;
+      }
+
+      if (config.isFilled() && count > 0) {
+        // If the chart is filled, but not stacked, draw a line from the last point to X
+        // axis and another one from this new point to the first destination point.
+        myCoords[2 * count] = myCoords[2 * count - 2];
+        myCoords[2 * count + 1] = 1f;
+        myCoords[2 * count + 2] = myCoords[0];
+        myCoords[2 * count + 3] = 1f;
+        count += 2;
+      }
+
+      myPointCount = count;
+      myVersion++;
+      return true;
+    }
+
+    /**
+     * @return the path of the line scaled to the given size. The same instance is returned (and rebuilt in place) on every call.
+     */
+    @NotNull
+    private Path2D getScaledPath(double width, double height) {
+      if (myScaledVersion != myVersion || myScaledWidth != width || myScaledHeight != height) {
+        myScaledPath.reset();
+        for (int i = 0; i < myPointCount; i++) {
+          float x = (float)(myCoords[2 * i] * width);
+          float y = (float)(myCoords[2 * i + 1] * height);
+          if (i == 0) {
+            myScaledPath.moveTo(x, y);
+          }
+          else {
+            myScaledPath.lineTo(x, y);
+          }
+        }
+        myScaledVersion = myVersion;
+        myScaledWidth = width;
+        myScaledHeight = height;
+      }
+      return myScaledPath;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (myCoords.length < capacity) {
+        myCoords = new float[Math.max(capacity, myCoords.length * 2)];
+      }
+    }
+  }
+}
@@ -36,6 +36,17 @@ public final class OverlayComponent extends AnimatedComponent {
   @NotNull private final ArrayList<DurationDataRenderer> myDurationRenderers;
   @NotNull private final Component myDispatchComponent;
 
+  /**
+   * Whether the mouse moved over the component since the last frame, which can change the hovered duration data.
+   */
+  private boolean myMouseMoved;
+
+  /**
+   * Whether the hovered duration data may have changed during the last frame, see {@link #isDirty()}. Changes to the duration data
+   * themselves are reported by their {@link DurationDataRenderer}.
+   */
+  private boolean myDirty = true;
+
   public OverlayComponent(@NotNull Component dispatchComponent) {
     myDurationRenderers = new ArrayList<>();
     myDispatchComponent = dispatchComponent;
@@ -86,7 +97,14 @@ public final class OverlayComponent extends AnimatedComponent {
 
   @Override
   protected void updateData() {
-    // No-op - each DurationDataRenderer is supposed to animate on their own.
+    // Each DurationDataRenderer is supposed to animate on their own.
+    myDirty = myMouseMoved;
+    myMouseMoved = false;
+  }
+
+  @Override
+  public boolean isDirty() {
+    return myDirty;
   }
 
   @Override
@@ -99,6 +117,7 @@ public final class OverlayComponent extends AnimatedComponent {
   }
 
   private void handleOrDispatchEvent(MouseEvent e) {
+    myMouseMoved = true;
     boolean handled = false;
     for (DurationDataRenderer renderer : myDurationRenderers) {
       // TODO make this an interface
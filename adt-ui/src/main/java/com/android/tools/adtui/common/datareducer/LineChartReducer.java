@@ -119,6 +119,64 @@ public class LineChartReducer implements DataReducer {
     return resultPath;
   }
 
+  /**
+   * Applies the same reduction as {@link #reduce(Path2D, LineConfig)} directly to the coordinates of a line, before any geometry is
+   * built: for every pixel column, only the first and last points and the points with minimum and maximum Y coordinates are kept.
+   * Unlike {@link #reduce(Path2D, LineConfig)}, this doesn't allocate anything.
+   *
+   * @param xy    interleaved x and y coordinates of the points, sorted by x. The kept points are moved to its beginning, in order.
+   * @param count number of points in {@code xy}.
+   * @param scale number of pixels per unit of x.
+   * @return the number of points kept.
+   */
+  public static int reduce(@NotNull float[] xy, int count, float scale) {
+    int kept = 0;
+    int index = 0;
+    while (index < count) {
+      double pixel = Math.floor(xy[2 * index] * scale);
+      int minIndex = index, maxIndex = index;
+      float minY = xy[2 * index + 1], maxY = minY;
+      int next = index + 1;
+      while (next < count && Math.floor(xy[2 * next] * scale) == pixel) {
+        float y = xy[2 * next + 1];
+        if (minY > y) {
+          minIndex = next;
+          minY = y;
+        }
+        if (maxY <= y) {
+          maxIndex = next;
+          maxY = y;
+        }
+        next++;
+      }
+
+      // Points are moved in index order, and at most one point is kept per point read, so a point is never overwritten before it's read.
+      kept = keep(xy, index, kept);
+      int lastKept = index;
+      int first = Math.min(minIndex, maxIndex);
+      int second = Math.max(minIndex, maxIndex);
+      if (first > lastKept) {
+        kept = keep(xy, first, kept);
+        lastKept = first;
+      }
+      if (second > lastKept) {
+        kept = keep(xy, second, kept);
+        lastKept = second;
+      }
+      if (next - 1 > lastKept) {
+        kept = keep(xy, next - 1, kept);
+      }
+      index = next;
+    }
+    return kept;
+  }
+
+  private static int keep(@NotNull float[] xy, int from, int to) {
+    xy[2 * to] = xy[2 * from];
+    xy[2 * to + 1] = xy[2 * from + 1];
+    return to + 1;
+  }
+
   private static void addMinMaxPoints(@NotNull Path2D path,
                                @NotNull LineConfig config,
                                int minIndex, float minX, float minY,
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui;
+
+import com.android.tools.adtui.model.Range;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ChoreographerTest {
+
+  @Test
+  public void testRepaintsEverythingByDefault() throws Exception {
+    RecordingPanel parent = new RecordingPanel();
+    Choreographer choreographer = createChoreographer(parent);
+    TestAnimatable animatable = new TestAnimatable();
+    animatable.myDirty = false;
+    choreographer.register(animatable);
+
+    choreographer.step();
+    assertThat(parent.myRepaints).containsExactly(new Rectangle(0, 0, 100, 100));
+    assertThat(choreographer.getFrameStats().getFrameCount()).isEqualTo(1);
+    assertThat(choreographer.getFrameStats().getSkippedFrameCount()).isEqualTo(0);
+    choreographer.stop();
+  }
+
+  @Test
+  public void testSkipsIdleFrames() throws Exception {
+    RecordingPanel parent = new RecordingPanel();
+    Choreographer choreographer = createChoreographer(parent);
+    choreographer.setSkipIdleFrames(true);
+    TestAnimatable animatable = new TestAnimatable();
+    choreographer.register(animatable);
+
+    // A dirty animatable which is not a component repaints the whole parent.
+    choreographer.step();
+    assertThat(parent.myRepaints).containsExactly(new Rectangle(0, 0, 100, 100));
+
+    parent.myRepaints.clear();
+    animatable.myDirty = false;
+    choreographer.step();
+    assertThat(parent.myRepaints).isEmpty();
+    assertThat(choreographer.getFrameStats().getFrameCount()).isEqualTo(2);
+    assertThat(choreographer.getFrameStats().getSkippedFrameCount()).isEqualTo(1);
+    choreographer.stop();
+  }
+
+  @Test
+  public void testRepaintsDirtyComponentsOnly() throws Exception {
+    RecordingPanel parent = new RecordingPanel();
+    Choreographer choreographer = createChoreographer(parent);
+    choreographer.setSkipIdleFrames(true);
+    TestComponent first = new TestComponent(new Rectangle(0, 0, 10, 10));
+    TestComponent second = new TestComponent(new Rectangle(20, 20, 10, 10));
+    TestComponent third = new TestComponent(new Rectangle(50, 50, 10, 10));
+    parent.add(first);
+    parent.add(second);
+    parent.add(third);
+    choreographer.register(first);
+    choreographer.register(second);
+    choreographer.register(third);
+
+    third.myDirty = false;
+    parent.myRepaints.clear();
+    choreographer.step();
+    // The dirty regions are coalesced into a single repaint.
+    assertThat(parent.myRepaints).containsExactly(new Rectangle(0, 0, 30, 30));
+    choreographer.stop();
+  }
+
+  @Test
+  public void testChartsOnlyRepaintWhenTheirRangesChange() throws Exception {
+    RecordingPanel parent = new RecordingPanel();
+    Choreographer choreographer = createChoreographer(parent);
+    choreographer.setSkipIdleFrames(true);
+    Range range = new Range(0, 100);
+    Range selectionRange = new Range(20, 40);
+    AxisComponent axis = new AxisComponent.Builder(range, new MockAxisFormatter(1, 5, 5), AxisComponent.AxisOrientation.BOTTOM).build();
+    axis.setBounds(0, 80, 100, 20);
+    SelectionComponent selection = new SelectionComponent(selectionRange, range);
+    selection.setBounds(0, 0, 100, 80);
+    parent.add(axis);
+    parent.add(selection);
+    choreographer.register(axis);
+    choreographer.register(selection);
+
+    choreographer.step();
+    parent.myRepaints.clear();
+    choreographer.step();
+    assertThat(parent.myRepaints).isEmpty();
+
+    // Only the selection moves.
+    selectionRange.set(30, 50);
+    choreographer.step();
+    assertThat(parent.myRepaints).containsExactly(new Rectangle(0, 0, 100, 80));
+
+    // Both the axis and the selection, which is relative to the range, move.
+    parent.myRepaints.clear();
+    range.set(10, 110);
+    choreographer.step();
+    assertThat(parent.myRepaints).containsExactly(new Rectangle(0, 0, 100, 100));
+
+    parent.myRepaints.clear();
+    choreographer.step();
+    assertThat(parent.myRepaints).isEmpty();
+    choreographer.stop();
+  }
+
+  private static Choreographer createChoreographer(JComponent parent) {
+    Choreographer choreographer = new Choreographer(parent);
+    choreographer.setUpdate(false);
+    return choreographer;
+  }
+
+  private static class RecordingPanel extends JPanel {
+    private final List<Rectangle> myRepaints = new ArrayList<>();
+
+    private RecordingPanel() {
+      super(null);
+      setSize(100, 100);
+      myRepaints.clear();
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+      // Called by the super constructor, before our fields are initialized.
+      if (myRepaints != null) {
+        myRepaints.add(new Rectangle(x, y, width, height));
+      }
+    }
+  }
+
+  private static class TestAnimatable implements Animatable {
+    private boolean myDirty = true;
+
+    @Override
+    public void animate(float frameLength) {
+    }
+
+    @Override
+    public boolean isDirty() {
+      return myDirty;
+    }
+  }
+
+  private static class TestComponent extends JComponent implements Animatable {
+    private boolean myDirty = true;
+
+    private TestComponent(Rectangle bounds) {
+      setBounds(bounds);
+    }
+
+    @Override
+    public void animate(float frameLength) {
+    }
+
+    @Override
+    public boolean isDirty() {
+      return myDirty;
+    }
+  }
+}
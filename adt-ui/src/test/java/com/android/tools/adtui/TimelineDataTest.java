@@ -24,6 +24,7 @@ import org.junit.runners.JUnit4;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -114,6 +115,17 @@ public class TimelineDataTest {
     assertThat(mData.size()).isEqualTo(0);
   }
 
+  @Test
+  public void testGetSampleInfoOutOfBounds() {
+    long start = mData.getStartTime();
+    mData.add(start, 0, 1.0f, 2.0f);
+    mData.add(start + 1000, 0, 3.0f, 4.0f);
+    mData.clear();
+    // The slots still hold the cleared samples, which must not be returned.
+    thrown.expect(IndexOutOfBoundsException.class);
+    mData.getSampleInfo(0);
+  }
+
   @Test
   public void testAddFromAreaWorksForSimpleCase() {
     mData = new TimelineData(1, 10, AREA_TRANSFORM);
@@ -224,4 +236,90 @@ public class TimelineDataTest {
     assertThat(sample1.time).isWithin(DELTA).of(2f);
     assertThat(sample1.values[0]).isWithin(DELTA).of(200f);
   }
+
+  @Test
+  public void testCopy() throws Exception {
+    long start = mData.getStartTime();
+    mData.add(start, 1, 1.0f, 2.0f);
+    mData.add(start + 1000, 2, 3.0f, 4.0f);
+    mData.add(start + 2000, 3, 5.0f, 6.0f);
+
+    float[] times = new float[4];
+    int[] types = new int[4];
+    TimelineData.Stream[] streams = mData.getStreams();
+    float[][] values = new float[][]{new float[4], new float[4]};
+    // The capacity is 2, so only the two newest samples are retained.
+    assertThat(mData.copy(times, types, streams, values)).isEqualTo(2);
+    assertThat(times[0]).isWithin(DELTA).of(1.0f);
+    assertThat(times[1]).isWithin(DELTA).of(2.0f);
+    assertThat(types[0]).isEqualTo(2);
+    assertThat(types[1]).isEqualTo(3);
+    assertThat(values[0][0]).isWithin(DELTA).of(3.0f);
+    assertThat(values[1][1]).isWithin(DELTA).of(6.0f);
+
+    // Only as many samples as the arrays can hold are copied, the newest ones.
+    float[] smallTimes = new float[1];
+    assertThat(mData.copy(smallTimes, new int[1], streams, new float[][]{new float[1], new float[1]})).isEqualTo(1);
+    assertThat(smallTimes[0]).isWithin(DELTA).of(2.0f);
+
+    mData.clear();
+    assertThat(mData.copy(times, types, streams, values)).isEqualTo(0);
+  }
+
+  @Test
+  public void testCopyWhileWriting() throws Exception {
+    // Every sample has its index as type and values, so any torn or stale read shows up as a mismatch.
+    TimelineData data = new TimelineData(2, 16);
+    long start = data.getStartTime();
+    AtomicBoolean done = new AtomicBoolean();
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < 200000; i++) {
+        data.add(start + i * 1000L, i, i, -i);
+      }
+      done.set(true);
+    });
+    writer.start();
+
+    float[] times = new float[16];
+    int[] types = new int[16];
+    float[][] values = new float[][]{new float[16], new float[16]};
+    TimelineData.Stream[] streams = data.getStreams();
+    while (!done.get()) {
+      int count = data.copy(times, types, streams, values);
+      for (int i = 0; i < count; i++) {
+        assertThat(values[0][i]).isWithin(DELTA).of(types[i]);
+        assertThat(values[1][i]).isWithin(DELTA).of(-types[i]);
+        assertThat(times[i]).isWithin(1).of(types[i]);
+        if (i > 0) {
+          assertThat(types[i]).isEqualTo(types[i - 1] + 1);
+        }
+      }
+    }
+    writer.join();
+  }
+
+  @Test
+  public void testReadSamplesWhileWriting() throws Exception {
+    TimelineData data = new TimelineData(1, 4);
+    long start = data.getStartTime();
+    AtomicBoolean done = new AtomicBoolean();
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < 200000; i++) {
+        data.add(start + i * 1000L, i, i);
+      }
+      done.set(true);
+    });
+    writer.start();
+
+    while (!done.get()) {
+      if (data.size() > 0) {
+        // The ring is full once a few samples were written, so the first index is always valid.
+        TimelineData.SampleInfo info = data.getSampleInfo(0);
+        assertThat(info.time).isWithin(1).of(info.type);
+      }
+    }
+    writer.join();
+    assertThat(data.getSampleInfo(3).type).isEqualTo(199999);
+    assertThat(data.getStream(0).get(3)).isWithin(DELTA).of(199999f);
+  }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart;
+
+import com.android.tools.adtui.model.HTree;
+import com.android.tools.adtui.model.Range;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class HTreeChartTest {
+
+  private HTreeChart<String> myChart;
+  private List<String> myRendered;
+  private List<String> myLabels;
+
+  @Before
+  public void setUp() throws Exception {
+    myRendered = new ArrayList<>();
+    myLabels = new ArrayList<>();
+    myChart = new HTreeChart<>();
+    myChart.setHRenderer(new RecordingRenderer(myRendered, myLabels));
+    myChart.setSize(100, 100);
+
+    // A spans half of the root and has a thousand tiny callees, each with a callee of its own. B spans the other half.
+    HTree.Builder<String> builder = new HTree.Builder<>();
+    int root = builder.addNode(HTree.NO_NODE, "root", 0, 1000, 0);
+    int a = builder.addNode(root, "A", 0, 500, 1);
+    for (int i = 0; i < 1000; i++) {
+      int tiny = builder.addNode(a, "tiny", i / 2, i / 2 + 1, 2);
+      builder.addNode(tiny, "tinier", i / 2, i / 2 + 1, 3);
+    }
+    builder.addNode(root, "B", 500, 1000, 1);
+    myChart.setTree(builder.build());
+  }
+
+  @Test
+  public void testMergesNarrowNodes() throws Exception {
+    myChart.setXRange(new Range(0, 1000));
+    draw();
+    // The tiny nodes are merged into a single block, and their callees are not rendered.
+    assertThat(myRendered).containsExactly("A", "B", "tiny");
+  }
+
+  @Test
+  public void testSkipsSubtreesOutOfRange() throws Exception {
+    myChart.setXRange(new Range(600, 1000));
+    draw();
+    assertThat(myRendered).containsExactly("B");
+  }
+
+  @Test
+  public void testRendersTilesOnce() throws Exception {
+    myChart.setTileCaching(true);
+    Range range = new Range(600, 700);
+    myChart.setXRange(range);
+    draw();
+    assertThat(myRendered).isNotEmpty();
+
+    // Panning by less than a tile only renders the tiles which came into view, none here as the tiles are wider than the view. The
+    // labels are not cached.
+    myRendered.clear();
+    myLabels.clear();
+    range.set(610, 710);
+    draw();
+    assertThat(myRendered).isEmpty();
+    assertThat(myLabels).containsExactly("B");
+
+    // Zooming renders everything again.
+    range.set(600, 800);
+    draw();
+    assertThat(myRendered).isNotEmpty();
+  }
+
+  @Test
+  public void testEvictsTilesOutOfView() throws Exception {
+    myChart.setTileCaching(true);
+    Range range = new Range(0, 100);
+    myChart.setXRange(range);
+    draw();
+
+    // Panning further than the cached margin and back renders the first tiles again, as they were evicted.
+    range.set(900, 1000);
+    draw();
+    myRendered.clear();
+    range.set(0, 100);
+    draw();
+    assertThat(myRendered).contains("A");
+  }
+
+  private void draw() {
+    Graphics2D g = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    myChart.draw(g, new Dimension(100, 100));
+    g.dispose();
+  }
+
+  private static class RecordingRenderer extends HRenderer<String> {
+    private final List<String> myRendered;
+    private final List<String> myLabels;
+
+    private RecordingRenderer(List<String> rendered, List<String> labels) {
+      myRendered = rendered;
+      myLabels = labels;
+    }
+
+    @Override
+    public void renderRect(Graphics2D g, String node, Rectangle2D drawingArea) {
+      myRendered.add(node);
+    }
+
+    @Override
+    public void renderText(Graphics2D g, String node, Rectangle2D drawingArea) {
+      myLabels.add(node);
+    }
+
+    @Override
+    protected String generateFittingText(String node, Rectangle2D rect, FontMetrics fontMetrics) {
+      return node;
+    }
+
+    @Override
+    protected Color getFillColor(String s) {
+      return Color.GRAY;
+    }
+
+    @Override
+    protected Color getBordColor(String s) {
+      return Color.BLACK;
+    }
+  }
+}
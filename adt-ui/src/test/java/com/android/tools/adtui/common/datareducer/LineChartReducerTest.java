@@ -123,6 +123,43 @@ public class LineChartReducerTest {
     assertPointsEquals(expected, result);
   }
 
+  @Test
+  public void testReduceCoordinates() {
+    float[] xy = {0, 0, 0.1f, 1, 0.2f, 6, 0.3f, 4, 0.4f, 3, 1, 2, 1.1f, 5};
+    float[] expected = {0, 0, 0.2f, 6, 0.4f, 3, 1, 2, 1.1f, 5};
+
+    int count = LineChartReducer.reduce(xy, xy.length / 2, 1);
+    assertThat(count).isEqualTo(expected.length / 2);
+    for (int i = 0; i < expected.length; ++i) {
+      assertThat(xy[i]).isWithin(EPS).of(expected[i]);
+    }
+  }
+
+  @Test
+  public void testReduceCoordinatesKeepsMinAndMaxInOrder() {
+    // Min before max within the first pixel, max before min within the second one.
+    float[] xy = {0, 3, 0.2f, 1, 0.4f, 2, 0.6f, 8, 0.8f, 4, 1, 4, 1.2f, 9, 1.4f, 6, 1.6f, 0, 1.8f, 5};
+    float[] expected = {0, 3, 0.2f, 1, 0.6f, 8, 0.8f, 4, 1, 4, 1.2f, 9, 1.6f, 0, 1.8f, 5};
+
+    int count = LineChartReducer.reduce(xy, xy.length / 2, 1);
+    assertThat(count).isEqualTo(expected.length / 2);
+    for (int i = 0; i < expected.length; ++i) {
+      assertThat(xy[i]).isWithin(EPS).of(expected[i]);
+    }
+  }
+
+  @Test
+  public void testReduceCoordinatesScale() {
+    // With 10 pixels per unit, every point is in its own pixel column.
+    float[] xy = {0, 0, 0.1f, 1, 0.2f, 6, 0.3f, 4};
+    float[] expected = xy.clone();
+
+    assertThat(LineChartReducer.reduce(xy, xy.length / 2, 10)).isEqualTo(4);
+    for (int i = 0; i < expected.length; ++i) {
+      assertThat(xy[i]).isWithin(EPS).of(expected[i]);
+    }
+  }
+
   private static void convertToScreenCoordinates(float points[][]) {
     for (int i = 0; i < points.length; ++i) {
       points[i][1] = FAKE_HEIGHT - points[i][1];
@@ -66,6 +66,7 @@ public class DataReducerVisualTest extends VisualTest {
 
     myLineChart = new LineChart((shape, config) -> shape);
     myOptimizedLineChart = new LineChart();
+    myOptimizedLineChart.setReduceSourceData(true);
 
     myXAxis = new AxisComponent.Builder(myViewXRange, new SingleUnitAxisFormatter(1, 5, 1, ""), AxisComponent.AxisOrientation.BOTTOM).build();
     mySelection = new SelectionComponent(mySelectionXRange, myViewXRange);
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof;
+
+import com.android.tools.perflib.captures.DataBuffer;
+import org.jetbrains.annotations.NotNull;
+import sun.misc.Cleaner;
+import sun.nio.ch.DirectBuffer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped, read-only {@link DataBuffer} which can be read by several threads at once.
+ *
+ * Unlike perflib's MemoryMappedFileBuffer, which has a single read position shared by all its readers, every thread reading this buffer
+ * has its own position, and the mapped file is only ever accessed through absolute reads, which don't modify the mapped buffers. This lets
+ * the analyzers and the UI read the same {@link com.android.tools.perflib.heap.Snapshot} concurrently.
+ */
+public final class ConcurrentMappedFileBuffer implements DataBuffer {
+  private static final int BUFFER_SIZE = 1 << 30;
+
+  /**
+   * Extra bytes mapped at the end of each buffer, so that primitive values straddling two buffers can be read from the first one.
+   */
+  private static final int PADDING = 1024;
+
+  private final long myLength;
+
+  @NotNull
+  private final ByteBuffer[] myBuffers;
+
+  @NotNull
+  private final ThreadLocal<Cursor> myCursors = ThreadLocal.withInitial(Cursor::new);
+
+  public ConcurrentMappedFileBuffer(@NotNull File file) throws IOException {
+    myLength = file.length();
+    myBuffers = new ByteBuffer[(int)(myLength / BUFFER_SIZE) + 1];
+    try (FileInputStream stream = new FileInputStream(file)) {
+      FileChannel channel = stream.getChannel();
+      for (int i = 0; i < myBuffers.length; i++) {
+        long start = (long)i * BUFFER_SIZE;
+        // The mapping stays valid once the channel is closed.
+        myBuffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(myLength - start, BUFFER_SIZE + PADDING));
+      }
+    }
+  }
+
+  /**
+   * Unmaps the file right away, like MemoryMappedFileBuffer, rather than whenever the buffers are garbage collected. A thread still
+   * reading the buffer would then crash the VM, callers must make sure all the readers are done first.
+   */
+  @Override
+  public void dispose() {
+    for (int i = 0; i < myBuffers.length; i++) {
+      ByteBuffer buffer = myBuffers[i];
+      myBuffers[i] = null;
+      try {
+        Cleaner cleaner = buffer instanceof DirectBuffer ? ((DirectBuffer)buffer).cleaner() : null;
+        if (cleaner != null) {
+          cleaner.clean();
+        }
+      }
+      catch (Exception ignored) {
+        // Best effort, same as MemoryMappedFileBuffer: the buffer is unmapped once garbage collected otherwise.
+      }
+    }
+  }
+
+  @Override
+  public void append(@NotNull byte[] data) {
+    // Memory mapped files are read-only, same as MemoryMappedFileBuffer.
+  }
+
+  @Override
+  public byte readByte() {
+    long position = advance(1);
+    return buffer(position).get(offset(position));
+  }
+
+  @Override
+  public void read(@NotNull byte[] b) {
+    readBytes(b, advance(b.length), b.length);
+  }
+
+  @Override
+  public void readSubSequence(@NotNull byte[] b, int sourceStart, int length) {
+    advance(sourceStart);
+    readBytes(b, advance(length), length);
+  }
+
+  @Override
+  public char readChar() {
+    long position = advance(2);
+    return buffer(position).getChar(offset(position));
+  }
+
+  @Override
+  public short readShort() {
+    long position = advance(2);
+    return buffer(position).getShort(offset(position));
+  }
+
+  @Override
+  public int readInt() {
+    long position = advance(4);
+    return buffer(position).getInt(offset(position));
+  }
+
+  @Override
+  public long readLong() {
+    long position = advance(8);
+    return buffer(position).getLong(offset(position));
+  }
+
+  @Override
+  public float readFloat() {
+    long position = advance(4);
+    return buffer(position).getFloat(offset(position));
+  }
+
+  @Override
+  public double readDouble() {
+    long position = advance(8);
+    return buffer(position).getDouble(offset(position));
+  }
+
+  @Override
+  public void setPosition(long position) {
+    myCursors.get().myPosition = position;
+  }
+
+  @Override
+  public long position() {
+    return myCursors.get().myPosition;
+  }
+
+  @Override
+  public boolean hasRemaining() {
+    return remaining() > 0;
+  }
+
+  @Override
+  public long remaining() {
+    return myLength - position();
+  }
+
+  /**
+   * Moves the position of the calling thread forward.
+   *
+   * @return the position before moving.
+   */
+  private long advance(int length) {
+    Cursor cursor = myCursors.get();
+    long position = cursor.myPosition;
+    cursor.myPosition += length;
+    return position;
+  }
+
+  @NotNull
+  private ByteBuffer buffer(long position) {
+    return myBuffers[(int)(position / BUFFER_SIZE)];
+  }
+
+  private static int offset(long position) {
+    return (int)(position % BUFFER_SIZE);
+  }
+
+  private void readBytes(@NotNull byte[] b, long position, int length) {
+    // Bulk reads go through a duplicate, as moving the position of the shared mapped buffers would race with the other readers.
+    int read = 0;
+    while (read < length) {
+      ByteBuffer buffer = buffer(position + read).duplicate();
+      int offset = offset(position + read);
+      int count = Math.min(length - read, buffer.limit() - offset);
+      buffer.position(offset);
+      buffer.get(b, read, count);
+      read += count;
+    }
+  }
+
+  private static final class Cursor {
+    private long myPosition;
+  }
+}
@@ -16,13 +16,13 @@
 package com.android.tools.idea.editors.hprof;
 
 import com.android.tools.idea.ddms.EdtExecutor;
+import com.android.tools.idea.editors.hprof.views.ClassesIndexView;
 import com.android.tools.idea.editors.hprof.views.HprofAnalysisContentsDelegate;
 import com.android.tools.idea.profiling.view.CaptureEditor;
 import com.android.tools.idea.profiling.view.CapturePanel;
 import com.android.tools.perflib.analyzer.AnalysisReport;
 import com.android.tools.perflib.analyzer.AnalyzerTask;
 import com.android.tools.perflib.analyzer.CaptureGroup;
-import com.android.tools.perflib.captures.MemoryMappedFileBuffer;
 import com.android.tools.perflib.heap.Snapshot;
 import com.android.tools.perflib.heap.analysis.ComputationProgress;
 import com.android.tools.perflib.heap.memoryanalyzer.DuplicatedStringsAnalyzerTask;
@@ -46,18 +46,42 @@ import com.intellij.openapi.wm.impl.status.InlineProgressIndicator;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
 
 import javax.swing.*;
 import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.io.IOException;
 import java.util.Set;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Phaser;
 
 public class HprofEditor extends CaptureEditor {
   @NotNull private static final Logger LOG = Logger.getInstance(HprofEditor.class);
   @Nullable private HprofView myView;
   @Nullable private Snapshot mySnapshot;
-  private boolean myIsValid = true;
+  private volatile boolean myIsValid = true;
+  /**
+   * Background tasks reading the snapshot, which {@link #dispose()} waits for: the snapshot's buffer is unmapped once disposed, and
+   * reading it afterwards would crash the VM.
+   */
+  private final Phaser myReaders = new Phaser(1);
+  /**
+   * Runs the background tasks reading the snapshot, see {@link #myReaders}. Tasks which start once the editor is disposed are skipped.
+   */
+  private final Executor myReaderExecutor = runnable -> {
+    myReaders.register();
+    PooledThreadExecutor.INSTANCE.execute(() -> {
+      try {
+        if (isValid()) {
+          runnable.run();
+        }
+      }
+      finally {
+        myReaders.arriveAndDeregister();
+      }
+    });
+  };
 
   public HprofEditor(@NotNull final Project project, @NotNull final VirtualFile file) {
     AnalyzerTask[] tasks = new AnalyzerTask[]{new LeakedActivityAnalyzerTask(), new DuplicatedStringsAnalyzerTask()};
@@ -68,10 +92,29 @@ public class HprofEditor extends CaptureEditor {
       final InlineProgressIndicator indicator = myPanel.getProgressIndicator();
       assert indicator != null;
 
+      // Shows the classes summarized when this dump was last opened, if any, while it is parsed again.
+      String indexKey = null;
+      HprofIndex index = null;
+      try {
+        indexKey = HprofIndex.computeKey(hprofFile);
+        index = HprofIndex.load(HprofIndex.getDefaultCacheDir(), indexKey);
+      }
+      catch (IOException e) {
+        LOG.warn("Failed to compute the index key of " + hprofFile, e);
+      }
+      if (index != null) {
+        HprofIndex cachedIndex = index;
+        ApplicationManager.getApplication().invokeLater(() -> {
+          if (isValid()) {
+            myPanel.setLoadingPreview(new ClassesIndexView(cachedIndex).getComponent());
+          }
+        });
+      }
+
       final Snapshot snapshot;
       try {
         updateIndicator(indicator, 0.01, "Parsing hprof file...");
-        snapshot = Snapshot.createSnapshot(new MemoryMappedFileBuffer(hprofFile));
+        snapshot = Snapshot.createSnapshot(new ConcurrentMappedFileBuffer(hprofFile));
       }
       catch (Throwable t) {
         showErrorWhileProcessingFile(project, indicator, t);
@@ -97,6 +140,7 @@ public class HprofEditor extends CaptureEditor {
         timer.stop();
       }
 
+      String newIndexKey = index == null ? indexKey : null;
       ApplicationManager.getApplication().invokeLater(() -> {
         if (!isValid()) {
           snapshot.dispose();
@@ -109,11 +153,29 @@ public class HprofEditor extends CaptureEditor {
 
           Disposer.register(this, myView);
           Disposer.register(this, delegate);
+
+          if (newIndexKey != null) {
+            myReaderExecutor.execute(() -> saveIndex(snapshot, newIndexKey));
+          }
         }
       });
     });
   }
 
+  /**
+   * Summarizes the snapshot for the next time this dump is opened. Runs on a pooled thread once the snapshot is shown, as summarizing
+   * walks every instance. The editor waits for it before disposing the snapshot, see {@link #myReaders}.
+   */
+  private void saveIndex(@NotNull Snapshot snapshot, @NotNull String indexKey) {
+    try {
+      HprofIndex.fromSnapshot(snapshot).save(HprofIndex.getDefaultCacheDir(), indexKey);
+    }
+    catch (RuntimeException e) {
+      // The index only speeds up opening the dump next time.
+      LOG.warn("Failed to index heap dump", e);
+    }
+  }
+
   @Nullable
   public HprofView getView() {
     return myView;
@@ -199,11 +261,15 @@ public class HprofEditor extends CaptureEditor {
   @Override
   public void dispose() {
     myIsValid = false;
-    if (mySnapshot != null) {
-      mySnapshot.dispose();
-    }
+    Snapshot snapshot = mySnapshot;
     mySnapshot = null;
     myPanel = null;
+    if (snapshot != null) {
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        myReaders.arriveAndAwaitAdvance();
+        snapshot.dispose();
+      });
+    }
   }
 
   @NotNull
@@ -224,8 +290,11 @@ public class HprofEditor extends CaptureEditor {
     MemoryAnalyzer memoryAnalyzer = new MemoryAnalyzer();
     assert memoryAnalyzer.accept(captureGroup);
 
-    // TODO change this back to PooledThreadExecutor.INSTANCE once multi-reader problem has been solved in Snapshot
-    return memoryAnalyzer.analyze(captureGroup, listeners, tasks, EdtExecutor.INSTANCE, Executors.newSingleThreadExecutor());
+    // The analyzers can run in parallel with each other and with the UI:
+    // - the snapshot is only analyzed once its dominators are computed, after which its instances and their references aren't modified,
+    // - the field values of the instances are decoded from the buffer as they are read, and every thread reads the
+    //   ConcurrentMappedFileBuffer at its own position.
+    return memoryAnalyzer.analyze(captureGroup, listeners, tasks, EdtExecutor.INSTANCE, myReaderExecutor);
   }
 
   private static void updateIndicator(@NotNull final InlineProgressIndicator indicator, final double fraction, @NotNull final String text) {
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof;
+
+import com.android.tools.perflib.heap.ClassObj;
+import com.android.tools.perflib.heap.Heap;
+import com.android.tools.perflib.heap.Instance;
+import com.android.tools.perflib.heap.Snapshot;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Summary of a parsed heap dump (its heaps, and the instance count, shallow and retained size of every class in each heap), persisted
+ * in the system directory so that it can be shown as soon as the same dump is opened again, while the dump itself is being parsed.
+ *
+ * Index files are named after the SHA-1 of the canonical path, size and modification time of the dump, so that opening a dump doesn't
+ * require reading it twice, and a dump written again never matches a stale index. Files written with another {@link #VERSION} of the
+ * format are ignored and overwritten.
+ */
+public final class HprofIndex {
+  private static final String CACHE_DIRECTORY = "hprof_index";
+  private static final String INDEX_EXTENSION = ".idx";
+  private static final int MAGIC = 0x48505849; // "HPXI"
+  static final int VERSION = 1;
+
+  /**
+   * Maximum number of index files kept, the least recently used ones being deleted first.
+   */
+  private static final int MAX_INDEX_FILES = 20;
+
+  @NotNull private final List<HeapSummary> myHeaps;
+  @NotNull private final List<ClassSummary> myClasses;
+
+  HprofIndex(@NotNull List<HeapSummary> heaps, @NotNull List<ClassSummary> classes) {
+    myHeaps = heaps;
+    myClasses = classes;
+  }
+
+  /**
+   * Summarizes a snapshot, whose dominators must have been computed.
+   */
+  @NotNull
+  public static HprofIndex fromSnapshot(@NotNull Snapshot snapshot) {
+    List<HeapSummary> heaps = new ArrayList<>();
+    List<ClassSummary> classes = new ArrayList<>();
+    for (Heap heap : snapshot.getHeaps()) {
+      int heapId = heap.getId();
+      heaps.add(new HeapSummary(heapId, heap.getName()));
+
+      // Same classes as listed by the classes view: those allocated in this heap, plus those with instances in this heap.
+      Set<ClassObj> heapClasses = new HashSet<>(heap.getClasses());
+      heap.forEachInstance(instance -> {
+        heapClasses.add(instance.getClassObj());
+        return true;
+      });
+      for (ClassObj classObj : heapClasses) {
+        long retainedSize = 0;
+        for (Instance instance : classObj.getHeapInstances(heapId)) {
+          retainedSize += instance.getTotalRetainedSize();
+        }
+        classes.add(new ClassSummary(classObj.getClassName(), heapId, classObj.getHeapInstancesCount(heapId),
+                                     classObj.getShallowSize(heapId), retainedSize));
+      }
+    }
+    return new HprofIndex(heaps, classes);
+  }
+
+  @NotNull
+  public List<HeapSummary> getHeaps() {
+    return myHeaps;
+  }
+
+  @NotNull
+  public List<ClassSummary> getClasses() {
+    return myClasses;
+  }
+
+  /**
+   * @return the key of the index of the given heap dump, which is the SHA-1 of its canonical path, size and modification time.
+   */
+  @NotNull
+  public static String computeKey(@NotNull File hprofFile) throws IOException {
+    if (!hprofFile.isFile()) {
+      throw new FileNotFoundException(hprofFile.getPath());
+    }
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+    String identity =
+      hprofFile.getCanonicalPath() + File.pathSeparator + hprofFile.length() + File.pathSeparator + hprofFile.lastModified();
+    digest.update(identity.getBytes(StandardCharsets.UTF_8));
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) {
+      key.append(String.format("%02x", b));
+    }
+    return key.toString();
+  }
+
+  @NotNull
+  static File getIndexFile(@NotNull File cacheDir, @NotNull String key) {
+    return new File(cacheDir, key + INDEX_EXTENSION);
+  }
+
+  @NotNull
+  public static File getDefaultCacheDir() {
+    return new File(PathManager.getSystemPath(), CACHE_DIRECTORY);
+  }
+
+  /**
+   * Loads the index with the given key. Its file is read at once rather than mapped, as a mapping would keep it open (and prevent
+   * {@link #save} from replacing it on Windows) until the buffer is garbage collected.
+   *
+   * @return the index, or null if there is none, or if it was written with another version of the format or is corrupted.
+   */
+  @Nullable
+  public static HprofIndex load(@NotNull File cacheDir, @NotNull String key) {
+    File indexFile = getIndexFile(cacheDir, key);
+    if (!indexFile.isFile()) {
+      return null;
+    }
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(FileUtil.loadFileBytes(indexFile));
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !key.equals(readString(buffer))) {
+        getLogger().info("Ignoring outdated heap dump index " + indexFile);
+        return null;
+      }
+
+      int heapCount = buffer.getInt();
+      List<HeapSummary> heaps = new ArrayList<>(heapCount);
+      for (int i = 0; i < heapCount; i++) {
+        heaps.add(new HeapSummary(buffer.getInt(), readString(buffer)));
+      }
+      int classCount = buffer.getInt();
+      List<ClassSummary> classes = new ArrayList<>(classCount);
+      for (int i = 0; i < classCount; i++) {
+        classes.add(new ClassSummary(readString(buffer), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getLong()));
+      }
+      // Marks the index as recently used, see trim.
+      //noinspection ResultOfMethodCallIgnored
+      indexFile.setLastModified(System.currentTimeMillis());
+      return new HprofIndex(heaps, classes);
+    }
+    catch (IOException | RuntimeException e) {
+      getLogger().warn("Failed to read heap dump index " + indexFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes this index under the given key, then deletes the least recently used indexes beyond {@link #MAX_INDEX_FILES}. The file is
+   * written to a temporary file first, so concurrent readers never see a partial index.
+   */
+  public void save(@NotNull File cacheDir, @NotNull String key) {
+    if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+      getLogger().warn("Failed to create heap dump index directory " + cacheDir);
+      return;
+    }
+    File indexFile = getIndexFile(cacheDir, key);
+    File tempFile = new File(cacheDir, key + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, key);
+        out.writeInt(myHeaps.size());
+        for (HeapSummary heap : myHeaps) {
+          out.writeInt(heap.getId());
+          writeString(out, heap.getName());
+        }
+        out.writeInt(myClasses.size());
+        for (ClassSummary classSummary : myClasses) {
+          writeString(out, classSummary.getClassName());
+          out.writeInt(classSummary.getHeapId());
+          out.writeInt(classSummary.getInstanceCount());
+          out.writeInt(classSummary.getShallowSize());
+          out.writeLong(classSummary.getRetainedSize());
+        }
+      }
+      FileUtil.rename(tempFile, indexFile);
+    }
+    catch (IOException e) {
+      getLogger().warn("Failed to write heap dump index " + indexFile, e);
+      FileUtil.delete(tempFile);
+      return;
+    }
+    trim(cacheDir);
+  }
+
+  private static void trim(@NotNull File cacheDir) {
+    File[] indexFiles = cacheDir.listFiles((dir, name) -> name.endsWith(INDEX_EXTENSION));
+    if (indexFiles == null || indexFiles.length <= MAX_INDEX_FILES) {
+      return;
+    }
+    Arrays.sort(indexFiles, Comparator.comparingLong(File::lastModified).reversed());
+    for (int i = MAX_INDEX_FILES; i < indexFiles.length; i++) {
+      FileUtil.delete(indexFiles[i]);
+    }
+  }
+
+  private static void writeString(@NotNull DataOutputStream out, @NotNull String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @NotNull
+  private static String readString(@NotNull ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static Logger getLogger() {
+    return Logger.getInstance(HprofIndex.class);
+  }
+
+  public static final class HeapSummary {
+    private final int myId;
+    @NotNull private final String myName;
+
+    HeapSummary(int id, @NotNull String name) {
+      myId = id;
+      myName = name;
+    }
+
+    public int getId() {
+      return myId;
+    }
+
+    @NotNull
+    public String getName() {
+      return myName;
+    }
+  }
+
+  public static final class ClassSummary {
+    @NotNull private final String myClassName;
+    private final int myHeapId;
+    private final int myInstanceCount;
+    private final int myShallowSize;
+    private final long myRetainedSize;
+
+    ClassSummary(@NotNull String className, int heapId, int instanceCount, int shallowSize, long retainedSize) {
+      myClassName = className;
+      myHeapId = heapId;
+      myInstanceCount = instanceCount;
+      myShallowSize = shallowSize;
+      myRetainedSize = retainedSize;
+    }
+
+    @NotNull
+    public String getClassName() {
+      return myClassName;
+    }
+
+    public int getHeapId() {
+      return myHeapId;
+    }
+
+    public int getInstanceCount() {
+      return myInstanceCount;
+    }
+
+    public int getShallowSize() {
+      return myShallowSize;
+    }
+
+    public long getRetainedSize() {
+      return myRetainedSize;
+    }
+  }
+}
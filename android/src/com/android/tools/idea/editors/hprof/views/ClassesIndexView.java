@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof.views;
+
+import com.android.tools.idea.editors.hprof.HprofIndex;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only table of the classes of a heap dump, built from its {@link HprofIndex}. It is shown while the dump is being parsed, until the
+ * full {@link ClassesTreeView} is available.
+ */
+public final class ClassesIndexView {
+  @NotNull private final JComponent myComponent;
+
+  public ClassesIndexView(@NotNull HprofIndex index) {
+    JBTable table = new JBTable(new ClassesTableModel(index));
+    table.setAutoCreateRowSorter(true);
+    table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    table.getColumnModel().getColumn(Column.CLASS_NAME.ordinal()).setPreferredWidth(800);
+    myComponent = new JBScrollPane(table);
+  }
+
+  @NotNull
+  public JComponent getComponent() {
+    return myComponent;
+  }
+
+  private enum Column {
+    CLASS_NAME("Class Name", String.class),
+    HEAP("Heap", String.class),
+    HEAP_COUNT("Heap Count", Integer.class),
+    SHALLOW_SIZE("Shallow Size", Integer.class),
+    RETAINED_SIZE("Retained Size", Long.class);
+
+    @NotNull private final String myName;
+    @NotNull private final Class<?> myType;
+
+    Column(@NotNull String name, @NotNull Class<?> type) {
+      myName = name;
+      myType = type;
+    }
+  }
+
+  private static final class ClassesTableModel extends AbstractTableModel {
+    @NotNull private final List<HprofIndex.ClassSummary> myClasses;
+    @NotNull private final Map<Integer, String> myHeapNames = new HashMap<>();
+
+    private ClassesTableModel(@NotNull HprofIndex index) {
+      myClasses = index.getClasses();
+      for (HprofIndex.HeapSummary heap : index.getHeaps()) {
+        myHeapNames.put(heap.getId(), heap.getName());
+      }
+    }
+
+    @Override
+    public int getRowCount() {
+      return myClasses.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+      return Column.values().length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      return Column.values()[column].myName;
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+      return Column.values()[column].myType;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+      HprofIndex.ClassSummary classSummary = myClasses.get(row);
+      switch (Column.values()[column]) {
+        case CLASS_NAME:
+          return classSummary.getClassName();
+        case HEAP:
+          return myHeapNames.get(classSummary.getHeapId());
+        case HEAP_COUNT:
+          return classSummary.getInstanceCount();
+        case SHALLOW_SIZE:
+          return classSummary.getShallowSize();
+        case RETAINED_SIZE:
+          return classSummary.getRetainedSize();
+        default:
+          throw new IllegalArgumentException("Unknown column " + column);
+      }
+    }
+  }
+}
@@ -82,6 +82,14 @@ public final class InstancesTreeView implements DataProvider, Disposable {
   @NotNull private SortOrder mySortOrder = SortOrder.UNSORTED;
   @NotNull private GoToInstanceAction myGoToInstanceAction;
 
+  // The instances of the selected class are listed in the order of the sort column, as soon as it is computed in the background, and
+  // only the nodes of the instances being shown are created. Nested nodes, which are few, are sorted with the comparators instead.
+  @NotNull private final Map<Comparator<DebuggerTreeNodeImpl>, SortedInstances.Key> myComparatorKeys = new HashMap<>();
+  @Nullable private SortedInstances mySortedInstances;
+  @Nullable private SortedInstances.Key mySortKey;
+  @Nullable private Instance[] myOrderedInstances;
+  @Nullable private int[] myInstanceOrder;
+
   public InstancesTreeView(@NotNull Project project, @NotNull SelectionModel selectionModel) {
     myProject = project;
     mySelectionModel = selectionModel;
@@ -235,10 +243,13 @@ public final class InstancesTreeView implements DataProvider, Disposable {
           if (containerDescriptor.getInstances().size() == 1) {
             singleChild = containerDescriptor.getInstances().get(0);
           }
+          mySortedInstances = new SortedInstances(containerDescriptor.getInstances(), myHeap);
         }
         else {
           newRoot = myDebuggerTree.getNodeFactory().getDefaultNode();
+          mySortedInstances = null;
         }
+        requestInstanceOrder();
 
         myDebuggerTree.getMutableModel().setRoot(newRoot);
         myDebuggerTree.treeChanged();
@@ -299,19 +310,19 @@ public final class InstancesTreeView implements DataProvider, Disposable {
           .setName("Instance")
           .setPreferredWidth(600)
           .setHeaderAlignment(SwingConstants.LEFT)
-          .setComparator(new Comparator<DebuggerTreeNodeImpl>() {
+          .setComparator(withSortKey(SortedInstances.Key.MEMORY, new Comparator<DebuggerTreeNodeImpl>() {
             @Override
             public int compare(@NotNull DebuggerTreeNodeImpl a, @NotNull DebuggerTreeNodeImpl b) {
               return getDefaultOrdering(a, b);
             }
-          })
+          }))
           .setRenderer((DebuggerTreeRenderer)myDebuggerTree.getCellRenderer()))
       .addColumn(
         new ColumnTreeBuilder.ColumnBuilder()
           .setName("Depth")
           .setPreferredWidth(60)
           .setHeaderAlignment(SwingConstants.RIGHT)
-          .setComparator(new Comparator<DebuggerTreeNodeImpl>() {
+          .setComparator(withSortKey(SortedInstances.Key.DEPTH, new Comparator<DebuggerTreeNodeImpl>() {
             @Override
             public int compare(DebuggerTreeNodeImpl a, DebuggerTreeNodeImpl b) {
               int depthA = 0;
@@ -335,7 +346,7 @@ public final class InstancesTreeView implements DataProvider, Disposable {
                 return getDefaultOrdering(a, b);
               }
             }
-          })
+          }))
           .setRenderer(new ColoredTreeCellRenderer() {
             @Override
             public void customizeCellRenderer(@NotNull JTree tree,
@@ -362,7 +373,7 @@ public final class InstancesTreeView implements DataProvider, Disposable {
           .setName("Shallow Size")
           .setPreferredWidth(80)
           .setHeaderAlignment(SwingConstants.RIGHT)
-          .setComparator(new Comparator<DebuggerTreeNodeImpl>() {
+          .setComparator(withSortKey(SortedInstances.Key.SHALLOW_SIZE, new Comparator<DebuggerTreeNodeImpl>() {
             @Override
             public int compare(@NotNull DebuggerTreeNodeImpl a, @NotNull DebuggerTreeNodeImpl b) {
               int sizeA = 0;
@@ -386,7 +397,7 @@ public final class InstancesTreeView implements DataProvider, Disposable {
                 return getDefaultOrdering(a, b);
               }
             }
-          })
+          }))
           .setRenderer(new ColoredTreeCellRenderer() {
             @Override
             public void customizeCellRenderer(@NotNull JTree tree,
@@ -413,7 +424,7 @@ public final class InstancesTreeView implements DataProvider, Disposable {
           .setName("Dominating Size")
           .setPreferredWidth(80)
           .setHeaderAlignment(SwingConstants.RIGHT)
-          .setComparator(new Comparator<DebuggerTreeNodeImpl>() {
+          .setComparator(withSortKey(SortedInstances.Key.RETAINED_SIZE, new Comparator<DebuggerTreeNodeImpl>() {
             @Override
             public int compare(@NotNull DebuggerTreeNodeImpl a, @NotNull DebuggerTreeNodeImpl b) {
               long sizeA = 0;
@@ -437,7 +448,7 @@ public final class InstancesTreeView implements DataProvider, Disposable {
                 return getDefaultOrdering(a, b);
               }
             }
-          })
+          }))
           .setRenderer(new ColoredTreeCellRenderer() {
             @Override
             public void customizeCellRenderer(@NotNull JTree tree,
@@ -465,12 +476,21 @@ public final class InstancesTreeView implements DataProvider, Disposable {
     builder.setTreeSorter(new ColumnTreeBuilder.TreeSorter<DebuggerTreeNodeImpl>() {
       @Override
       public void sort(@NotNull Comparator<DebuggerTreeNodeImpl> comparator, @NotNull SortOrder sortOrder) {
-        if (myComparator != comparator && mySortOrder != sortOrder) {
+        if (myComparator != comparator || mySortOrder != sortOrder) {
           myComparator = comparator;
           mySortOrder = sortOrder;
           TreeBuilder mutableModel = myDebuggerTree.getMutableModel();
           DebuggerTreeNodeImpl root = (DebuggerTreeNodeImpl)mutableModel.getRoot();
 
+          SortedInstances.Key sortKey = getSortKey(comparator);
+          if (sortKey != mySortKey) {
+            // Until the new order is available, only the instances already shown are sorted.
+            mySortKey = sortKey;
+            requestInstanceOrder();
+          }
+          else if (myInstanceOrder != null) {
+            rebuildOrderedChildren(root);
+          }
           sortTree(root);
 
           mySelectionModel.setSelectionLocked(true);
@@ -501,6 +521,68 @@ public final class InstancesTreeView implements DataProvider, Disposable {
     });
   }
 
+  @NotNull
+  private Comparator<DebuggerTreeNodeImpl> withSortKey(@NotNull SortedInstances.Key key,
+                                                       @NotNull Comparator<DebuggerTreeNodeImpl> comparator) {
+    myComparatorKeys.put(comparator, key);
+    return comparator;
+  }
+
+  @Nullable
+  private SortedInstances.Key getSortKey(@NotNull Comparator<DebuggerTreeNodeImpl> comparator) {
+    for (Map.Entry<Comparator<DebuggerTreeNodeImpl>, SortedInstances.Key> entry : myComparatorKeys.entrySet()) {
+      // Descending orders come as reversed comparators, which are equal to any other reversal of the same comparator.
+      if (comparator == entry.getKey() || comparator.equals(Collections.reverseOrder(entry.getKey()))) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Computes the order of the instances of the selected class for the current sort column in the background, then lists them in that
+   * order.
+   */
+  private void requestInstanceOrder() {
+    myOrderedInstances = null;
+    myInstanceOrder = null;
+    SortedInstances sortedInstances = mySortedInstances;
+    SortedInstances.Key sortKey = mySortKey;
+    if (sortedInstances == null || sortKey == null) {
+      return;
+    }
+
+    sortedInstances.getOrder(sortKey).thenAccept(order -> ApplicationManager.getApplication().invokeLater(() -> {
+      if (sortedInstances != mySortedInstances || sortKey != mySortKey) {
+        return;
+      }
+      // The order is computed from the instances, which are therefore available.
+      myOrderedInstances = sortedInstances.getInstances().join();
+      myInstanceOrder = order;
+
+      TreeBuilder mutableModel = myDebuggerTree.getMutableModel();
+      DebuggerTreeNodeImpl root = (DebuggerTreeNodeImpl)mutableModel.getRoot();
+      if (!(root.getDescriptor() instanceof ContainerDescriptorImpl) || root.getChildCount() == 0) {
+        return;
+      }
+      mySelectionModel.setSelectionLocked(true);
+      rebuildOrderedChildren(root);
+      mutableModel.nodeStructureChanged(root);
+      mySelectionModel.setSelectionLocked(false);
+    }));
+  }
+
+  private void rebuildOrderedChildren(@NotNull DebuggerTreeNodeImpl root) {
+    if (root.getDescriptor() instanceof ContainerDescriptorImpl) {
+      root.removeAllChildren();
+      addContainerChildren(root, 0, true);
+    }
+  }
+
+  private boolean isOrdered(@NotNull DebuggerTreeNodeImpl node) {
+    return myInstanceOrder != null && node.getDescriptor() instanceof ContainerDescriptorImpl;
+  }
+
   private void sortTree(@NotNull DebuggerTreeNodeImpl node) {
     if (myComparator == null) {
       return;
@@ -521,7 +603,9 @@ public final class InstancesTreeView implements DataProvider, Disposable {
         expansionNode = null;
       }
 
-      Collections.sort(builtChildren, myComparator);
+      if (!isOrdered(node)) {
+        Collections.sort(builtChildren, myComparator);
+      }
       node.removeAllChildren(); // Remove children after sorting, since the sort may depend on the parent information.
       for (DebuggerTreeNodeImpl childNode : builtChildren) {
         node.add(childNode);
@@ -577,7 +661,8 @@ public final class InstancesTreeView implements DataProvider, Disposable {
         }
       }
 
-      int maxSize = ((ContainerDescriptorImpl)node.getDescriptor()).getInstances().size();
+      int maxSize =
+        myInstanceOrder != null ? myInstanceOrder.length : ((ContainerDescriptorImpl)node.getDescriptor()).getInstances().size();
       while (startIndex < maxSize) {
         addContainerChildren(node, startIndex, false);
         for (int scanIndex = startIndex; scanIndex < node.getChildCount(); ++scanIndex) {
@@ -597,6 +682,11 @@ public final class InstancesTreeView implements DataProvider, Disposable {
   }
 
   private void addContainerChildren(@NotNull DebuggerTreeNodeImpl node, int startIndex, boolean addExpansionNode) {
+    if (myInstanceOrder != null) {
+      addOrderedContainerChildren(node, startIndex, addExpansionNode);
+      return;
+    }
+
     ContainerDescriptorImpl containerDescriptor = (ContainerDescriptorImpl)node.getDescriptor();
     List<Instance> instances = containerDescriptor.getInstances();
     List<HprofFieldDescriptorImpl> descriptors = new ArrayList<>(NODES_PER_EXPANSION);
@@ -622,6 +712,27 @@ public final class InstancesTreeView implements DataProvider, Disposable {
     }
   }
 
+  private void addOrderedContainerChildren(@NotNull DebuggerTreeNodeImpl node, int startIndex, boolean addExpansionNode) {
+    assert myInstanceOrder != null && myOrderedInstances != null;
+    int endIndex = Math.min(startIndex + NODES_PER_EXPANSION, myInstanceOrder.length);
+    List<HprofFieldDescriptorImpl> descriptors = new ArrayList<>(endIndex - startIndex);
+    for (int i = startIndex; i < endIndex; i++) {
+      int index = myInstanceOrder[mySortOrder == SortOrder.DESCENDING ? myInstanceOrder.length - 1 - i : i];
+      descriptors.add(new InstanceFieldDescriptorImpl(
+        myDebuggerTree.getProject(),
+        new Field(Type.OBJECT, Integer.toString(index)),
+        myOrderedInstances[index],
+        index));
+    }
+    HprofFieldDescriptorImpl.batchUpdateRepresentation(descriptors, myDebugProcess.getManagerThread(), myDummySuspendContext);
+    for (HprofFieldDescriptorImpl descriptor : descriptors) {
+      node.add(DebuggerTreeNodeImpl.createNodeNoUpdate(myDebuggerTree, descriptor));
+    }
+    if (endIndex < myInstanceOrder.length && addExpansionNode) {
+      addExpansionNode(node, endIndex, myInstanceOrder.length);
+    }
+  }
+
   private void addExpansionNode(@NotNull DebuggerTreeNodeImpl node, int currentIndex, int maxSize) {
     node.add(DebuggerTreeNodeImpl.createNodeNoUpdate(myDebuggerTree, new ExpansionDescriptorImpl("instances", currentIndex, maxSize)));
   }
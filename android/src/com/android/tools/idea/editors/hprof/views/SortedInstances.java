@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof.views;
+
+import com.android.tools.perflib.heap.Heap;
+import com.android.tools.perflib.heap.Instance;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.ToLongFunction;
+
+/**
+ * Instances of a class in a heap, and their orderings by each sortable column of the {@link InstancesTreeView}.
+ *
+ * Orderings are arrays of indexes into the instances, computed in the background the first time they are requested, so that the view only
+ * needs to create nodes for the rows being shown, whatever the number of instances.
+ */
+final class SortedInstances {
+  enum Key {
+    /**
+     * Order of the instances in the heap dump, i.e. the order they are given in, which needs no sorting.
+     */
+    MEMORY(null),
+    DEPTH(Instance::getDistanceToGcRoot),
+    SHALLOW_SIZE(Instance::getSize),
+    RETAINED_SIZE(instance -> instance.getDistanceToGcRoot() == Integer.MAX_VALUE ? 0 : instance.getTotalRetainedSize());
+
+    /**
+     * The value the instances are sorted by, or null to keep them in memory order.
+     */
+    @Nullable private final ToLongFunction<Instance> myValue;
+
+    Key(@Nullable ToLongFunction<Instance> value) {
+      myValue = value;
+    }
+  }
+
+  @NotNull private final CompletableFuture<Instance[]> myInstances;
+  @NotNull private final Map<Key, CompletableFuture<int[]>> myOrders = new EnumMap<>(Key.class);
+  @NotNull private final Executor myExecutor;
+
+  SortedInstances(@NotNull List<Instance> instances, @NotNull Heap heap) {
+    this(instances, heap, PooledThreadExecutor.INSTANCE);
+  }
+
+  SortedInstances(@NotNull List<Instance> instances, @NotNull Heap heap, @NotNull Executor executor) {
+    myExecutor = executor;
+    myInstances = CompletableFuture.supplyAsync(() -> instances.stream()
+      .filter(instance -> heap.getInstance(instance.getId()) != null)
+      .toArray(Instance[]::new), executor);
+  }
+
+  /**
+   * @return the instances, in the same order as the indexes of the orderings.
+   */
+  @NotNull
+  CompletableFuture<Instance[]> getInstances() {
+    return myInstances;
+  }
+
+  /**
+   * @return the indexes of the instances sorted in ascending order of the given key, ties being kept in memory order.
+   */
+  @NotNull
+  synchronized CompletableFuture<int[]> getOrder(@NotNull Key key) {
+    return myOrders.computeIfAbsent(key, k -> myInstances.thenApplyAsync(instances -> sort(instances, k), myExecutor));
+  }
+
+  @NotNull
+  private static int[] sort(@NotNull Instance[] instances, @NotNull Key key) {
+    ToLongFunction<Instance> value = key.myValue;
+    if (value == null) {
+      int[] order = new int[instances.length];
+      Arrays.setAll(order, i -> i);
+      return order;
+    }
+
+    long[] values = new long[instances.length];
+    for (int i = 0; i < instances.length; i++) {
+      values[i] = value.applyAsLong(instances[i]);
+    }
+    // Sorts primitives rather than boxed indexes: each value is replaced by its rank among the distinct values, which fits in the high
+    // half of a long, with the index in the low half. Equal ranks are then ordered by index, which keeps ties in memory order.
+    long[] distinct = values.clone();
+    Arrays.sort(distinct);
+    int distinctCount = 0;
+    for (int i = 0; i < distinct.length; i++) {
+      if (i == 0 || distinct[i] != distinct[distinctCount - 1]) {
+        distinct[distinctCount++] = distinct[i];
+      }
+    }
+
+    long[] packed = new long[instances.length];
+    for (int i = 0; i < packed.length; i++) {
+      long rank = Arrays.binarySearch(distinct, 0, distinctCount, values[i]);
+      packed[i] = rank << 32 | i;
+    }
+    Arrays.sort(packed);
+
+    int[] order = new int[packed.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = (int)packed[i];
+    }
+    return order;
+  }
+}
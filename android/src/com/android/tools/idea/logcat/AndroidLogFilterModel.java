@@ -67,6 +67,12 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
 
   @Nullable private AndroidLogcatFilter myConfiguredFilter;
 
+  /**
+   * The next line to be processed, and the message it was formatted from, see {@link #setParsedMessage}.
+   */
+  @Nullable private String myParsedLine;
+  @Nullable private LogCatMessage myParsedMessage;
+
   private final ImmutableList<AndroidLogLevelFilter> myLogLevelFilters;
 
   public AndroidLogFilterModel() {
@@ -133,6 +139,15 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   }
 
 
+  /**
+   * Gives the message the next line passed to {@link #processLine} was formatted from, so that the line is filtered on its fields rather
+   * than parsed back from the text. Lines replayed from the console text, when a filter changes, have no message and are parsed.
+   */
+  public void setParsedMessage(@NotNull String line, @NotNull LogCatMessage message) {
+    myParsedLine = line;
+    myParsedMessage = message;
+  }
+
   private void fireTextFilterChange() {
     for (LogFilterListener listener : myListeners) {
       listener.onTextFilterChange();
@@ -148,9 +163,10 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   @Override
   public final boolean isApplicable(String line) {
     // Not calling the super class version, it does not do what we want with regular expression matching
-    if (myCustomPattern != null && !myCustomPattern.matcher(line).find()) return false;
+    // The log level, which was already parsed, is checked before running the regex.
     final LogFilter selectedLogLevelFilter = getSelectedLogLevelFilter();
-    return selectedLogLevelFilter == null || selectedLogLevelFilter.isAcceptable(line);
+    if (selectedLogLevelFilter != null && !selectedLogLevelFilter.isAcceptable(line)) return false;
+    return myCustomPattern == null || myCustomPattern.matcher(line).find();
   }
 
 
@@ -230,8 +246,23 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   @Override
   @NotNull
   public final MyProcessingResult processLine(String line) {
-    LogCatMessage message = AndroidLogcatFormatter.tryParseMessage(line);
-    String continuation = (message == null) ? AndroidLogcatFormatter.tryParseContinuation(line) : null;
+    LogCatMessage message;
+    String continuation;
+    // The line given to setParsedMessage is passed on as is.
+    //noinspection StringEquality
+    if (line == myParsedLine) {
+      // A message with the same header as the previous one is formatted as a continuation.
+      assert myParsedMessage != null;
+      boolean isContinuation = myParsedMessage.getHeader().equals(myPrevHeader);
+      message = isContinuation ? null : myParsedMessage;
+      continuation = isContinuation ? myParsedMessage.getMessage() : null;
+    }
+    else {
+      message = AndroidLogcatFormatter.tryParseMessage(line);
+      continuation = (message == null) ? AndroidLogcatFormatter.tryParseContinuation(line) : null;
+    }
+    myParsedLine = null;
+    myParsedMessage = null;
 
     boolean validContinuation = continuation != null && myPrevHeader != null;
     if (message == null && !validContinuation) {
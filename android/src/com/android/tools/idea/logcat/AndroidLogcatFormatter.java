@@ -27,8 +27,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Class which handles parsing the output from logcat and reformatting it to its final form before
@@ -45,21 +43,24 @@ public final class AndroidLogcatFormatter extends DefaultLogFormatter {
     myPreferences = preferences;
   }
 
-  @NonNls private static final Pattern MESSAGE_WITH_HEADER = Pattern.compile(
-    "^(\\d\\d-\\d\\d\\s\\d\\d:\\d\\d:\\d\\d.\\d+)\\s+" +   // time
-    "(\\d+)-(\\d+)/" +                                     // pid-tid
-    "(\\S+)\\s+" +                                         // package
-    "([A-Z])/" +                                           // log level
-    "([^ ]+): " +                                          // tag (be sure it has no spaces)
-    "(.*)$"                                                // message
-  );
+  /*
+   * Messages formatted with a full header match the following regex, which is parsed by hand in tryParseMessage, as this runs on
+   * every line shown by the logcat console, each time it is filtered again:
+   *
+   * ^(\d\d-\d\d\s\d\d:\d\d:\d\d.\d+)\s+   time
+   * (\d+)-(\d+)/                         pid-tid
+   * (\S+)\s+                             package
+   * ([A-Z])/                              log level
+   * ([^ ]+):                              tag (be sure it has no spaces)
+   * (.*)$                                 message
+   */
 
   /**
-   * If a logcat message has more than one line, all followup lines are marked with this pattern.
+   * If a logcat message has more than one line, all followup lines are marked with this prefix.
    * The user will not see this formatting, however; the continuation character will be removed and
    * replaced with an indent.
    */
-  @NonNls private static final Pattern CONTINUATION_PATTERN = Pattern.compile("^\\+ (.*)$");
+  @NonNls private static final String CONTINUATION_PREFIX = "+ ";
 
   private static final String FULL_FORMAT = createCustomFormat(true, true, true, true);
 
@@ -86,7 +87,7 @@ public final class AndroidLogcatFormatter extends DefaultLogFormatter {
    */
   @NotNull
   public static String formatContinuation(@NotNull String message) {
-    return String.format("+ %s", message);
+    return CONTINUATION_PREFIX + message;
   }
 
   /**
@@ -96,7 +97,7 @@ public final class AndroidLogcatFormatter extends DefaultLogFormatter {
    */
   @NotNull
   public static String createCustomFormat(boolean showTime, boolean showPid, boolean showPackage, boolean showTag) {
-    // Note: if all values are true, the format returned must be matchable by MESSAGE_WITH_HEADER
+    // Note: if all values are true, the format returned must be parseable by tryParseMessage
     // or else parseMessage will fail later.
     StringBuilder builder = new StringBuilder();
     if (showTime) {
@@ -165,23 +166,107 @@ public final class AndroidLogcatFormatter extends DefaultLogFormatter {
    */
   @Nullable
   public static LogCatMessage tryParseMessage(@NotNull String msg) {
-    final Matcher matcher = MESSAGE_WITH_HEADER.matcher(msg);
-    if (!matcher.matches()) {
+    int length = msg.length();
+
+    // Time, e.g. "02-12 14:32:46.526"
+    if (length < 16 ||
+        !isDigit(msg.charAt(0)) || !isDigit(msg.charAt(1)) || msg.charAt(2) != '-' ||
+        !isDigit(msg.charAt(3)) || !isDigit(msg.charAt(4)) || !isWhitespace(msg.charAt(5)) ||
+        !isDigit(msg.charAt(6)) || !isDigit(msg.charAt(7)) || msg.charAt(8) != ':' ||
+        !isDigit(msg.charAt(9)) || !isDigit(msg.charAt(10)) || msg.charAt(11) != ':' ||
+        !isDigit(msg.charAt(12)) || !isDigit(msg.charAt(13)) || isLineTerminator(msg.charAt(14))) {
+      return null;
+    }
+    int timeEnd = skipDigits(msg, 15);
+    if (timeEnd == 15) {
+      return null;
+    }
+
+    // Pid-tid
+    int pidStart = skipWhitespace(msg, timeEnd);
+    int pidEnd = skipDigits(msg, pidStart);
+    if (pidStart == timeEnd || pidEnd == pidStart || pidEnd >= length || msg.charAt(pidEnd) != '-') {
+      return null;
+    }
+    int tidStart = pidEnd + 1;
+    int tidEnd = skipDigits(msg, tidStart);
+    if (tidEnd == tidStart || tidEnd >= length || msg.charAt(tidEnd) != '/') {
+      return null;
+    }
+
+    // Package
+    int packageStart = tidEnd + 1;
+    int packageEnd = packageStart;
+    while (packageEnd < length && !isWhitespace(msg.charAt(packageEnd))) {
+      packageEnd++;
+    }
+    int levelIndex = skipWhitespace(msg, packageEnd);
+    if (packageEnd == packageStart || levelIndex == packageEnd || levelIndex + 1 >= length) {
+      return null;
+    }
+
+    // Log level
+    char level = msg.charAt(levelIndex);
+    if (level < 'A' || level > 'Z' || msg.charAt(levelIndex + 1) != '/') {
+      return null;
+    }
+
+    // Tag, which ends with the ':' preceding the first space
+    int tagStart = levelIndex + 2;
+    int space = msg.indexOf(' ', tagStart);
+    if (space < tagStart + 2 || msg.charAt(space - 1) != ':') {
       return null;
     }
 
-    @SuppressWarnings("ConstantConditions") // matcher.matches verifies all groups below are non-null
+    // Message
+    int messageStart = space + 1;
+    for (int i = messageStart; i < length; i++) {
+      if (isLineTerminator(msg.charAt(i))) {
+        return null;
+      }
+    }
+
     LogCatHeader header = new LogCatHeader(
-      Log.LogLevel.getByLetter(matcher.group(5).charAt(0)),
-      Integer.parseInt(matcher.group(2)),
-      Integer.parseInt(matcher.group(3)),
-      matcher.group(4),
-      matcher.group(6),
-      LogCatTimestamp.fromString(matcher.group(1)));
+      Log.LogLevel.getByLetter(level),
+      Integer.parseInt(msg.substring(pidStart, pidEnd)),
+      Integer.parseInt(msg.substring(tidStart, tidEnd)),
+      msg.substring(packageStart, packageEnd),
+      msg.substring(tagStart, space - 1),
+      LogCatTimestamp.fromString(msg.substring(0, timeEnd)));
+
+    return new LogCatMessage(header, msg.substring(messageStart));
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Same as the \\s regex character class.
+   */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /**
+   * Same as the characters not matched by the . regex character class.
+   */
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
 
-    String message = matcher.group(7);
+  private static int skipDigits(@NotNull String s, int index) {
+    while (index < s.length() && isDigit(s.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
 
-    return new LogCatMessage(header, message);
+  private static int skipWhitespace(@NotNull String s, int index) {
+    while (index < s.length() && isWhitespace(s.charAt(index))) {
+      index++;
+    }
+    return index;
   }
 
   /**
@@ -190,12 +275,16 @@ public final class AndroidLogcatFormatter extends DefaultLogFormatter {
    */
   @Nullable
   public static String tryParseContinuation(@NotNull String msg) {
-    Matcher matcher = CONTINUATION_PATTERN.matcher(msg);
-    if (!matcher.matches()) {
+    if (!msg.startsWith(CONTINUATION_PREFIX)) {
       return null;
     }
+    for (int i = CONTINUATION_PREFIX.length(); i < msg.length(); i++) {
+      if (isLineTerminator(msg.charAt(i))) {
+        return null;
+      }
+    }
 
-    return matcher.group(1);
+    return msg.substring(CONTINUATION_PREFIX.length());
   }
 
   @Override
@@ -225,7 +314,9 @@ public final class AndroidLogcatFormatter extends DefaultLogFormatter {
     else {
       LogCatMessage message = tryParseMessage(msg);
       if (message != null) {
-        String formatted = formatMessage(myPreferences.LOGCAT_FORMAT_STRING, msg);
+        // Formats the parsed message rather than msg, which would be parsed again.
+        String format = myPreferences.LOGCAT_FORMAT_STRING;
+        String formatted = format.isEmpty() ? msg : formatMessage(format, message.getHeader(), message.getMessage());
         myLastHeaderLength = formatted.indexOf(message.getMessage());
         return formatted;
       }
@@ -26,6 +26,9 @@ import org.jetbrains.android.util.AndroidOutputReceiver;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * An {@link AndroidOutputReceiver} which receives output from logcat and processes each line,
  * searching for callstacks and reformatting the final output before it is printed to the
@@ -58,12 +61,33 @@ final class AndroidLogcatReceiver extends AndroidOutputReceiver implements Dispo
   @Nullable private LogCatHeader myActiveHeader;
   private int myLineIndex;
 
+  /**
+   * Messages parsed from the chunk of output being processed by {@link #processNewLines(String[])}, which are passed to the listener in one
+   * batch, or null when messages are passed to the listener as soon as they are parsed.
+   */
+  @Nullable private List<LogCatMessage> myPendingMessages;
+
   public AndroidLogcatReceiver(@NotNull IDevice device, @NotNull AndroidLogcatService.LogcatListener logcatListener) {
     myDevice = device;
     myLogcatListener = logcatListener;
     myStackTraceExpander = new StackTraceExpander(STACK_TRACE_LINE_PREFIX, STACK_TRACE_CAUSE_LINE_PREFIX);
   }
 
+  @Override
+  public void processNewLines(String[] lines) {
+    myPendingMessages = new ArrayList<>(lines.length);
+    try {
+      super.processNewLines(lines);
+    }
+    finally {
+      List<LogCatMessage> messages = myPendingMessages;
+      myPendingMessages = null;
+      if (!messages.isEmpty()) {
+        myLogcatListener.onLogLinesReceived(messages);
+      }
+    }
+  }
+
   @Override
   public void processNewLine(@NotNull String line) {
     // Really, the user's log should never put any system characters in it ever - that will cause
@@ -77,7 +101,9 @@ final class AndroidLogcatReceiver extends AndroidOutputReceiver implements Dispo
     // both external to Android Studio. In fact, the latest adb/logcat versions have already fixed
     // this issue! But we still need to run properly with older versions. Also, putting this fix in
     // MultilineReceiver isn't right either because it is used for more than just receiving logcat.
-    line = line.replaceAll("\\r", "");
+    if (line.indexOf('\r') >= 0) {
+      line = StringUtil.replace(line, "\r", "");
+    }
 
     if (line.isEmpty()) {
       myDelayedNewlineCount++;
@@ -111,7 +137,13 @@ final class AndroidLogcatReceiver extends AndroidOutputReceiver implements Dispo
 
   // This method is package protected so other Logcat components can feed receiver processed log lines if they need to
   void notifyLine(@NotNull LogCatHeader header, @NotNull String line) {
-    myLogcatListener.onLogLineReceived(new LogCatMessage(header, line));
+    LogCatMessage message = new LogCatMessage(header, line);
+    if (myPendingMessages != null) {
+      myPendingMessages.add(message);
+    }
+    else {
+      myLogcatListener.onLogLineReceived(message);
+    }
     myLineIndex++;
   }
 
@@ -30,13 +30,17 @@ import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.io.FileUtil;
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.android.util.AndroidBundle;
 import org.jetbrains.android.util.AndroidUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -53,28 +57,64 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     return Logger.getInstance(AndroidLogcatService.class);
   }
 
+  /**
+   * Ring buffer of the most recent messages of a device, holding at most {@link ConsoleBuffer#getCycleBufferSize()} characters when the
+   * console uses a cycle buffer.
+   */
   private static class LogcatBuffer {
+    /**
+     * Characters accounted for each message on top of its text, so that empty lines, which are frequent in multi-line messages, are
+     * evicted too.
+     */
+    private static final int MESSAGE_OVERHEAD = 1;
+
     private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
+    private final ArrayDeque<LogCatMessage> myMessages = new ArrayDeque<>();
 
     public void addMessage(@NotNull LogCatMessage message) {
-      myMessages.add(message);
-      myBufferSize += message.getMessage().length();
+      myMessages.addLast(message);
+      myBufferSize += getSize(message);
+      trim();
+    }
+
+    public void addMessages(@NotNull List<LogCatMessage> messages) {
+      for (LogCatMessage message : messages) {
+        myMessages.addLast(message);
+        myBufferSize += getSize(message);
+      }
+      trim();
+    }
+
+    private void trim() {
       if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
+        int maxSize = ConsoleBuffer.getCycleBufferSize();
+        while (myBufferSize > maxSize) {
+          myBufferSize -= getSize(myMessages.removeFirst());
         }
       }
     }
 
+    private static int getSize(@NotNull LogCatMessage message) {
+      return message.getMessage().length() + MESSAGE_OVERHEAD;
+    }
+
     @NotNull
-    public List<LogCatMessage> getMessages() {
+    public Collection<LogCatMessage> getMessages() {
       return myMessages;
     }
   }
 
   public interface LogcatListener {
     default void onLogLineReceived(@NotNull LogCatMessage line) {}
+
+    /**
+     * Receives a batch of consecutive lines, as read from the device in one go. By default, the lines are passed one by one to
+     * {@link #onLogLineReceived(LogCatMessage)}.
+     */
+    default void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+      lines.forEach(this::onLogLineReceived);
+    }
+
     default void onCleared() {}
   }
 
@@ -86,6 +126,13 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   @GuardedBy("myLock")
   private final Map<IDevice, LogcatBuffer> myLogBuffers = new HashMap<>();
 
+  /**
+   * Messages received from each device since logcat started being received, unlike {@link #myLogBuffers} which only keeps the most
+   * recent ones. Histories are written to outside of the lock.
+   */
+  @GuardedBy("myLock")
+  private final Map<IDevice, LogcatHistory> myHistories = new HashMap<>();
+
   @GuardedBy("myLock")
   private final Map<IDevice, AndroidLogcatReceiver> myLogReceivers = new HashMap<>();
 
@@ -116,6 +163,9 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
       final AndroidLogcatReceiver receiver = createReceiver(device);
       myLogReceivers.put(device, receiver);
       myLogBuffers.put(device, new LogcatBuffer());
+      // The history only creates its directory once the first message is added.
+      String name = FileUtil.sanitizeFileName("logcat-" + device.getSerialNumber()) + "-" + System.currentTimeMillis();
+      myHistories.put(device, new LogcatHistory(new File(FileUtil.getTempDirectory(), name)));
       ExecutorService executor = myExecutors.get(device);
       executor.submit((() -> {
         try {
@@ -147,11 +197,84 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
             myLogBuffers.get(device).addMessage(line);
           }
         }
+        addToHistory(device, Collections.singletonList(line));
+      }
+
+      @Override
+      public void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+        synchronized (myLock) {
+          if (myListeners.containsKey(device)) {
+            for (LogcatListener listener : myListeners.get(device)) {
+              listener.onLogLinesReceived(lines);
+            }
+          }
+          if (myLogBuffers.containsKey(device)) {
+            myLogBuffers.get(device).addMessages(lines);
+          }
+        }
+        addToHistory(device, lines);
       }
     };
     return new AndroidLogcatReceiver(device, logcatListener);
   }
 
+  /**
+   * Called on the thread receiving the logcat of the device, so messages are added to its history in order.
+   */
+  private void addToHistory(@NotNull IDevice device, @NotNull List<LogCatMessage> lines) {
+    LogcatHistory history = getHistory(device);
+    if (history == null) {
+      return;
+    }
+    try {
+      history.add(lines);
+    }
+    catch (IOException e) {
+      // The history is incomplete from now on, so searching it would be misleading.
+      getLog().warn("Failed to write the logcat history of " + device.getName() + ", it is no longer recorded", e);
+      synchronized (myLock) {
+        myHistories.remove(device, history);
+      }
+      closeHistory(history);
+    }
+  }
+
+  /**
+   * Closes the history on the executor of the device rather than under the lock, since it deletes the history files.
+   */
+  private void closeHistoryLater(@NotNull IDevice device, @NotNull LogcatHistory history) {
+    synchronized (myLock) {
+      ExecutorService executor = myExecutors.get(device);
+      if (executor != null) {
+        executor.submit(() -> closeHistory(history));
+      }
+      else {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> closeHistory(history));
+      }
+    }
+  }
+
+  private static void closeHistory(@NotNull LogcatHistory history) {
+    try {
+      history.close();
+    }
+    catch (IOException e) {
+      getLog().info(e);
+    }
+  }
+
+  /**
+   * @return the history of the messages received from the device since logcat was last started or cleared, or null if there is none.
+   * Unlike {@link #addListener(IDevice, LogcatListener, boolean)}, which replays the most recent messages, the history can be searched
+   * without going through all of its messages.
+   */
+  @Nullable
+  LogcatHistory getHistory(@NotNull IDevice device) {
+    synchronized (myLock) {
+      return myHistories.get(device);
+    }
+  }
+
   private void connect(@NotNull IDevice device) {
     synchronized (myLock) {
       if (!myExecutors.containsKey(device)) {
@@ -175,6 +298,10 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
         myLogReceivers.get(device).cancel();
         myLogReceivers.remove(device);
         myLogBuffers.remove(device);
+        LogcatHistory history = myHistories.remove(device);
+        if (history != null) {
+          closeHistoryLater(device, history);
+        }
       }
     }
   }
@@ -231,9 +358,7 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, boolean addOldLogs) {
     synchronized (myLock) {
       if (addOldLogs && myLogBuffers.containsKey(device)) {
-        for (LogCatMessage line : myLogBuffers.get(device).getMessages()) {
-          listener.onLogLineReceived(line);
-        }
+        listener.onLogLinesReceived(new ArrayList<>(myLogBuffers.get(device).getMessages()));
       }
 
       if (!myListeners.containsKey(device)) {
@@ -297,6 +422,8 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
       for (AndroidLogcatReceiver receiver : myLogReceivers.values()) {
         receiver.cancel();
       }
+      myHistories.forEach(this::closeHistoryLater);
+      myHistories.clear();
     }
   }
 }
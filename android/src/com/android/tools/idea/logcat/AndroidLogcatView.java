@@ -18,6 +18,8 @@ package com.android.tools.idea.logcat;
 import com.android.ddmlib.Client;
 import com.android.ddmlib.ClientData;
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.Log;
+import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.tools.idea.actions.BrowserHelpAction;
 import com.android.tools.idea.ddms.DeviceContext;
 import com.intellij.diagnostic.logging.LogConsoleBase;
@@ -159,6 +161,11 @@ public abstract class AndroidLogcatView implements Disposable {
         myLogConsole.addLogLine(line);
       }
 
+      @Override
+      protected void receiveFormattedLogLines(@NotNull List<String> lines, @NotNull List<LogCatMessage> messages) {
+        myLogConsole.addLogLines(lines, messages);
+      }
+
       @Override
       public void onCleared() {
         myLogFilterModel.beginRejectingOldMessages();
@@ -453,6 +460,37 @@ public abstract class AndroidLogcatView implements Disposable {
     }
   }
 
+  /**
+   * Searches every message received from the device since logcat was started, rather than the most recent ones kept by the console.
+   */
+  private final class MySearchHistoryAction extends AnAction {
+    public MySearchHistoryAction() {
+      super(AndroidBundle.message("android.logcat.history.action.text"), AndroidBundle.message("android.logcat.history.action.description"),
+            AllIcons.Actions.Find);
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+      e.getPresentation().setEnabled(myDevice != null && AndroidLogcatService.getInstance().getHistory(myDevice) != null);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+      IDevice device = myDevice;
+      LogcatHistory history = device != null ? AndroidLogcatService.getInstance().getHistory(device) : null;
+      if (history == null) {
+        return;
+      }
+      Client client = myDeviceContext != null ? myDeviceContext.getSelectedClient() : null;
+      Integer pid = client != null ? client.getClientData().getPid() : null;
+      RegexFilterComponent search = myLogConsole.myRegexFilterComponent;
+      // The history only searches plain text.
+      String text = search.isRegex() ? null : search.getFilter();
+      Log.LogLevel minLevel = Log.LogLevel.getByString(myLogFilterModel.getSelectedLogLevelName());
+      new LogcatHistoryDialog(myProject, history, pid, text, minLevel).show();
+    }
+  }
+
   final class AndroidLogConsole extends LogConsoleBase {
     private final RegexFilterComponent myRegexFilterComponent = new RegexFilterComponent("LOG_FILTER_HISTORY", 5);
     private final AndroidLogcatPreferences myPreferences;
@@ -465,6 +503,7 @@ public abstract class AndroidLogcatView implements Disposable {
         c.addCustomConsoleAction(new Separator());
         c.addCustomConsoleAction(new MyRestartAction());
         c.addCustomConsoleAction(new MyConfigureLogcatHeaderAction());
+        c.addCustomConsoleAction(new MySearchHistoryAction());
         c.addCustomConsoleAction(new Separator());
         c.addCustomConsoleAction(new BrowserHelpAction("logcat", "http://developer.android.com/r/studio-ui/am-logcat.html"));
       }
@@ -502,6 +541,18 @@ public abstract class AndroidLogcatView implements Disposable {
       super.addMessage(line);
     }
 
+    /**
+     * Adds the lines of a batch. LogConsoleBase filters and stores messages line by line, so they are still added one at a time, but
+     * within a single call per batch. Each line is handed to the filter model with the message it was formatted from, so that it is
+     * filtered on the parsed fields rather than parsed back from the text.
+     */
+    public void addLogLines(@NotNull List<String> lines, @NotNull List<LogCatMessage> messages) {
+      for (int i = 0; i < lines.size(); i++) {
+        myLogFilterModel.setParsedMessage(lines.get(i), messages.get(i));
+        super.addMessage(lines.get(i));
+      }
+    }
+
     /**
      * Clear the current logs and replay all old messages. This is useful to do if the display
      * format of the logs have changed, for example.
@@ -33,6 +33,13 @@ public final class DefaultAndroidLogcatFilter implements AndroidLogcatFilter {
   @Nullable private final String myPid;
   @Nullable private final Log.LogLevel myLogLevel;
 
+  /**
+   * {@link #myPid} as a number, or {@link #ANY_PID} if it is not set, or {@link #NO_PID} if it cannot match any pid.
+   */
+  private final long myPidValue;
+  private static final long ANY_PID = Long.MIN_VALUE;
+  private static final long NO_PID = Long.MAX_VALUE;
+
   public static final class Builder {
     @NotNull private final String myName;
     @Nullable private Pattern myMessagePattern;
@@ -95,15 +102,34 @@ public final class DefaultAndroidLogcatFilter implements AndroidLogcatFilter {
     myPkgNamePattern = pkgNamePattern;
     myPid = pid;
     myLogLevel = logLevel;
+    myPidValue = parsePid(pid);
+  }
+
+  private static long parsePid(@Nullable String pid) {
+    if (pid == null || pid.isEmpty()) {
+      return ANY_PID;
+    }
+    try {
+      int value = Integer.parseInt(pid);
+      // Pids are compared as strings, so "007" never matched pid 7.
+      return Integer.toString(value).equals(pid) ? value : NO_PID;
+    }
+    catch (NumberFormatException e) {
+      return NO_PID;
+    }
   }
 
+  /**
+   * Checks the cheapest predicates first: log level and pid, then the tag and package patterns, which are short, and finally the message
+   * pattern.
+   */
   @Override
   public boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel) {
     if (myLogLevel != null && (logLevel.getPriority() < myLogLevel.getPriority())) {
       return false;
     }
 
-    if (myMessagePattern != null && !myMessagePattern.matcher(message).find()) {
+    if (myPidValue != ANY_PID && myPidValue != pid) {
       return false;
     }
 
@@ -115,8 +141,7 @@ public final class DefaultAndroidLogcatFilter implements AndroidLogcatFilter {
       return false;
     }
 
-    // TODO: If we're always checking against an int pid anyway, why let myPid be a string?
-    if ((myPid != null && myPid.length() > 0) && !myPid.equals(Integer.toString(pid))) {
+    if (myMessagePattern != null && !myMessagePattern.matcher(message).find()) {
       return false;
     }
 
@@ -19,20 +19,50 @@ import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatMessage;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 abstract class FormattedLogcatReceiver implements AndroidLogcatService.LogcatListener {
   private LogCatHeader myActiveHeader;
 
   @Override
   public final void onLogLineReceived(@NotNull LogCatMessage line) {
+    receiveFormattedLogLine(format(line));
+  }
+
+  @Override
+  public final void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+    List<String> messages = new ArrayList<>(lines.size());
+    for (LogCatMessage line : lines) {
+      messages.add(format(line));
+    }
+    receiveFormattedLogLines(messages, lines);
+  }
+
+  @NotNull
+  private String format(@NotNull LogCatMessage line) {
     if (!line.getHeader().equals(myActiveHeader)) {
       myActiveHeader = line.getHeader();
-      String message = AndroidLogcatFormatter.formatMessageFull(myActiveHeader, line.getMessage());
-      receiveFormattedLogLine(message);
-    } else {
-      String message = AndroidLogcatFormatter.formatContinuation(line.getMessage());
-      receiveFormattedLogLine(message);
+      return AndroidLogcatFormatter.formatMessageFull(myActiveHeader, line.getMessage());
     }
+    return AndroidLogcatFormatter.formatContinuation(line.getMessage());
   }
 
   protected abstract void receiveFormattedLogLine(@NotNull String line);
+
+  /**
+   * Receives the formatted lines of a batch, see {@link AndroidLogcatService.LogcatListener#onLogLinesReceived(List)}. By default, the
+   * lines are passed one by one to {@link #receiveFormattedLogLine(String)}.
+   */
+  protected void receiveFormattedLogLines(@NotNull List<String> lines) {
+    lines.forEach(this::receiveFormattedLogLine);
+  }
+
+  /**
+   * Receives the formatted lines of a batch along with the messages they were formatted from, at the same indexes. By default, only the
+   * lines are passed on to {@link #receiveFormattedLogLines(List)}.
+   */
+  protected void receiveFormattedLogLines(@NotNull List<String> lines, @NotNull List<LogCatMessage> messages) {
+    receiveFormattedLogLines(lines);
+  }
 }
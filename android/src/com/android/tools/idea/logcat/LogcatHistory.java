@@ -0,0 +1,454 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import gnu.trove.THashMap;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TLongArrayList;
+import gnu.trove.TLongObjectHashMap;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only, on-disk store of the logcat messages received from a device, indexed so that they can be searched without replaying them
+ * all.
+ *
+ * Messages are identified by the order they were added in. They are written to segment files of a fixed number of messages, and the
+ * oldest segments are deleted once the store holds more than its maximum number of messages, which bounds both the disk and the memory
+ * used. Each segment keeps in memory the offsets and levels of its messages, the messages of each pid and each tag, and the blocks of
+ * {@link #BLOCK_SIZE} messages containing each trigram of the (lower case) text. A {@link Query} intersects these lists, and only reads
+ * from disk the messages whose text needs to be checked, and those which are eventually shown.
+ */
+@ThreadSafe
+final class LogcatHistory implements Closeable {
+  static final int DEFAULT_SEGMENT_SIZE = 1 << 15;
+  static final int DEFAULT_MAX_MESSAGES = 1 << 21;
+
+  private static final int TRIGRAM_LENGTH = 3;
+
+  /**
+   * Number of consecutive messages sharing the postings of a trigram. Larger blocks keep the trigram index smaller, at the cost of reading
+   * more messages that turn out not to contain the text searched.
+   */
+  private static final int BLOCK_SIZE = 16;
+
+  @NotNull private final File myDirectory;
+  private final int mySegmentSize;
+  private final int myMaxSegments;
+
+  @GuardedBy("this")
+  @NotNull private final ArrayDeque<Segment> mySegments = new ArrayDeque<>();
+  @GuardedBy("this")
+  private long myNextId;
+  @GuardedBy("this")
+  private boolean myClosed;
+
+  /**
+   * Creates an empty store keeping its segments in the given directory, which is deleted by {@link #close()}.
+   */
+  LogcatHistory(@NotNull File directory) {
+    this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_MESSAGES);
+  }
+
+  LogcatHistory(@NotNull File directory, int segmentSize, int maxMessages) {
+    assert segmentSize > 0 && maxMessages >= segmentSize;
+    myDirectory = directory;
+    mySegmentSize = segmentSize;
+    myMaxSegments = maxMessages / segmentSize;
+  }
+
+  /**
+   * @return the id of the oldest message still in the store.
+   */
+  public synchronized long getFirstId() {
+    return mySegments.isEmpty() ? myNextId : mySegments.getFirst().myFirstId;
+  }
+
+  /**
+   * @return the id the next message added will have.
+   */
+  public synchronized long getEndId() {
+    return myNextId;
+  }
+
+  public synchronized void add(@NotNull List<LogCatMessage> messages) throws IOException {
+    for (LogCatMessage message : messages) {
+      add(message);
+    }
+  }
+
+  /**
+   * Appends a message, unless the store has been closed.
+   */
+  public synchronized void add(@NotNull LogCatMessage message) throws IOException {
+    if (myClosed) {
+      return;
+    }
+    Segment segment = mySegments.peekLast();
+    if (segment == null || segment.size() == mySegmentSize) {
+      if (mySegments.size() == myMaxSegments) {
+        mySegments.removeFirst().close();
+      }
+      FileUtil.createDirectory(myDirectory);
+      segment = new Segment(new File(myDirectory, myNextId + ".segment"), myNextId);
+      mySegments.addLast(segment);
+    }
+    segment.add(message);
+    myNextId++;
+  }
+
+  /**
+   * @return the ids of the messages matching the query, in the order they were added.
+   */
+  @NotNull
+  public synchronized long[] search(@NotNull Query query) throws IOException {
+    TLongArrayList result = new TLongArrayList();
+    for (Segment segment : mySegments) {
+      segment.search(query, result);
+    }
+    return result.toNativeArray();
+  }
+
+  /**
+   * @return the message of the given id, or null if it has been evicted since it was found.
+   */
+  @Nullable
+  public synchronized LogCatMessage read(long id) throws IOException {
+    for (Segment segment : mySegments) {
+      if (id >= segment.myFirstId && id < segment.myFirstId + segment.size()) {
+        return segment.read((int)(id - segment.myFirstId));
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    myClosed = true;
+    try {
+      for (Segment segment : mySegments) {
+        segment.close();
+      }
+    }
+    finally {
+      mySegments.clear();
+      FileUtil.delete(myDirectory);
+    }
+  }
+
+  /**
+   * @return the lower case text, as indexed and searched. Both go through this method so that they agree on the case of every character.
+   */
+  @NotNull
+  private static String toLowerCase(@NotNull String text) {
+    return StringUtil.toLowerCase(text);
+  }
+
+  private static long getTrigram(@NotNull String lowerCaseText, int index) {
+    return (long)lowerCaseText.charAt(index) << 32 | (long)lowerCaseText.charAt(index + 1) << 16 | lowerCaseText.charAt(index + 2);
+  }
+
+  /**
+   * @return the ids in both sorted lists, where a null {@code candidates} stands for all ids, and a null {@code ids} for none.
+   */
+  @NotNull
+  private static TIntArrayList intersect(@Nullable TIntArrayList candidates, @Nullable TIntArrayList ids) {
+    if (ids == null) {
+      return new TIntArrayList(0);
+    }
+    if (candidates == null) {
+      return ids;
+    }
+    TIntArrayList result = new TIntArrayList(Math.min(candidates.size(), ids.size()));
+    int i = 0;
+    int j = 0;
+    while (i < candidates.size() && j < ids.size()) {
+      int candidate = candidates.get(i);
+      int id = ids.get(j);
+      if (candidate == id) {
+        result.add(candidate);
+        i++;
+        j++;
+      }
+      else if (candidate < id) {
+        i++;
+      }
+      else {
+        j++;
+      }
+    }
+    return result;
+  }
+
+  private static void writeString(@NotNull DataOutput out, @NotNull String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @NotNull
+  private static String readString(@NotNull DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Consecutive messages of the store, in their own file and with their own indexes. Messages are identified by their position in the
+   * segment, and the trigram index lists the blocks of {@link #BLOCK_SIZE} messages rather than the messages.
+   */
+  private static final class Segment {
+    private final long myFirstId;
+    @NotNull private final File myFile;
+    @NotNull private final DataOutputStream myOutput;
+    @NotNull private final RandomAccessFile myInput;
+    @NotNull private final ByteArrayOutputStream myRecordBytes = new ByteArrayOutputStream();
+    @NotNull private final DataOutputStream myRecord = new DataOutputStream(myRecordBytes);
+    private long myFileLength;
+    private boolean myOutputFlushed = true;
+
+    @NotNull private final TLongArrayList myOffsets = new TLongArrayList();
+    @NotNull private final TIntArrayList myPriorities = new TIntArrayList();
+    @NotNull private final TIntObjectHashMap<TIntArrayList> myMessagesByPid = new TIntObjectHashMap<>();
+    @NotNull private final Map<String, TIntArrayList> myMessagesByTag = new THashMap<>();
+    @NotNull private final TLongObjectHashMap<TIntArrayList> myBlocksByTrigram = new TLongObjectHashMap<>();
+
+    private Segment(@NotNull File file, long firstId) throws IOException {
+      myFile = file;
+      myFirstId = firstId;
+      myOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      myInput = new RandomAccessFile(file, "r");
+    }
+
+    private int size() {
+      return myOffsets.size();
+    }
+
+    private void add(@NotNull LogCatMessage message) throws IOException {
+      int id = myOffsets.size();
+      LogCatHeader header = message.getHeader();
+
+      // Records are prefixed with their length, so that they are read back in a single call.
+      myRecordBytes.reset();
+      myRecord.writeChar(header.getLogLevel().getPriorityLetter());
+      myRecord.writeInt(header.getPid());
+      myRecord.writeInt(header.getTid());
+      writeString(myRecord, header.getAppName());
+      writeString(myRecord, header.getTag());
+      writeString(myRecord, header.getTimestamp().toString());
+      writeString(myRecord, message.getMessage());
+      myOutput.writeInt(myRecordBytes.size());
+      myRecordBytes.writeTo(myOutput);
+      myOffsets.add(myFileLength);
+      myFileLength += 4 + myRecordBytes.size();
+      myOutputFlushed = false;
+
+      myPriorities.add(header.getLogLevel().getPriority());
+      addToIndex(myMessagesByPid, header.getPid(), id);
+      TIntArrayList tagMessages = myMessagesByTag.get(header.getTag());
+      if (tagMessages == null) {
+        tagMessages = new TIntArrayList();
+        myMessagesByTag.put(header.getTag(), tagMessages);
+      }
+      tagMessages.add(id);
+
+      int block = id / BLOCK_SIZE;
+      String text = toLowerCase(message.getMessage());
+      for (int i = 0; i + TRIGRAM_LENGTH <= text.length(); i++) {
+        long trigram = getTrigram(text, i);
+        TIntArrayList blocks = myBlocksByTrigram.get(trigram);
+        if (blocks == null) {
+          blocks = new TIntArrayList(1);
+          myBlocksByTrigram.put(trigram, blocks);
+        }
+        // Messages are added in increasing order, so a repeated trigram can only repeat the last block.
+        if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block) {
+          blocks.add(block);
+        }
+      }
+    }
+
+    private void search(@NotNull Query query, @NotNull TLongArrayList result) throws IOException {
+      // Candidate messages from the pid and tag indexes, or null for all messages.
+      TIntArrayList candidates = null;
+      if (query.myPid != null) {
+        candidates = intersect(null, myMessagesByPid.get(query.myPid));
+      }
+      if (query.myTag != null) {
+        candidates = intersect(candidates, myMessagesByTag.get(query.myTag));
+      }
+      // Candidate blocks from the trigram index, or null for all blocks.
+      String text = query.myText != null ? toLowerCase(query.myText) : null;
+      TIntArrayList blocks = null;
+      if (text != null) {
+        for (int i = 0; i + TRIGRAM_LENGTH <= text.length(); i++) {
+          blocks = intersect(blocks, myBlocksByTrigram.get(getTrigram(text, i)));
+        }
+      }
+
+      if (candidates == null && blocks != null) {
+        for (int i = 0; i < blocks.size(); i++) {
+          int end = Math.min((blocks.get(i) + 1) * BLOCK_SIZE, size());
+          for (int id = blocks.get(i) * BLOCK_SIZE; id < end; id++) {
+            addIfMatches(id, query, text, result);
+          }
+        }
+        return;
+      }
+
+      int count = candidates != null ? candidates.size() : size();
+      int blockIndex = 0;
+      for (int i = 0; i < count; i++) {
+        int id = candidates != null ? candidates.get(i) : i;
+        if (blocks != null) {
+          // Both lists are sorted, so the block of the candidate can only be at or after the block of the previous one.
+          while (blockIndex < blocks.size() && blocks.get(blockIndex) < id / BLOCK_SIZE) {
+            blockIndex++;
+          }
+          if (blockIndex == blocks.size()) {
+            return;
+          }
+          if (blocks.get(blockIndex) != id / BLOCK_SIZE) {
+            continue;
+          }
+        }
+        addIfMatches(id, query, text, result);
+      }
+    }
+
+    private void addIfMatches(int id, @NotNull Query query, @Nullable String lowerCaseText, @NotNull TLongArrayList result)
+      throws IOException {
+      if (query.myMinLevel != null && myPriorities.get(id) < query.myMinLevel.getPriority()) {
+        return;
+      }
+      // Trigrams only tell that a message of the block may contain the text, so the message has to be read to be sure.
+      if (lowerCaseText != null && !toLowerCase(read(id).getMessage()).contains(lowerCaseText)) {
+        return;
+      }
+      result.add(myFirstId + id);
+    }
+
+    @NotNull
+    private LogCatMessage read(int id) throws IOException {
+      if (!myOutputFlushed) {
+        myOutput.flush();
+        myOutputFlushed = true;
+      }
+      myInput.seek(myOffsets.get(id));
+      byte[] record = new byte[myInput.readInt()];
+      myInput.readFully(record);
+
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+      Log.LogLevel level = Log.LogLevel.getByLetter(in.readChar());
+      int pid = in.readInt();
+      int tid = in.readInt();
+      String appName = readString(in);
+      String tag = readString(in);
+      LogCatTimestamp timestamp = LogCatTimestamp.fromString(readString(in));
+      String message = readString(in);
+      return new LogCatMessage(new LogCatHeader(level, pid, tid, appName, tag, timestamp), message);
+    }
+
+    private void close() throws IOException {
+      try {
+        myOutput.close();
+        myInput.close();
+      }
+      finally {
+        FileUtil.delete(myFile);
+      }
+    }
+
+    private static void addToIndex(@NotNull TIntObjectHashMap<TIntArrayList> index, int key, int id) {
+      TIntArrayList ids = index.get(key);
+      if (ids == null) {
+        ids = new TIntArrayList();
+        index.put(key, ids);
+      }
+      ids.add(id);
+    }
+  }
+
+  /**
+   * Criteria of a {@link #search(Query)}, all of which must be met by the messages found. Use a {@link Builder} to construct a query.
+   */
+  static final class Query {
+    @Nullable private final Log.LogLevel myMinLevel;
+    @Nullable private final Integer myPid;
+    @Nullable private final String myTag;
+    @Nullable private final String myText;
+
+    static final class Builder {
+      @Nullable private Log.LogLevel myMinLevel;
+      @Nullable private Integer myPid;
+      @Nullable private String myTag;
+      @Nullable private String myText;
+
+      /**
+       * Only matches messages of this level or above.
+       */
+      Builder setMinLevel(@Nullable Log.LogLevel minLevel) {
+        myMinLevel = minLevel;
+        return this;
+      }
+
+      Builder setPid(@Nullable Integer pid) {
+        myPid = pid;
+        return this;
+      }
+
+      Builder setTag(@Nullable String tag) {
+        myTag = tag;
+        return this;
+      }
+
+      /**
+       * Only matches messages containing this text, ignoring case.
+       */
+      Builder setText(@Nullable String text) {
+        myText = StringUtil.isEmpty(text) ? null : text;
+        return this;
+      }
+
+      @NotNull
+      Query build() {
+        return new Query(myMinLevel, myPid, myTag, myText);
+      }
+    }
+
+    private Query(@Nullable Log.LogLevel minLevel, @Nullable Integer pid, @Nullable String tag, @Nullable String text) {
+      myMinLevel = minLevel;
+      myPid = pid;
+      myTag = tag;
+      myText = text;
+    }
+  }
+}
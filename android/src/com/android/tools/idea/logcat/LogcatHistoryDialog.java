@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.SearchTextField;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBList;
+import com.intellij.util.Alarm;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.android.util.AndroidBundle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import java.awt.*;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Searches the {@link LogcatHistory} of a device by level, process and text, and lists the messages found.
+ *
+ * The list only holds the ids of the messages found. Its rows have a fixed size, so that only the rows scrolled into view are read from
+ * the history and rendered, however many messages are found.
+ */
+final class LogcatHistoryDialog extends DialogWrapper {
+  /**
+   * Delay after the last change of the criteria before searching again.
+   */
+  private static final int SEARCH_DELAY_MS = 300;
+
+  /**
+   * Number of messages read from the history that are kept, which is enough for a few screens of rows.
+   */
+  private static final int CACHE_SIZE = 512;
+
+  @NotNull private final LogcatHistory myHistory;
+  @Nullable private final Integer myPid;
+
+  @NotNull private final SearchTextField mySearchField = new SearchTextField(false);
+  @NotNull private final ComboBox myLevelComboBox = new ComboBox(new DefaultComboBoxModel(Log.LogLevel.values()));
+  @NotNull private final JBCheckBox myPidCheckBox = new JBCheckBox();
+  @NotNull private final JBLabel myCountLabel = new JBLabel();
+  @NotNull private final MessageListModel myListModel = new MessageListModel();
+  @NotNull private final JBList myList = new JBList(myListModel);
+  @NotNull private final Alarm mySearchAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, getDisposable());
+
+  /**
+   * @param pid the process messages can be restricted to, typically the selected one, or null if there is none.
+   */
+  LogcatHistoryDialog(@NotNull Project project,
+                      @NotNull LogcatHistory history,
+                      @Nullable Integer pid,
+                      @Nullable String text,
+                      @Nullable Log.LogLevel minLevel) {
+    super(project, false, IdeModalityType.MODELESS);
+    myHistory = history;
+    myPid = pid;
+    setTitle(AndroidBundle.message("android.logcat.history.title"));
+
+    mySearchField.setText(text != null ? text : "");
+    myLevelComboBox.setSelectedItem(minLevel != null ? minLevel : Log.LogLevel.VERBOSE);
+    myPidCheckBox.setText(AndroidBundle.message("android.logcat.history.pid", pid != null ? pid : ""));
+    myPidCheckBox.setSelected(pid != null);
+    myPidCheckBox.setEnabled(pid != null);
+
+    mySearchField.addDocumentListener(new DocumentAdapter() {
+      @Override
+      protected void textChanged(DocumentEvent e) {
+        scheduleSearch();
+      }
+    });
+    myLevelComboBox.addItemListener(e -> scheduleSearch());
+    myPidCheckBox.addItemListener(e -> scheduleSearch());
+
+    // A prototype gives every row the same size, which JList would otherwise compute by rendering all of them.
+    myList.setPrototypeCellValue(AndroidLogcatFormatter.formatContinuation(new String(new char[200]).replace('\0', 'm')));
+    myList.setCellRenderer(new ColoredListCellRenderer<Object>() {
+      @Override
+      protected void customizeCellRenderer(@NotNull JList list, Object value, int index, boolean selected, boolean hasFocus) {
+        if (value instanceof LogCatMessage) {
+          LogCatMessage message = (LogCatMessage)value;
+          append(AndroidLogcatFormatter.formatMessageFull(message.getHeader(), message.getMessage()));
+        }
+        else if (value instanceof String) {
+          append((String)value);
+        }
+        else {
+          append(AndroidBundle.message("android.logcat.history.evicted"), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+        }
+      }
+    });
+
+    init();
+    scheduleSearch();
+  }
+
+  @Nullable
+  @Override
+  protected JComponent createCenterPanel() {
+    JPanel criteria = new JPanel(new FlowLayout(FlowLayout.LEFT, JBUI.scale(5), 0));
+    criteria.add(mySearchField);
+    criteria.add(myLevelComboBox);
+    criteria.add(myPidCheckBox);
+    criteria.add(myCountLabel);
+
+    JPanel panel = new JPanel(new BorderLayout(0, JBUI.scale(5)));
+    panel.add(criteria, BorderLayout.NORTH);
+    JScrollPane scrollPane = ScrollPaneFactory.createScrollPane(myList);
+    scrollPane.setPreferredSize(JBUI.size(900, 500));
+    panel.add(scrollPane, BorderLayout.CENTER);
+    return panel;
+  }
+
+  @Nullable
+  @Override
+  public JComponent getPreferredFocusedComponent() {
+    return mySearchField;
+  }
+
+  @NotNull
+  @Override
+  protected Action[] createActions() {
+    return new Action[]{getCancelAction()};
+  }
+
+  private void scheduleSearch() {
+    LogcatHistory.Query query = new LogcatHistory.Query.Builder()
+      .setText(mySearchField.getText())
+      .setMinLevel((Log.LogLevel)myLevelComboBox.getSelectedItem())
+      .setPid(myPidCheckBox.isSelected() ? myPid : null)
+      .build();
+    mySearchAlarm.cancelAllRequests();
+    mySearchAlarm.addRequest(() -> {
+      long[] ids;
+      try {
+        ids = myHistory.search(query);
+      }
+      catch (IOException e) {
+        Logger.getInstance(LogcatHistoryDialog.class).warn("Failed to search the logcat history", e);
+        ids = new long[0];
+      }
+      long[] found = ids;
+      ApplicationManager.getApplication().invokeLater(() -> {
+        myListModel.setIds(found);
+        myCountLabel.setText(AndroidBundle.message("android.logcat.history.count", found.length));
+        if (found.length > 0) {
+          // Shows the most recent messages first, as the console does.
+          myList.ensureIndexIsVisible(found.length - 1);
+        }
+      }, ModalityState.any(), o -> isDisposed());
+    }, SEARCH_DELAY_MS);
+  }
+
+  /**
+   * Messages of the ids found, read from the history when their row is shown. Evicted messages are shown as null.
+   */
+  private final class MessageListModel extends AbstractListModel {
+    @NotNull private long[] myIds = new long[0];
+    @NotNull private final Map<Long, LogCatMessage> myCache = new LinkedHashMap<Long, LogCatMessage>(CACHE_SIZE, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, LogCatMessage> eldest) {
+        return size() > CACHE_SIZE;
+      }
+    };
+
+    private void setIds(@NotNull long[] ids) {
+      int oldSize = myIds.length;
+      myIds = ids;
+      myCache.clear();
+      if (oldSize > 0) {
+        fireIntervalRemoved(this, 0, oldSize - 1);
+      }
+      if (ids.length > 0) {
+        fireIntervalAdded(this, 0, ids.length - 1);
+      }
+    }
+
+    @Override
+    public int getSize() {
+      return myIds.length;
+    }
+
+    @Nullable
+    @Override
+    public Object getElementAt(int index) {
+      long id = myIds[index];
+      if (myCache.containsKey(id)) {
+        return myCache.get(id);
+      }
+      LogCatMessage message;
+      try {
+        message = myHistory.read(id);
+      }
+      catch (IOException e) {
+        Logger.getInstance(LogcatHistoryDialog.class).warn("Failed to read the logcat history", e);
+        message = null;
+      }
+      myCache.put(id, message);
+      return message;
+    }
+  }
+}
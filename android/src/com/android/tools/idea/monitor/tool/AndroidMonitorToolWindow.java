@@ -44,7 +44,7 @@ public class AndroidMonitorToolWindow implements Disposable {
     try {
       myProject = project;
       StudioProfilerDeviceManager manager = new StudioProfilerDeviceManager(project);
-      myProfilers = new StudioProfilers(manager.getClient());
+      myProfilers = new StudioProfilers(manager.getClient(), ApplicationManager.getApplication()::invokeLater);
       myProfilers.setPreferredProcessName(getPreferredProcessName(project));
       StudioProfilersView view = new StudioProfilersView(myProfilers);
       myComponent = view.getComponent();
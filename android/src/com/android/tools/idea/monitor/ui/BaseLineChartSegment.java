@@ -20,7 +20,7 @@ import com.android.tools.adtui.chart.linechart.LineChart;
 import com.android.tools.adtui.chart.linechart.LineConfig;
 import com.android.tools.adtui.common.formatter.BaseAxisFormatter;
 import com.android.tools.adtui.model.*;
-import com.android.tools.datastore.DataStoreSeries;
+import com.android.tools.datastore.NumericDataStoreSeries;
 import com.android.tools.datastore.SeriesDataStore;
 import com.android.tools.datastore.SeriesDataType;
 import com.android.tools.idea.monitor.tool.ProfilerEventListener;
@@ -153,6 +153,8 @@ public abstract class BaseLineChartSegment extends BaseSegment {
     }
 
     mLineChart = new LineChart();
+    // The segments show long-running series at their width only, reduce them before their geometry is built.
+    mLineChart.setReduceSourceData(true);
     mGrid = new GridComponent();
     mGrid.addAxis(mLeftAxis);
     mGrid.setVisible(false);
@@ -353,7 +355,7 @@ public abstract class BaseLineChartSegment extends BaseSegment {
    * Adds a line to {@link #mLineChart} that is associated with the left axis.
    */
   protected void addLeftAxisLine(SeriesDataType type, String label, LineConfig lineConfig) {
-    addLeftAxisLine(type, label, lineConfig, new DataStoreSeries<>(mSeriesDataStore, type));
+    addLeftAxisLine(type, label, lineConfig, new NumericDataStoreSeries<Long>(mSeriesDataStore, type));
   }
 
   protected void addLeftAxisLine(SeriesDataType type, String label, LineConfig lineConfig, DataSeries series) {
@@ -364,7 +366,7 @@ public abstract class BaseLineChartSegment extends BaseSegment {
    * Adds a line to {@link #mLineChart} that is associated with the right axis.
    */
   protected void addRightAxisLine(SeriesDataType type, String label, LineConfig lineConfig) {
-    addRightAxisLine(type, label, lineConfig, new DataStoreSeries<>(mSeriesDataStore, type));
+    addRightAxisLine(type, label, lineConfig, new NumericDataStoreSeries<Long>(mSeriesDataStore, type));
   }
   protected void addRightAxisLine(SeriesDataType type, String label, LineConfig lineConfig, DataSeries series) {
     if (mRightAxisFormatter == null) {
@@ -16,6 +16,7 @@
 package com.android.tools.idea.monitor.ui.network.model;
 
 import com.android.tools.datastore.*;
+import com.android.tools.datastore.storage.LongSeriesStore;
 import com.android.tools.idea.monitor.ui.network.view.NetworkRadioSegment;
 import com.android.tools.profiler.proto.NetworkProfiler;
 import com.android.tools.profiler.proto.NetworkServiceGrpc;
@@ -36,9 +37,7 @@ public class NetworkDataPoller extends Poller {
 
   private final SpeedData mySpeedData = new SpeedData();
 
-  private final TLongArrayList myConnectionsTimeData = new TLongArrayList();
-
-  private final TLongArrayList myConnectionsData = new TLongArrayList();
+  private final LongSeriesStore myConnectionsData;
 
   private final TLongArrayList myRadioTimeData = new TLongArrayList();
   private final TLongArrayList myNetworkTypeTimeData = new TLongArrayList();
@@ -56,6 +55,7 @@ public class NetworkDataPoller extends Poller {
   public NetworkDataPoller(@NotNull SeriesDataStore dataStore, int pid) {
     super(dataStore, POLLING_DELAY_NS);
     myPid = pid;
+    myConnectionsData = dataStore.createLongSeries(SeriesDataType.NETWORK_CONNECTIONS);
     registerAdapters();
   }
 
@@ -63,7 +63,7 @@ public class NetworkDataPoller extends Poller {
     myDataStore.registerAdapter(SeriesDataType.NETWORK_RECEIVED, new LongDataAdapter(mySpeedData.getTimeData(), mySpeedData.getReceived()));
     myDataStore.registerAdapter(SeriesDataType.NETWORK_SENT, new LongDataAdapter(mySpeedData.getTimeData(), mySpeedData.getSent()));
 
-    myDataStore.registerAdapter(SeriesDataType.NETWORK_CONNECTIONS, new LongDataAdapter(myConnectionsTimeData, myConnectionsData));
+    myDataStore.registerAdapter(SeriesDataType.NETWORK_CONNECTIONS, new LongSeriesDataAdapter(myConnectionsData));
 
     myDataStore.registerAdapter(SeriesDataType.NETWORK_RADIO, new DataAdapterImpl<>(myRadioTimeData, myRadioData));
     myDataStore.registerAdapter(SeriesDataType.NETWORK_TYPE, new DataAdapterImpl<>(myNetworkTypeTimeData, myNetworkTypeData));
@@ -100,8 +100,7 @@ public class NetworkDataPoller extends Poller {
         mySpeedData.add(data.getSpeedData().getSent(), data.getSpeedData().getReceived(), timestampUs);
       }
       else if (data.getDataCase() == NetworkProfiler.NetworkProfilerData.DataCase.CONNECTION_DATA) {
-        myConnectionsTimeData.add(timestampUs);
-        myConnectionsData.add(data.getConnectionData().getConnectionNumber());
+        myConnectionsData.add(timestampUs, data.getConnectionData().getConnectionNumber());
       }
       else if (data.getDataCase() == NetworkProfiler.NetworkProfilerData.DataCase.CONNECTIVITY_DATA) {
         // TODO: consider using RadioState enum from proto
@@ -121,6 +121,24 @@ public class CapturePanel extends JPanel implements DesignerEditorPanelFacade {
     });
   }
 
+  /**
+   * Shows a preview of the contents under the loading indicator, e.g. data cached from a previous load. The preview is replaced by the
+   * main panel once {@link #setEditorPanel} is called.
+   */
+  public void setLoadingPreview(@NotNull final JComponent preview) {
+    UIUtil.invokeLaterIfNeeded(() -> {
+      if (isDoneLoading()) {
+        return;
+      }
+      removeAll();
+      setLayout(new BorderLayout());
+      add(myProgressIndicator.getComponent(), BorderLayout.NORTH);
+      add(preview, BorderLayout.CENTER);
+      revalidate();
+      repaint();
+    });
+  }
+
   @Override
   public ThreeComponentsSplitter getContentSplitter() {
     return myThreeComponentsSplitter;
@@ -30,6 +30,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
 import gnu.trove.TIntObjectHashMap;
 import gnu.trove.TObjectIntHashMap;
 import org.gradle.tooling.model.UnsupportedMethodException;
@@ -39,13 +40,18 @@ import org.jetbrains.android.util.AndroidUtils;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.android.SdkConstants.DOT_AAR;
 import static com.android.SdkConstants.FD_RES;
 import static com.android.tools.idea.LogAnonymizerUtil.anonymizeClassName;
+import static com.intellij.util.ExceptionUtil.rethrowAllAsUnchecked;
 import static org.jetbrains.android.facet.ResourceFolderManager.addAarsFromModuleLibraries;
 
 /**
@@ -54,6 +60,8 @@ import static org.jetbrains.android.facet.ResourceFolderManager.addAarsFromModul
  */
 public class AppResourceRepository extends MultiResourceRepository {
   private static final Logger LOG = Logger.getInstance(AppResourceRepository.class);
+  /** Maximum number of AAR libraries parsed concurrently. */
+  private static final int MAX_LIBRARY_THREADS = 4;
 
   private final AndroidFacet myFacet;
   private List<FileResourceRepository> myLibraries;
@@ -163,13 +171,48 @@ public class AppResourceRepository extends MultiResourceRepository {
       }
     }
 
-    List<FileResourceRepository> resources = Lists.newArrayListWithExpectedSize(aarDirs.size());
+    // Parse the libraries concurrently, but keep them in the sorted order.
+    int maxThreads = Math.min(MAX_LIBRARY_THREADS, Runtime.getRuntime().availableProcessors());
+    BoundedTaskExecutor executor = new BoundedTaskExecutor(PooledThreadExecutor.INSTANCE, maxThreads);
+    List<Future<FileResourceRepository>> jobs = Lists.newArrayListWithExpectedSize(dirs.size());
     for (File root : dirs) {
-      resources.add(FileResourceRepository.get(root, aarDirs.get(root)));
+      String libraryName = aarDirs.get(root);
+      jobs.add(executor.submit(() -> loadLibrary(root, libraryName)));
+    }
+
+    List<FileResourceRepository> resources = Lists.newArrayListWithExpectedSize(dirs.size());
+    for (int i = 0; i < jobs.size(); i++) {
+      try {
+        resources.add(jobs.get(i).get());
+      }
+      catch (ExecutionException e) {
+        rethrowAllAsUnchecked(e.getCause());
+      }
+      catch (InterruptedException e) {
+        // Keep the interrupt for the caller, but load the remaining libraries on this thread so that the cached list is complete.
+        Thread.currentThread().interrupt();
+        for (int j = i; j < jobs.size(); j++) {
+          jobs.get(j).cancel(false);
+          File root = dirs.get(j);
+          resources.add(loadLibrary(root, aarDirs.get(root)));
+        }
+        break;
+      }
     }
     return resources;
   }
 
+  @NotNull
+  private static FileResourceRepository loadLibrary(@NotNull File root, @Nullable String libraryName) {
+    long start = System.nanoTime();
+    FileResourceRepository repository = FileResourceRepository.get(root, libraryName);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("  Loaded %1$s in %2$d ms", anonymizeClassName(libraryName),
+                              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+    return repository;
+  }
+
   @NotNull
   private static Map<File, String> findAarLibraries(@NotNull AndroidFacet facet, @NotNull List<AndroidFacet> dependentFacets) {
     // Use the gradle model if available, but if not, fall back to using plain IntelliJ library dependencies
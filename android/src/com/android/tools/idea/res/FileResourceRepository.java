@@ -69,21 +69,36 @@ public class FileResourceRepository extends LocalResourceRepository {
     myFile = file;
   }
 
+  /**
+   * Returns the repository of the given library, parsing it if it isn't cached. Libraries may be parsed concurrently, but the cache
+   * is only accessed under its lock, and when two threads parse the same library the first one to finish wins.
+   */
   @NotNull
   static FileResourceRepository get(@NotNull final File file, @Nullable String libraryName) {
-    FileResourceRepository repository = ourCache.get(file);
-    if (repository == null) {
-      repository = create(file, libraryName);
-      ourCache.put(file, repository);
+    synchronized (ourCache) {
+      FileResourceRepository repository = ourCache.get(file);
+      if (repository != null) {
+        return repository;
+      }
     }
 
+    FileResourceRepository repository = create(file, libraryName);
+    synchronized (ourCache) {
+      FileResourceRepository cached = ourCache.get(file);
+      if (cached != null) {
+        return cached;
+      }
+      ourCache.put(file, repository);
+    }
     return repository;
   }
 
   @Nullable
   @VisibleForTesting
   static FileResourceRepository getCached(@NotNull final File file) {
-    return ourCache.get(file);
+    synchronized (ourCache) {
+      return ourCache.get(file);
+    }
   }
 
   @NotNull
@@ -115,7 +130,9 @@ public class FileResourceRepository extends LocalResourceRepository {
   }
 
   public static void reset() {
-    ourCache.clear();
+    synchronized (ourCache) {
+      ourCache.clear();
+    }
   }
 
   public File getResourceDirectory() {
@@ -197,6 +197,18 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
     }
   }
 
+  /**
+   * Notifies the parents that only the items with the given type and name have changed, which lets them update just that entry of their
+   * merged maps rather than merging all the items of the type again.
+   */
+  protected void invalidateItemCaches(@NotNull ResourceType type, @NotNull String name) {
+    if (myParents != null) {
+      for (MultiResourceRepository parent : myParents) {
+        parent.invalidateCache(this, type, name);
+      }
+    }
+  }
+
   /** If this repository has not already been visited, merge its items of the given type into result. */
   protected final void merge(@NotNull Set<LocalResourceRepository> visited,
                              @NotNull ResourceType type,
@@ -230,6 +242,40 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
     }
   }
 
+  /**
+   * If this repository has not already been visited, merge its items of the given type and name into result, the same way
+   * {@link #merge(Set, ResourceType, SetMultimap, ListMultimap)} merges all the items of the type.
+   */
+  protected final void merge(@NotNull Set<LocalResourceRepository> visited,
+                             @NotNull ResourceType type,
+                             @NotNull String name,
+                             @NotNull Set<String> seenQualifiers,
+                             @NotNull ListMultimap<String, ResourceItem> result) {
+    if (visited.contains(this)) {
+      return;
+    }
+    visited.add(this);
+    doMerge(visited, type, name, seenQualifiers, result);
+  }
+
+  protected void doMerge(@NotNull Set<LocalResourceRepository> visited,
+                         @NotNull ResourceType type,
+                         @NotNull String name,
+                         @NotNull Set<String> seenQualifiers,
+                         @NotNull ListMultimap<String, ResourceItem> result) {
+    ListMultimap<String, ResourceItem> items = getMap(type, false);
+    if (items == null) {
+      return;
+    }
+    for (ResourceItem item : items.get(name)) {
+      String qualifiers = item.getQualifiers();
+      if (!result.containsKey(name) || type == ResourceType.ID || !seenQualifiers.contains(qualifiers)) {
+        result.put(name, item);
+        seenQualifiers.add(qualifiers);
+      }
+    }
+  }
+
   protected boolean computeHasResourcesOfType(@NotNull ResourceType type, @NotNull Set<LocalResourceRepository> visited) {
     if (!visited.add(this)) {
       return false;
@@ -213,6 +213,17 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
     }
   }
 
+  @Override
+  protected void doMerge(@NotNull Set<LocalResourceRepository> visited,
+                         @NotNull ResourceType type,
+                         @NotNull String name,
+                         @NotNull Set<String> seenQualifiers,
+                         @NotNull ListMultimap<String, ResourceItem> result) {
+    for (int i = myChildren.size() - 1; i >= 0; i--) {
+      myChildren.get(i).merge(visited, type, name, seenQualifiers, result);
+    }
+  }
+
   @Override
   public boolean hasResourcesOfType(@NotNull ResourceType type) {
     if (myChildren.size() == 1) {
@@ -280,6 +291,27 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
     invalidateItemCaches(types);
   }
 
+  /**
+   * Notifies this delegating repository that the given dependent repository has only changed the items of the given type and name.
+   * If the items of this type are cached, only the entry of that name is merged again, in place, from all the children.
+   */
+  public void invalidateCache(@NotNull LocalResourceRepository repository, @NotNull ResourceType type, @NotNull String name) {
+    assert myChildren.contains(repository) : repository;
+
+    synchronized (this) {
+      ListMultimap<String, ResourceItem> map = myCachedTypeMaps.get(type);
+      if (map != null) {
+        map.removeAll(name);
+        merge(Sets.newHashSet(), type, name, Sets.newHashSet(), map);
+      }
+      myCachedHasResourcesOfType.remove(type);
+    }
+    // The cached type maps, which myItems refers to, are still up to date, and with a single child, myItems is the child's own map.
+    myGeneration = ourModificationCounter.incrementAndGet();
+
+    invalidateItemCaches(type, name);
+  }
+
   @Override
   @VisibleForTesting
   public boolean isScanPending(@NonNull PsiFile psiFile) {
@@ -49,6 +49,7 @@ import com.intellij.psi.*;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.*;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.sdk.AndroidTargetData;
@@ -56,15 +57,20 @@ import org.jetbrains.android.util.AndroidResourceUtil;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.android.SdkConstants.*;
 import static com.android.resources.ResourceFolderType.*;
 import static com.android.tools.lint.detector.api.LintUtils.stripIdPrefix;
+import static com.intellij.util.ExceptionUtil.rethrowAllAsUnchecked;
 
 /**
  * Remaining work:
@@ -90,6 +96,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
   private Map<String, DataBindingInfo> myDataBindingResourceFiles = Maps.newHashMap();
   private long myDataBindingResourceFilesModificationCount = Long.MIN_VALUE;
   private final Object SCAN_LOCK = new Object();
+  /** Maximum number of resource folders scanned concurrently by the initial scan. */
+  private static final int MAX_SCAN_THREADS = 4;
   private Set<PsiFile> myPendingScans;
   private InitialScanState myInitialScanState;
 
@@ -104,15 +112,15 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     myResourceDir = resourceDir;
     myLibraryName = libraryName;
 
-    ResourceMerger merger = loadPreviousStateIfExists();
-    myInitialScanState = new InitialScanState(merger, VfsUtilCore.virtualToIoFile(myResourceDir));
+    loadPreviousStateIfExists();
+    myInitialScanState = new InitialScanState(myResourceDir.getName(), myLibraryName, VfsUtilCore.virtualToIoFile(myResourceDir));
     scanRemainingFiles();
     Application app = ApplicationManager.getApplication();
     // For now, automatically save the state. We may want to move this out to a separate task.
     if (!hasFreshFileCache() && !app.isUnitTestMode()) {
       saveStateToFile();
     }
-    // Clear some unneeded state (myInitialScanState's resource merger holds a second map of items).
+    // Clear some unneeded state.
     // Skip for unit tests, which may need to test saving separately (saving is normally skipped for unit tests).
     if (!app.isUnitTestMode()) {
       myInitialScanState = null;
@@ -135,7 +143,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
   }
 
   /**
-   * Saves the non-Psi XML state as a single blob for faster loading the second time
+   * Saves the non-Psi XML state as a single {@link ResourceFolderSnapshot} for faster loading the second time
    * by {@link #loadPreviousStateIfExists}.
    */
   void saveStateToFile() {
@@ -145,18 +153,14 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
       return;
     }
 
+    List<ResourceFile> resourceFiles = myResourceFiles.values().stream()
+      .filter(resourceFile -> !(resourceFile instanceof PsiResourceFile))
+      .collect(Collectors.toList());
     try {
-      ResourcePreprocessor preprocessor = new NoOpResourcePreprocessor();
-      File tempDirectory = FileUtil.createTempDirectory("resource", "tmp", false);
-      try {
-        MergeConsumer<ResourceItem> consumer = MergedResourceWriter.createWriterWithoutPngCruncher(
-          blobRoot, null, null, preprocessor, tempDirectory);
-        myInitialScanState.myResourceMerger.writeBlobToWithTimestamps(blobRoot, consumer);
-      } finally {
-        FileUtil.delete(tempDirectory);
-      }
+      ResourceFolderSnapshot.write(new File(blobRoot, ResourceFolderSnapshot.FILE_NAME), VfsUtilCore.virtualToIoFile(myResourceDir),
+                                   resourceFiles);
     }
-    catch (MergingException|IOException e) {
+    catch (IOException e) {
       LOG.error("Failed to saveStateToFile", e);
       // Delete the blob root just in case it's in an inconsistent state.
       FileUtil.delete(blobRoot);
@@ -167,82 +171,34 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
    * Reloads ResourceFile and ResourceItems which have not changed since the last {@link #saveStateToFile}.
    * Some Resource file and items may not be covered, so {@link #scanRemainingFiles} should be run
    * to load the rest of the items.
-   *
-   * @return the loaded ResourceMerger -- this can be used to save state again, if the cache isn't fresh
    */
-  private ResourceMerger loadPreviousStateIfExists() {
+  private void loadPreviousStateIfExists() {
     File blobRoot = ResourceFolderRepositoryFileCacheService.get().getResourceDir(
       myModule.getProject(), myResourceDir);
-    if (blobRoot == null || !blobRoot.exists()) {
-      return createFreshResourceMerger();
-    }
-    ResourceMerger merger = new ResourceMerger(0 /* minSdk */);
-    // This load may fail if the data is in an inconsistent state or the xml contains illegal
-    // resource names, which the Psi parser would otherwise allow, so load failures are not
-    // strictly an error.
-    // loadFromBlob will check timestamps for stale data and skip.
-    try {
-      if (!merger.loadFromBlob(blobRoot, false)) {
-        LOG.warn("failed to loadPreviousStateIfExists " + blobRoot);
-        return createFreshResourceMerger();
-      }
-    }
-    catch (MergingException e) {
-      LOG.warn("failed to loadPreviousStateIfExists " + blobRoot, e);
-      return createFreshResourceMerger();
-    }
-    // This temp resourceFiles set is just to avoid calling VfsUtil#findFileByIoFile a ton.
-    Set<ResourceFile> resourceFiles = Sets.newHashSet();
-    List<ResourceSet> resourceSets = merger.getDataSets();
-    if (resourceSets.size() != 1) {
-      LOG.error("Expecting exactly one resource set, but found " + resourceSets.size());
-      return createFreshResourceMerger();
+    if (blobRoot == null) {
+      return;
     }
-    ResourceSet dataSet = resourceSets.get(0);
-    List<File> sourceFiles = dataSet.getSourceFiles();
-    if (sourceFiles.size() != 1) {
-      LOG.error("Expecting exactly source files (res/ directories), but found " + sourceFiles.size());
-      return createFreshResourceMerger();
+    long start = System.nanoTime();
+    // The snapshot leaves out the files which changed since it was saved, and which are parsed again by the scan.
+    List<ResourceFile> resourceFiles = ResourceFolderSnapshot.read(new File(blobRoot, ResourceFolderSnapshot.FILE_NAME),
+                                                                   VfsUtilCore.virtualToIoFile(myResourceDir), myLibraryName);
+    if (resourceFiles == null) {
+      return;
     }
-    File myResourceDirFile = VfsUtilCore.virtualToIoFile(myResourceDir);
-    // Check that the dataSet we're loading actually corresponds to this resource directory.
-    // This could happen if there's a hash collision in naming the cache directory.
-    if (!FileUtil.filesEqual(sourceFiles.get(0), myResourceDirFile)) {
-      LOG.warn(String.format("source file %1$s, does not match resource dir %2$s",
-                             sourceFiles.get(0), myResourceDirFile));
-      return createFreshResourceMerger();
-    }
-    for (Map.Entry<String, ResourceItem> entry : dataSet.getDataMap().entries()) {
-      ResourceItem item = entry.getValue();
-      ResourceFile file = item.getSource();
-      if (file != null) {
-        if (!resourceFiles.contains(file)) {
-          VirtualFile vFile = VfsUtil.findFileByIoFile(file.getFile(), false);
-          if (vFile == null) {
-            // Cannot handle this item, mark it ignored to that it doesn't persist.
-            item.setIgnoredFromDiskMerge(true);
-            continue;
-          }
-          resourceFiles.add(file);
-          myResourceFiles.put(vFile, file);
-        }
-        ListMultimap<String, ResourceItem> map = getMap(item.getType(), true);
-        map.put(item.getName(), item);
-      } else {
-        // Cannot handle this item, mark it ignored to that it doesn't persist.
-        item.setIgnoredFromDiskMerge(true);
+    for (ResourceFile resourceFile : resourceFiles) {
+      VirtualFile vFile = VfsUtil.findFileByIoFile(resourceFile.getFile(), false);
+      if (vFile == null) {
+        continue;
+      }
+      myResourceFiles.put(vFile, resourceFile);
+      for (ResourceItem item : resourceFile.getItems()) {
+        getMap(item.getType(), true).put(item.getName(), item);
       }
     }
-    return merger;
-  }
-
-  private ResourceMerger createFreshResourceMerger() {
-    ResourceMerger merger = new ResourceMerger(0 /* minSdk */);
-    ResourceSet myData = new ResourceSet(myResourceDir.getName(), myLibraryName, false /* validateEnabled */);
-    File resourceDir = VfsUtilCore.virtualToIoFile(myResourceDir);
-    myData.addSource(resourceDir);
-    merger.addDataSet(myData);
-    return merger;
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("Loaded %1$d files of %2$s from the file cache in %3$d ms", resourceFiles.size(), myResourceDir.getPath(),
+                              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
   }
 
   /**
@@ -268,51 +224,32 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     int numXml; // Doesn't count files that are explicitly skipped
     int numXmlReparsed;
 
-    final ResourceMerger myResourceMerger;
-    final ResourceSet myResourceSet;
+    final String myName;
+    @Nullable final String myLibraryName;
     final ILogger myILogger;
     final File myResourceDir;
     final Collection<PsiFileResourceQueueEntry> myPsiFileResourceQueue = new ArrayList<>();
     final Collection<PsiValueResourceQueueEntry> myPsiValueResourceQueue = new ArrayList<>();
 
-    public InitialScanState(ResourceMerger merger, File resourceDir) {
-      myResourceMerger = merger;
-      assert myResourceMerger.getDataSets().size() == 1;
-      myResourceSet = myResourceMerger.getDataSets().get(0);
-      myResourceSet.setShouldParseResourceIds(true);
-      myResourceSet.setDontNormalizeQualifiers(true);
-      myResourceSet.setTrackSourcePositions(false);
+    public InitialScanState(String name, @Nullable String libraryName, File resourceDir) {
+      myName = name;
+      myLibraryName = libraryName;
       myILogger = new LogWrapper(LOG);
       myResourceDir = resourceDir;
     }
 
-    public void countCacheHit() {
-      ++numXml;
-    }
-
-    public void countCacheMiss() {
-      ++numXml;
-      ++numXmlReparsed;
-    }
-
     /**
-     * Load a ResourceFile into the resource merger's resource set and return it.
-     *
-     * @param file a resource XML file to load and parse
-     * @return the resulting ResourceFile, if there is no parse error.
-     * @throws MergingException
+     * Creates a resource set to parse resource files with. A resource set is not thread safe, so each folder scanned concurrently
+     * parses its files with its own set, see {@link FolderScanResult#loadFile}.
      */
-    @Nullable
-    ResourceFile loadFile(File file) throws MergingException {
-      return myResourceSet.loadFile(myResourceDir, file, myILogger);
-    }
-
-    public void queuePsiFileResourceScan(PsiFileResourceQueueEntry data) {
-      myPsiFileResourceQueue.add(data);
-    }
-
-    public void queuePsiValueResourceScan(PsiValueResourceQueueEntry data) {
-      myPsiValueResourceQueue.add(data);
+    @NotNull
+    ResourceSet createResourceSet() {
+      ResourceSet resourceSet = new ResourceSet(myName, myLibraryName, false /* validateEnabled */);
+      resourceSet.addSource(myResourceDir);
+      resourceSet.setShouldParseResourceIds(true);
+      resourceSet.setDontNormalizeQualifiers(true);
+      resourceSet.setTrackSourcePositions(false);
+      return resourceSet;
     }
   }
 
@@ -415,26 +352,132 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     return null;
   }
 
+  /**
+   * Scans the folders of the resource directory concurrently, each into its own {@link FolderScanResult}. The results are then added to
+   * the repository in the order of the folders, so that the items end up in the same order as with a sequential scan.
+   */
   private void scanResFolder(@NotNull VirtualFile resDir) {
+    List<VirtualFile> subDirs = Lists.newArrayList();
     for (VirtualFile subDir : resDir.getChildren()) {
-      if (subDir.isValid() && subDir.isDirectory()) {
-        String name = subDir.getName();
-        ResourceFolderType folderType = getFolderType(name);
-        if (folderType != null) {
-          FolderConfiguration folderConfiguration = FolderConfiguration.getConfigForFolder(name);
-          if (folderConfiguration == null) {
-            continue;
-          }
-          String qualifiers = getQualifiers(name);
-          if (folderType == VALUES) {
-            scanValueResFolder(subDir, qualifiers, folderConfiguration);
-          }
-          else {
-            scanFileResourceFolder(subDir, folderType, qualifiers, folderConfiguration);
+      if (subDir.isValid() && subDir.isDirectory() && getFolderType(subDir.getName()) != null) {
+        subDirs.add(subDir);
+      }
+    }
+
+    List<FolderScanResult> results = Lists.newArrayListWithExpectedSize(subDirs.size());
+    if (subDirs.size() == 1) {
+      results.add(scanFolder(subDirs.get(0)));
+    }
+    else {
+      int maxThreads = Math.min(MAX_SCAN_THREADS, Runtime.getRuntime().availableProcessors());
+      BoundedTaskExecutor executor = new BoundedTaskExecutor(PooledThreadExecutor.INSTANCE, maxThreads);
+      List<Future<FolderScanResult>> jobs = Lists.newArrayListWithExpectedSize(subDirs.size());
+      for (VirtualFile subDir : subDirs) {
+        jobs.add(executor.submit(() -> scanFolder(subDir)));
+      }
+      for (int i = 0; i < jobs.size(); i++) {
+        try {
+          results.add(jobs.get(i).get());
+        }
+        catch (ExecutionException e) {
+          rethrowAllAsUnchecked(e.getCause());
+        }
+        catch (InterruptedException e) {
+          // Keep the interrupt for the caller, but scan the remaining folders on this thread so that the repository is complete.
+          Thread.currentThread().interrupt();
+          for (int j = i; j < jobs.size(); j++) {
+            jobs.get(j).cancel(false);
+            results.add(scanFolder(subDirs.get(j)));
           }
+          break;
         }
       }
     }
+
+    for (FolderScanResult result : results) {
+      if (result.myFileResourceType != null) {
+        // Folders of file resources always have a map for their type, even when they are empty.
+        getMap(result.myFileResourceType, true);
+      }
+      for (ResourceItem item : result.myItems) {
+        getMap(item.getType(), true).put(item.getName(), item);
+      }
+      myResourceFiles.putAll(result.myResourceFiles);
+      myInitialScanState.numXml += result.myNumXml;
+      myInitialScanState.numXmlReparsed += result.myNumXmlReparsed;
+      myInitialScanState.myPsiValueResourceQueue.addAll(result.myPsiValueResourceQueue);
+      myInitialScanState.myPsiFileResourceQueue.addAll(result.myPsiFileResourceQueue);
+    }
+
+    if (LOG.isDebugEnabled()) {
+      for (FolderScanResult result : results) {
+        LOG.debug(String.format("Scanned %1$s in %2$d ms (%3$d files)", result.myDirectory.getPath(),
+                                TimeUnit.NANOSECONDS.toMillis(result.myScanTimeNs), result.myResourceFiles.size()));
+      }
+    }
+  }
+
+  @NotNull
+  private FolderScanResult scanFolder(@NotNull VirtualFile subDir) {
+    FolderScanResult result = new FolderScanResult(subDir);
+    long start = System.nanoTime();
+    String name = subDir.getName();
+    ResourceFolderType folderType = getFolderType(name);
+    FolderConfiguration folderConfiguration = FolderConfiguration.getConfigForFolder(name);
+    if (folderType != null && folderConfiguration != null) {
+      String qualifiers = getQualifiers(name);
+      if (folderType == VALUES) {
+        scanValueResFolder(subDir, qualifiers, folderConfiguration, result);
+      }
+      else {
+        scanFileResourceFolder(subDir, folderType, qualifiers, folderConfiguration, result);
+      }
+    }
+    result.myScanTimeNs = System.nanoTime() - start;
+    return result;
+  }
+
+  /**
+   * Resources found by the initial scan of one resource folder. They are only added to the repository once all the folders have been
+   * scanned, so that the folders can be scanned concurrently without locking the repository.
+   */
+  private static class FolderScanResult {
+    @NotNull final VirtualFile myDirectory;
+    @Nullable ResourceType myFileResourceType;
+    final List<ResourceItem> myItems = new ArrayList<>();
+    final Map<VirtualFile, ResourceFile> myResourceFiles = new LinkedHashMap<>();
+    final List<PsiFileResourceQueueEntry> myPsiFileResourceQueue = new ArrayList<>();
+    final List<PsiValueResourceQueueEntry> myPsiValueResourceQueue = new ArrayList<>();
+    int myNumXml;
+    int myNumXmlReparsed;
+    long myScanTimeNs;
+    @Nullable private ResourceSet myResourceSet;
+
+    FolderScanResult(@NotNull VirtualFile directory) {
+      myDirectory = directory;
+    }
+
+    /**
+     * Parses a resource XML file of the folder, with a resource set of its own so that folders don't need to lock each other.
+     *
+     * @return the resulting ResourceFile, if there is no parse error.
+     */
+    @Nullable
+    ResourceFile loadFile(@NotNull InitialScanState state, @NotNull File file) throws MergingException {
+      if (myResourceSet == null) {
+        myResourceSet = state.createResourceSet();
+      }
+      return myResourceSet.loadFile(state.myResourceDir, file, state.myILogger);
+    }
+
+    void countCacheHit() {
+      ++myNumXml;
+    }
+
+    void countCacheMiss() {
+      ++myNumXml;
+      ++myNumXmlReparsed;
+    }
   }
 
   private static String getQualifiers(String dirName) {
@@ -444,21 +487,21 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
 
   private void scanFileResourceFolder(@NotNull VirtualFile directory,
                                       ResourceFolderType folderType, String qualifiers,
-                                      FolderConfiguration folderConfiguration) {
+                                      FolderConfiguration folderConfiguration,
+                                      @NotNull FolderScanResult result) {
     List<ResourceType> resourceTypes = FolderTypeRelationship.getRelatedResourceTypes(folderType);
     assert resourceTypes.size() >= 1 : folderType;
     ResourceType type = resourceTypes.get(0);
 
     boolean idGeneratingFolder = FolderTypeRelationship.isIdGeneratingFolderType(folderType);
 
-    ListMultimap<String, ResourceItem> map = getMap(type, true);
-
+    result.myFileResourceType = type;
     for (VirtualFile file : directory.getChildren()) {
       if (file.isValid() && !file.isDirectory()) {
         FileType fileType = file.getFileType();
         boolean idGeneratingFile = idGeneratingFolder && fileType == StdFileTypes.XML;
         if (PsiProjectListener.isRelevantFileType(fileType) || folderType == ResourceFolderType.RAW) {
-          scanFileResourceFile(qualifiers, folderType, folderConfiguration, type, idGeneratingFile, map, file);
+          scanFileResourceFile(qualifiers, folderType, folderConfiguration, type, idGeneratingFile, file, result);
         } // TODO: Else warn about files that aren't expected to be found here?
       }
     }
@@ -496,38 +539,31 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                                     FolderConfiguration folderConfiguration,
                                     ResourceType type,
                                     boolean idGenerating,
-                                    ListMultimap<String, ResourceItem> map,
-                                    VirtualFile file) {
+                                    VirtualFile file,
+                                    @NotNull FolderScanResult result) {
     ResourceFile resourceFile;
     if (idGenerating) {
+      // The files loaded from the file cache are only read here, as the scanned ones are added after all the folders are scanned.
       if (myResourceFiles.containsKey(file)) {
-        myInitialScanState.countCacheHit();
+        result.countCacheHit();
         return;
       }
       try {
-        resourceFile = myInitialScanState.loadFile(VfsUtilCore.virtualToIoFile(file));
+        resourceFile = result.loadFile(myInitialScanState, VfsUtilCore.virtualToIoFile(file));
         if (resourceFile == null) {
           // The file-based parser failed for some reason. Fall back to Psi in case it is more lax.
           // Don't count Psi items in myInitialScanState.numXml, because they are never cached.
-          myInitialScanState.queuePsiFileResourceScan(
-            new PsiFileResourceQueueEntry(file, qualifiers, folderType, folderConfiguration));
+          result.myPsiFileResourceQueue.add(new PsiFileResourceQueueEntry(file, qualifiers, folderType, folderConfiguration));
           return;
         }
-        ListMultimap<String, ResourceItem> idMap = getMap(ResourceType.ID, true);
         boolean isDensityBasedResource = folderType == DRAWABLE || folderType == MIPMAP;
         // We skip caching density-based resources, so don't count those against cache statistics.
         if (!isDensityBasedResource) {
-          myInitialScanState.countCacheMiss();
+          result.countCacheMiss();
         }
         for (ResourceItem item : resourceFile.getItems()) {
-          ListMultimap<String, ResourceItem> itemMap;
-          if (item.getType() == ResourceType.ID) {
-            itemMap = idMap;
-          } else {
-            assert item.getType() == type;
-            itemMap = map;
-          }
-          itemMap.put(item.getName(), item);
+          assert item.getType() == ResourceType.ID || item.getType() == type;
+          result.myItems.add(item);
           // It's not yet safe to serialize density-based resources items to blob files.
           // The ResourceValue should be an instance of DensityBasedResourceValue, but no flags are
           // serialized to the blob to indicate that.
@@ -538,8 +574,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
       }
       catch (MergingException e) {
         // The file-based parser may not be able handle the file if it is a data-binding file.
-        myInitialScanState.queuePsiFileResourceScan(
-          new PsiFileResourceQueueEntry(file, qualifiers, folderType, folderConfiguration));
+        result.myPsiFileResourceQueue.add(new PsiFileResourceQueueEntry(file, qualifiers, folderType, folderConfiguration));
         return;
       }
     }
@@ -548,11 +583,11 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
       // No need to write these out to blob files, as the item is easily reconstructed from the filename.
       String name = ResourceHelper.getResourceName(file);
       ResourceItem item = new ResourceItem(name, type, null, myLibraryName);
-      map.put(name, item);
+      result.myItems.add(item);
       resourceFile = new ResourceFile(VfsUtilCore.virtualToIoFile(file), item, qualifiers, folderConfiguration);
       item.setIgnoredFromDiskMerge(true);
     }
-    myResourceFiles.put(file, resourceFile);
+    result.myResourceFiles.put(file, resourceFile);
   }
 
   @Nullable
@@ -817,13 +852,14 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     }
   }
 
-  private void scanValueResFolder(@NotNull VirtualFile directory, String qualifiers, FolderConfiguration folderConfiguration) {
+  private void scanValueResFolder(@NotNull VirtualFile directory, String qualifiers, FolderConfiguration folderConfiguration,
+                                  @NotNull FolderScanResult result) {
     //noinspection ConstantConditions
     assert directory.getName().startsWith(FD_RES_VALUES);
 
     for (VirtualFile file : directory.getChildren()) {
       if (file.isValid() && !file.isDirectory()) {
-        scanValueFile(qualifiers, file, folderConfiguration);
+        scanValueFile(qualifiers, file, folderConfiguration, result);
       }
     }
   }
@@ -887,31 +923,29 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     return added;
   }
 
-  private void scanValueFile(String qualifiers, VirtualFile virtualFile, FolderConfiguration folderConfiguration) {
+  private void scanValueFile(String qualifiers, VirtualFile virtualFile, FolderConfiguration folderConfiguration,
+                             @NotNull FolderScanResult result) {
     FileType fileType = virtualFile.getFileType();
     if (fileType == StdFileTypes.XML) {
       if (myResourceFiles.containsKey(virtualFile)) {
-        myInitialScanState.countCacheHit();
+        result.countCacheHit();
         return;
       }
       File file = VfsUtilCore.virtualToIoFile(virtualFile);
       try {
-        ResourceFile resourceFile = myInitialScanState.loadFile(file);
+        ResourceFile resourceFile = result.loadFile(myInitialScanState, file);
         if (resourceFile == null) {
           // The file-based parser failed for some reason. Fall back to Psi in case it is more lax.
-          myInitialScanState.queuePsiValueResourceScan(new PsiValueResourceQueueEntry(virtualFile, qualifiers, folderConfiguration));
+          result.myPsiValueResourceQueue.add(new PsiValueResourceQueueEntry(virtualFile, qualifiers, folderConfiguration));
           return;
         }
-        for (ResourceItem item : resourceFile.getItems()) {
-          ListMultimap<String, ResourceItem> map = getMap(item.getType(), true);
-          map.put(item.getName(), item);
-        }
-        myInitialScanState.countCacheMiss();
-        myResourceFiles.put(virtualFile, resourceFile);
+        result.myItems.addAll(resourceFile.getItems());
+        result.countCacheMiss();
+        result.myResourceFiles.put(virtualFile, resourceFile);
       }
       catch (MergingException e) {
         // The file-based parser failed for some reason. Fall back to Psi in case it is more lax.
-        myInitialScanState.queuePsiValueResourceScan(new PsiValueResourceQueueEntry(virtualFile, qualifiers, folderConfiguration));
+        result.myPsiValueResourceQueue.add(new PsiValueResourceQueueEntry(virtualFile, qualifiers, folderConfiguration));
       }
     }
   }
@@ -1294,7 +1328,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                       map.put(name, item);
                       resourceFile.addItems(Collections.singletonList(item));
                       myGeneration = ourModificationCounter.incrementAndGet();
-                      invalidateItemCaches(type);
+                      invalidateItemCaches(type, name);
                       return;
                     }
                   }
@@ -1505,7 +1539,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                       }
                       if (removeItems(resourceFile, type, name, true)) {
                         myGeneration = ourModificationCounter.incrementAndGet();
-                        invalidateItemCaches(type);
+                        invalidateItemCaches(type, name);
                       }
                     }
                   }
@@ -1685,7 +1719,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                             map.put(newName, newItem);
                             resourceFile.replace(item, newItem);
                             myGeneration = ourModificationCounter.incrementAndGet();
-                            invalidateItemCaches(ResourceType.ID);
+                            invalidateItemCaches(ResourceType.ID, oldName);
+                            invalidateItemCaches(ResourceType.ID, newName);
                             return;
                           }
                         }
@@ -1730,7 +1765,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                           map.put(newName, newItem);
                           resourceFile.replace(item, newItem);
                           myGeneration = ourModificationCounter.incrementAndGet();
-                          invalidateItemCaches(ResourceType.ID);
+                          invalidateItemCaches(ResourceType.ID, oldName);
+                          invalidateItemCaches(ResourceType.ID, newName);
                           return;
                         }
                       }
@@ -1852,7 +1888,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                           assert false : item;
                         }
                         myGeneration = ourModificationCounter.incrementAndGet();
-                        invalidateItemCaches(type);
+                        invalidateItemCaches(type, oldName);
+                        invalidateItemCaches(type, newName);
 
                         // Invalidate surrounding declare styleable if any
                         if (type == ResourceType.ATTR) {
@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.ide.common.res2.ResourceFile;
+import com.android.ide.common.res2.ResourceItem;
+import com.android.ide.common.resources.configuration.FolderConfiguration;
+import com.android.resources.ResourceType;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Binary snapshot of the resource files of a {@link ResourceFolderRepository} which were parsed from XML, kept in the
+ * {@link ResourceFolderRepositoryFileCache} so that the next project open only parses the files which changed since.
+ *
+ * The snapshot starts with a table of all its strings, followed by a record for each file with its length and modification stamp,
+ * and a typed record for each of its items. The XML value of an item is stored as a tree of element, attribute and text records, from
+ * which its DOM node is rebuilt without going through an XML parser. Snapshots written with another {@link #VERSION} are ignored.
+ */
+final class ResourceFolderSnapshot {
+  static final String FILE_NAME = "resources.bin";
+  private static final int MAGIC = 0x52455346; // "RESF"
+  @VisibleForTesting
+  static final int VERSION = 1;
+
+  private static final int NO_STRING = -1;
+  private static final byte NO_NODE = 0;
+  private static final byte ELEMENT_NODE = 1;
+  private static final byte TEXT_NODE = 2;
+  private static final byte CDATA_SECTION_NODE = 3;
+  private static final byte COMMENT_NODE = 4;
+
+  private static final Logger LOG = Logger.getInstance(ResourceFolderSnapshot.class);
+
+  private ResourceFolderSnapshot() {
+  }
+
+  /**
+   * Writes the given files of the resource directory, leaving out the items which are ignored from disk merges. The snapshot is written
+   * to a temporary file first, so that a reader never sees a partial snapshot.
+   */
+  static void write(@NotNull File snapshotFile, @NotNull File resourceDir, @NotNull Collection<ResourceFile> resourceFiles)
+    throws IOException {
+    // Records are written before the string table they refer to, which is only complete once all the records are written.
+    StringTable strings = new StringTable();
+    ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    DataOutputStream records = new DataOutputStream(recordBytes);
+
+    List<ResourceFile> files = new ArrayList<>(resourceFiles.size());
+    List<List<ResourceItem>> filesItems = new ArrayList<>(resourceFiles.size());
+    for (ResourceFile resourceFile : resourceFiles) {
+      List<ResourceItem> items = new ArrayList<>();
+      for (ResourceItem item : resourceFile.getItems()) {
+        if (!item.getIgnoredFromDiskMerge()) {
+          items.add(item);
+        }
+      }
+      String relativePath = FileUtil.getRelativePath(resourceDir, resourceFile.getFile());
+      if (!items.isEmpty() && relativePath != null) {
+        files.add(resourceFile);
+        filesItems.add(items);
+      }
+    }
+
+    records.writeInt(files.size());
+    for (int i = 0; i < files.size(); i++) {
+      File file = files.get(i).getFile();
+      records.writeInt(strings.indexOf(FileUtil.getRelativePath(resourceDir, file)));
+      records.writeLong(file.lastModified());
+      records.writeLong(file.length());
+      records.writeInt(strings.indexOf(files.get(i).getQualifiers()));
+      List<ResourceItem> items = filesItems.get(i);
+      records.writeInt(items.size());
+      for (ResourceItem item : items) {
+        records.writeInt(strings.indexOf(item.getType().getName()));
+        records.writeInt(strings.indexOf(item.getName()));
+        writeNode(records, strings, item.getValue());
+      }
+    }
+    records.flush();
+
+    FileUtil.createParentDirs(snapshotFile);
+    File tempFile = new File(snapshotFile.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, resourceDir.getPath());
+        out.writeInt(strings.myStrings.size());
+        for (String string : strings.myStrings) {
+          writeString(out, string);
+        }
+        recordBytes.writeTo(out);
+      }
+      FileUtil.rename(tempFile, snapshotFile);
+    }
+    finally {
+      FileUtil.delete(tempFile);
+    }
+  }
+
+  /**
+   * Reads the files of a snapshot of the resource directory, leaving out those whose length or modification stamp changed since it was
+   * written, and which therefore need to be parsed again.
+   *
+   * The snapshot is read at once rather than mapped, as a mapping would keep the file open until it is garbage collected, which
+   * prevents writing the next snapshot over it on Windows.
+   *
+   * @return the unchanged files, or null if there is no valid snapshot of this resource directory
+   */
+  @Nullable
+  static List<ResourceFile> read(@NotNull File snapshotFile, @NotNull File resourceDir, @Nullable String libraryName) {
+    if (!snapshotFile.isFile()) {
+      return null;
+    }
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(FileUtil.loadFileBytes(snapshotFile));
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        LOG.info("Ignoring outdated resource snapshot " + snapshotFile);
+        return null;
+      }
+      // The cache directories are named after hash codes, so the snapshot may be the one of another resource directory.
+      String snapshotResourceDir = readString(buffer);
+      if (!FileUtil.filesEqual(new File(snapshotResourceDir), resourceDir)) {
+        LOG.warn(String.format("Resource snapshot of %1$s does not match resource dir %2$s", snapshotResourceDir, resourceDir));
+        return null;
+      }
+      String[] strings = new String[readCount(buffer)];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = readString(buffer);
+      }
+
+      Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      int fileCount = readCount(buffer);
+      List<ResourceFile> resourceFiles = new ArrayList<>(fileCount);
+      for (int i = 0; i < fileCount; i++) {
+        File file = new File(resourceDir, strings[buffer.getInt()]);
+        long lastModified = buffer.getLong();
+        long length = buffer.getLong();
+        String qualifiers = readStringReference(buffer, strings);
+        int itemCount = readCount(buffer);
+        List<ResourceItem> items = new ArrayList<>(itemCount);
+        for (int j = 0; j < itemCount; j++) {
+          ResourceType type = ResourceType.getEnum(strings[buffer.getInt()]);
+          String name = strings[buffer.getInt()];
+          Node value = readNode(buffer, strings, document);
+          if (type != null) {
+            items.add(new ResourceItem(name, type, value, libraryName));
+          }
+        }
+        if (file.lastModified() != lastModified || file.length() != length) {
+          continue;
+        }
+        FolderConfiguration folderConfiguration = FolderConfiguration.getConfigForFolder(file.getParentFile().getName());
+        if (folderConfiguration != null) {
+          resourceFiles.add(new ResourceFile(file, items, qualifiers != null ? qualifiers : "", folderConfiguration));
+        }
+      }
+      return resourceFiles;
+    }
+    catch (IOException | ParserConfigurationException | RuntimeException e) {
+      LOG.warn("Failed to read resource snapshot " + snapshotFile, e);
+      return null;
+    }
+  }
+
+  private static void writeNode(@NotNull DataOutput out, @NotNull StringTable strings, @Nullable Node node) throws IOException {
+    if (node == null) {
+      out.writeByte(NO_NODE);
+      return;
+    }
+    switch (node.getNodeType()) {
+      case Node.ELEMENT_NODE:
+        out.writeByte(ELEMENT_NODE);
+        out.writeInt(strings.indexOf(node.getNamespaceURI()));
+        out.writeInt(strings.indexOf(node.getNodeName()));
+        NamedNodeMap attributes = node.getAttributes();
+        out.writeInt(attributes.getLength());
+        for (int i = 0; i < attributes.getLength(); i++) {
+          Node attribute = attributes.item(i);
+          out.writeInt(strings.indexOf(attribute.getNamespaceURI()));
+          out.writeInt(strings.indexOf(attribute.getNodeName()));
+          out.writeInt(strings.indexOf(attribute.getNodeValue()));
+        }
+        List<Node> children = new ArrayList<>();
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+          if (isSupported(child)) {
+            children.add(child);
+          }
+        }
+        out.writeInt(children.size());
+        for (Node child : children) {
+          writeNode(out, strings, child);
+        }
+        break;
+      case Node.TEXT_NODE:
+        out.writeByte(TEXT_NODE);
+        out.writeInt(strings.indexOf(node.getNodeValue()));
+        break;
+      case Node.CDATA_SECTION_NODE:
+        out.writeByte(CDATA_SECTION_NODE);
+        out.writeInt(strings.indexOf(node.getNodeValue()));
+        break;
+      case Node.COMMENT_NODE:
+        out.writeByte(COMMENT_NODE);
+        out.writeInt(strings.indexOf(node.getNodeValue()));
+        break;
+      default:
+        out.writeByte(NO_NODE);
+    }
+  }
+
+  private static boolean isSupported(@NotNull Node node) {
+    short type = node.getNodeType();
+    return type == Node.ELEMENT_NODE || type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE || type == Node.COMMENT_NODE;
+  }
+
+  @Nullable
+  private static Node readNode(@NotNull ByteBuffer buffer, @NotNull String[] strings, @NotNull Document document) {
+    byte type = buffer.get();
+    switch (type) {
+      case ELEMENT_NODE:
+        String namespace = readStringReference(buffer, strings);
+        String name = readStringReference(buffer, strings);
+        Element element = namespace != null ? document.createElementNS(namespace, name) : document.createElement(name);
+        int attributeCount = readCount(buffer);
+        for (int i = 0; i < attributeCount; i++) {
+          String attributeNamespace = readStringReference(buffer, strings);
+          String attributeName = readStringReference(buffer, strings);
+          String attributeValue = readStringReference(buffer, strings);
+          if (attributeNamespace != null) {
+            element.setAttributeNS(attributeNamespace, attributeName, attributeValue);
+          }
+          else {
+            element.setAttribute(attributeName, attributeValue);
+          }
+        }
+        int childCount = readCount(buffer);
+        for (int i = 0; i < childCount; i++) {
+          Node child = readNode(buffer, strings, document);
+          if (child != null) {
+            element.appendChild(child);
+          }
+        }
+        return element;
+      case TEXT_NODE:
+        return document.createTextNode(readStringReference(buffer, strings));
+      case CDATA_SECTION_NODE:
+        return document.createCDATASection(readStringReference(buffer, strings));
+      case COMMENT_NODE:
+        return document.createComment(readStringReference(buffer, strings));
+      default:
+        return null;
+    }
+  }
+
+  @Nullable
+  private static String readStringReference(@NotNull ByteBuffer buffer, @NotNull String[] strings) {
+    int index = buffer.getInt();
+    return index == NO_STRING ? null : strings[index];
+  }
+
+  private static void writeString(@NotNull DataOutput out, @NotNull String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads the size of a table or string, checking that it fits in the rest of the snapshot so that a corrupted size doesn't make the
+   * reader allocate arbitrary amounts of memory.
+   */
+  private static int readCount(@NotNull ByteBuffer buffer) {
+    int count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    return count;
+  }
+
+  @NotNull
+  private static String readString(@NotNull ByteBuffer buffer) {
+    byte[] bytes = new byte[readCount(buffer)];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Strings of a snapshot, each stored once and referred to by its index.
+   */
+  private static final class StringTable {
+    private final List<String> myStrings = new ArrayList<>();
+    private final TObjectIntHashMap<String> myIndexes = new TObjectIntHashMap<>();
+
+    int indexOf(@Nullable String string) {
+      if (string == null) {
+        return NO_STRING;
+      }
+      if (myIndexes.containsKey(string)) {
+        return myIndexes.get(string);
+      }
+      int index = myStrings.size();
+      myStrings.add(string);
+      myIndexes.put(string, index);
+      return index;
+    }
+  }
+}
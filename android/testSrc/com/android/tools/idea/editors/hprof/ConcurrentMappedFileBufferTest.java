@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ConcurrentMappedFileBufferTest {
+  private static final int VALUE_COUNT = 10000;
+
+  private File myFile;
+  private ConcurrentMappedFileBuffer myBuffer;
+
+  @Before
+  public void setUp() throws Exception {
+    myFile = FileUtil.createTempFile("buffer", ".hprof");
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(myFile))) {
+      for (int i = 0; i < VALUE_COUNT; i++) {
+        out.writeInt(i);
+      }
+      out.write(new byte[]{1, 2, 3, 4});
+    }
+    myBuffer = new ConcurrentMappedFileBuffer(myFile);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    myBuffer.dispose();
+    FileUtil.delete(myFile);
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    assertEquals(0, myBuffer.readInt());
+    assertEquals(1, myBuffer.readInt());
+    assertEquals(8, myBuffer.position());
+
+    myBuffer.setPosition(VALUE_COUNT * 4);
+    byte[] bytes = new byte[2];
+    myBuffer.readSubSequence(bytes, 1, 2);
+    assertArrayEquals(new byte[]{2, 3}, bytes);
+    assertEquals(1, myBuffer.remaining());
+    assertEquals(4, myBuffer.readByte());
+    assertFalse(myBuffer.hasRemaining());
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> readers = new ArrayList<>();
+      for (int reader = 0; reader < 4; reader++) {
+        int first = reader;
+        readers.add(executor.submit(() -> {
+          // Every reader jumps around the file, which would break the others if they shared the position.
+          for (int round = 0; round < 100; round++) {
+            for (int i = first; i < VALUE_COUNT; i += 4) {
+              myBuffer.setPosition(i * 4);
+              assertEquals(i, myBuffer.readInt());
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+}
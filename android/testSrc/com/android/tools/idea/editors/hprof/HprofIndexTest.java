@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class HprofIndexTest {
+  private File myCacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    myCacheDir = FileUtil.createTempDirectory("hprof", "index");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtil.delete(myCacheDir);
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    HprofIndex index = new HprofIndex(Arrays.asList(new HprofIndex.HeapSummary(1, "app"), new HprofIndex.HeapSummary(2, "zygote")),
+                                      Arrays.asList(new HprofIndex.ClassSummary("java.lang.String", 1, 10, 240, 480),
+                                                    new HprofIndex.ClassSummary("com.example.Ünïcode", 2, 1, 16, 1L << 40)));
+    index.save(myCacheDir, "key");
+
+    HprofIndex loaded = HprofIndex.load(myCacheDir, "key");
+    assertNotNull(loaded);
+    assertEquals(2, loaded.getHeaps().size());
+    assertEquals("zygote", loaded.getHeaps().get(1).getName());
+    assertEquals(2, loaded.getClasses().size());
+
+    HprofIndex.ClassSummary classSummary = loaded.getClasses().get(1);
+    assertEquals("com.example.Ünïcode", classSummary.getClassName());
+    assertEquals(2, classSummary.getHeapId());
+    assertEquals(1, classSummary.getInstanceCount());
+    assertEquals(16, classSummary.getShallowSize());
+    assertEquals(1L << 40, classSummary.getRetainedSize());
+
+    assertNull(HprofIndex.load(myCacheDir, "other key"));
+  }
+
+  @Test
+  public void testIgnoresOtherVersions() throws Exception {
+    new HprofIndex(Collections.emptyList(), Collections.emptyList()).save(myCacheDir, "key");
+    File indexFile = HprofIndex.getIndexFile(myCacheDir, "key");
+    assertNotNull(HprofIndex.load(myCacheDir, "key"));
+
+    byte[] contents = FileUtil.loadFileBytes(indexFile);
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(indexFile))) {
+      out.write(contents, 0, 4);
+      out.writeInt(HprofIndex.VERSION + 1);
+      out.write(contents, 8, contents.length - 8);
+    }
+    assertNull(HprofIndex.load(myCacheDir, "key"));
+  }
+
+  @Test
+  public void testIgnoresCorruptedIndexes() throws Exception {
+    FileUtil.writeToFile(HprofIndex.getIndexFile(myCacheDir, "key"), new byte[]{1, 2, 3});
+    assertNull(HprofIndex.load(myCacheDir, "key"));
+  }
+
+  @Test
+  public void testKeyDependsOnFile() throws Exception {
+    File dump = new File(myCacheDir, "dump.hprof");
+    FileUtil.writeToFile(dump, "JAVA PROFILE 1.0.3");
+    assertTrue(dump.setLastModified(1000000000000L));
+    String key = HprofIndex.computeKey(dump);
+    assertEquals(key, HprofIndex.computeKey(new File(myCacheDir, "./dump.hprof")));
+
+    // Same size, written again.
+    FileUtil.writeToFile(dump, "JAVA PROFILE 1.0.2");
+    assertTrue(dump.setLastModified(1000000001000L));
+    assertNotEquals(key, HprofIndex.computeKey(dump));
+
+    // Same modification time, another size.
+    FileUtil.writeToFile(dump, "JAVA PROFILE 1.0");
+    assertTrue(dump.setLastModified(1000000000000L));
+    assertNotEquals(key, HprofIndex.computeKey(dump));
+
+    File copy = new File(myCacheDir, "copy.hprof");
+    FileUtil.writeToFile(copy, "JAVA PROFILE 1.0.3");
+    assertTrue(copy.setLastModified(1000000000000L));
+    assertNotEquals(key, HprofIndex.computeKey(copy));
+  }
+}
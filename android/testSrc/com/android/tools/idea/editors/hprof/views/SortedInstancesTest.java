@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof.views;
+
+import com.android.tools.perflib.heap.Heap;
+import com.android.tools.perflib.heap.Instance;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SortedInstancesTest {
+  private Heap myHeap;
+  private List<Instance> myInstances;
+
+  @Before
+  public void setUp() throws Exception {
+    myHeap = mock(Heap.class);
+    myInstances = Arrays.asList(mockInstance(1, 2, 16, 64, true),
+                                mockInstance(2, 1, 32, 32, true),
+                                mockInstance(3, 1, 8, 128, false),
+                                mockInstance(4, Integer.MAX_VALUE, 24, 256, true),
+                                mockInstance(5, 1, 16, 16, true));
+  }
+
+  @Test
+  public void testOrders() throws Exception {
+    SortedInstances sorted = new SortedInstances(myInstances, myHeap, Runnable::run);
+
+    // The instance not in the heap is left out, the others are indexed in memory order.
+    Instance[] instances = sorted.getInstances().join();
+    assertArrayEquals(new Instance[]{myInstances.get(0), myInstances.get(1), myInstances.get(3), myInstances.get(4)}, instances);
+
+    assertArrayEquals(new int[]{0, 1, 2, 3}, sorted.getOrder(SortedInstances.Key.MEMORY).join());
+    // Ties are kept in memory order.
+    assertArrayEquals(new int[]{1, 3, 0, 2}, sorted.getOrder(SortedInstances.Key.DEPTH).join());
+    assertArrayEquals(new int[]{0, 3, 2, 1}, sorted.getOrder(SortedInstances.Key.SHALLOW_SIZE).join());
+    // Unreachable instances don't retain anything.
+    assertArrayEquals(new int[]{2, 3, 1, 0}, sorted.getOrder(SortedInstances.Key.RETAINED_SIZE).join());
+  }
+
+  @Test
+  public void testOrdersAreComputedInTheBackgroundOnce() throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    SortedInstances sorted = new SortedInstances(myInstances, myHeap, tasks::add);
+
+    // Orders requested before the instances are filtered are computed afterwards.
+    CompletableFuture<int[]> order = sorted.getOrder(SortedInstances.Key.SHALLOW_SIZE);
+    assertFalse(order.isDone());
+    runAll(tasks);
+    assertArrayEquals(new int[]{0, 3, 2, 1}, order.join());
+    assertSame(order, sorted.getOrder(SortedInstances.Key.SHALLOW_SIZE));
+
+    // Other orders only need to be sorted.
+    CompletableFuture<int[]> depthOrder = sorted.getOrder(SortedInstances.Key.DEPTH);
+    assertEquals(1, tasks.size());
+    runAll(tasks);
+    assertArrayEquals(new int[]{1, 3, 0, 2}, depthOrder.join());
+  }
+
+  @Test
+  public void testOrdersWithLargeValuesAndTies() throws Exception {
+    List<Instance> instances = Arrays.asList(mockInstance(10, 1, 8, Long.MAX_VALUE, true),
+                                             mockInstance(11, 1, 8, 1L << 40, true),
+                                             mockInstance(12, 1, 8, Long.MAX_VALUE, true),
+                                             mockInstance(13, 1, 8, 0, true));
+    SortedInstances sorted = new SortedInstances(instances, myHeap, Runnable::run);
+
+    assertArrayEquals(new int[]{0, 1, 2, 3}, sorted.getOrder(SortedInstances.Key.SHALLOW_SIZE).join());
+    assertArrayEquals(new int[]{3, 1, 0, 2}, sorted.getOrder(SortedInstances.Key.RETAINED_SIZE).join());
+  }
+
+  private static void runAll(List<Runnable> tasks) {
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+  }
+
+  private Instance mockInstance(long id, int distanceToGcRoot, int size, long retainedSize, boolean inHeap) {
+    Instance instance = mock(Instance.class);
+    when(instance.getId()).thenReturn(id);
+    when(instance.getDistanceToGcRoot()).thenReturn(distanceToGcRoot);
+    when(instance.getSize()).thenReturn(size);
+    when(instance.getTotalRetainedSize()).thenReturn(retainedSize);
+    if (inHeap) {
+      when(myHeap.getInstance(id)).thenReturn(instance);
+    }
+    return instance;
+  }
+}
@@ -17,6 +17,9 @@
 package com.android.tools.idea.logcat;
 
 import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
 import com.intellij.diagnostic.logging.LogFilterModel;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
@@ -175,6 +178,32 @@ public class AndroidLogFilterModelTest {
     assertThat(result.isApplicable()).isFalse();
   }
 
+  @Test
+  public void parsedMessagesAreFilteredOnTheirFields() throws Exception {
+    PersistentAndroidLogFilters.FilterData filterData = new PersistentAndroidLogFilters.FilterData();
+    filterData.setLogTagPattern("DummyTag");
+    filterData.setLogMessagePattern("line 2");
+    myFilterModel.updateLogcatFilter(DefaultAndroidLogcatFilter.compile(filterData, "(Unused Name)"));
+
+    LogCatHeader header =
+      new LogCatHeader(LogLevel.INFO, 1234, 5678, "?", "DummyTag", LogCatTimestamp.fromString("01-23 12:34:56.789"));
+    // The lines are in a format that can't be parsed back, so they can only be filtered on the messages they were formatted from.
+    String first = "DummyTag line 1";
+    myFilterModel.setParsedMessage(first, new LogCatMessage(header, "line 1"));
+    LogFilterModel.MyProcessingResult result = myFilterModel.processLine(first);
+    assertThat(result.isApplicable()).isFalse();
+
+    String second = "DummyTag line 2";
+    myFilterModel.setParsedMessage(second, new LogCatMessage(header, "line 2"));
+    result = myFilterModel.processLine(second);
+    assertThat(result.isApplicable()).isTrue();
+    assertThat(result.getMessagePrefix()).isEqualTo(first + "\n");
+
+    // Without a message, the line is parsed.
+    result = myFilterModel.processLine(second);
+    assertThat(result.isApplicable()).isFalse();
+  }
+
   private static class TestFilterModel extends AndroidLogFilterModel {
 
     @NotNull private LogLevel myMinimumLevel = LogLevel.VERBOSE; // Allow all messages by default
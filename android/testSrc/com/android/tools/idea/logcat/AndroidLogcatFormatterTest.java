@@ -23,8 +23,11 @@ import com.android.ddmlib.logcat.LogCatTimestamp;
 import org.junit.Test;
 
 import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class AndroidLogcatFormatterTest {
 
@@ -72,6 +75,56 @@ public class AndroidLogcatFormatterTest {
     assertEquals("dalvikvm", header.getTag());
   }
 
+  @Test
+  public void parseMessageMatchesHeaderRegex() {
+    Pattern pattern = Pattern.compile(
+      "^(\\d\\d-\\d\\d\\s\\d\\d:\\d\\d:\\d\\d.\\d+)\\s+(\\d+)-(\\d+)/(\\S+)\\s+([A-Z])/([^ ]+): (.*)$");
+    String[] messages = {
+      "02-12 14:32:46.526 13-123/system_process D/ConnectivityService: xyz",
+      "02-12 14:32:46.526 13-123/system_process D/ConnectivityService: ",
+      "02-12 14:32:46.526\t  13-123/com.example:remote\t W/tag:with:colons: message: with spaces",
+      "02-12 14:32:46.526 13-123/? I/\u00a0tag\u00a0: message",
+      "02-12 14:32:46:526 13-123/? I/tag: message",
+      "02-12 14:32:46.526 13-123/? I/tag: multi\nline",
+      "02-12 14:32:46.526 13-123/? I/tag:message",
+      "02-12 14:32:46.526 13-123/? I/: message",
+      "02-12 14:32:46.526 13-123/? i/tag: message",
+      "02-12 14:32:46.526 13-123/ I/tag: message",
+      "02-12 14:32:46.526 13-/? I/tag: message",
+      "02-12 14:32:46.526 -123/? I/tag: message",
+      "02-12 14:32:46. 13-123/? I/tag: message",
+      "02-12 14:32:46.52613-123/? I/tag: message",
+      "2-12 14:32:46.526 13-123/? I/tag: message",
+      "02-12 14:32",
+      "",
+    };
+
+    for (String message : messages) {
+      Matcher matcher = pattern.matcher(message);
+      LogCatMessage parsed = AndroidLogcatFormatter.tryParseMessage(message);
+      if (!matcher.matches()) {
+        assertNull(message, parsed);
+        continue;
+      }
+      LogCatHeader header = parsed.getHeader();
+      assertEquals(message, LogCatTimestamp.fromString(matcher.group(1)), header.getTimestamp());
+      assertEquals(message, Integer.parseInt(matcher.group(2)), header.getPid());
+      assertEquals(message, Integer.parseInt(matcher.group(3)), header.getTid());
+      assertEquals(message, matcher.group(4), header.getAppName());
+      assertEquals(message, LogLevel.getByLetter(matcher.group(5).charAt(0)), header.getLogLevel());
+      assertEquals(message, matcher.group(6), header.getTag());
+      assertEquals(message, matcher.group(7), parsed.getMessage());
+    }
+  }
+
+  @Test
+  public void parseContinuation() {
+    assertEquals("at Foo.bar()", AndroidLogcatFormatter.tryParseContinuation(AndroidLogcatFormatter.formatContinuation("at Foo.bar()")));
+    assertEquals("", AndroidLogcatFormatter.tryParseContinuation("+ "));
+    assertNull(AndroidLogcatFormatter.tryParseContinuation("+"));
+    assertNull(AndroidLogcatFormatter.tryParseContinuation("- at Foo.bar()"));
+  }
+
   @Test
   public void unknownFormatMessageRemainsSame(){
     AndroidLogcatPreferences preferences = new AndroidLogcatPreferences();
@@ -17,17 +17,21 @@
 package com.android.tools.idea.logcat;
 
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.logcat.LogCatMessage;
 import org.easymock.EasyMock;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
 
 public class AndroidLogcatReceiverTest {
   private AndroidLogcatService.LogcatListener myLogcatListener;
+  private List<Integer> myFormattedBatchSizes;
   private AndroidLogcatReceiver myReceiver;
 
   /**
@@ -44,6 +48,7 @@ public class AndroidLogcatReceiverTest {
 
   @Before
   public void setUp() {
+    myFormattedBatchSizes = new ArrayList<>();
     myLogcatListener = new FormattedLogcatReceiver() {
       private final StringWriter myInnerWriter = new StringWriter();
 
@@ -52,6 +57,12 @@ public class AndroidLogcatReceiverTest {
         myInnerWriter.append(line).append('\n');
       }
 
+      @Override
+      protected void receiveFormattedLogLines(@NotNull List<String> lines) {
+        myFormattedBatchSizes.add(lines.size());
+        super.receiveFormattedLogLines(lines);
+      }
+
       @Override
       public String toString() {
         return myInnerWriter.getBuffer().toString();
@@ -71,6 +82,35 @@ public class AndroidLogcatReceiverTest {
     assertThat(myLogcatListener.toString()).isEqualTo(expected);
   }
 
+  @Test
+  public void processNewLinesNotifiesListenerOncePerBatch() {
+    List<Integer> batchSizes = new ArrayList<>();
+    AndroidLogcatReceiver receiver = new AndroidLogcatReceiver(createMockDevice(), new AndroidLogcatService.LogcatListener() {
+      @Override
+      public void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+        batchSizes.add(lines.size());
+        myLogcatListener.onLogLinesReceived(lines);
+      }
+    });
+
+    receiver.processNewLines(new String[]{
+      "[ 01-23 12:34:56.789 99:99 V/UnknownClient     ]",
+      "Line 1",
+      "Line 2\r",
+      "",
+      "[ 01-23 13:00:00.000 99:99 V/UnknownClient     ]",
+      "Line 1",
+    });
+    receiver.processNewLines(new String[]{""});
+
+    String expected = "01-23 12:34:56.789 99-99/? V/UnknownClient: Line 1\n" +
+                      "+ Line 2\n" +
+                      "01-23 13:00:00.000 99-99/? V/UnknownClient: Line 1\n";
+    assertThat(myLogcatListener.toString()).isEqualTo(expected);
+    assertThat(batchSizes).containsExactly(3);
+    assertThat(myFormattedBatchSizes).containsExactly(3);
+  }
+
   @Test
   public void processNewLineUsesQuestionMarkForUnknownClientIds() {
     myReceiver.processNewLine("[ 01-23 12:34:56.789 99:99 V/UnknownClient     ]");
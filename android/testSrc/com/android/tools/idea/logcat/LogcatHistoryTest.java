@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LogcatHistoryTest {
+  private File myDirectory;
+  private LogcatHistory myHistory;
+
+  @Before
+  public void setUp() throws Exception {
+    myDirectory = new File(FileUtil.createTempDirectory("logcat", ".history"), "history");
+    // Segments of two messages, so that the messages are spread across segments.
+    myHistory = new LogcatHistory(myDirectory, 2, 8);
+    myHistory.add(Arrays.asList(
+      createMessage(LogLevel.DEBUG, 100, "ActivityManager", "Start proc com.example.app"),
+      createMessage(LogLevel.ERROR, 200, "AndroidRuntime", "FATAL EXCEPTION: main"),
+      createMessage(LogLevel.ERROR, 200, "AndroidRuntime", "Process: com.example.app, PID: 200"),
+      createMessage(LogLevel.INFO, 100, "ActivityManager", "Process com.example.app has died"),
+      createMessage(LogLevel.VERBOSE, 300, "Ünïcode tag", "")));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    myHistory.close();
+    assertFalse(myDirectory.exists());
+  }
+
+  @Test
+  public void testReadBack() throws Exception {
+    assertEquals(0, myHistory.getFirstId());
+    assertEquals(5, myHistory.getEndId());
+
+    LogCatMessage message = myHistory.read(2);
+    assertNotNull(message);
+    assertEquals(LogLevel.ERROR, message.getHeader().getLogLevel());
+    assertEquals(200, message.getHeader().getPid());
+    assertEquals(201, message.getHeader().getTid());
+    assertEquals("com.example", message.getHeader().getAppName());
+    assertEquals("AndroidRuntime", message.getHeader().getTag());
+    assertEquals(LogCatTimestamp.fromString("01-23 12:34:56.789"), message.getHeader().getTimestamp());
+    assertEquals("Process: com.example.app, PID: 200", message.getMessage());
+
+    assertEquals("Ünïcode tag", myHistory.read(4).getHeader().getTag());
+    assertEquals("", myHistory.read(4).getMessage());
+    assertNull(myHistory.read(5));
+  }
+
+  @Test
+  public void testSearch() throws Exception {
+    assertArrayEquals(new long[]{0, 1, 2, 3, 4}, myHistory.search(new LogcatHistory.Query.Builder().build()));
+    assertArrayEquals(new long[]{1, 2, 3}, myHistory.search(new LogcatHistory.Query.Builder().setMinLevel(LogLevel.INFO).build()));
+    assertArrayEquals(new long[]{0, 3}, myHistory.search(new LogcatHistory.Query.Builder().setPid(100).build()));
+    assertArrayEquals(new long[]{1, 2}, myHistory.search(new LogcatHistory.Query.Builder().setTag("AndroidRuntime").build()));
+    assertArrayEquals(new long[0], myHistory.search(new LogcatHistory.Query.Builder().setTag("Unknown").build()));
+    assertArrayEquals(new long[]{0, 2, 3}, myHistory.search(new LogcatHistory.Query.Builder().setText("COM.EXAMPLE.APP").build()));
+    LogcatHistory.Query query = new LogcatHistory.Query.Builder().setText("app").setMinLevel(LogLevel.INFO).setPid(100).build();
+    assertArrayEquals(new long[]{3}, myHistory.search(query));
+    // Shorter than a trigram, so every message is checked.
+    assertArrayEquals(new long[]{1, 2}, myHistory.search(new LogcatHistory.Query.Builder().setText(": ").build()));
+    // No message has all the trigrams of the text.
+    assertArrayEquals(new long[0], myHistory.search(new LogcatHistory.Query.Builder().setText("proc com.example.app has").build()));
+  }
+
+  @Test
+  public void testSearchIgnoresCaseOfNonAsciiText() throws Exception {
+    myHistory.add(createMessage(LogLevel.INFO, 100, "Tag", "ÉCOLE Ünïcode"));
+    assertArrayEquals(new long[]{5}, myHistory.search(new LogcatHistory.Query.Builder().setText("école ünï").build()));
+    assertArrayEquals(new long[]{5}, myHistory.search(new LogcatHistory.Query.Builder().setText("ÜNÏCODE").build()));
+  }
+
+  @Test
+  public void testMessagesAddedAfterASearchAreFound() throws Exception {
+    assertArrayEquals(new long[]{2, 3}, myHistory.search(new LogcatHistory.Query.Builder().setText("process").build()));
+    myHistory.add(createMessage(LogLevel.WARN, 100, "ActivityManager", "Scheduling restart of crashed process"));
+    assertArrayEquals(new long[]{2, 3, 5}, myHistory.search(new LogcatHistory.Query.Builder().setText("process").build()));
+  }
+
+  @Test
+  public void testOldestSegmentsAreEvicted() throws Exception {
+    for (int i = 0; i < 4; i++) {
+      myHistory.add(createMessage(LogLevel.INFO, 400, "Tag", "Message " + i));
+    }
+    // At most 8 messages in segments of 2, so the first segment is gone.
+    assertEquals(2, myHistory.getFirstId());
+    assertEquals(9, myHistory.getEndId());
+    assertNull(myHistory.read(1));
+    assertEquals("Process: com.example.app, PID: 200", myHistory.read(2).getMessage());
+    assertArrayEquals(new long[]{2, 3}, myHistory.search(new LogcatHistory.Query.Builder().setText("com.example.app").build()));
+    assertArrayEquals(new long[]{5, 6, 7, 8}, myHistory.search(new LogcatHistory.Query.Builder().setPid(400).build()));
+    assertEquals(4, myDirectory.listFiles().length);
+  }
+
+  @Test
+  public void testMessagesAreIgnoredOnceClosed() throws Exception {
+    myHistory.close();
+    myHistory.add(createMessage(LogLevel.INFO, 100, "Tag", "Message"));
+    assertEquals(0, myHistory.search(new LogcatHistory.Query.Builder().build()).length);
+  }
+
+  private static LogCatMessage createMessage(LogLevel level, int pid, String tag, String message) {
+    LogCatHeader header = new LogCatHeader(level, pid, pid + 1, "com.example", tag, LogCatTimestamp.fromString("01-23 12:34:56.789"));
+    return new LogCatMessage(header, message);
+  }
+}
@@ -21,6 +21,7 @@ import com.android.ide.common.res2.ResourceItem;
 import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.resources.ResourceType;
 import com.android.tools.lint.detector.api.LintUtils;
+import com.google.common.collect.ListMultimap;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.util.Condition;
@@ -371,6 +372,48 @@ public class ModuleResourceRepositoryTest extends AndroidTestCase {
     assertStringIs(resources, "title_layout_changes", "New Layout Changes", false);
   }
 
+  public void testIncrementalMergeOfSingleItem() {
+    VirtualFile values1 = myFixture.copyFileToProject(VALUES, "res/values/values.xml");
+    VirtualFile values2 = myFixture.copyFileToProject(VALUES_OVERLAY1, "res2/values/values.xml");
+    VirtualFile res1 = values1.getParent().getParent();
+    VirtualFile res2 = values2.getParent().getParent();
+    ModuleResourceRepository resources = ModuleResourceRepository.createForTest(myFacet, Arrays.asList(res1, res2));
+    PsiFile psiValues2 = PsiManager.getInstance(getProject()).findFile(values2);
+    assertNotNull(psiValues2);
+
+    assertStringIs(resources, "app_name", "Different App Name"); // Overridden in res2
+    assertStringIs(resources, "title_crossfade", "Complex Crossfade"); // Overridden in res2
+
+    final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    final Document document = documentManager.getDocument(psiValues2);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      String textToRemove = "<string name=\"app_name\">Different App Name</string>";
+      int offset = document.getText().indexOf(textToRemove);
+      document.deleteString(offset, offset + textToRemove.length());
+      documentManager.commitDocument(document);
+    });
+    // The first edit to psiValues2 causes ResourceFolderRepository to transition from non-Psi -> Psi which requires a rescan.
+    assertTrue(resources.isScanPending(psiValues2));
+    UIUtil.dispatchAllInvocationEvents();
+    assertStringIs(resources, "app_name", "Animations Demo");
+
+    // This removal is handled incrementally, so only the entry of that name is merged again.
+    ListMultimap<String, ResourceItem> strings = resources.getItems().get(ResourceType.STRING);
+    long generation = resources.getModificationCount();
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      String textToRemove = "<string name=\"title_crossfade\">Complex Crossfade</string>";
+      int offset = document.getText().indexOf(textToRemove);
+      document.deleteString(offset, offset + textToRemove.length());
+      documentManager.commitDocument(document);
+    });
+    assertTrue(resources.getModificationCount() > generation);
+    assertSame(strings, resources.getItems().get(ResourceType.STRING));
+    assertStringIs(resources, "title_crossfade", "Simple Crossfade");
+    assertStringIs(resources, "app_name", "Animations Demo");
+    assertStringIs(resources, "unique_string", "Unique");
+  }
+
   public void testHasResourcesOfType() {
     // Test hasResourcesOfType merging (which may be optimized to be lighter-weight than map merging).
     VirtualFile res1 = myFixture.copyFileToProject(LAYOUT, "res/layout/layout.xml").getParent().getParent();
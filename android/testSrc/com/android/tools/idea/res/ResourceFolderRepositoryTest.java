@@ -55,6 +55,7 @@ import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static com.android.SdkConstants.*;
 import static com.android.tools.idea.res.ResourceFolderRepository.ourFullRescans;
@@ -206,6 +207,41 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertNotNull(resources.getResourceItem(ResourceType.LAYOUT, "layout2"));
   }
 
+  public void testInitialCreateOfManyFolders() throws Exception {
+    // Folders are scanned concurrently, but their items must be added in the order of the folders.
+    String[] qualifiers = {"", "land", "port", "en", "fr", "xlarge", "v21"};
+    for (String qualifier : qualifiers) {
+      String suffix = qualifier.isEmpty() ? "" : "-" + qualifier;
+      myFixture.copyFileToProject(LAYOUT1, "res/layout" + suffix + "/layout1.xml");
+      myFixture.copyFileToProject(VALUES1, "res/values" + suffix + "/myvalues.xml");
+    }
+
+    ResourceFolderRepository resources = createRepository();
+    assertNotNull(resources);
+
+    List<String> expectedLayoutQualifiers = new ArrayList<>();
+    List<String> expectedValueQualifiers = new ArrayList<>();
+    for (VirtualFile subDir : getResourceDirectory().getChildren()) {
+      String name = subDir.getName();
+      String qualifier = name.indexOf('-') != -1 ? name.substring(name.indexOf('-') + 1) : "";
+      if (name.startsWith(FD_RES_LAYOUT)) {
+        expectedLayoutQualifiers.add(qualifier);
+      }
+      else if (name.startsWith(FD_RES_VALUES)) {
+        expectedValueQualifiers.add(qualifier);
+      }
+    }
+    assertEquals(qualifiers.length, expectedLayoutQualifiers.size());
+    assertEquals(qualifiers.length, expectedValueQualifiers.size());
+
+    List<ResourceItem> layouts = resources.getResourceItem(ResourceType.LAYOUT, "layout1");
+    assertNotNull(layouts);
+    assertEquals(expectedLayoutQualifiers, layouts.stream().map(item -> item.getSource().getQualifiers()).collect(Collectors.toList()));
+    List<ResourceItem> strings = resources.getResourceItem(ResourceType.STRING, "app_name");
+    assertNotNull(strings);
+    assertEquals(expectedValueQualifiers, strings.stream().map(item -> item.getSource().getQualifiers()).collect(Collectors.toList()));
+  }
+
   public void testAddFile() throws Exception {
     myFixture.copyFileToProject(LAYOUT1, "res/layout/layout1.xml");
     myFixture.copyFileToProject(LAYOUT1, "res/layout/layout2.xml");
@@ -3841,6 +3877,31 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertEquals(resourcesReloaded.getInitialScanState().numXml, resourcesReloaded.getInitialScanState().numXmlReparsed);
   }
 
+  public void testSerializationIgnoresCorruptedSnapshot() throws Exception {
+    myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
+    myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
+    ResourceFolderRepository resources = createRepository();
+    assertNotNull(resources);
+    resources.saveStateToFile();
+    ResourceFolderRegistry.reset();
+
+    File blobRoot = ResourceFolderRepositoryFileCacheService.get().getResourceDir(getProject(), getResourceDirectory());
+    assertNotNull(blobRoot);
+    File snapshot = new File(blobRoot, ResourceFolderSnapshot.FILE_NAME);
+    assertTrue(snapshot.exists());
+    byte[] contents = FileUtil.loadFileBytes(snapshot);
+    FileUtil.writeToFile(snapshot, Arrays.copyOf(contents, contents.length / 2));
+
+    ResourceFolderRepository fromBlob = createRepository();
+    assertNotNull(fromBlob);
+    // Everything is parsed again, as if there was no snapshot.
+    assertEquals(2, fromBlob.getInitialScanState().numXml);
+    assertEquals(2, fromBlob.getInitialScanState().numXmlReparsed);
+    assertTrue(fromBlob.hasResourceItem(ResourceType.LAYOUT, "layout"));
+    assertTrue(fromBlob.hasResourceItem(ResourceType.ID, "noteArea"));
+    assertTrue(fromBlob.hasResourceItem(ResourceType.STRING, "hello_world"));
+  }
+
   public void testSerializationRemoveXmlFileAndLoad() throws Exception {
     VirtualFile file1 = myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
     final PsiFile psiFile1 = PsiManager.getInstance(getProject()).findFile(file1);
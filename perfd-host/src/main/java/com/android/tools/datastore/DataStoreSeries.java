@@ -24,17 +24,17 @@ import org.jetbrains.annotations.Nullable;
 
 public class DataStoreSeries<E> implements DataSeries<E> {
   @NotNull
-  private final SeriesDataStore mStore;
+  protected final SeriesDataStore mStore;
 
   @NotNull
-  private final SeriesDataType mType;
+  protected final SeriesDataType mType;
 
   /**
    * This target object is passed to the data store so it can know from which adapter the data should be pulled from.
    * If it's null, the only adapter associated with the type will be used.
    */
   @Nullable
-  private final Object mTarget;
+  protected final Object mTarget;
 
   public DataStoreSeries(@NotNull SeriesDataStore store, @NotNull SeriesDataType type, @Nullable Object target) {
     mStore = store;
@@ -16,7 +16,10 @@
 package com.android.tools.datastore;
 
 import com.android.tools.datastore.poller.*;
-import com.intellij.openapi.application.ApplicationManager;
+import com.android.tools.datastore.session.SessionReader;
+import com.android.tools.datastore.session.SessionWriter;
+import com.android.tools.datastore.storage.InMemorySeriesStorage;
+import com.android.tools.datastore.storage.SeriesStorage;
 import com.intellij.openapi.diagnostic.Logger;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
@@ -26,10 +29,10 @@ import io.grpc.netty.NettyChannelBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.RunnableFuture;
 
 /**
  * Primary class that initializes the Datastore. This class currently manages connections to perfd and sets up the DataStore service.
@@ -37,10 +40,22 @@ import java.util.concurrent.RunnableFuture;
 public class DataStoreService {
   private static final Logger LOG = Logger.getInstance(DataStoreService.class.getCanonicalName());
   private static final int MAX_MESSAGE_SIZE = 512 * 1024 * 1024 - 1;
+  /**
+   * When set, every connection to a device is recorded into a new session file in this directory, see {@link #startRecording(File)}.
+   */
+  private static final String SESSION_DIR_PROPERTY = "studio.profiler.session.dir";
   private ManagedChannel myChannel;
   private ServerBuilder myServerBuilder;
   private List<ServicePassThrough> myServices = new ArrayList<>();
   private LegacyAllocationTracker myLegacyAllocationTracker;
+  private final PollScheduler myPollScheduler = new PollScheduler();
+  private SessionWriter mySessionWriter;
+  private SessionReader mySessionReader;
+  /**
+   * Storage of the samples received from the connected device, created on {@link #connect(int)} and closed on {@link #disconnect()}.
+   * An empty in-memory storage is used while no device is connected.
+   */
+  private SeriesStorage mySeriesStorage = new InMemorySeriesStorage();
 
   public DataStoreService(String name) {
     try {
@@ -60,9 +75,9 @@ public class DataStoreService {
   public void createPollers() {
     registerService(new ProfilerService(this));
     registerService(new EventDataPoller());
-    registerService(new CpuDataPoller());
-    registerService(new MemoryDataPoller(this));
-    registerService(new NetworkDataPoller());
+    registerService(new CpuDataPoller(mySeriesStorage));
+    registerService(new MemoryDataPoller(this, mySeriesStorage));
+    registerService(new NetworkDataPoller(mySeriesStorage));
   }
 
   /**
@@ -83,9 +98,9 @@ public class DataStoreService {
     for (ServicePassThrough service : myServices) {
       // Tell service how to connect to device RPC to start polling.
       service.connectService(myChannel);
-      RunnableFuture<Void> runner = service.getRunner();
+      PollRunner runner = service.getRunner();
       if (runner != null) {
-        ApplicationManager.getApplication().executeOnPooledThread(runner);
+        myPollScheduler.start(runner);
       }
     }
   }
@@ -105,18 +120,102 @@ public class DataStoreService {
       .maxMessageSize(MAX_MESSAGE_SIZE)
       .build();
     Thread.currentThread().setContextClassLoader(stashedContextClassLoader);
+    setSeriesStorage(SeriesStorage.createDefault());
     connectServices();
+
+    String sessionDir = System.getProperty(SESSION_DIR_PROPERTY);
+    if (sessionDir != null) {
+      File file = new File(sessionDir, "session-" + System.currentTimeMillis() + ".prof");
+      try {
+        startRecording(file);
+      }
+      catch (IOException e) {
+        LOG.warn("Unable to record session into " + file, e);
+      }
+    }
   }
 
   /**
-   * Disconnect the datastore from the connected device.
+   * Disconnect the datastore from the connected device, and drop the samples received from it.
    */
   public void disconnect() {
     // TODO: Shutdown service connections.
+    myPollScheduler.getStats().forEach(stats -> LOG.info(stats.toString()));
+    myPollScheduler.stopAll();
+    try {
+      stopRecording();
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to complete the session file", e);
+    }
+    closeSession();
     if (myChannel != null) {
       myChannel.shutdown();
     }
     myChannel = null;
+    setSeriesStorage(new InMemorySeriesStorage());
+  }
+
+  /**
+   * Moves every service to a new storage, dropping the samples kept in the previous one, which is then closed.
+   */
+  private void setSeriesStorage(@NotNull SeriesStorage storage) {
+    SeriesStorage previous = mySeriesStorage;
+    mySeriesStorage = storage;
+    myServices.forEach(service -> service.setSeriesStorage(storage));
+    previous.close();
+  }
+
+  /**
+   * Starts recording the data received from the device into a session file, which can later be opened with
+   * {@link com.android.tools.datastore.session.SessionReader}. Stops any recording in progress first.
+   */
+  public synchronized void startRecording(@NotNull File file) throws IOException {
+    stopRecording();
+    mySessionWriter = new SessionWriter(file);
+    myServices.forEach(service -> service.setSessionWriter(mySessionWriter));
+  }
+
+  /**
+   * Stops recording and completes the session file, if a recording is in progress.
+   */
+  public synchronized void stopRecording() throws IOException {
+    if (mySessionWriter == null) {
+      return;
+    }
+    myServices.forEach(service -> service.setSessionWriter(null));
+    SessionWriter writer = mySessionWriter;
+    mySessionWriter = null;
+    writer.close();
+  }
+
+  /**
+   * Opens a session recorded with {@link #startRecording(File)} and serves its data instead of the data of a device, which is disconnected.
+   * Only the index of the session is read, the recorded data is decoded as it is queried.
+   */
+  public synchronized void openSession(@NotNull File file) throws IOException {
+    disconnect();
+    SessionReader reader = new SessionReader(file);
+    mySessionReader = reader;
+    myServices.forEach(service -> service.setSessionReader(reader));
+  }
+
+  /**
+   * Closes the session opened with {@link #openSession(File)}, if any.
+   */
+  public synchronized void closeSession() {
+    if (mySessionReader == null) {
+      return;
+    }
+    myServices.forEach(service -> service.setSessionReader(null));
+    SessionReader reader = mySessionReader;
+    mySessionReader = null;
+    try {
+      reader.close();
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to close the session file", e);
+    }
   }
 
   /**
@@ -20,10 +20,10 @@ import gnu.trove.TLongArrayList;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Implementation of {@link DataAdapter} interface.
+ * Implementation of {@link NumericDataAdapter} interface.
  * This class uses gnu trove lists for the performance reason.
  */
-public class LongDataAdapter implements DataAdapter<Long> {
+public class LongDataAdapter implements NumericDataAdapter<Long> {
   @NotNull
   private final TLongArrayList myTimestampData;
 
@@ -45,6 +45,16 @@ public class LongDataAdapter implements DataAdapter<Long> {
     return new SeriesData<>(myTimestampData.get(index), myValues.get(index));
   }
 
+  @Override
+  public long getTime(int index) {
+    return myTimestampData.get(index);
+  }
+
+  @Override
+  public double getNumericValue(int index) {
+    return myValues.get(index);
+  }
+
   @Override
   public void reset() {
     myTimestampData.clear();
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore;
+
+import com.android.tools.adtui.model.NumericSeriesData;
+import com.android.tools.adtui.model.Range;
+import com.android.tools.adtui.model.SeriesData;
+import com.android.tools.datastore.storage.DownsampledLongSeries;
+import com.android.tools.datastore.storage.LongSeriesStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Implementation of {@link NumericDataAdapter} interface backed by a {@link LongSeriesStore}, see {@link SeriesDataStore#createLongSeries}.
+ */
+public class LongSeriesDataAdapter implements NumericDataAdapter<Long> {
+  @NotNull
+  private final LongSeriesStore myStore;
+
+  public LongSeriesDataAdapter(@NotNull LongSeriesStore store) {
+    myStore = store;
+  }
+
+  @Override
+  public int getClosestTimeIndex(long timeUs, boolean leftClosest) {
+    return myStore.getClosestTimeIndex(timeUs, leftClosest);
+  }
+
+  @Override
+  public SeriesData<Long> get(int index) {
+    return new SeriesData<>(myStore.getTime(index), myStore.getValue(index));
+  }
+
+  @Override
+  public long getTime(int index) {
+    return myStore.getTime(index);
+  }
+
+  @Override
+  public double getNumericValue(int index) {
+    return myStore.getValue(index);
+  }
+
+  @Nullable
+  @Override
+  public NumericSeriesData getDownsampledData(@NotNull Range range, int maxSamples) {
+    return myStore instanceof DownsampledLongSeries ? ((DownsampledLongSeries)myStore).getDataForXRange(range, maxSamples) : null;
+  }
+
+  @Override
+  public void reset() {
+    myStore.clear();
+  }
+
+  @Override
+  public void stop() {
+    // TODO: implement
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore;
+
+import com.android.tools.adtui.model.NumericSeriesData;
+import com.android.tools.adtui.model.Range;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link DataAdapter} storing numbers as primitives. Its samples can be read through {@link #getTime(int)} and
+ * {@link #getNumericValue(int)} without creating a {@link com.android.tools.adtui.model.SeriesData} per index.
+ */
+public interface NumericDataAdapter<T extends Number> extends DataAdapter<T> {
+
+  /**
+   * @return the timestamp (device time microseconds) of the sample at the given index.
+   */
+  long getTime(int index);
+
+  /**
+   * @return the value of the sample at the given index.
+   */
+  double getNumericValue(int index);
+
+  /**
+   * Returns at most about {@code maxSamples} samples summarizing the range, or null if this adapter does not maintain aggregates,
+   * in which case the raw samples are used.
+   */
+  @Nullable
+  default NumericSeriesData getDownsampledData(@NotNull Range range, int maxSamples) {
+    return null;
+  }
+}
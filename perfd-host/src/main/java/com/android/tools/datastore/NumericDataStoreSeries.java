@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore;
+
+import com.android.tools.adtui.model.NumericDataSeries;
+import com.android.tools.adtui.model.NumericSeriesData;
+import com.android.tools.adtui.model.Range;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link DataStoreSeries} of numbers, which lets charts read samples without boxing when the underlying adapter is a
+ * {@link NumericDataAdapter}.
+ */
+public class NumericDataStoreSeries<E extends Number> extends DataStoreSeries<E> implements NumericDataSeries<E> {
+
+  public NumericDataStoreSeries(@NotNull SeriesDataStore store, @NotNull SeriesDataType type, @Nullable Object target) {
+    super(store, type, target);
+  }
+
+  public NumericDataStoreSeries(@NotNull SeriesDataStore store, @NotNull SeriesDataType type) {
+    this(store, type, null);
+  }
+
+  @NotNull
+  @Override
+  public NumericSeriesData getNumericDataForXRange(@NotNull Range xRange) {
+    return mStore.<E>getSeriesData(mType, xRange, mTarget);
+  }
+
+  @NotNull
+  @Override
+  public NumericSeriesData getNumericDataForXRange(@NotNull Range xRange, int maxSamples) {
+    return mStore.getNumericSeriesData(mType, xRange, mTarget, maxSamples);
+  }
+}
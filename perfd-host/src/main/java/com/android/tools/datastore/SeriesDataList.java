@@ -15,6 +15,7 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.adtui.model.NumericSeriesData;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.adtui.model.Range;
 import com.intellij.util.containers.ImmutableList;
@@ -25,9 +26,12 @@ import org.jetbrains.annotations.Nullable;
  * Immutable list that all UI components get their data from. SeriesDataList are the
  * interface the UI uses to access data from the SeriesDataStore.
  *
+ * When the data is numeric, {@link #getX(int)} and {@link #getY(int)} read it directly from the
+ * {@link NumericDataAdapter} if there is one, without creating a {@link SeriesData} per sample.
+ *
  * @param <E> The type of data that is suppose to be accessed from the SeriesDataStore.
  */
-public class SeriesDataList<E> extends ImmutableList<SeriesData<E>> {
+public class SeriesDataList<E> extends ImmutableList<SeriesData<E>> implements NumericSeriesData {
 
   private int mStartIndex;
   private int mEndIndex;
@@ -44,6 +48,12 @@ public class SeriesDataList<E> extends ImmutableList<SeriesData<E>> {
   @Nullable
   private Object mTarget;
 
+  /**
+   * Adapter used to read the samples without boxing, null if the data is not backed by a {@link NumericDataAdapter}.
+   */
+  @Nullable
+  private NumericDataAdapter<?> mNumericAdapter;
+
   public SeriesDataList(@NotNull Range range, @NotNull SeriesDataStore dataStore, @NotNull SeriesDataType dataType) {
     this(range, dataStore, dataType, null);
   }
@@ -68,10 +78,32 @@ public class SeriesDataList<E> extends ImmutableList<SeriesData<E>> {
 
   @Override
   public SeriesData<E> get(int index) {
+    checkIndex(index);
+    return mDataStore.getDataAt(mDataType, mStartIndex + index, mTarget);
+  }
+
+  @Override
+  public long getX(int index) {
+    if (mNumericAdapter == null) {
+      return get(index).x;
+    }
+    checkIndex(index);
+    return mNumericAdapter.getTime(mStartIndex + index);
+  }
+
+  @Override
+  public double getY(int index) {
+    if (mNumericAdapter == null) {
+      return ((Number)get(index).value).doubleValue();
+    }
+    checkIndex(index);
+    return mNumericAdapter.getNumericValue(mStartIndex + index);
+  }
+
+  private void checkIndex(int index) {
     if (index < 0 || index >= size()) {
       throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
     }
-    return mDataStore.getDataAt(mDataType, mStartIndex + index, mTarget);
   }
 
   /**
@@ -81,6 +113,7 @@ public class SeriesDataList<E> extends ImmutableList<SeriesData<E>> {
   private void initialize(Range range) {
     mStartIndex = mDataStore.getClosestTimeIndex(mDataType, (long)range.getMin(), true, mTarget);
     mEndIndex = mDataStore.getClosestTimeIndex(mDataType, (long)range.getMax(), false, mTarget);
+    mNumericAdapter = mDataStore.getNumericAdapter(mDataType, mTarget);
     //TODO When we cache data to disk here we can tell the datastore to preload it for this range.
   }
 
@@ -15,9 +15,14 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.adtui.model.NumericSeriesData;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.datastore.profilerclient.DeviceProfilerService;
+import com.android.tools.datastore.storage.InMemoryLongSeries;
+import com.android.tools.datastore.storage.LongSeriesStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This interface is the minimal interface required for defining an object that
@@ -59,11 +64,29 @@ public interface SeriesDataStore {
    */
   <T> SeriesDataList<T> getSeriesData(SeriesDataType type, Range range, Object target);
 
+  /**
+   * Same as {@link #getSeriesData(SeriesDataType, Range, Object)} for numeric data, except that the data store may return aggregated
+   * samples instead of raw ones when there are more than {@code maxSamples} of them in the range.
+   */
+  @NotNull
+  default NumericSeriesData getNumericSeriesData(SeriesDataType type, Range range, @Nullable Object target, int maxSamples) {
+    return getSeriesData(type, range, target);
+  }
+
   /**
    * Returns the {@link SeriesData} at a given index, used by the {@link SeriesDataList}.
    */
   <T> SeriesData<T> getDataAt(SeriesDataType type, int index, Object target);
 
+  /**
+   * Returns the adapter registered for the type and target if it can be read without boxing, null otherwise.
+   * Used by the {@link SeriesDataList} to avoid creating a {@link SeriesData} per sample.
+   */
+  @Nullable
+  default NumericDataAdapter<?> getNumericAdapter(SeriesDataType type, @Nullable Object target) {
+    return null;
+  }
+
   /**
    * Returns the closest index to the time value.
    */
@@ -76,6 +99,15 @@ public interface SeriesDataStore {
    */
   void registerAdapter(SeriesDataType type, DataAdapter adapter, Object target);
 
+  /**
+   * Creates an empty series, held by the storage engine of this data store, that a poller can append samples to and expose through a
+   * {@link LongSeriesDataAdapter}. By default, samples are kept on heap.
+   */
+  @NotNull
+  default LongSeriesStore createLongSeries(@NotNull SeriesDataType type) {
+    return new InMemoryLongSeries();
+  }
+
   default void registerAdapter(SeriesDataType type, DataAdapter adapter) {
     registerAdapter(type, adapter, null);
   }
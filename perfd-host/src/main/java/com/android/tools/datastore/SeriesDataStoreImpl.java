@@ -15,9 +15,13 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.adtui.model.NumericSeriesData;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.datastore.profilerclient.DeviceProfilerService;
+import com.android.tools.datastore.storage.DownsampledLongSeries;
+import com.android.tools.datastore.storage.LongSeriesStore;
+import com.android.tools.datastore.storage.SeriesStorage;
 import com.android.tools.profiler.proto.Profiler;
 import com.intellij.openapi.diagnostic.Logger;
 import io.grpc.StatusRuntimeException;
@@ -53,8 +57,19 @@ public final class SeriesDataStoreImpl implements SeriesDataStore {
   @NotNull
   private final DeviceProfilerService myDeviceProfilerService;
 
+  /**
+   * Storage engine holding the samples of the series created through {@link #createLongSeries(SeriesDataType)}, closed by {@link #stop()}.
+   */
+  @NotNull
+  private final SeriesStorage myStorage;
+
   public SeriesDataStoreImpl(@NotNull DeviceProfilerService deviceProfilerService) {
+    this(deviceProfilerService, SeriesStorage.createDefault());
+  }
+
+  public SeriesDataStoreImpl(@NotNull DeviceProfilerService deviceProfilerService, @NotNull SeriesStorage storage) {
     myDeviceProfilerService = deviceProfilerService;
+    myStorage = storage;
     synchronizeStartTime();
   }
 
@@ -66,6 +81,7 @@ public final class SeriesDataStoreImpl implements SeriesDataStore {
   @Override
   public void stop() {
     myDataSeriesMap.values().forEach(adaptersMap -> adaptersMap.values().forEach(DataAdapter::stop));
+    myStorage.close();
   }
 
   @Override
@@ -94,11 +110,32 @@ public final class SeriesDataStoreImpl implements SeriesDataStore {
     return (SeriesData<T>)getAdapter(type, target).get(index);
   }
 
+  @Nullable
+  @Override
+  public NumericDataAdapter<?> getNumericAdapter(SeriesDataType type, @Nullable Object target) {
+    DataAdapter<?> adapter = getAdapter(type, target);
+    return adapter instanceof NumericDataAdapter ? (NumericDataAdapter<?>)adapter : null;
+  }
+
+  @NotNull
+  @Override
+  public NumericSeriesData getNumericSeriesData(SeriesDataType type, Range range, @Nullable Object target, int maxSamples) {
+    NumericDataAdapter<?> adapter = getNumericAdapter(type, target);
+    NumericSeriesData data = adapter == null ? null : adapter.getDownsampledData(range, maxSamples);
+    return data != null ? data : getSeriesData(type, range, target);
+  }
+
   @Override
   public <T> SeriesDataList<T> getSeriesData(SeriesDataType type, Range range, @Nullable Object target) {
     return new SeriesDataList<>(range, this, type, target);
   }
 
+  @NotNull
+  @Override
+  public LongSeriesStore createLongSeries(@NotNull SeriesDataType type) {
+    return new DownsampledLongSeries(myStorage.createLongSeries(type.name()));
+  }
+
   //TODO change the register API to
   // registerAdapter(SeriesDataType<T> DataAdapter<T>) to ensure type safety.
   @Override
@@ -15,15 +15,44 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.datastore.poller.PollRunner;
+import com.android.tools.datastore.session.SessionReader;
+import com.android.tools.datastore.session.SessionWriter;
+import com.android.tools.datastore.storage.SeriesStorage;
 import io.grpc.ManagedChannel;
 import io.grpc.ServerServiceDefinition;
-
-import java.util.concurrent.RunnableFuture;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public interface ServicePassThrough {
-  RunnableFuture<Void> getRunner();
+  /**
+   * @return a new runner polling the device for this service, or null if the service doesn't need polling.
+   */
+  @Nullable
+  PollRunner getRunner();
 
   ServerServiceDefinition getService();
 
   void connectService(ManagedChannel channel);
+
+  /**
+   * Sets the session the service records the data it receives into, or null to stop recording.
+   * Services which don't support recording ignore it.
+   */
+  default void setSessionWriter(@Nullable SessionWriter writer) {
+  }
+
+  /**
+   * Sets the recorded session the service serves its data from instead of the data received from the device, or null to go back to the
+   * device data. Services which don't support recording ignore it.
+   */
+  default void setSessionReader(@Nullable SessionReader reader) {
+  }
+
+  /**
+   * Sets the storage the service keeps the samples it receives in, replacing any series created from the previous storage (and the samples
+   * they hold). The previous storage is closed afterwards. Services which keep their samples on heap ignore it.
+   */
+  default void setSeriesStorage(@NotNull SeriesStorage storage) {
+  }
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Append-only list that readers can scan without taking any lock while writers keep appending.
+ *
+ * Elements are stored in fixed-size chunks which are never moved, so growing the log never copies elements. Writers reserve a range of
+ * slots atomically, fill it, then publish it in reservation order; readers only ever see published elements. A writer that fails while
+ * filling its range still publishes it, empty, so that the writers after it don't wait forever; readers skip the empty slots.
+ *
+ * Every element has a key, typically its timestamp. As long as the keys were appended in non-decreasing order, range queries binary search
+ * the published prefix instead of scanning it.
+ */
+final class AppendOnlyLog<T> {
+  private static final int CHUNK_SHIFT = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final AtomicInteger myReserved = new AtomicInteger();
+
+  /**
+   * Number of elements visible to readers. Written after the elements themselves, so reading it first guarantees that the elements
+   * below it are fully visible.
+   */
+  private volatile int myPublished;
+
+  private volatile Object[][] myChunks = new Object[16][];
+
+  @NotNull
+  private final ToLongFunction<? super T> myKey;
+
+  /**
+   * Key of the last element published. Only accessed by the writer whose turn it is to publish, which is ordered by {@link #myPublished}.
+   */
+  private long myLastKey = Long.MIN_VALUE;
+
+  /**
+   * Whether the keys of the published elements are in non-decreasing order. Written before {@link #myPublished}.
+   */
+  private volatile boolean myOrdered = true;
+
+  public AppendOnlyLog(@NotNull ToLongFunction<? super T> key) {
+    myKey = key;
+  }
+
+  /**
+   * Appends all the elements, which become visible to readers at once. If filling the log fails, e.g. because the list throws, none of
+   * the elements are added and the exception is rethrown.
+   */
+  public void addAll(@NotNull List<? extends T> elements) {
+    int count = elements.size();
+    if (count == 0) {
+      return;
+    }
+    int start = myReserved.getAndAdd(count);
+    int filled = 0;
+    long firstKey = 0;
+    long lastKey = 0;
+    boolean ordered = true;
+    try {
+      ensureCapacity(start + count);
+      Object[][] chunks = myChunks;
+      for (; filled < count; filled++) {
+        T element = elements.get(filled);
+        long key = myKey.applyAsLong(element);
+        if (filled == 0) {
+          firstKey = key;
+        }
+        else if (key < lastKey) {
+          ordered = false;
+        }
+        lastKey = key;
+        int index = start + filled;
+        chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = element;
+      }
+    }
+    finally {
+      if (filled < count) {
+        abandon(start, filled);
+      }
+      // Wait for writers that reserved slots before us, so that the published range never has holes. Appends are short, this only spins
+      // when two writers race.
+      while (myPublished != start) {
+        Thread.yield();
+      }
+      if (filled == count) {
+        if (!ordered || firstKey < myLastKey) {
+          myOrdered = false;
+        }
+        myLastKey = lastKey;
+      }
+      myPublished = start + count;
+    }
+  }
+
+  /**
+   * Calls the consumer on every element published so far, in insertion order.
+   */
+  public void forEach(@NotNull Consumer<? super T> consumer) {
+    int size = myPublished;
+    Object[][] chunks = myChunks;
+    for (int i = 0; i < size; i++) {
+      T element = get(chunks, i);
+      if (element != null) {
+        consumer.accept(element);
+      }
+    }
+  }
+
+  /**
+   * Calls the consumer on every element published so far whose key is in ({@code after}, {@code upTo}], in insertion order.
+   */
+  public void forEachInRange(long after, long upTo, @NotNull Consumer<? super T> consumer) {
+    int size = myPublished;
+    Object[][] chunks = myChunks;
+    if (!myOrdered) {
+      for (int i = 0; i < size; i++) {
+        T element = get(chunks, i);
+        if (element != null) {
+          long key = myKey.applyAsLong(element);
+          if (key > after && key <= upTo) {
+            consumer.accept(element);
+          }
+        }
+      }
+      return;
+    }
+
+    // Finds the first element whose key is greater than after. Empty slots are skipped by probing the next element instead.
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      int probe = mid;
+      T element = get(chunks, probe);
+      while (element == null && ++probe < high) {
+        element = get(chunks, probe);
+      }
+      if (element == null || myKey.applyAsLong(element) > after) {
+        high = mid;
+      }
+      else {
+        low = probe + 1;
+      }
+    }
+    for (int i = low; i < size; i++) {
+      T element = get(chunks, i);
+      if (element == null) {
+        continue;
+      }
+      if (myKey.applyAsLong(element) > upTo) {
+        break;
+      }
+      consumer.accept(element);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T get(@NotNull Object[][] chunks, int index) {
+    if (index >>> CHUNK_SHIFT >= chunks.length) {
+      // Only happens if the log failed to grow, in which case the rest of the published slots were all abandoned.
+      return null;
+    }
+    Object[] chunk = chunks[index >>> CHUNK_SHIFT];
+    return chunk == null ? null : (T)chunk[index & CHUNK_MASK];
+  }
+
+  /**
+   * Clears the first {@code filled} slots of a range whose append failed, so that it is published empty.
+   */
+  private void abandon(int start, int filled) {
+    Object[][] chunks = myChunks;
+    for (int i = 0; i < filled; i++) {
+      int index = start + i;
+      chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = null;
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    int lastChunk = (capacity - 1) >>> CHUNK_SHIFT;
+    Object[][] chunks = myChunks;
+    if (lastChunk < chunks.length && chunks[lastChunk] != null) {
+      return;
+    }
+    synchronized (this) {
+      chunks = myChunks;
+      if (lastChunk >= chunks.length) {
+        Object[][] grown = new Object[Math.max(chunks.length * 2, lastChunk + 1)][];
+        System.arraycopy(chunks, 0, grown, 0, chunks.length);
+        chunks = grown;
+      }
+      for (int i = 0; i <= lastChunk; i++) {
+        if (chunks[i] == null) {
+          chunks[i] = new Object[CHUNK_SIZE];
+        }
+      }
+      myChunks = chunks;
+    }
+  }
+}
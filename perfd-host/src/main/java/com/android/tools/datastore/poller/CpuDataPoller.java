@@ -16,37 +16,74 @@
 package com.android.tools.datastore.poller;
 
 import com.android.tools.datastore.ServicePassThrough;
+import com.android.tools.datastore.session.SessionReader;
+import com.android.tools.datastore.session.SessionRecorder;
+import com.android.tools.datastore.session.SessionWriter;
+import com.android.tools.datastore.storage.LongSeriesTable;
+import com.android.tools.datastore.storage.SeriesStorage;
+import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.CpuProfiler;
 import com.android.tools.profiler.proto.CpuServiceGrpc;
 import com.android.tools.profiler.proto.Profiler;
 import com.android.tools.profiler.proto.ProfilerServiceGrpc;
 import com.google.protobuf3jarjar.ByteString;
+import com.intellij.openapi.diagnostic.Logger;
+import io.grpc.ClientCall;
 import io.grpc.ManagedChannel;
 import io.grpc.ServerServiceDefinition;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
+import net.jcip.annotations.GuardedBy;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.RunnableFuture;
 
 /**
  * This class gathers sets up a CPUProfilerService and forward all commands to the connected channel with the exception of getData.
  * The get data command will pull data locally cached from the connected service.
  */
-public class CpuDataPoller extends CpuServiceGrpc.CpuServiceImplBase implements ServicePassThrough, PollRunner.PollingCallback {
+public class CpuDataPoller extends CpuServiceGrpc.CpuServiceImplBase
+  implements ServicePassThrough, PollRunner.PollingCallback, StreamingPollRunner.StreamingCallback {
+
+  /**
+   * Session stream holding the {@link CpuProfiler.CpuProfilerData} entries received from the device.
+   */
+  public static final String SESSION_STREAM = "cpu.data";
+
+  /**
+   * Columns of {@link #myCpuUsage}.
+   */
+  private static final int USAGE_APP_ID = 0, APP_CPU_TIME = 1, SYSTEM_CPU_TIME = 2, ELAPSED_TIME = 3;
+  private static final int USAGE_COLUMN_COUNT = 4;
+
+  /**
+   * Columns of {@link #myThreadActivities}.
+   */
+  private static final int ACTIVITY_APP_ID = 0, TID = 1, NEW_STATE = 2, ACTIVITY_TIMESTAMP = 3;
+  private static final int ACTIVITY_COLUMN_COUNT = 4;
+
+  private static Logger getLogger() { return Logger.getInstance(CpuDataPoller.class); }
 
   private long myDataRequestStartTimestampNs = Long.MIN_VALUE;
   private CpuServiceGrpc.CpuServiceBlockingStub myPollingService;
+  private ManagedChannel myChannel;
 
   /**
    * Used to get device time.
    */
   private ProfilerServiceGrpc.ProfilerServiceBlockingStub myProfilerService;
 
-  //TODO Pull this into a storage container that can read/write this to disk
-  protected final List<CpuProfiler.CpuProfilerData> myData = new ArrayList<>();
+  /**
+   * CPU usage samples, indexed by the end timestamp of the {@link CpuProfiler.CpuProfilerData} they were received in.
+   */
+  @GuardedBy("myLock") private LongSeriesTable myCpuUsage;
+  /**
+   * Thread activities, one row per {@link CpuProfiler.ThreadActivity}, indexed by the end timestamp of the
+   * {@link CpuProfiler.CpuProfilerData} they were received in. Thread names are kept in {@link #myThreads}.
+   */
+  @GuardedBy("myLock") private LongSeriesTable myThreadActivities;
   protected final Map<Integer, CpuProfiler.GetThreadsResponse.Thread.Builder> myThreads = new TreeMap<>();
   protected final Map<Integer, TraceData> myTraces = new HashMap<>();
 
@@ -56,12 +93,46 @@ public class CpuDataPoller extends CpuServiceGrpc.CpuServiceImplBase implements
 
   private long myStartTraceTimestamp = -1;
 
-  public CpuDataPoller() {
+  private final PollRunner.Handle myRunner = new PollRunner.Handle();
+
+  private final SessionRecorder myRecorder = new SessionRecorder();
+
+  /**
+   * Recorded session the data is served from instead of the data received from the device, if any.
+   */
+  @Nullable private volatile SessionReader mySessionReader;
+
+  public CpuDataPoller(@NotNull SeriesStorage storage) {
+    createSeries(storage);
   }
 
   @Override
-  public RunnableFuture<Void> getRunner() {
-    return new PollRunner(this, PollRunner.POLLING_DELAY_NS);
+  public void setSeriesStorage(@NotNull SeriesStorage storage) {
+    createSeries(storage);
+  }
+
+  private void createSeries(@NotNull SeriesStorage storage) {
+    synchronized (myLock) {
+      myCpuUsage = new LongSeriesTable(storage, "cpu-usage", USAGE_COLUMN_COUNT);
+      myThreadActivities = new LongSeriesTable(storage, "cpu-threads", ACTIVITY_COLUMN_COUNT);
+    }
+  }
+
+  @Override
+  public PollRunner getRunner() {
+    return myRunner.set(StreamingPollRunner.isEnabled()
+                        ? new StreamingPollRunner(this, PollRunner.POLLING_DELAY_NS)
+                        : new PollRunner(this, PollRunner.POLLING_DELAY_NS));
+  }
+
+  @Override
+  public void setSessionWriter(@Nullable SessionWriter writer) {
+    myRecorder.setWriter(writer);
+  }
+
+  @Override
+  public void setSessionReader(@Nullable SessionReader reader) {
+    mySessionReader = reader;
   }
 
   @Override
@@ -72,61 +143,106 @@ public class CpuDataPoller extends CpuServiceGrpc.CpuServiceImplBase implements
   @Override
   public void connectService(ManagedChannel channel) {
     myPollingService = CpuServiceGrpc.newBlockingStub(channel);
+    myChannel = channel;
     myProfilerService = ProfilerServiceGrpc.newBlockingStub(channel);
   }
 
   @Override
-  public void poll() throws StatusRuntimeException {
-    CpuProfiler.CpuDataRequest.Builder dataRequestBuilder = CpuProfiler.CpuDataRequest.newBuilder()
+  public int poll() throws StatusRuntimeException {
+    return ingest(myPollingService.getData(buildDataRequest()));
+  }
+
+  @NotNull
+  @Override
+  public ClientCall<?, ?> openStream(@NotNull StreamingPollRunner.StreamListener listener) {
+    return StreamingPollRunner.startStream(myChannel, CpuServiceGrpc.METHOD_GET_DATA, buildDataRequest(), this::ingest, listener);
+  }
+
+  @NotNull
+  private CpuProfiler.CpuDataRequest buildDataRequest() {
+    return CpuProfiler.CpuDataRequest.newBuilder()
       .setAppId(myProcessId)
       .setStartTimestamp(myDataRequestStartTimestampNs)
-      .setEndTimestamp(Long.MAX_VALUE);
-    CpuProfiler.CpuDataResponse response = myPollingService.getData(dataRequestBuilder.build());
+      .setEndTimestamp(Long.MAX_VALUE)
+      .build();
+  }
 
+  /**
+   * Caches the data received from the device.
+   *
+   * @return the number of new samples.
+   */
+  private int ingest(@NotNull CpuProfiler.CpuDataResponse response) {
+    for (CpuProfiler.CpuProfilerData data : response.getDataList()) {
+      myRecorder.record(SESSION_STREAM, data.getBasicInfo().getEndTimestamp(), data);
+    }
     synchronized (myLock) {
       for (CpuProfiler.CpuProfilerData data : response.getDataList()) {
-        myDataRequestStartTimestampNs = data.getBasicInfo().getEndTimestamp();
-        myData.add(data);
+        long timestamp = data.getBasicInfo().getEndTimestamp();
+        int appId = data.getBasicInfo().getAppId();
+        myDataRequestStartTimestampNs = timestamp;
         if (data.getDataCase() == CpuProfiler.CpuProfilerData.DataCase.THREAD_ACTIVITIES) {
-          CpuProfiler.ThreadActivities activities = data.getThreadActivities();
-          if (activities != null) {
-            for (CpuProfiler.ThreadActivity activity : activities.getActivitiesList()) {
-              int tid = activity.getTid();
-              CpuProfiler.GetThreadsResponse.Thread.Builder builder = myThreads.get(tid);
-              if (builder == null) {
-                builder = CpuProfiler.GetThreadsResponse.Thread.newBuilder().setName(activity.getName()).setTid(tid);
-                myThreads.put(tid, builder);
-              }
-              CpuProfiler.ThreadActivity.State state = activity.getNewState();
-              CpuProfiler.GetThreadsResponse.State converted = CpuProfiler.GetThreadsResponse.State.valueOf(state.toString());
-              builder.addActivities(CpuProfiler.GetThreadsResponse.ThreadActivity.newBuilder()
-                                      .setTimestamp(activity.getTimestamp())
-                                      .setNewState(converted));
+          for (CpuProfiler.ThreadActivity activity : data.getThreadActivities().getActivitiesList()) {
+            int tid = activity.getTid();
+            myThreadActivities.add(timestamp, appId, tid, activity.getNewStateValue(), activity.getTimestamp());
+            CpuProfiler.GetThreadsResponse.Thread.Builder builder = myThreads.get(tid);
+            if (builder == null) {
+              builder = CpuProfiler.GetThreadsResponse.Thread.newBuilder().setName(activity.getName()).setTid(tid);
+              myThreads.put(tid, builder);
             }
+            CpuProfiler.ThreadActivity.State state = activity.getNewState();
+            CpuProfiler.GetThreadsResponse.State converted = CpuProfiler.GetThreadsResponse.State.valueOf(state.toString());
+            builder.addActivities(CpuProfiler.GetThreadsResponse.ThreadActivity.newBuilder()
+                                    .setTimestamp(activity.getTimestamp())
+                                    .setNewState(converted));
           }
         }
+        else {
+          CpuProfiler.CpuUsageData usage = data.getCpuUsage();
+          myCpuUsage.add(timestamp, appId, usage.getAppCpuTimeInMillisec(), usage.getSystemCpuTimeInMillisec(),
+                         usage.getElapsedTimeInMillisec());
+        }
       }
     }
+    return response.getDataCount();
   }
 
   @Override
   public void getData(CpuProfiler.CpuDataRequest request, StreamObserver<CpuProfiler.CpuDataResponse> observer) {
+    myRunner.markActive(request.getAppId(), request.getEndTimestamp(), myProcessId, myDataRequestStartTimestampNs);
     CpuProfiler.CpuDataResponse.Builder response = CpuProfiler.CpuDataResponse.newBuilder();
-    if (myData.size() == 0) {
+    long startTime = request.getStartTimestamp();
+    long endTime = request.getEndTimestamp();
+
+    SessionReader reader = mySessionReader;
+    if (reader != null) {
+      try {
+        reader.forEachMessage(SESSION_STREAM, startTime == Long.MAX_VALUE ? startTime : startTime + 1, endTime,
+                              CpuProfiler.CpuProfilerData.parser(), response::addData);
+      }
+      catch (IOException e) {
+        getLogger().warn("Unable to read the recorded session", e);
+      }
       observer.onNext(response.build());
       observer.onCompleted();
       return;
     }
 
-    long startTime = request.getStartTimestamp();
-    long endTime = request.getEndTimestamp();
-
-    //TODO: Optimize so we do not need to loop all the data every request, ideally binary search to start time and loop till end.
     synchronized (myLock) {
-      for (CpuProfiler.CpuProfilerData data : myData) {
-        long current = data.getBasicInfo().getEndTimestamp();
-        if (current > startTime && current <= endTime) {
-          response.addData(data);
+      // Merges both series, so that the response stays sorted by timestamp.
+      int usageIndex = myCpuUsage.getFirstIndexAfter(startTime);
+      int activityIndex = myThreadActivities.getFirstIndexAfter(startTime);
+      while (true) {
+        boolean hasUsage = usageIndex < myCpuUsage.getEndIndex() && myCpuUsage.getTime(usageIndex) <= endTime;
+        boolean hasActivity = activityIndex < myThreadActivities.getEndIndex() && myThreadActivities.getTime(activityIndex) <= endTime;
+        if (hasUsage && (!hasActivity || myCpuUsage.getTime(usageIndex) <= myThreadActivities.getTime(activityIndex))) {
+          addCpuUsage(response, usageIndex++);
+        }
+        else if (hasActivity) {
+          activityIndex = addThreadActivities(response, activityIndex);
+        }
+        else {
+          break;
         }
       }
     }
@@ -134,8 +250,52 @@ public class CpuDataPoller extends CpuServiceGrpc.CpuServiceImplBase implements
     observer.onCompleted();
   }
 
+  @GuardedBy("myLock")
+  private void addCpuUsage(@NotNull CpuProfiler.CpuDataResponse.Builder response, int index) {
+    CpuProfiler.CpuUsageData usage = CpuProfiler.CpuUsageData.newBuilder()
+      .setAppCpuTimeInMillisec(myCpuUsage.getValue(index, APP_CPU_TIME))
+      .setSystemCpuTimeInMillisec(myCpuUsage.getValue(index, SYSTEM_CPU_TIME))
+      .setElapsedTimeInMillisec(myCpuUsage.getValue(index, ELAPSED_TIME))
+      .build();
+    response.addData(CpuProfiler.CpuProfilerData.newBuilder()
+                       .setBasicInfo(createBasicInfo((int)myCpuUsage.getValue(index, USAGE_APP_ID), myCpuUsage.getTime(index)))
+                       .setCpuUsage(usage));
+  }
+
+  /**
+   * Adds the activities received in the same {@link CpuProfiler.CpuProfilerData} as the one at {@code index}.
+   *
+   * @return the index of the first activity received afterwards.
+   */
+  @GuardedBy("myLock")
+  private int addThreadActivities(@NotNull CpuProfiler.CpuDataResponse.Builder response, int index) {
+    long timestamp = myThreadActivities.getTime(index);
+    long appId = myThreadActivities.getValue(index, ACTIVITY_APP_ID);
+    CpuProfiler.ThreadActivities.Builder activities = CpuProfiler.ThreadActivities.newBuilder();
+    for (; index < myThreadActivities.getEndIndex() && myThreadActivities.getTime(index) == timestamp &&
+           myThreadActivities.getValue(index, ACTIVITY_APP_ID) == appId; index++) {
+      int tid = (int)myThreadActivities.getValue(index, TID);
+      CpuProfiler.GetThreadsResponse.Thread.Builder thread = myThreads.get(tid);
+      activities.addActivities(CpuProfiler.ThreadActivity.newBuilder()
+                                 .setTid(tid)
+                                 .setName(thread != null ? thread.getName() : "")
+                                 .setNewStateValue((int)myThreadActivities.getValue(index, NEW_STATE))
+                                 .setTimestamp(myThreadActivities.getValue(index, ACTIVITY_TIMESTAMP)));
+    }
+    response.addData(CpuProfiler.CpuProfilerData.newBuilder()
+                       .setBasicInfo(createBasicInfo((int)appId, timestamp))
+                       .setThreadActivities(activities));
+    return index;
+  }
+
+  @NotNull
+  private static Common.CommonData createBasicInfo(int appId, long endTimestamp) {
+    return Common.CommonData.newBuilder().setAppId(appId).setEndTimestamp(endTimestamp).build();
+  }
+
   @Override
   public void getThreads(CpuProfiler.GetThreadsRequest request, StreamObserver<CpuProfiler.GetThreadsResponse> observer) {
+    myRunner.markActive(request.getAppId(), request.getEndTimestamp(), myProcessId, myDataRequestStartTimestampNs);
     CpuProfiler.GetThreadsResponse.Builder response = CpuProfiler.GetThreadsResponse.newBuilder();
 
     long from = request.getStartTimestamp();
@@ -178,7 +338,8 @@ public class CpuDataPoller extends CpuServiceGrpc.CpuServiceImplBase implements
     myProcessId = request.getAppId();
     synchronized (myLock) {
       myThreads.clear();
-      myData.clear();
+      myCpuUsage.clear();
+      myThreadActivities.clear();
     }
     observer.onNext(myPollingService.startMonitoringApp(request));
     observer.onCompleted();
@@ -28,7 +28,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Iterator;
 import java.util.PriorityQueue;
-import java.util.concurrent.RunnableFuture;
 
 /**
  * This class host an EventService that will provide callers access to all cached EventData. The data is populated from polling the service
@@ -46,12 +45,14 @@ public class EventDataPoller extends EventServiceGrpc.EventServiceImplBase imple
   private Object myActivityLock = new Object();
   private Object mySystemDataLock = new Object();
 
+  private final PollRunner.Handle myRunner = new PollRunner.Handle();
+
   public EventDataPoller() {
 
   }
 
   @Override
-  public void poll() throws StatusRuntimeException {
+  public int poll() throws StatusRuntimeException {
     EventProfiler.EventDataRequest.Builder dataRequestBuilder = EventProfiler.EventDataRequest.newBuilder()
       .setAppId(myProcessId)
       .setStartTimestamp(myDataRequestStartTimestampNs)
@@ -97,10 +98,12 @@ public class EventDataPoller extends EventServiceGrpc.EventServiceImplBase imple
         mySystemMap.put(id, data);
       }
     }
+    return activityResponse.getDataCount() + systemResponse.getDataCount();
   }
 
   @Override
   public void getActivityData(EventProfiler.EventDataRequest request, StreamObserver<EventProfiler.ActivityDataResponse> responseObserver) {
+    myRunner.markActive(request.getAppId(), request.getEndTimestamp(), myProcessId, myDataRequestStartTimestampNs);
     EventProfiler.ActivityDataResponse.Builder response = EventProfiler.ActivityDataResponse.newBuilder();
     synchronized (myActivityLock) {
       for (EventProfiler.ActivityData data : myActivityDataMap.values()) {
@@ -143,6 +146,7 @@ public class EventDataPoller extends EventServiceGrpc.EventServiceImplBase imple
 
   @Override
   public void getSystemData(EventProfiler.EventDataRequest request, StreamObserver<EventProfiler.SystemDataResponse> responseObserver) {
+    myRunner.markActive(request.getAppId(), request.getEndTimestamp(), myProcessId, myDataRequestStartTimestampNs);
     EventProfiler.SystemDataResponse.Builder response = EventProfiler.SystemDataResponse.newBuilder();
     synchronized (mySystemDataLock) {
       for (EventProfiler.SystemData data : mySystemMap.values()) {
@@ -184,7 +188,7 @@ public class EventDataPoller extends EventServiceGrpc.EventServiceImplBase imple
   }
 
   @Override
-  public RunnableFuture<Void> getRunner() {
-    return new PollRunner(this, PollRunner.POLLING_DELAY_NS);
+  public PollRunner getRunner() {
+    return myRunner.set(new PollRunner(this, PollRunner.POLLING_DELAY_NS));
   }
 }
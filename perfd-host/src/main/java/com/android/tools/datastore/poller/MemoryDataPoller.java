@@ -19,6 +19,11 @@ import com.android.tools.adtui.model.DurationData;
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.LegacyAllocationTrackingService;
 import com.android.tools.datastore.ServicePassThrough;
+import com.android.tools.datastore.session.SessionReader;
+import com.android.tools.datastore.session.SessionRecorder;
+import com.android.tools.datastore.session.SessionWriter;
+import com.android.tools.datastore.storage.LongSeriesTable;
+import com.android.tools.datastore.storage.SeriesStorage;
 import com.android.tools.profiler.proto.MemoryProfiler.*;
 import com.android.tools.profiler.proto.MemoryProfiler.MemoryData.AllocationEvent;
 import com.android.tools.profiler.proto.MemoryProfiler.MemoryData.AllocationsInfo;
@@ -26,35 +31,82 @@ import com.android.tools.profiler.proto.MemoryProfiler.MemoryData.MemorySample;
 import com.android.tools.profiler.proto.MemoryProfiler.MemoryData.VmStatsSample;
 import com.android.tools.profiler.proto.MemoryServiceGrpc;
 import com.google.protobuf3jarjar.ByteString;
+import com.google.protobuf3jarjar.UnsafeByteOperations;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import io.grpc.ClientCall;
 import io.grpc.ManagedChannel;
 import io.grpc.ServerServiceDefinition;
 import io.grpc.stub.StreamObserver;
+import net.jcip.annotations.GuardedBy;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
-import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.android.tools.profiler.proto.MemoryProfiler.TrackAllocationsResponse.Status.SUCCESS;
 
-public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase implements ServicePassThrough, PollRunner.PollingCallback {
+public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase
+  implements ServicePassThrough, PollRunner.PollingCallback, StreamingPollRunner.StreamingCallback {
+
+  /**
+   * Session streams holding the samples and allocation events received, each recorded with its own timestamp so that they can be looked
+   * up by range. Allocation tracking sessions and heap dumps are not recorded.
+   */
+  public static final String MEMORY_SAMPLES_STREAM = "memory.samples";
+  public static final String VM_STATS_SAMPLES_STREAM = "memory.vmstats";
+  public static final String ALLOCATION_EVENTS_STREAM = "memory.allocations";
+
+  /**
+   * Columns of {@link #myMemoryData}, in the order of the fields of {@link MemorySample}.
+   */
+  private static final int JAVA_MEM = 0, NATIVE_MEM = 1, STACK_MEM = 2, GRAPHICS_MEM = 3, CODE_MEM = 4, OTHERS_MEM = 5, TOTAL_MEM = 6;
+  private static final int MEMORY_COLUMN_COUNT = 7;
+
+  /**
+   * Columns of {@link #myStatsData}, in the order of the fields of {@link VmStatsSample}.
+   */
+  private static final int ALLOCATION_COUNT = 0, FREE_COUNT = 1, GC_COUNT = 2;
+  private static final int STATS_COLUMN_COUNT = 3;
+
+  private static Logger getLogger() { return Logger.getInstance(MemoryDataPoller.class); }
   private final LegacyAllocationTrackingService myLegacyAllocationTrackingService;
 
   private long myDataRequestStartTimestampNs = Long.MIN_VALUE;
 
   private MemoryServiceGrpc.MemoryServiceBlockingStub myPollingService;
 
-  //TODO: Pull this into a storage container that can read/write this to disk
+  private ManagedChannel myChannel;
+
   //TODO: Rename MemoryData to MemoryProfilerData for consistency
-  //TODO: Do these needs to be synchronized?
-  protected final List<MemorySample> myMemoryData = new ArrayList<>();
-  protected final List<VmStatsSample> myStatsData = new ArrayList<>();
+  /**
+   * Memory and VM stats samples, kept in the series storage with one column per field.
+   */
+  @GuardedBy("myUpdatingDataLock") private LongSeriesTable myMemoryData;
+  @GuardedBy("myUpdatingDataLock") private LongSeriesTable myStatsData;
   protected final List<HeapDumpSample> myHeapData = new ArrayList<>();
-  protected final List<AllocationEvent> myAllocationEvents = new ArrayList<>();
-  protected final List<AllocationsInfo> myAllocationsInfos = new ArrayList<>();
-  protected final Map<String, AllocatedClass> myAllocatedClasses = new HashMap<>();
-  protected final Map<ByteString, AllocationStack> myAllocationStacks = new HashMap<>();
+  /**
+   * Completed allocation tracking sessions, indexed by start time with the end time as their only column. The session in progress, if
+   * any, is kept in {@link #myOngoingAllocationsInfo} until the device reports its end.
+   */
+  @GuardedBy("myUpdatingDataLock") private LongSeriesTable myAllocationsInfos;
+  @GuardedBy("myUpdatingDataLock") @Nullable private AllocationsInfo myOngoingAllocationsInfo;
+
+  // Allocation data can arrive in large bursts, it is kept in concurrent structures so that ingesting it never blocks queries (and the
+  // other way around). Classes and stacks are interned by name/id, the first one received wins. Events are looked up by timestamp, and
+  // counted per allocated class as they are received.
+  protected final AppendOnlyLog<AllocationEvent> myAllocationEvents = new AppendOnlyLog<>(AllocationEvent::getTimestamp);
+  private final ConcurrentMap<Integer, AllocationCounters> myAllocationCounters = new ConcurrentHashMap<>();
+  protected final ConcurrentMap<String, AllocatedClass> myAllocatedClasses = new ConcurrentHashMap<>();
+  protected final ConcurrentMap<ByteString, AllocationStack> myAllocationStacks = new ConcurrentHashMap<>();
 
   private final Object myUpdatingDataLock = new Object();
   private final Object myUpdatingAllocationsLock = new Object();
@@ -63,13 +115,49 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
 
   private int myProcessId = -1;
 
-  public MemoryDataPoller(@NotNull DataStoreService dataStoreService) {
+  private final PollRunner.Handle myRunner = new PollRunner.Handle();
+
+  private final SessionRecorder myRecorder = new SessionRecorder();
+
+  /**
+   * Recorded session the data is served from instead of the data received from the device, if any.
+   */
+  @Nullable private volatile SessionReader mySessionReader;
+
+  public MemoryDataPoller(@NotNull DataStoreService dataStoreService, @NotNull SeriesStorage storage) {
     myLegacyAllocationTrackingService = new LegacyAllocationTrackingService(dataStoreService::getLegacyAllocationTracker);
+    createSeries(storage);
   }
 
   @Override
-  public RunnableFuture<Void> getRunner() {
-    return new PollRunner(this, PollRunner.POLLING_DELAY_NS);
+  public void setSeriesStorage(@NotNull SeriesStorage storage) {
+    createSeries(storage);
+  }
+
+  private void createSeries(@NotNull SeriesStorage storage) {
+    synchronized (myUpdatingDataLock) {
+      myMemoryData = new LongSeriesTable(storage, "memory", MEMORY_COLUMN_COUNT);
+      myStatsData = new LongSeriesTable(storage, "memory-stats", STATS_COLUMN_COUNT);
+      myAllocationsInfos = new LongSeriesTable(storage, "memory-allocations", 1);
+      myOngoingAllocationsInfo = null;
+    }
+  }
+
+  @Override
+  public PollRunner getRunner() {
+    return myRunner.set(StreamingPollRunner.isEnabled()
+                        ? new StreamingPollRunner(this, PollRunner.POLLING_DELAY_NS)
+                        : new PollRunner(this, PollRunner.POLLING_DELAY_NS));
+  }
+
+  @Override
+  public void setSessionWriter(@Nullable SessionWriter writer) {
+    myRecorder.setWriter(writer);
+  }
+
+  @Override
+  public void setSessionReader(@Nullable SessionReader reader) {
+    mySessionReader = reader;
   }
 
   @Override
@@ -80,6 +168,7 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
   @Override
   public void connectService(ManagedChannel channel) {
     myPollingService = MemoryServiceGrpc.newBlockingStub(channel);
+    myChannel = channel;
   }
 
   @Override
@@ -87,6 +176,9 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
     synchronized (myUpdatingDataLock) {
       myMemoryData.clear();
       myStatsData.clear();
+      myAllocationsInfos.clear();
+      myOngoingAllocationsInfo = null;
+      myHeapData.forEach(HeapDumpSample::deleteDumpFile);
       myHeapData.clear();
     }
     myProcessId = request.getAppId();
@@ -107,34 +199,40 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
     responseObserver.onCompleted();
   }
 
+  /**
+   * Responds once the requested dump has been fetched from the device, rather than with {@link DumpDataResponse.Status#NOT_READY}, so
+   * that clients don't need to poll. The response wraps a read-only mapping of the spill file, so the dump is copied from the page cache
+   * straight to the channel rather than into the heap. getHeapDump is a unary call, so the dump still travels as a single message.
+   */
   @Override
   public void getHeapDump(HeapDumpDataRequest request, StreamObserver<DumpDataResponse> responseObserver) {
-    DumpDataResponse.Builder responseBuilder = DumpDataResponse.newBuilder();
+    HeapDumpSample dump;
     synchronized (myUpdatingDataLock) {
       int index = Collections
         .binarySearch(myHeapData, new HeapDumpSample(request.getDumpId()), (o1, o2) -> o1.myInfo.getDumpId() - o2.myInfo.getDumpId());
-      if (index < 0) {
-        responseBuilder.setStatus(DumpDataResponse.Status.NOT_FOUND);
-      }
-      else {
-        HeapDumpSample dump = myHeapData.get(index);
-        if (dump.isError) {
-          responseBuilder.setStatus(DumpDataResponse.Status.FAILURE_UNKNOWN);
+      dump = index < 0 ? null : myHeapData.get(index);
+    }
+    if (dump == null) {
+      responseObserver.onNext(DumpDataResponse.newBuilder().setStatus(DumpDataResponse.Status.NOT_FOUND).build());
+      responseObserver.onCompleted();
+      return;
+    }
+
+    dump.myDumpFile.whenComplete((file, error) -> {
+      DumpDataResponse.Builder responseBuilder = DumpDataResponse.newBuilder().setStatus(DumpDataResponse.Status.FAILURE_UNKNOWN);
+      if (error == null) {
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+          // The mapping stays valid once the channel is closed, and is released when the response is collected.
+          MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+          responseBuilder.setData(UnsafeByteOperations.unsafeWrap(mapped)).setStatus(DumpDataResponse.Status.SUCCESS);
         }
-        else {
-          ByteString data = dump.myData;
-          if (data == null) {
-            responseBuilder.setStatus(DumpDataResponse.Status.NOT_READY);
-          }
-          else {
-            responseBuilder.setStatus(DumpDataResponse.Status.SUCCESS);
-            responseBuilder.setData(data);
-          }
+        catch (IOException e) {
+          getLogger().warn("Unable to read heap dump " + file, e);
         }
       }
-    }
-    responseObserver.onNext(responseBuilder.build());
-    responseObserver.onCompleted();
+      responseObserver.onNext(responseBuilder.build());
+      responseObserver.onCompleted();
+    });
   }
 
   @Override
@@ -165,11 +263,9 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
       if (response.getStatus() == SUCCESS) {
         myLegacyAllocationTrackingService
           .trackAllocations(myProcessId, response.getTimestamp(), request.getEnabled(), (classes, stacks, allocations) -> {
-            synchronized (myUpdatingDataLock) {
-              classes.forEach(allocatedClass -> myAllocatedClasses.putIfAbsent(allocatedClass.getClassName(), allocatedClass));
-              stacks.forEach(allocationStack -> myAllocationStacks.putIfAbsent(allocationStack.getStackId(), allocationStack));
-              allocations.forEach(myAllocationEvents::add);
-            }
+            classes.forEach(allocatedClass -> myAllocatedClasses.putIfAbsent(allocatedClass.getClassName(), allocatedClass));
+            stacks.forEach(allocationStack -> myAllocationStacks.putIfAbsent(allocationStack.getStackId(), allocationStack));
+            addAllocationEvents(allocations);
           });
       }
       responseObserver.onNext(response);
@@ -189,53 +285,116 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
 
   @Override
   public void getData(MemoryRequest request, StreamObserver<MemoryData> responseObserver) {
+    myRunner.markActive(request.getAppId(), request.getEndTime(), myProcessId, myDataRequestStartTimestampNs);
     MemoryData.Builder response = MemoryData.newBuilder();
     long startTime = request.getStartTime();
     long endTime = request.getEndTime();
 
-    //TODO: Optimize so we do not need to loop over all the data every request, ideally binary search to start time and loop till end.
+    SessionReader reader = mySessionReader;
+    if (reader != null) {
+      long fromTime = startTime == Long.MAX_VALUE ? startTime : startTime + 1;
+      try {
+        reader.forEachMessage(MEMORY_SAMPLES_STREAM, fromTime, endTime, MemorySample.parser(), response::addMemSamples);
+        reader.forEachMessage(VM_STATS_SAMPLES_STREAM, fromTime, endTime, VmStatsSample.parser(), response::addVmStatsSamples);
+        reader.forEachMessage(ALLOCATION_EVENTS_STREAM, fromTime, endTime, AllocationEvent.parser(), response::addAllocationEvents);
+      }
+      catch (IOException e) {
+        getLogger().warn("Unable to read the recorded session", e);
+      }
+      responseObserver.onNext(response.build());
+      responseObserver.onCompleted();
+      return;
+    }
+
     synchronized (myUpdatingDataLock) {
-      myMemoryData.stream().filter(obj -> obj.getTimestamp() > startTime && obj.getTimestamp() <= endTime).forEach(response::addMemSamples);
-      myStatsData.stream().filter(obj -> obj.getTimestamp() > startTime && obj.getTimestamp() <= endTime)
-        .forEach(response::addVmStatsSamples);
+      for (int i = myMemoryData.getFirstIndexAfter(startTime); i < myMemoryData.getEndIndex() && myMemoryData.getTime(i) <= endTime; i++) {
+        response.addMemSamples(MemorySample.newBuilder()
+                                 .setTimestamp(myMemoryData.getTime(i))
+                                 .setJavaMem(myMemoryData.getValue(i, JAVA_MEM))
+                                 .setNativeMem(myMemoryData.getValue(i, NATIVE_MEM))
+                                 .setStackMem(myMemoryData.getValue(i, STACK_MEM))
+                                 .setGraphicsMem(myMemoryData.getValue(i, GRAPHICS_MEM))
+                                 .setCodeMem(myMemoryData.getValue(i, CODE_MEM))
+                                 .setOthersMem(myMemoryData.getValue(i, OTHERS_MEM))
+                                 .setTotalMem(myMemoryData.getValue(i, TOTAL_MEM)));
+      }
+      for (int i = myStatsData.getFirstIndexAfter(startTime); i < myStatsData.getEndIndex() && myStatsData.getTime(i) <= endTime; i++) {
+        response.addVmStatsSamples(VmStatsSample.newBuilder()
+                                     .setTimestamp(myStatsData.getTime(i))
+                                     .setJavaAllocationCount((int)myStatsData.getValue(i, ALLOCATION_COUNT))
+                                     .setJavaFreeCount((int)myStatsData.getValue(i, FREE_COUNT))
+                                     .setGcCount((int)myStatsData.getValue(i, GC_COUNT)));
+      }
       myHeapData.stream().filter(obj -> (obj.myInfo.getStartTime() > startTime && obj.myInfo.getStartTime() <= endTime) ||
                                         (obj.myInfo.getEndTime() > startTime && obj.myInfo.getEndTime() <= endTime))
         .forEach(obj -> response.addHeapDumpInfos(obj.myInfo));
-      myAllocationsInfos.stream().filter(info -> (info.getStartTime() > startTime && info.getStartTime() <= endTime) ||
-                                                 (info.getEndTime() > startTime && info.getEndTime() <= endTime))
-        .forEach(response::addAllocationsInfo);
-      myAllocationEvents.stream().filter(event -> event.getTimestamp() > startTime && event.getTimestamp() <= endTime)
-        .forEach(response::addAllocationEvents);
+      // Tracking sessions don't overlap, so only the last one starting before the range can end within it.
+      int first = Math.max(myAllocationsInfos.getFirstIndex(), myAllocationsInfos.getFirstIndexAfter(startTime) - 1);
+      for (int i = first; i < myAllocationsInfos.getEndIndex() && myAllocationsInfos.getTime(i) <= endTime; i++) {
+        long infoStartTime = myAllocationsInfos.getTime(i);
+        long infoEndTime = myAllocationsInfos.getValue(i, 0);
+        if (infoStartTime > startTime || (infoEndTime > startTime && infoEndTime <= endTime)) {
+          response.addAllocationsInfo(AllocationsInfo.newBuilder().setStartTime(infoStartTime).setEndTime(infoEndTime));
+        }
+      }
+      AllocationsInfo ongoing = myOngoingAllocationsInfo;
+      if (ongoing != null && ((ongoing.getStartTime() > startTime && ongoing.getStartTime() <= endTime) ||
+                              (ongoing.getEndTime() > startTime && ongoing.getEndTime() <= endTime))) {
+        response.addAllocationsInfo(ongoing);
+      }
     }
+    myAllocationEvents.forEachInRange(startTime, endTime, response::addAllocationEvents);
     responseObserver.onNext(response.build());
     responseObserver.onCompleted();
   }
 
   @Override
-  public void poll() {
-    MemoryRequest.Builder dataRequestBuilder = MemoryRequest.newBuilder()
+  public int poll() {
+    return ingest(myPollingService.getData(buildDataRequest()));
+  }
+
+  @NotNull
+  @Override
+  public ClientCall<?, ?> openStream(@NotNull StreamingPollRunner.StreamListener listener) {
+    return StreamingPollRunner.startStream(myChannel, MemoryServiceGrpc.METHOD_GET_DATA, buildDataRequest(), this::ingest, listener);
+  }
+
+  @NotNull
+  private MemoryRequest buildDataRequest() {
+    return MemoryRequest.newBuilder()
       .setAppId(myProcessId)
       .setStartTime(myDataRequestStartTimestampNs)
-      .setEndTime(Long.MAX_VALUE);
-    MemoryData response = myPollingService.getData(dataRequestBuilder.build());
+      .setEndTime(Long.MAX_VALUE)
+      .build();
+  }
 
+  /**
+   * Caches the data received from the device.
+   *
+   * @return the number of new samples.
+   */
+  private int ingest(@NotNull MemoryData response) {
+    response.getMemSamplesList().forEach(sample -> myRecorder.record(MEMORY_SAMPLES_STREAM, sample.getTimestamp(), sample));
+    response.getVmStatsSamplesList().forEach(sample -> myRecorder.record(VM_STATS_SAMPLES_STREAM, sample.getTimestamp(), sample));
+    addAllocationEvents(response.getAllocationEventsList());
     synchronized (myUpdatingDataLock) {
-      myMemoryData.addAll(response.getMemSamplesList());
-      myStatsData.addAll(response.getVmStatsSamplesList());
-      myAllocationEvents.addAll(response.getAllocationEventsList());
-
-      if (response.getAllocationsInfoCount() > 0) {
-        int startAppendIndex = 0;
-        int lastEntryIndex = myAllocationsInfos.size() - 1;
-        if (lastEntryIndex >= 0 && myAllocationsInfos.get(lastEntryIndex).getEndTime() == DurationData.UNSPECIFIED_DURATION) {
-          AllocationsInfo lastOriginalEntry = myAllocationsInfos.get(lastEntryIndex);
-          AllocationsInfo firstIncomingEntry = response.getAllocationsInfo(0);
-          assert response.getAllocationsInfo(0).getStartTime() == lastOriginalEntry.getStartTime();
-          myAllocationsInfos.set(lastEntryIndex, firstIncomingEntry);
-          startAppendIndex = 1;
+      for (MemorySample sample : response.getMemSamplesList()) {
+        myMemoryData.add(sample.getTimestamp(), sample.getJavaMem(), sample.getNativeMem(), sample.getStackMem(), sample.getGraphicsMem(),
+                         sample.getCodeMem(), sample.getOthersMem(), sample.getTotalMem());
+      }
+      for (VmStatsSample sample : response.getVmStatsSamplesList()) {
+        myStatsData.add(sample.getTimestamp(), sample.getJavaAllocationCount(), sample.getJavaFreeCount(), sample.getGcCount());
+      }
+
+      for (AllocationsInfo info : response.getAllocationsInfoList()) {
+        // The session in progress is sent again, as the first entry, until it ends.
+        assert myOngoingAllocationsInfo == null || info.getStartTime() == myOngoingAllocationsInfo.getStartTime();
+        myOngoingAllocationsInfo = null;
+        if (info.getEndTime() == DurationData.UNSPECIFIED_DURATION) {
+          myOngoingAllocationsInfo = info;
         }
-        for (int i = startAppendIndex; i < response.getAllocationsInfoCount(); i++) {
-          myAllocationsInfos.add(response.getAllocationsInfo(i));
+        else {
+          myAllocationsInfos.add(info.getStartTime(), info.getEndTime());
         }
       }
 
@@ -269,15 +428,22 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
       if (!dumpsToFetch.isEmpty()) {
         ApplicationManager.getApplication().executeOnPooledThread(() -> {
           for (HeapDumpSample sample : dumpsToFetch) {
-            DumpDataResponse dumpDataResponse = myPollingService.getHeapDump(
-              HeapDumpDataRequest.newBuilder().setAppId(myProcessId).setDumpId(sample.myInfo.getDumpId()).build());
-            synchronized (myUpdatingDataLock) {
-              if (dumpDataResponse.getStatus() == DumpDataResponse.Status.SUCCESS) {
-                sample.myData = dumpDataResponse.getData();
-              }
-              else {
-                sample.isError = true;
-              }
+            DumpDataResponse dumpDataResponse;
+            try {
+              dumpDataResponse = myPollingService.getHeapDump(
+                HeapDumpDataRequest.newBuilder().setAppId(myProcessId).setDumpId(sample.myInfo.getDumpId()).build());
+            }
+            catch (RuntimeException e) {
+              // Fails the pending requests for this dump, rather than leaving them waiting forever.
+              getLogger().warn("Unable to fetch heap dump " + sample.myInfo.getDumpId(), e);
+              sample.myDumpFile.completeExceptionally(e);
+              continue;
+            }
+            if (dumpDataResponse.getStatus() == DumpDataResponse.Status.SUCCESS) {
+              sample.spill(dumpDataResponse.getData());
+            }
+            else {
+              sample.myDumpFile.completeExceptionally(new IOException("Unable to fetch heap dump: " + dumpDataResponse.getStatus()));
             }
           }
         });
@@ -286,6 +452,34 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
     if (response.getEndTimestamp() > myDataRequestStartTimestampNs) {
       myDataRequestStartTimestampNs = response.getEndTimestamp();
     }
+    return response.getMemSamplesCount() + response.getVmStatsSamplesCount() + response.getAllocationEventsCount() +
+           response.getAllocationsInfoCount() + response.getHeapDumpInfosCount();
+  }
+
+  private void addAllocationEvents(@NotNull List<AllocationEvent> events) {
+    myAllocationEvents.addAll(events);
+    for (AllocationEvent event : events) {
+      myRecorder.record(ALLOCATION_EVENTS_STREAM, event.getTimestamp(), event);
+      AllocationCounters counters = myAllocationCounters.computeIfAbsent(event.getAllocatedClassId(), id -> new AllocationCounters());
+      counters.myCount.increment();
+      counters.mySize.add(event.getSize());
+    }
+  }
+
+  /**
+   * @return the number of allocation events received so far for the given class.
+   */
+  public long getAllocationCount(int classId) {
+    AllocationCounters counters = myAllocationCounters.get(classId);
+    return counters == null ? 0 : counters.myCount.sum();
+  }
+
+  /**
+   * @return the total size of the allocations received so far for the given class.
+   */
+  public long getAllocationSize(int classId) {
+    AllocationCounters counters = myAllocationCounters.get(classId);
+    return counters == null ? 0 : counters.mySize.sum();
   }
 
   private static int compareTimes(long left, long right) {
@@ -301,10 +495,18 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
     }
   }
 
+  private static class AllocationCounters {
+    @NotNull private final LongAdder myCount = new LongAdder();
+    @NotNull private final LongAdder mySize = new LongAdder();
+  }
+
   private static class HeapDumpSample {
     @NotNull public HeapDumpInfo myInfo;
-    @Nullable public volatile ByteString myData = null;
-    public volatile boolean isError = false;
+
+    /**
+     * File the dump is spilled to, completed once the dump has been fetched from the device.
+     */
+    @NotNull public final CompletableFuture<File> myDumpFile = new CompletableFuture<>();
 
     private HeapDumpSample(@NotNull HeapDumpInfo info) {
       myInfo = info;
@@ -313,5 +515,38 @@ public class MemoryDataPoller extends MemoryServiceGrpc.MemoryServiceImplBase im
     public HeapDumpSample(int id) {
       myInfo = HeapDumpInfo.newBuilder().setDumpId(id).build();
     }
+
+    /**
+     * Writes the dump to a temporary file, so that it isn't kept in memory.
+     */
+    private void spill(@NotNull ByteString data) {
+      File file = null;
+      try {
+        file = FileUtil.createTempFile("heapdump-" + myInfo.getDumpId(), ".hprof", true);
+        // Unbuffered, the data is written from the response's own arrays without intermediate copies.
+        try (OutputStream out = new FileOutputStream(file)) {
+          data.writeTo(out);
+        }
+        if (!myDumpFile.complete(file)) {
+          // The sample was discarded while the dump was being written.
+          FileUtil.delete(file);
+        }
+      }
+      catch (IOException e) {
+        getLogger().warn("Unable to write heap dump " + myInfo.getDumpId(), e);
+        if (file != null) {
+          FileUtil.delete(file);
+        }
+        myDumpFile.completeExceptionally(e);
+      }
+    }
+
+    /**
+     * Deletes the spill file, or fails the pending requests if the dump hasn't been fetched yet.
+     */
+    private void deleteDumpFile() {
+      myDumpFile.cancel(false);
+      myDumpFile.thenAccept(FileUtil::delete);
+    }
   }
 }
\ No newline at end of file
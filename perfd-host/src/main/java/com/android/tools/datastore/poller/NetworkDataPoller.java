@@ -16,19 +16,30 @@
 package com.android.tools.datastore.poller;
 
 import com.android.tools.datastore.ServicePassThrough;
+import com.android.tools.datastore.storage.LongSeriesStore;
+import com.android.tools.datastore.storage.SeriesStorage;
+import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.NetworkProfiler;
 import com.android.tools.profiler.proto.NetworkServiceGrpc;
+import com.google.protobuf3jarjar.ByteString;
+import com.google.protobuf3jarjar.UnsafeByteOperations;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
 import io.grpc.ManagedChannel;
 import io.grpc.ServerServiceDefinition;
 import io.grpc.stub.StreamObserver;
 import net.jcip.annotations.GuardedBy;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
-import java.util.concurrent.RunnableFuture;
 
-// TODO: Implement a storage container that can read/write data to disk
 public class NetworkDataPoller extends NetworkServiceGrpc.NetworkServiceImplBase implements ServicePassThrough, PollRunner.PollingCallback {
+  private static Logger getLogger() { return Logger.getInstance(NetworkDataPoller.class); }
+
   // Intentionally accessing this field out of sync block because it's OK for it to be o
   // off by a frame; we'll pick up all data eventually
   @SuppressWarnings("FieldAccessedSynchronizedAndUnsynchronized")
@@ -38,15 +49,45 @@ public class NetworkDataPoller extends NetworkServiceGrpc.NetworkServiceImplBase
   private int myProcessId = -1;
 
   private final Object myLock = new Object();
+  /**
+   * Connection and connectivity samples. Speed samples, by far the most frequent, are kept in {@link #mySentSpeed} and
+   * {@link #myReceivedSpeed} instead.
+   */
   @GuardedBy("myLock") private final List<NetworkProfiler.NetworkProfilerData> myData = new ArrayList<>();
+  /**
+   * Bytes sent and received per speed sample, indexed by the end timestamp (ns) of the sample. Both series always hold the same timestamps.
+   */
+  @GuardedBy("myLock") private LongSeriesStore mySentSpeed;
+  @GuardedBy("myLock") private LongSeriesStore myReceivedSpeed;
+  @GuardedBy("myLock") private int mySpeedAppId;
   @GuardedBy("myLock") private final Map<Long, ConnectionData> myConnectionData = new LinkedHashMap<>();
+  /**
+   * Response payloads fetched from the device, by payload id. Payloads never change, so each one is fetched once, spilled to a file, and
+   * then served from a mapping of that file rather than from the heap.
+   */
+  @GuardedBy("myPayloadFiles") private final Map<String, File> myPayloadFiles = new HashMap<>();
+
+  private final PollRunner.Handle myRunner = new PollRunner.Handle();
+
+  public NetworkDataPoller(@NotNull SeriesStorage storage) {
+    createSeries(storage);
+  }
+
+  @Override
+  public void setSeriesStorage(@NotNull SeriesStorage storage) {
+    createSeries(storage);
+  }
 
-  public NetworkDataPoller() {
+  private void createSeries(@NotNull SeriesStorage storage) {
+    synchronized (myLock) {
+      mySentSpeed = storage.createLongSeries("network-sent");
+      myReceivedSpeed = storage.createLongSeries("network-received");
+    }
   }
 
   @Override
-  public RunnableFuture<Void> getRunner() {
-    return new PollRunner(this, PollRunner.POLLING_DELAY_NS);
+  public PollRunner getRunner() {
+    return myRunner.set(new PollRunner(this, PollRunner.POLLING_DELAY_NS));
   }
 
   @Override
@@ -61,36 +102,56 @@ public class NetworkDataPoller extends NetworkServiceGrpc.NetworkServiceImplBase
 
   @Override
   public void getData(NetworkProfiler.NetworkDataRequest request, StreamObserver<NetworkProfiler.NetworkDataResponse> responseObserver) {
+    myRunner.markActive(request.getAppId(), request.getEndTimestamp(), myProcessId, myDataRequestStartTimestampNs);
     NetworkProfiler.NetworkDataResponse.Builder response = NetworkProfiler.NetworkDataResponse.newBuilder();
 
+    NetworkProfiler.NetworkDataRequest.Type type = request.getType();
+    long startTime = request.getStartTimestamp();
+    long endTime = request.getEndTimestamp();
+
     //TODO: Optimize so we do not need to loop all the data every request, ideally binary search to start time and loop till end.
     synchronized (myLock) {
-      if (myData.size() == 0) {
-        responseObserver.onNext(response.build());
-        responseObserver.onCompleted();
-        return;
-      }
-
-      long startTime = request.getStartTimestamp();
-      long endTime = request.getEndTimestamp();
+      // Speed samples are looked up in the series, then merged with the other samples so the response stays sorted by timestamp.
+      int speedIndex = mySentSpeed.getClosestTimeIndex(startTime, true);
+      int speedEnd = type == NetworkProfiler.NetworkDataRequest.Type.ALL || type == NetworkProfiler.NetworkDataRequest.Type.SPEED
+                     ? mySentSpeed.getEndIndex() : speedIndex;
 
       for (NetworkProfiler.NetworkProfilerData data : myData) {
         long current = data.getBasicInfo().getEndTimestamp();
+        for (; speedIndex < speedEnd && mySentSpeed.getTime(speedIndex) <= current; speedIndex++) {
+          addSpeedData(response, speedIndex, startTime, endTime);
+        }
         if (current > startTime && current <= endTime) {
-          if ((request.getType() == NetworkProfiler.NetworkDataRequest.Type.ALL) ||
-              (request.getType() == NetworkProfiler.NetworkDataRequest.Type.SPEED &&
-               data.getDataCase() == NetworkProfiler.NetworkProfilerData.DataCase.SPEED_DATA) ||
-              (request.getType() == NetworkProfiler.NetworkDataRequest.Type.CONNECTIONS &&
+          if ((type == NetworkProfiler.NetworkDataRequest.Type.ALL) ||
+              (type == NetworkProfiler.NetworkDataRequest.Type.CONNECTIONS &&
                data.getDataCase() == NetworkProfiler.NetworkProfilerData.DataCase.CONNECTION_DATA) ||
-              (request.getType() == NetworkProfiler.NetworkDataRequest.Type.CONNECTIVITY &&
+              (type == NetworkProfiler.NetworkDataRequest.Type.CONNECTIVITY &&
                data.getDataCase() == NetworkProfiler.NetworkProfilerData.DataCase.CONNECTIVITY_DATA)) {
             response.addData(data);
           }
         }
       }
-      responseObserver.onNext(response.build());
-      responseObserver.onCompleted();
+      for (; speedIndex < speedEnd && mySentSpeed.getTime(speedIndex) <= endTime; speedIndex++) {
+        addSpeedData(response, speedIndex, startTime, endTime);
+      }
     }
+    responseObserver.onNext(response.build());
+    responseObserver.onCompleted();
+  }
+
+  @GuardedBy("myLock")
+  private void addSpeedData(@NotNull NetworkProfiler.NetworkDataResponse.Builder response, int index, long startTime, long endTime) {
+    long timestamp = mySentSpeed.getTime(index);
+    if (timestamp <= startTime || timestamp > endTime) {
+      return;
+    }
+    NetworkProfiler.SpeedData speedData = NetworkProfiler.SpeedData.newBuilder()
+      .setSent(mySentSpeed.getValue(index))
+      .setReceived(myReceivedSpeed.getValue(index))
+      .build();
+    response.addData(NetworkProfiler.NetworkProfilerData.newBuilder()
+                       .setBasicInfo(Common.CommonData.newBuilder().setAppId(mySpeedAppId).setEndTimestamp(timestamp))
+                       .setSpeedData(speedData));
   }
 
   @Override
@@ -99,8 +160,14 @@ public class NetworkDataPoller extends NetworkServiceGrpc.NetworkServiceImplBase
 
     synchronized (myLock) {
       myData.clear();
+      mySentSpeed.clear();
+      myReceivedSpeed.clear();
       myConnectionData.clear();
     }
+    synchronized (myPayloadFiles) {
+      myPayloadFiles.values().forEach(FileUtil::delete);
+      myPayloadFiles.clear();
+    }
 
     myProcessId = request.getAppId();
     responseObserver.onNext(myPollingService.startMonitoringApp(request));
@@ -117,6 +184,7 @@ public class NetworkDataPoller extends NetworkServiceGrpc.NetworkServiceImplBase
 
   @Override
   public void getHttpRange(NetworkProfiler.HttpRangeRequest request, StreamObserver<NetworkProfiler.HttpRangeResponse> responseObserver) {
+    myRunner.markActive(request.getAppId(), request.getEndTimestamp(), myProcessId, myDataRequestStartTimestampNs);
     NetworkProfiler.HttpRangeResponse.Builder response = NetworkProfiler.HttpRangeResponse.newBuilder();
     long startTime = request.getStartTimestamp();
     long endTime = request.getEndTimestamp();
@@ -166,19 +234,79 @@ public class NetworkDataPoller extends NetworkServiceGrpc.NetworkServiceImplBase
   @Override
   public void getPayload(NetworkProfiler.NetworkPayloadRequest request,
                          StreamObserver<NetworkProfiler.NetworkPayloadResponse> responseObserver) {
-    responseObserver.onNext(myPollingService.getPayload(request));
+    String payloadId = request.getPayloadId();
+    ByteString contents = readPayload(payloadId);
+    if (contents == null) {
+      NetworkProfiler.NetworkPayloadResponse response = myPollingService.getPayload(request);
+      spillPayload(payloadId, response.getContents());
+      responseObserver.onNext(response);
+    }
+    else {
+      responseObserver.onNext(NetworkProfiler.NetworkPayloadResponse.newBuilder().setContents(contents).build());
+    }
     responseObserver.onCompleted();
   }
 
+  /**
+   * @return a read-only mapping of the spilled payload, or null if it hasn't been spilled.
+   */
+  @Nullable
+  private ByteString readPayload(@NotNull String payloadId) {
+    File file;
+    synchronized (myPayloadFiles) {
+      file = myPayloadFiles.get(payloadId);
+    }
+    if (file == null) {
+      return null;
+    }
+    try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+      // The mapping stays valid once the channel is closed, and is released when the response is collected.
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return UnsafeByteOperations.unsafeWrap(mapped);
+    }
+    catch (IOException e) {
+      // Fetches the payload from the device again.
+      getLogger().warn("Unable to read payload " + payloadId, e);
+      return null;
+    }
+  }
+
+  private void spillPayload(@NotNull String payloadId, @NotNull ByteString contents) {
+    if (contents.isEmpty()) {
+      // Either empty or not available yet, there is nothing worth keeping.
+      return;
+    }
+    File file = null;
+    try {
+      file = FileUtil.createTempFile("payload-", ".bin", true);
+      // Unbuffered, the data is written from the response's own arrays without intermediate copies.
+      try (OutputStream out = new FileOutputStream(file)) {
+        contents.writeTo(out);
+      }
+      synchronized (myPayloadFiles) {
+        File previous = myPayloadFiles.put(payloadId, file);
+        if (previous != null) {
+          FileUtil.delete(previous);
+        }
+      }
+    }
+    catch (IOException e) {
+      getLogger().warn("Unable to spill payload " + payloadId, e);
+      if (file != null) {
+        FileUtil.delete(file);
+      }
+    }
+  }
+
   @Override
   public ServerServiceDefinition bindService() {
     return super.bindService();
   }
 
   @Override
-  public void poll() {
+  public int poll() {
     if (myProcessId == -1) {
-      return;
+      return 0;
     }
     NetworkProfiler.NetworkDataRequest.Builder dataRequestBuilder = NetworkProfiler.NetworkDataRequest.newBuilder()
       .setAppId(myProcessId)
@@ -189,13 +317,23 @@ public class NetworkDataPoller extends NetworkServiceGrpc.NetworkServiceImplBase
     synchronized (myLock) {
       for (NetworkProfiler.NetworkProfilerData data : response.getDataList()) {
         myDataRequestStartTimestampNs = data.getBasicInfo().getEndTimestamp();
-        myData.add(data);
+        if (data.getDataCase() == NetworkProfiler.NetworkProfilerData.DataCase.SPEED_DATA) {
+          mySpeedAppId = data.getBasicInfo().getAppId();
+          mySentSpeed.add(data.getBasicInfo().getEndTimestamp(), data.getSpeedData().getSent());
+          myReceivedSpeed.add(data.getBasicInfo().getEndTimestamp(), data.getSpeedData().getReceived());
+        }
+        else {
+          myData.add(data);
+        }
       }
-      pollHttpRange();
+      return response.getDataCount() + pollHttpRange();
     }
   }
 
-  private void pollHttpRange() {
+  /**
+   * @return the number of connections that were added or updated.
+   */
+  private int pollHttpRange() {
     NetworkProfiler.HttpRangeRequest.Builder requestBuilder = NetworkProfiler.HttpRangeRequest.newBuilder()
       .setAppId(myProcessId)
       .setStartTimestamp(myHttpRangeRequestStartTimeNs)
@@ -220,6 +358,7 @@ public class NetworkDataPoller extends NetworkServiceGrpc.NetworkServiceImplBase
         }
       }
     }
+    return response.getDataCount();
   }
 
   private void pollHttpDetails(long connectionId, NetworkProfiler.HttpDetailsRequest.Type type) {
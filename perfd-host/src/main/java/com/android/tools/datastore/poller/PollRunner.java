@@ -16,35 +16,108 @@
 package com.android.tools.datastore.poller;
 
 import com.intellij.openapi.diagnostic.Logger;
-import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Polls a device service periodically. Instead of owning a thread, each {@link #run()} performs a single poll and schedules the next one
+ * on the executor shared by all runners, see {@link PollScheduler}.
+ *
+ * The polling interval adapts to the data: it backs off (up to {@link #MAX_POLLING_DELAY_NS}) while the device returns no new samples,
+ * and drops to {@link #ACTIVE_POLLING_DELAY_NS} while the cached data is being queried (see {@link #markActive()}).
+ */
 public class PollRunner implements RunnableFuture<Void> {
+  private static Logger getLogger() { return Logger.getInstance(PollRunner.class); }
+
   interface PollingCallback {
-    void poll();
+    /**
+     * Polls the device once.
+     *
+     * @return the number of new samples received, used to adapt the polling interval.
+     */
+    int poll();
   }
 
   public static final long POLLING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(250);
 
-  private static Logger getLog() { return Logger.getInstance(PollRunner.class); }
+  public static final long ACTIVE_POLLING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  public static final long MAX_POLLING_DELAY_NS = TimeUnit.SECONDS.toNanos(2);
 
-  private long myPollPeriodNs;
+  /**
+   * How long a runner stays active after the last {@link #markActive()} call.
+   */
+  private static final long ACTIVE_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(1);
 
-  private CountDownLatch myRunning = new CountDownLatch(1);
+  protected final long myPollPeriodNs;
 
-  private CountDownLatch myIsDone = new CountDownLatch(1);
+  protected long myCurrentDelayNs;
+
+  private volatile long myActiveUntilNs;
+
+  private final CountDownLatch myIsDone = new CountDownLatch(1);
+
+  @NotNull
+  private final PollStats myStats;
 
   PollingCallback myPollingCallback;
 
+  private ScheduledExecutorService myExecutor;
+
+  private ScheduledFuture<?> myNextPoll;
+
+  private boolean myPolling;
+
+  private boolean myCancelled;
+
   public PollRunner(PollingCallback pollCallback, long pollPeriodNs) {
     myPollingCallback = pollCallback;
     myPollPeriodNs = pollPeriodNs;
+    myCurrentDelayNs = pollPeriodNs;
+    myActiveUntilNs = System.nanoTime();
+    myStats = new PollStats(pollCallback.getClass().getSimpleName());
+  }
+
+  /**
+   * Starts polling on the given executor.
+   */
+  synchronized void start(@NotNull ScheduledExecutorService executor) {
+    assert myExecutor == null;
+    myExecutor = executor;
+    if (!myCancelled) {
+      scheduleNext(0);
+    }
+  }
 
+  @NotNull
+  public PollStats getStats() {
+    return myStats;
   }
+
+  /**
+   * Signals that the data collected by this runner is being looked at, so it should be refreshed at a faster rate for a little while.
+   */
+  public void markActive() {
+    boolean wasActive = isActive();
+    myActiveUntilNs = System.nanoTime() + ACTIVE_TIMEOUT_NS;
+    if (!wasActive) {
+      synchronized (this) {
+        // Don't wait for a backed-off poll to happen.
+        if (!myPolling && !myCancelled && myNextPoll != null &&
+            myNextPoll.getDelay(TimeUnit.NANOSECONDS) > ACTIVE_POLLING_DELAY_NS && myNextPoll.cancel(false)) {
+          scheduleNext(0);
+        }
+      }
+    }
+  }
+
   public void stop() {
     cancel(true);
     try {
@@ -57,34 +130,99 @@ public class PollRunner implements RunnableFuture<Void> {
 
   @Override
   public void run() {
+    if (!beginPoll()) {
+      return;
+    }
+
+    long startTimeNs = System.nanoTime();
+    int sampleCount = 0;
+    boolean failed = false;
     try {
-      while (myRunning.getCount() > 0) {
-        long startTimeNs = System.nanoTime();
-        try {
-          myPollingCallback.poll();
-        }
-        catch (StatusRuntimeException ignored) {}
-        long sleepTime = Math.max(myPollPeriodNs - (System.nanoTime() - startTimeNs), 0L);
-        myRunning.await(sleepTime, TimeUnit.NANOSECONDS);
-      }
+      sampleCount = myPollingCallback.poll();
     }
-    catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
+    catch (StatusRuntimeException ignored) {
+      failed = true;
+    }
+    catch (RuntimeException e) {
+      // Keep polling: a single bad response shouldn't stop the data from this service for the rest of the session.
+      getLogger().warn("Polling " + myStats.getName() + " failed", e);
+      failed = true;
     }
     finally {
-      myIsDone.countDown();
+      // Always runs, so the next poll is scheduled or, if the runner was cancelled meanwhile, stop() is released.
+      endPoll(startTimeNs, sampleCount, failed);
     }
   }
 
+  /**
+   * Marks a poll as in progress.
+   *
+   * @return false if the runner was cancelled and no poll should be made.
+   */
+  protected synchronized boolean beginPoll() {
+    if (myCancelled) {
+      return false;
+    }
+    myPolling = true;
+    return true;
+  }
+
+  /**
+   * Records the outcome of the poll started at {@code startTimeNs} and schedules the next one.
+   */
+  protected void endPoll(long startTimeNs, int sampleCount, boolean failed) {
+    long latencyNs = System.nanoTime() - startTimeNs;
+    myStats.record(latencyNs, sampleCount, failed);
+    myCurrentDelayNs = computeNextDelay(sampleCount);
+
+    synchronized (this) {
+      myPolling = false;
+      if (myCancelled) {
+        myIsDone.countDown();
+      }
+      else if (myExecutor != null) {
+        scheduleNext(Math.max(myCurrentDelayNs - latencyNs, 0L));
+      }
+    }
+  }
+
+  protected long computeNextDelay(int sampleCount) {
+    if (isActive()) {
+      return Math.min(myPollPeriodNs, ACTIVE_POLLING_DELAY_NS);
+    }
+    if (sampleCount > 0) {
+      return myPollPeriodNs;
+    }
+    return Math.min(myCurrentDelayNs * 2, Math.max(myPollPeriodNs, MAX_POLLING_DELAY_NS));
+  }
+
+  protected boolean isActive() {
+    return System.nanoTime() - myActiveUntilNs < 0;
+  }
+
+  private void scheduleNext(long delayNs) {
+    myNextPoll = myExecutor.schedule(this, delayNs, TimeUnit.NANOSECONDS);
+  }
+
   @Override
-  public boolean cancel(boolean mayInterruptIfRunning) {
-    myRunning.countDown();
+  public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+    if (myCancelled) {
+      return true;
+    }
+    myCancelled = true;
+    // If a poll is in progress, it signals completion when it is done.
+    if (!myPolling) {
+      if (myNextPoll != null) {
+        myNextPoll.cancel(false);
+      }
+      myIsDone.countDown();
+    }
     return true;
   }
 
   @Override
-  public boolean isCancelled() {
-    return myRunning.getCount() == 0;
+  public synchronized boolean isCancelled() {
+    return myCancelled;
   }
 
   @Override
@@ -103,4 +241,33 @@ public class PollRunner implements RunnableFuture<Void> {
     myIsDone.await(timeout, unit);
     return null;
   }
+
+  /**
+   * Holds the runner polling a device service on behalf of a poller, so that the queries the poller serves from its cache can mark it
+   * active.
+   */
+  static final class Handle {
+    @Nullable
+    private volatile PollRunner myRunner;
+
+    @NotNull
+    PollRunner set(@NotNull PollRunner runner) {
+      myRunner = runner;
+      return runner;
+    }
+
+    /**
+     * Marks the runner active if a query is about the process being polled and reaches past the newest sample received so far, i.e. the
+     * caller follows live data. Queries for other processes or older data are served from the cache without polling faster.
+     *
+     * @param polledAppId       the process being polled.
+     * @param latestTimestampNs the timestamp of the newest sample received so far.
+     */
+    void markActive(int appId, long endTimestampNs, int polledAppId, long latestTimestampNs) {
+      PollRunner runner = myRunner;
+      if (runner != null && appId == polledAppId && endTimestampNs > latestTimestampNs) {
+        runner.markActive();
+      }
+    }
+  }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Multiplexes every {@link PollRunner} of the datastore onto a small, shared pool of threads.
+ */
+public class PollScheduler {
+  private static final int POOL_SIZE = 2;
+
+  private final ScheduledExecutorService myExecutor =
+    Executors.newScheduledThreadPool(POOL_SIZE, new ThreadFactoryBuilder().setNameFormat("DataStorePoller-%d").setDaemon(true).build());
+
+  private final List<PollRunner> myRunners = new CopyOnWriteArrayList<>();
+
+  public void start(@NotNull PollRunner runner) {
+    myRunners.add(runner);
+    runner.start(myExecutor);
+  }
+
+  /**
+   * Stops every runner started so far, waiting for any poll in progress to complete.
+   */
+  public void stopAll() {
+    myRunners.forEach(PollRunner::stop);
+    myRunners.clear();
+  }
+
+  @NotNull
+  public List<PollStats> getStats() {
+    List<PollStats> stats = new ArrayList<>();
+    myRunners.forEach(runner -> stats.add(runner.getStats()));
+    return stats;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing what polling a device service costs: how many polls were made, how long they took and how many samples they
+ * brought back.
+ */
+public final class PollStats {
+  @NotNull
+  private final String myName;
+
+  private final AtomicLong myPollCount = new AtomicLong();
+  private final AtomicLong myErrorCount = new AtomicLong();
+  private final AtomicLong mySampleCount = new AtomicLong();
+  private final AtomicLong myTotalLatencyNs = new AtomicLong();
+  private final AtomicLong myMaxLatencyNs = new AtomicLong();
+
+  PollStats(@NotNull String name) {
+    myName = name;
+  }
+
+  void record(long latencyNs, int sampleCount, boolean failed) {
+    myPollCount.incrementAndGet();
+    if (failed) {
+      myErrorCount.incrementAndGet();
+    }
+    mySampleCount.addAndGet(sampleCount);
+    myTotalLatencyNs.addAndGet(latencyNs);
+    myMaxLatencyNs.accumulateAndGet(latencyNs, Math::max);
+  }
+
+  @NotNull
+  public String getName() {
+    return myName;
+  }
+
+  public long getPollCount() {
+    return myPollCount.get();
+  }
+
+  public long getErrorCount() {
+    return myErrorCount.get();
+  }
+
+  public long getSampleCount() {
+    return mySampleCount.get();
+  }
+
+  public long getMaxLatencyNs() {
+    return myMaxLatencyNs.get();
+  }
+
+  public long getAverageLatencyNs() {
+    long count = myPollCount.get();
+    return count == 0 ? 0 : myTotalLatencyNs.get() / count;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %d polls (%d failed), %d samples, avg %d us, max %d us", myName, getPollCount(), getErrorCount(),
+                         getSampleCount(), TimeUnit.NANOSECONDS.toMicros(getAverageLatencyNs()),
+                         TimeUnit.NANOSECONDS.toMicros(getMaxLatencyNs()));
+  }
+}
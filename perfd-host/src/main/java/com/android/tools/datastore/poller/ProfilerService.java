@@ -28,7 +28,6 @@ import org.jetbrains.annotations.NotNull;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.RunnableFuture;
 
 /**
  * This class hosts an EventService that will provide callers access to all cached EventData.
@@ -119,5 +118,5 @@ public class ProfilerService extends ProfilerServiceGrpc.ProfilerServiceImplBase
   }
 
   @Override
-  public RunnableFuture<Void> getRunner() { return null; }
+  public PollRunner getRunner() { return null; }
 }
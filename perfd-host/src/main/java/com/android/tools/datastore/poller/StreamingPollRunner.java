@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import com.intellij.openapi.diagnostic.Logger;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.MethodDescriptor;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.StreamObserver;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * {@link PollRunner} that requests the next samples as soon as the previous ones were ingested instead of polling at a fixed rate. Each
+ * run starts an asynchronous call and ingests the responses as they arrive, without any scheduler thread waiting on the device.
+ *
+ * The device protocol currently declares the data calls as unary, so every call brings a single response and the next call is started
+ * as soon as it was ingested, as long as it brought new samples. Server-streaming methods are supported as well, and are then served by
+ * a single long-lived call, but no device service offers one yet. When the device has nothing new, the runner falls back to the regular
+ * adaptive polling intervals.
+ *
+ * Streaming is off by default and can be enabled with the {@code studio.profiler.streaming} system property.
+ */
+public class StreamingPollRunner extends PollRunner {
+  interface StreamingCallback {
+    /**
+     * Opens a stream of the samples that follow the last ingested one, typically through {@link #startStream}.
+     *
+     * @return the call, which is cancelled if the runner is stopped while the stream is open.
+     */
+    @NotNull
+    ClientCall<?, ?> openStream(@NotNull StreamListener listener);
+  }
+
+  /**
+   * Notified as the responses of a stream are ingested.
+   */
+  interface StreamListener {
+    void onIngested(int sampleCount);
+
+    void onClosed(boolean failed);
+  }
+
+  private static Logger getLogger() { return Logger.getInstance(StreamingPollRunner.class); }
+
+  /**
+   * Minimum delay between two streams, so a device returning tiny batches doesn't keep the link saturated.
+   */
+  private static final long MIN_STREAMING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(16);
+
+  @NotNull
+  private final StreamingCallback myStreamingCallback;
+
+  /**
+   * The stream currently open, if any.
+   */
+  private ClientCall<?, ?> myStream;
+
+  public <T extends PollingCallback & StreamingCallback> StreamingPollRunner(@NotNull T callback, long pollPeriodNs) {
+    super(callback, pollPeriodNs);
+    myStreamingCallback = callback;
+  }
+
+  public static boolean isEnabled() {
+    return Boolean.getBoolean("studio.profiler.streaming");
+  }
+
+  /**
+   * Starts an asynchronous call of {@code method}, unary or server-streaming, whose responses are passed to {@code ingest} as they arrive.
+   *
+   * @param ingest   caches a response and returns the number of new samples it contained.
+   * @param listener notified of every ingested response and of the end of the stream.
+   */
+  @NotNull
+  static <ReqT, RespT> ClientCall<ReqT, RespT> startStream(@NotNull Channel channel,
+                                                           @NotNull MethodDescriptor<ReqT, RespT> method,
+                                                           @NotNull ReqT request,
+                                                           @NotNull ToIntFunction<RespT> ingest,
+                                                           @NotNull StreamListener listener) {
+    ClientCall<ReqT, RespT> call = channel.newCall(method, CallOptions.DEFAULT);
+    StreamObserver<RespT> observer = new StreamObserver<RespT>() {
+      @Override
+      public void onNext(RespT response) {
+        int sampleCount;
+        try {
+          sampleCount = ingest.applyAsInt(response);
+        }
+        catch (RuntimeException e) {
+          // Closes the stream through onError: the runner must hear back no matter what, otherwise it would never poll again.
+          getLogger().warn("Unable to ingest " + method.getFullMethodName() + " response", e);
+          call.cancel("Ingestion failed", e);
+          return;
+        }
+        listener.onIngested(sampleCount);
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        listener.onClosed(true);
+      }
+
+      @Override
+      public void onCompleted() {
+        listener.onClosed(false);
+      }
+    };
+    if (method.getType() == MethodDescriptor.MethodType.SERVER_STREAMING) {
+      ClientCalls.asyncServerStreamingCall(call, request, observer);
+    }
+    else {
+      ClientCalls.asyncUnaryCall(call, request, observer);
+    }
+    return call;
+  }
+
+  @Override
+  public void run() {
+    if (!beginPoll()) {
+      return;
+    }
+
+    Stream stream = new Stream(System.nanoTime());
+    ClientCall<?, ?> call;
+    try {
+      call = myStreamingCallback.openStream(stream);
+    }
+    catch (RuntimeException e) {
+      getLogger().warn("Unable to open stream", e);
+      stream.onClosed(true);
+      return;
+    }
+    stream.setCall(call);
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    ClientCall<?, ?> call;
+    synchronized (this) {
+      super.cancel(mayInterruptIfRunning);
+      call = myStream;
+    }
+    // The stream then closes with an error, which completes the runner. Cancelled outside the lock as it can call back synchronously.
+    if (call != null) {
+      call.cancel("Poller stopped", null);
+    }
+    return true;
+  }
+
+  @Override
+  protected long computeNextDelay(int sampleCount) {
+    if (sampleCount > 0) {
+      return MIN_STREAMING_DELAY_NS;
+    }
+    return super.computeNextDelay(sampleCount);
+  }
+
+  private final class Stream implements StreamListener {
+    private final long myStartTimeNs;
+
+    /**
+     * Only updated by the gRPC thread delivering the responses of the stream.
+     */
+    private int mySampleCount;
+
+    private boolean myClosed;
+
+    private Stream(long startTimeNs) {
+      myStartTimeNs = startTimeNs;
+    }
+
+    @Override
+    public void onIngested(int sampleCount) {
+      mySampleCount += sampleCount;
+    }
+
+    @Override
+    public void onClosed(boolean failed) {
+      synchronized (StreamingPollRunner.this) {
+        if (myClosed) {
+          return;
+        }
+        myClosed = true;
+        myStream = null;
+      }
+      endPoll(myStartTimeNs, mySampleCount, failed);
+    }
+
+    private void setCall(@NotNull ClientCall<?, ?> call) {
+      boolean cancelled;
+      synchronized (StreamingPollRunner.this) {
+        if (myClosed) {
+          // The stream was already over by the time openStream returned.
+          return;
+        }
+        myStream = call;
+        cancelled = isCancelled();
+      }
+      if (cancelled) {
+        call.cancel("Poller stopped", null);
+      }
+    }
+  }
+}
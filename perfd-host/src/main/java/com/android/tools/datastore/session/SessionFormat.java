@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.session;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of a profiler session file:
+ * <pre>
+ *   header  : MAGIC (int), VERSION (int)
+ *   chunks  : encoded entries of a single stream, see below
+ *   footer  : stream count, then (id, kind, name) per stream, chunk count, then one {@link ChunkInfo} per chunk
+ *   trailer : footer offset (long), MAGIC (int)
+ * </pre>
+ * Within a chunk, every entry starts with its timestamp as a zigzag varint delta from the previous entry's timestamp (the first entry is
+ * relative to 0). Samples follow with their value as a zigzag varint delta from the previous value, records with a varint length and
+ * their raw bytes. Since the footer is written last, a file is readable only once its writer has been closed.
+ */
+final class SessionFormat {
+  static final int MAGIC = 0x50524F46; // "PROF"
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 8;
+  static final int TRAILER_SIZE = 12;
+
+  static final byte KIND_SAMPLES = 0;
+  static final byte KIND_RECORDS = 1;
+
+  private SessionFormat() {
+  }
+
+  static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  static long readVarLong(@NotNull ByteBuffer buffer) {
+    long result = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      result |= (long)(b & 0x7F) << shift;
+      shift += 7;
+    }
+    while ((b & 0x80) != 0);
+    return result;
+  }
+
+  /**
+   * Position and time span of a chunk, as stored in the footer. Entries may be appended out of order, so the span is given by the min and
+   * max timestamps of the chunk rather than by its first and last entries.
+   */
+  static final class ChunkInfo {
+    final int myStreamId;
+    final long myOffset;
+    final int myLength;
+    final int myCount;
+    final long myMinTimestamp;
+    final long myMaxTimestamp;
+
+    ChunkInfo(int streamId, long offset, int length, int count, long minTimestamp, long maxTimestamp) {
+      myStreamId = streamId;
+      myOffset = offset;
+      myLength = length;
+      myCount = count;
+      myMinTimestamp = minTimestamp;
+      myMaxTimestamp = maxTimestamp;
+    }
+  }
+}
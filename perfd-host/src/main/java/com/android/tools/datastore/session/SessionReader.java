@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.session;
+
+import com.android.tools.datastore.session.SessionFormat.ChunkInfo;
+import com.google.protobuf3jarjar.CodedInputStream;
+import com.google.protobuf3jarjar.Parser;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static com.android.tools.datastore.session.SessionFormat.*;
+
+/**
+ * Read-only view of a session file written by {@link SessionWriter}.
+ *
+ * Opening a session only reads its index, which is a few bytes per chunk, so it takes about the same time whatever the size of the file.
+ * Chunks are memory-mapped and decoded when a query touches them, and chunks outside the queried time range are never read.
+ */
+public final class SessionReader implements Closeable {
+
+  public interface SampleConsumer {
+    void accept(long timestamp, long value);
+  }
+
+  public interface RecordConsumer {
+    /**
+     * @param bytes the record, valid only during this call.
+     */
+    void accept(long timestamp, @NotNull ByteBuffer bytes) throws IOException;
+  }
+
+  @NotNull
+  private final RandomAccessFile myFile;
+
+  @NotNull
+  private final FileChannel myChannel;
+
+  private final Map<String, Integer> myStreamIds = new HashMap<>();
+
+  private final Map<Integer, Byte> myStreamKinds = new HashMap<>();
+
+  /**
+   * Chunks of each stream, in the order they were written.
+   */
+  private final Map<Integer, List<ChunkInfo>> myChunks = new HashMap<>();
+
+  public SessionReader(@NotNull File file) throws IOException {
+    myFile = new RandomAccessFile(file, "r");
+    myChannel = myFile.getChannel();
+    try {
+      readIndex();
+    }
+    catch (IOException | RuntimeException e) {
+      myFile.close();
+      throw e;
+    }
+  }
+
+  @NotNull
+  public Set<String> getStreams() {
+    return Collections.unmodifiableSet(myStreamIds.keySet());
+  }
+
+  /**
+   * @return the number of entries of the stream, or 0 if there is no such stream.
+   */
+  public int getCount(@NotNull String stream) {
+    int count = 0;
+    for (ChunkInfo chunk : getChunks(stream)) {
+      count += chunk.myCount;
+    }
+    return count;
+  }
+
+  /**
+   * Calls the consumer on every sample of the stream whose timestamp is in [fromTimestamp, toTimestamp], in the order they were added.
+   */
+  public void forEachSample(@NotNull String stream, long fromTimestamp, long toTimestamp, @NotNull SampleConsumer consumer)
+    throws IOException {
+    checkKind(stream, KIND_SAMPLES);
+    for (ChunkInfo chunk : getChunks(stream)) {
+      if (chunk.myMaxTimestamp < fromTimestamp || chunk.myMinTimestamp > toTimestamp) {
+        continue;
+      }
+      ByteBuffer buffer = mapChunk(chunk);
+      long timestamp = 0;
+      long value = 0;
+      for (int i = 0; i < chunk.myCount; i++) {
+        timestamp += unzigzag(readVarLong(buffer));
+        value += unzigzag(readVarLong(buffer));
+        if (timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+          consumer.accept(timestamp, value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Calls the consumer on every record of the stream whose timestamp is in [fromTimestamp, toTimestamp], in the order they were added.
+   */
+  public void forEachRecord(@NotNull String stream, long fromTimestamp, long toTimestamp, @NotNull RecordConsumer consumer)
+    throws IOException {
+    checkKind(stream, KIND_RECORDS);
+    for (ChunkInfo chunk : getChunks(stream)) {
+      if (chunk.myMaxTimestamp < fromTimestamp || chunk.myMinTimestamp > toTimestamp) {
+        continue;
+      }
+      ByteBuffer buffer = mapChunk(chunk);
+      long timestamp = 0;
+      for (int i = 0; i < chunk.myCount; i++) {
+        timestamp += unzigzag(readVarLong(buffer));
+        int length = (int)readVarLong(buffer);
+        if (timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+          ByteBuffer record = buffer.slice();
+          record.limit(length);
+          consumer.accept(timestamp, record);
+        }
+        buffer.position(buffer.position() + length);
+      }
+    }
+  }
+
+  /**
+   * Calls the consumer on every message recorded in the stream whose timestamp is in [fromTimestamp, toTimestamp], in the order they
+   * were added. Only the records in the range are parsed.
+   */
+  public <T> void forEachMessage(@NotNull String stream, long fromTimestamp, long toTimestamp, @NotNull Parser<T> parser,
+                                 @NotNull Consumer<? super T> consumer) throws IOException {
+    forEachRecord(stream, fromTimestamp, toTimestamp,
+                  (timestamp, bytes) -> consumer.accept(parser.parseFrom(CodedInputStream.newInstance(bytes))));
+  }
+
+  @Override
+  public void close() throws IOException {
+    myFile.close();
+  }
+
+  private void readIndex() throws IOException {
+    long size = myChannel.size();
+    if (size < HEADER_SIZE + TRAILER_SIZE) {
+      throw new IOException("Not a session file, or the session was not closed properly");
+    }
+    ByteBuffer header = myChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+    ByteBuffer trailer = myChannel.map(FileChannel.MapMode.READ_ONLY, size - TRAILER_SIZE, TRAILER_SIZE);
+    long footerOffset = trailer.getLong();
+    if (header.getInt() != MAGIC || trailer.getInt() != MAGIC) {
+      throw new IOException("Not a session file, or the session was not closed properly");
+    }
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported session version " + version);
+    }
+    if (footerOffset < HEADER_SIZE || footerOffset > size - TRAILER_SIZE) {
+      throw new IOException("Corrupted session index");
+    }
+
+    ByteBuffer footer = myChannel.map(FileChannel.MapMode.READ_ONLY, footerOffset, size - TRAILER_SIZE - footerOffset);
+    try {
+      int streamCount = footer.getInt();
+      for (int i = 0; i < streamCount; i++) {
+        int id = footer.getInt();
+        byte kind = footer.get();
+        myStreamIds.put(readUtf(footer), id);
+        myStreamKinds.put(id, kind);
+        myChunks.put(id, new ArrayList<>());
+      }
+      int chunkCount = footer.getInt();
+      for (int i = 0; i < chunkCount; i++) {
+        ChunkInfo chunk =
+          new ChunkInfo(footer.getInt(), footer.getLong(), footer.getInt(), footer.getInt(), footer.getLong(), footer.getLong());
+        List<ChunkInfo> chunks = myChunks.get(chunk.myStreamId);
+        if (chunks == null || chunk.myOffset < HEADER_SIZE || chunk.myOffset + chunk.myLength > footerOffset) {
+          throw new IOException("Corrupted session index");
+        }
+        chunks.add(chunk);
+      }
+    }
+    catch (BufferUnderflowException e) {
+      throw new IOException("Corrupted session index", e);
+    }
+  }
+
+  /**
+   * Reads a string written by {@link java.io.DataOutput#writeUTF}. Stream names are plain identifiers, so modified UTF-8 decodes as UTF-8.
+   */
+  @NotNull
+  private static String readUtf(@NotNull ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @NotNull
+  private List<ChunkInfo> getChunks(@NotNull String stream) {
+    Integer id = myStreamIds.get(stream);
+    return id == null ? Collections.emptyList() : myChunks.get(id);
+  }
+
+  private void checkKind(@NotNull String stream, byte kind) {
+    Integer id = myStreamIds.get(stream);
+    if (id != null && myStreamKinds.get(id) != kind) {
+      throw new IllegalArgumentException("Stream " + stream + " does not hold " + (kind == KIND_SAMPLES ? "samples" : "records"));
+    }
+  }
+
+  @NotNull
+  private ByteBuffer mapChunk(@NotNull ChunkInfo chunk) throws IOException {
+    return myChannel.map(FileChannel.MapMode.READ_ONLY, chunk.myOffset, chunk.myLength);
+  }
+}
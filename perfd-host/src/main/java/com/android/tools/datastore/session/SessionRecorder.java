@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.session;
+
+import com.google.protobuf3jarjar.MessageLite;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records the messages a service receives into the session being written, if any. Messages are only serialized while recording.
+ */
+public final class SessionRecorder {
+
+  private static Logger getLogger() { return Logger.getInstance(SessionRecorder.class); }
+
+  private final AtomicReference<SessionWriter> myWriter = new AtomicReference<>();
+
+  /**
+   * Sets the session to record into, or null to stop recording.
+   */
+  public void setWriter(@Nullable SessionWriter writer) {
+    myWriter.set(writer);
+  }
+
+  public void record(@NotNull String stream, long timestamp, @NotNull MessageLite message) {
+    SessionWriter writer = myWriter.get();
+    if (writer == null) {
+      return;
+    }
+    try {
+      writer.addRecord(stream, timestamp, message.toByteArray());
+    }
+    catch (IOException e) {
+      // Stop recording rather than failing every poll, the live data is unaffected.
+      getLogger().warn("Unable to record session data, recording stopped", e);
+      myWriter.compareAndSet(writer, null);
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.session;
+
+import com.android.tools.datastore.session.SessionFormat.ChunkInfo;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.android.tools.datastore.session.SessionFormat.*;
+
+/**
+ * Writes a profiler session file incrementally, while data is being captured. Entries are encoded into a per-stream buffer which is
+ * appended to the file as a chunk once it grows past {@link #CHUNK_SIZE}, so memory usage stays bounded regardless of the session length.
+ * The chunk index is written by {@link #close()}. See {@link SessionFormat} for the layout and {@link SessionReader} to read it back.
+ *
+ * All the methods are thread safe, pollers running on different threads can share a writer.
+ */
+public final class SessionWriter implements Closeable {
+
+  /**
+   * Approximate size of a chunk, in bytes.
+   */
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  @NotNull
+  private final DataOutputStream myOutput;
+
+  private final Map<String, Stream> myStreams = new HashMap<>();
+
+  private final List<ChunkInfo> myChunks = new ArrayList<>();
+
+  private long myPosition;
+
+  private boolean myClosed;
+
+  public SessionWriter(@NotNull File file) throws IOException {
+    myOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    myOutput.writeInt(MAGIC);
+    myOutput.writeInt(VERSION);
+    myPosition = HEADER_SIZE;
+  }
+
+  /**
+   * Appends a numeric sample to the given stream. Samples are expected to be mostly in chronological order, as they compress best.
+   */
+  public synchronized void addSample(@NotNull String stream, long timestamp, long value) throws IOException {
+    Stream s = getStream(stream, KIND_SAMPLES);
+    s.writeTimestamp(timestamp);
+    s.writeVarLong(zigzag(value - s.myLastValue));
+    s.myLastValue = value;
+    s.endEntry(timestamp);
+  }
+
+  /**
+   * Appends an opaque record (typically a serialized proto) to the given stream.
+   */
+  public synchronized void addRecord(@NotNull String stream, long timestamp, @NotNull byte[] bytes) throws IOException {
+    Stream s = getStream(stream, KIND_RECORDS);
+    s.writeTimestamp(timestamp);
+    s.writeVarLong(bytes.length);
+    s.writeBytes(bytes);
+    s.endEntry(timestamp);
+  }
+
+  /**
+   * Flushes the pending chunks and writes the index. The file cannot be appended to afterwards.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (myClosed) {
+      return;
+    }
+    myClosed = true;
+    try {
+      for (Stream stream : myStreams.values()) {
+        flushChunk(stream);
+      }
+
+      long footerOffset = myPosition;
+      myOutput.writeInt(myStreams.size());
+      for (Stream stream : myStreams.values()) {
+        myOutput.writeInt(stream.myId);
+        myOutput.writeByte(stream.myKind);
+        myOutput.writeUTF(stream.myName);
+      }
+      myOutput.writeInt(myChunks.size());
+      for (ChunkInfo chunk : myChunks) {
+        myOutput.writeInt(chunk.myStreamId);
+        myOutput.writeLong(chunk.myOffset);
+        myOutput.writeInt(chunk.myLength);
+        myOutput.writeInt(chunk.myCount);
+        myOutput.writeLong(chunk.myMinTimestamp);
+        myOutput.writeLong(chunk.myMaxTimestamp);
+      }
+      myOutput.writeLong(footerOffset);
+      myOutput.writeInt(MAGIC);
+    }
+    finally {
+      myOutput.close();
+    }
+  }
+
+  @NotNull
+  private Stream getStream(@NotNull String name, byte kind) throws IOException {
+    if (myClosed) {
+      throw new IOException("Session already closed");
+    }
+    Stream stream = myStreams.get(name);
+    if (stream == null) {
+      stream = new Stream(myStreams.size(), name, kind);
+      myStreams.put(name, stream);
+    }
+    else if (stream.myKind != kind) {
+      throw new IllegalArgumentException("Stream " + name + " mixes samples and records");
+    }
+    return stream;
+  }
+
+  private void flushChunk(@NotNull Stream stream) throws IOException {
+    if (stream.myCount == 0) {
+      return;
+    }
+    myOutput.write(stream.myBuffer, 0, stream.mySize);
+    myChunks.add(new ChunkInfo(stream.myId, myPosition, stream.mySize, stream.myCount, stream.myMinTimestamp, stream.myMaxTimestamp));
+    myPosition += stream.mySize;
+    stream.reset();
+  }
+
+  private final class Stream {
+    private final int myId;
+    @NotNull private final String myName;
+    private final byte myKind;
+
+    private byte[] myBuffer = new byte[1024];
+    private int mySize;
+    private int myCount;
+    private long myMinTimestamp;
+    private long myMaxTimestamp;
+    /**
+     * Timestamp of the previous entry, the next one is encoded as a delta from it.
+     */
+    private long myLastTimestamp;
+    private long myLastValue;
+
+    private Stream(int id, @NotNull String name, byte kind) {
+      myId = id;
+      myName = name;
+      myKind = kind;
+    }
+
+    private void writeTimestamp(long timestamp) {
+      if (myCount == 0) {
+        myMinTimestamp = timestamp;
+        myMaxTimestamp = timestamp;
+      }
+      else {
+        myMinTimestamp = Math.min(myMinTimestamp, timestamp);
+        myMaxTimestamp = Math.max(myMaxTimestamp, timestamp);
+      }
+      writeVarLong(zigzag(timestamp - myLastTimestamp));
+    }
+
+    private void endEntry(long timestamp) throws IOException {
+      myLastTimestamp = timestamp;
+      myCount++;
+      if (mySize >= CHUNK_SIZE) {
+        flushChunk(this);
+      }
+    }
+
+    private void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        myBuffer[mySize++] = (byte)((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      myBuffer[mySize++] = (byte)value;
+    }
+
+    private void writeBytes(@NotNull byte[] bytes) {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, myBuffer, mySize, bytes.length);
+      mySize += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (mySize + extra > myBuffer.length) {
+        byte[] grown = new byte[Math.max(myBuffer.length * 2, mySize + extra)];
+        System.arraycopy(myBuffer, 0, grown, 0, mySize);
+        myBuffer = grown;
+      }
+    }
+
+    /**
+     * Starts a new chunk. Deltas restart from 0 so that every chunk can be decoded on its own.
+     */
+    private void reset() {
+      mySize = 0;
+      myCount = 0;
+      myLastTimestamp = 0;
+      myLastValue = 0;
+      if (myBuffer.length > CHUNK_SIZE * 2) {
+        myBuffer = new byte[CHUNK_SIZE];
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import com.android.tools.adtui.model.NumericSeriesData;
+import com.android.tools.datastore.DataAdapter;
+import gnu.trove.TLongArrayList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * One level of a {@link DownsampledLongSeries}: samples grouped in fixed-duration buckets, each keeping the min and max of the samples
+ * that fell into it. Buckets are updated incrementally as samples are appended.
+ *
+ * This class is not thread safe, {@link DownsampledLongSeries} guards every access with its own lock.
+ */
+final class AggregateLevel {
+
+  private final long myBucketDurationUs;
+
+  private final TLongArrayList myBucketStarts = new TLongArrayList();
+  private final TLongArrayList myMinTimes = new TLongArrayList();
+  private final TLongArrayList myMins = new TLongArrayList();
+  private final TLongArrayList myMaxTimes = new TLongArrayList();
+  private final TLongArrayList myMaxs = new TLongArrayList();
+
+  AggregateLevel(long bucketDurationUs) {
+    assert bucketDurationUs > 0;
+    myBucketDurationUs = bucketDurationUs;
+  }
+
+  long getBucketDurationUs() {
+    return myBucketDurationUs;
+  }
+
+  void add(long timeUs, long value) {
+    long bucketStart = timeUs - Math.floorMod(timeUs, myBucketDurationUs);
+    int last = myBucketStarts.size() - 1;
+    // Late samples are merged into the newest bucket, buckets are never reopened.
+    if (last >= 0 && bucketStart <= myBucketStarts.get(last)) {
+      if (value < myMins.get(last)) {
+        myMins.set(last, value);
+        myMinTimes.set(last, timeUs);
+      }
+      if (value > myMaxs.get(last)) {
+        myMaxs.set(last, value);
+        myMaxTimes.set(last, timeUs);
+      }
+    }
+    else {
+      myBucketStarts.add(bucketStart);
+      myMinTimes.add(timeUs);
+      myMins.add(value);
+      myMaxTimes.add(timeUs);
+      myMaxs.add(value);
+    }
+  }
+
+  int size() {
+    return myBucketStarts.size();
+  }
+
+  /**
+   * See {@link DataAdapter#getClosestTimeIndex(long, boolean)} for details.
+   */
+  int getClosestBucketIndex(long timeUs, boolean leftClosest) {
+    long bucketStart = timeUs - Math.floorMod(timeUs, myBucketDurationUs);
+    return DataAdapter.getClosestIndex(myBucketStarts, bucketStart, leftClosest);
+  }
+
+  void clear() {
+    myBucketStarts.clear();
+    myMinTimes.clear();
+    myMins.clear();
+    myMaxTimes.clear();
+    myMaxs.clear();
+  }
+
+  /**
+   * Returns the buckets in [fromBucket, toBucket) as an envelope of two samples per bucket, its min and its max, in the order they
+   * occurred, so that peaks are preserved when drawing a line through them.
+   *
+   * The envelope is a copy, so it stays valid while the level keeps being updated by the polling thread.
+   */
+  @NotNull
+  NumericSeriesData getEnvelope(int fromBucket, int toBucket) {
+    long[] times = new long[2 * (toBucket - fromBucket)];
+    long[] values = new long[times.length];
+    for (int bucket = fromBucket, i = 0; bucket < toBucket; bucket++, i += 2) {
+      boolean minFirst = myMinTimes.get(bucket) <= myMaxTimes.get(bucket);
+      times[i] = minFirst ? myMinTimes.get(bucket) : myMaxTimes.get(bucket);
+      values[i] = minFirst ? myMins.get(bucket) : myMaxs.get(bucket);
+      times[i + 1] = minFirst ? myMaxTimes.get(bucket) : myMinTimes.get(bucket);
+      values[i + 1] = minFirst ? myMaxs.get(bucket) : myMins.get(bucket);
+    }
+    return NumericSeriesData.of(times, values);
+  }
+}
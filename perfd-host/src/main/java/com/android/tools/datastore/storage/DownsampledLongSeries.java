@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import com.android.tools.adtui.model.NumericSeriesData;
+import com.android.tools.adtui.model.Range;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LongSeriesStore} that, on top of the raw samples kept by another store, maintains a pyramid of {@link AggregateLevel}s
+ * (1s, 10s and 1min buckets). Queries made through {@link #getDataForXRange(Range, int)} pick the finest level that fits the requested
+ * number of samples, so their cost depends on the screen width rather than on the length of the session.
+ *
+ * The aggregate levels are small and are kept on heap, even after the raw samples they summarize were evicted.
+ */
+public final class DownsampledLongSeries implements LongSeriesStore {
+
+  private static final long[] BUCKET_DURATIONS_US = {
+    TimeUnit.SECONDS.toMicros(1), TimeUnit.SECONDS.toMicros(10), TimeUnit.MINUTES.toMicros(1)
+  };
+
+  @NotNull
+  private final LongSeriesStore myRawSeries;
+
+  @NotNull
+  private final AggregateLevel[] myLevels;
+
+  public DownsampledLongSeries(@NotNull LongSeriesStore rawSeries) {
+    myRawSeries = rawSeries;
+    myLevels = new AggregateLevel[BUCKET_DURATIONS_US.length];
+    for (int i = 0; i < BUCKET_DURATIONS_US.length; i++) {
+      myLevels[i] = new AggregateLevel(BUCKET_DURATIONS_US[i]);
+    }
+  }
+
+  @Override
+  public synchronized void add(long timeUs, long value) {
+    myRawSeries.add(timeUs, value);
+    for (AggregateLevel level : myLevels) {
+      level.add(timeUs, value);
+    }
+  }
+
+  @Override
+  public int getFirstIndex() {
+    return myRawSeries.getFirstIndex();
+  }
+
+  @Override
+  public int getEndIndex() {
+    return myRawSeries.getEndIndex();
+  }
+
+  @Override
+  public long getTime(int index) {
+    return myRawSeries.getTime(index);
+  }
+
+  @Override
+  public long getValue(int index) {
+    return myRawSeries.getValue(index);
+  }
+
+  @Override
+  public int getClosestTimeIndex(long timeUs, boolean leftClosest) {
+    return myRawSeries.getClosestTimeIndex(timeUs, leftClosest);
+  }
+
+  /**
+   * Returns the samples within the range, using raw samples if there are no more than {@code maxSamples} of them, or else the envelope
+   * of the finest aggregate level that fits. If even the coarsest level does not fit, it is returned anyway. Aggregates are also used
+   * when part of the range was already evicted from the raw series.
+   *
+   * @param maxSamples maximum number of samples the caller needs, typically twice its width in pixels.
+   */
+  @NotNull
+  public synchronized NumericSeriesData getDataForXRange(@NotNull Range range, int maxSamples) {
+    long min = (long)range.getMin();
+    long max = (long)range.getMax();
+    int fromIndex = myRawSeries.getClosestTimeIndex(min, true);
+    int toIndex = myRawSeries.getClosestTimeIndex(max, false);
+    int firstIndex = myRawSeries.getFirstIndex();
+    boolean rawEvicted = firstIndex > 0 && (firstIndex == myRawSeries.getEndIndex() || min < myRawSeries.getTime(firstIndex));
+    if (toIndex - fromIndex <= maxSamples && !rawEvicted) {
+      return getRawData(fromIndex, toIndex);
+    }
+
+    AggregateLevel level = null;
+    int fromBucket = 0;
+    int toBucket = 0;
+    for (AggregateLevel candidate : myLevels) {
+      level = candidate;
+      fromBucket = candidate.getClosestBucketIndex(min, true);
+      toBucket = candidate.getClosestBucketIndex(max, false);
+      if (2 * (toBucket - fromBucket) <= maxSamples) {
+        break;
+      }
+    }
+    return level.getEnvelope(fromBucket, toBucket);
+  }
+
+  @Override
+  public synchronized void clear() {
+    myRawSeries.clear();
+    for (AggregateLevel level : myLevels) {
+      level.clear();
+    }
+  }
+
+  @Override
+  public void close() {
+    myRawSeries.close();
+  }
+
+  /**
+   * Copies the raw samples in [fromIndex, toIndex), so the result is not affected by samples being added, evicted or cleared later on.
+   */
+  @NotNull
+  private NumericSeriesData getRawData(int fromIndex, int toIndex) {
+    long[] times = new long[toIndex - fromIndex];
+    long[] values = new long[times.length];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = myRawSeries.getTime(fromIndex + i);
+      values[i] = myRawSeries.getValue(fromIndex + i);
+    }
+    return NumericSeriesData.of(times, values);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import com.android.tools.datastore.DataAdapter;
+import gnu.trove.TLongArrayList;
+
+/**
+ * {@link LongSeriesStore} keeping every sample on heap, in two trove lists.
+ */
+public final class InMemoryLongSeries implements LongSeriesStore {
+
+  private final TLongArrayList myTimes = new TLongArrayList();
+
+  private final TLongArrayList myValues = new TLongArrayList();
+
+  @Override
+  public synchronized void add(long timeUs, long value) {
+    myTimes.add(timeUs);
+    myValues.add(value);
+  }
+
+  @Override
+  public int getFirstIndex() {
+    return 0;
+  }
+
+  @Override
+  public synchronized int getEndIndex() {
+    return myTimes.size();
+  }
+
+  @Override
+  public synchronized long getTime(int index) {
+    return myTimes.get(index);
+  }
+
+  @Override
+  public synchronized long getValue(int index) {
+    return myValues.get(index);
+  }
+
+  @Override
+  public synchronized int getClosestTimeIndex(long timeUs, boolean leftClosest) {
+    return DataAdapter.getClosestIndex(myTimes, timeUs, leftClosest);
+  }
+
+  @Override
+  public synchronized void clear() {
+    myTimes.clear();
+    myValues.clear();
+  }
+
+  @Override
+  public void close() {
+    clear();
+  }
+}
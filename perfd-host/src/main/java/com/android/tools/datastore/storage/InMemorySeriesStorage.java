@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Default {@link SeriesStorage}, which keeps every sample on heap.
+ */
+public final class InMemorySeriesStorage implements SeriesStorage {
+
+  private final List<LongSeriesStore> mySeries = new ArrayList<>();
+
+  @NotNull
+  @Override
+  public synchronized LongSeriesStore createLongSeries(@NotNull String name) {
+    LongSeriesStore series = new InMemoryLongSeries();
+    mySeries.add(series);
+    return series;
+  }
+
+  @Override
+  public synchronized void close() {
+    mySeries.forEach(LongSeriesStore::close);
+    mySeries.clear();
+  }
+}
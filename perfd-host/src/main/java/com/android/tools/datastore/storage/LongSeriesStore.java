@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+/**
+ * An append-only series of (timestamp, long value) samples, sorted by timestamp.
+ *
+ * Indices handed out by a store are logical: they keep pointing at the same sample even after older samples were evicted by a
+ * {@link RetentionPolicy}. Asking for an evicted index returns the oldest sample still available.
+ */
+public interface LongSeriesStore {
+
+  /**
+   * Appends a sample. Timestamps (device time microseconds) are expected to be non-decreasing.
+   */
+  void add(long timeUs, long value);
+
+  /**
+   * @return the logical index of the oldest sample still available.
+   */
+  int getFirstIndex();
+
+  /**
+   * @return the logical index one past the newest sample.
+   */
+  int getEndIndex();
+
+  long getTime(int index);
+
+  long getValue(int index);
+
+  /**
+   * See {@link com.android.tools.datastore.DataAdapter#getClosestTimeIndex(long, boolean)} for details.
+   */
+  int getClosestTimeIndex(long timeUs, boolean leftClosest);
+
+  /**
+   * Removes all samples.
+   */
+  void clear();
+
+  /**
+   * Releases any resource (files, mappings) held by this store. The store should not be used afterwards.
+   */
+  void close();
+}
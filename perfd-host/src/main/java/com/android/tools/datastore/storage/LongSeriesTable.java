@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Samples made of several long fields, kept in a {@link SeriesStorage} as one {@link LongSeriesStore} per field (column). Columns are
+ * always appended together, so they hold the same timestamps and logical indices.
+ *
+ * This class is not thread safe, callers are expected to synchronize appends with reads.
+ */
+public final class LongSeriesTable {
+
+  @NotNull
+  private final LongSeriesStore[] myColumns;
+
+  public LongSeriesTable(@NotNull SeriesStorage storage, @NotNull String name, int columnCount) {
+    assert columnCount > 0;
+    myColumns = new LongSeriesStore[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      myColumns[i] = storage.createLongSeries(name + "-" + i);
+    }
+  }
+
+  /**
+   * Appends a sample.
+   *
+   * @param values one value per column.
+   */
+  public void add(long time, @NotNull long... values) {
+    assert values.length == myColumns.length;
+    for (int i = 0; i < myColumns.length; i++) {
+      myColumns[i].add(time, values[i]);
+    }
+  }
+
+  public int getFirstIndex() {
+    return myColumns[0].getFirstIndex();
+  }
+
+  public int getEndIndex() {
+    return myColumns[0].getEndIndex();
+  }
+
+  public long getTime(int index) {
+    return myColumns[0].getTime(index);
+  }
+
+  public long getValue(int index, int column) {
+    return myColumns[column].getValue(index);
+  }
+
+  /**
+   * @return the index of the oldest sample newer than {@code time}, or {@link #getEndIndex()} if there is none.
+   */
+  public int getFirstIndexAfter(long time) {
+    int index = myColumns[0].getClosestTimeIndex(time, true);
+    int end = getEndIndex();
+    while (index < end && getTime(index) <= time) {
+      index++;
+    }
+    return index;
+  }
+
+  public void clear() {
+    for (LongSeriesStore column : myColumns) {
+      column.clear();
+    }
+  }
+}
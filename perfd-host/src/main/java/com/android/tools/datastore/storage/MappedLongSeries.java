@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import com.android.tools.datastore.DataAdapter;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link LongSeriesStore} that keeps only its newest samples (the hot segment) on heap. Once the hot segment is full, it is written to a
+ * columnar segment file (all timestamps, followed by all values) which is then served through a memory mapping, so sealed samples live
+ * in the OS page cache instead of the Java heap.
+ *
+ * Since every sealed segment holds exactly {@code segmentCapacity} samples, locating the segment of an index is a division.
+ */
+public final class MappedLongSeries implements LongSeriesStore {
+
+  private static final int BYTES_PER_LONG = 8;
+
+  private static Logger getLogger() { return Logger.getInstance(MappedLongSeries.class); }
+
+  @NotNull
+  private final File myDirectory;
+
+  @NotNull
+  private final String myName;
+
+  private final int mySegmentCapacity;
+
+  @NotNull
+  private final RetentionPolicy myRetentionPolicy;
+
+  private final List<Segment> mySealedSegments = new ArrayList<>();
+
+  private final long[] myHotTimes;
+
+  private final long[] myHotValues;
+
+  private int myHotCount;
+
+  /**
+   * Logical index of the first sample of the hot segment.
+   */
+  private int myHotFirstIndex;
+
+  /**
+   * Logical index of the oldest sample still available.
+   */
+  private int myFirstIndex;
+
+  private int myNextSegmentId;
+
+  MappedLongSeries(@NotNull File directory, @NotNull String name, int segmentCapacity, @NotNull RetentionPolicy retentionPolicy) {
+    assert segmentCapacity > 0;
+    myDirectory = directory;
+    myName = name;
+    mySegmentCapacity = segmentCapacity;
+    myRetentionPolicy = retentionPolicy;
+    myHotTimes = new long[segmentCapacity];
+    myHotValues = new long[segmentCapacity];
+  }
+
+  @Override
+  public synchronized void add(long timeUs, long value) {
+    myHotTimes[myHotCount] = timeUs;
+    myHotValues[myHotCount] = value;
+    myHotCount++;
+    if (myHotCount == mySegmentCapacity) {
+      sealHotSegment();
+      applyRetention(timeUs);
+    }
+  }
+
+  @Override
+  public synchronized int getFirstIndex() {
+    return myFirstIndex;
+  }
+
+  @Override
+  public synchronized int getEndIndex() {
+    return myHotFirstIndex + myHotCount;
+  }
+
+  @Override
+  public synchronized long getTime(int index) {
+    index = Math.max(index, myFirstIndex);
+    if (index >= myHotFirstIndex) {
+      return myHotTimes[index - myHotFirstIndex];
+    }
+    Segment segment = getSealedSegment(index);
+    return segment.myTimes.get(index - segment.myFirstIndex);
+  }
+
+  @Override
+  public synchronized long getValue(int index) {
+    index = Math.max(index, myFirstIndex);
+    if (index >= myHotFirstIndex) {
+      return myHotValues[index - myHotFirstIndex];
+    }
+    Segment segment = getSealedSegment(index);
+    return segment.myValues.get(index - segment.myFirstIndex);
+  }
+
+  @Override
+  public synchronized int getClosestTimeIndex(long timeUs, boolean leftClosest) {
+    int size = getEndIndex() - myFirstIndex;
+    int low = 0;
+    int high = size - 1;
+    int result = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midTime = getTime(myFirstIndex + mid);
+      if (midTime < timeUs) {
+        low = mid + 1;
+      }
+      else if (midTime > timeUs) {
+        high = mid - 1;
+      }
+      else {
+        result = mid;
+        break;
+      }
+    }
+    if (result < 0) {
+      result = -(low + 1);
+    }
+    return myFirstIndex + DataAdapter.convertBinarySearchIndex(result, size, leftClosest);
+  }
+
+  @Override
+  public synchronized void clear() {
+    mySealedSegments.forEach(Segment::dispose);
+    mySealedSegments.clear();
+    myHotCount = 0;
+    myHotFirstIndex = 0;
+    myFirstIndex = 0;
+  }
+
+  @Override
+  public void close() {
+    clear();
+  }
+
+  @NotNull
+  private Segment getSealedSegment(int index) {
+    int segmentIndex = (index - mySealedSegments.get(0).myFirstIndex) / mySegmentCapacity;
+    return mySealedSegments.get(segmentIndex);
+  }
+
+  private void sealHotSegment() {
+    File file = new File(myDirectory, myName + "-" + myNextSegmentId++ + ".seg");
+    LongBuffer times;
+    LongBuffer values;
+    try {
+      MappedByteBuffer buffer = map(file, mySegmentCapacity * 2L * BYTES_PER_LONG);
+      buffer.asLongBuffer().put(myHotTimes).put(myHotValues);
+      times = sliceColumn(buffer, 0);
+      values = sliceColumn(buffer, 1);
+    }
+    catch (IOException e) {
+      // Keep serving the data from heap rather than losing it.
+      getLogger().warn("Unable to write segment " + file + ", keeping it in memory", e);
+      file = null;
+      times = LongBuffer.wrap(myHotTimes.clone());
+      values = LongBuffer.wrap(myHotValues.clone());
+    }
+
+    mySealedSegments.add(new Segment(file, myHotFirstIndex, myHotTimes[myHotCount - 1], times, values));
+    myHotFirstIndex += myHotCount;
+    myHotCount = 0;
+  }
+
+  private void applyRetention(long latestUs) {
+    while (!mySealedSegments.isEmpty() &&
+           myRetentionPolicy.shouldEvict(mySealedSegments.size(), mySealedSegments.get(0).myLastTimeUs, latestUs)) {
+      mySealedSegments.remove(0).dispose();
+    }
+    myFirstIndex = mySealedSegments.isEmpty() ? myHotFirstIndex : mySealedSegments.get(0).myFirstIndex;
+  }
+
+  @NotNull
+  private LongBuffer sliceColumn(@NotNull MappedByteBuffer buffer, int column) {
+    LongBuffer longs = buffer.asLongBuffer();
+    longs.position(column * mySegmentCapacity);
+    longs.limit((column + 1) * mySegmentCapacity);
+    return longs.slice();
+  }
+
+  @NotNull
+  private static MappedByteBuffer map(@NotNull File file, long size) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(size);
+      // The mapping stays valid after the channel is closed.
+      return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private static final class Segment {
+    @Nullable private final File myFile;
+    private final int myFirstIndex;
+    private final long myLastTimeUs;
+    @NotNull private final LongBuffer myTimes;
+    @NotNull private final LongBuffer myValues;
+
+    private Segment(@Nullable File file, int firstIndex, long lastTimeUs, @NotNull LongBuffer times, @NotNull LongBuffer values) {
+      myFile = file;
+      myFirstIndex = firstIndex;
+      myLastTimeUs = lastTimeUs;
+      myTimes = times;
+      myValues = values;
+    }
+
+    private void dispose() {
+      // Some platforms refuse to delete a file that is still mapped, in which case we clean it up on exit.
+      if (myFile != null && !myFile.delete()) {
+        myFile.deleteOnExit();
+      }
+    }
+  }
+}
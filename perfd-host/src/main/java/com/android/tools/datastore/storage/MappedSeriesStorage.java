@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link SeriesStorage} that spills samples to memory-mapped segment files, see {@link MappedLongSeries}.
+ * All segment files live in a single directory which is deleted when the storage is closed.
+ */
+public final class MappedSeriesStorage implements SeriesStorage {
+
+  /**
+   * Number of samples per segment. At the default 250ms polling rate a segment covers a bit more than an hour of data.
+   */
+  public static final int DEFAULT_SEGMENT_CAPACITY = 16 * 1024;
+
+  @NotNull
+  private final File myDirectory;
+
+  private final int mySegmentCapacity;
+
+  @NotNull
+  private final RetentionPolicy myRetentionPolicy;
+
+  private final List<LongSeriesStore> mySeries = new ArrayList<>();
+
+  public MappedSeriesStorage(@NotNull File directory, int segmentCapacity, @NotNull RetentionPolicy retentionPolicy) {
+    myDirectory = directory;
+    mySegmentCapacity = segmentCapacity;
+    myRetentionPolicy = retentionPolicy;
+  }
+
+  /**
+   * Creates a storage backed by a new temporary directory, which is also deleted on exit if the storage is never closed.
+   */
+  @NotNull
+  public static MappedSeriesStorage createTemporary(@NotNull RetentionPolicy retentionPolicy) throws IOException {
+    File directory = FileUtil.createTempDirectory("profiler-series", null, true);
+    return new MappedSeriesStorage(directory, DEFAULT_SEGMENT_CAPACITY, retentionPolicy);
+  }
+
+  @NotNull
+  @Override
+  public synchronized LongSeriesStore createLongSeries(@NotNull String name) {
+    String fileName = FileUtil.sanitizeFileName(name) + "-" + mySeries.size();
+    LongSeriesStore series = new MappedLongSeries(myDirectory, fileName, mySegmentCapacity, myRetentionPolicy);
+    mySeries.add(series);
+    return series;
+  }
+
+  @Override
+  public synchronized void close() {
+    mySeries.forEach(LongSeriesStore::close);
+    mySeries.clear();
+    FileUtil.delete(myDirectory);
+  }
+}
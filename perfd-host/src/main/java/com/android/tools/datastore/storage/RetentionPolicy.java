@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+/**
+ * Decides which sealed segments of a {@link MappedLongSeries} can be evicted.
+ * Eviction always happens a whole segment at a time, oldest first.
+ */
+public final class RetentionPolicy {
+
+  public static final RetentionPolicy KEEP_ALL = new RetentionPolicy(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+  /**
+   * Keeps 64 sealed segments per series, which bounds the disk usage of a series to about 16MB (3 days of samples at the default rate).
+   */
+  public static final RetentionPolicy DEFAULT = new RetentionPolicy(Long.MAX_VALUE, 64);
+
+  private final long myMaxDurationUs;
+
+  private final int myMaxSegments;
+
+  /**
+   * @param maxDurationUs segments whose newest sample is older than this (relative to the newest sample of the series) are evicted,
+   *                      {@link Long#MAX_VALUE} to only limit the number of segments.
+   * @param maxSegments   maximum number of sealed segments kept on disk per series.
+   */
+  public RetentionPolicy(long maxDurationUs, int maxSegments) {
+    assert maxDurationUs > 0 && maxSegments > 0;
+    myMaxDurationUs = maxDurationUs;
+    myMaxSegments = maxSegments;
+  }
+
+  /**
+   * @param segmentCount        number of sealed segments currently kept.
+   * @param oldestSegmentEndUs  timestamp of the newest sample in the oldest sealed segment.
+   * @param latestUs            timestamp of the newest sample in the series.
+   * @return true if the oldest sealed segment should be evicted.
+   */
+  boolean shouldEvict(int segmentCount, long oldestSegmentEndUs, long latestUs) {
+    if (segmentCount > myMaxSegments) {
+      return true;
+    }
+    return myMaxDurationUs != Long.MAX_VALUE && latestUs - oldestSegmentEndUs > myMaxDurationUs;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Storage engine used by {@link com.android.tools.datastore.SeriesDataStoreImpl} to hold the samples of its series.
+ */
+public interface SeriesStorage {
+
+  /**
+   * Creates a new, empty series.
+   *
+   * @param name a name unique within this storage, used for diagnostics and to name any backing file.
+   */
+  @NotNull
+  LongSeriesStore createLongSeries(@NotNull String name);
+
+  /**
+   * Closes every series created by this storage and releases the storage itself.
+   */
+  void close();
+
+  /**
+   * Creates the storage used for the series received from a device: a {@link MappedSeriesStorage} in a new temporary directory, or an
+   * {@link InMemorySeriesStorage} if the directory can't be created.
+   */
+  @NotNull
+  static SeriesStorage createDefault() {
+    try {
+      return MappedSeriesStorage.createTemporary(RetentionPolicy.DEFAULT);
+    }
+    catch (IOException e) {
+      Logger.getInstance(SeriesStorage.class).warn("Unable to create the series storage directory, keeping all samples in memory", e);
+      return new InMemorySeriesStorage();
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class AppendOnlyLogTest {
+
+  private static final int WRITER_COUNT = 4;
+
+  private final ExecutorService myExecutor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testAddAllKeepsInsertionOrder() {
+    AppendOnlyLog<Integer> log = new AppendOnlyLog<>(Integer::longValue);
+    log.addAll(Arrays.asList(1, 2, 3));
+    log.addAll(new ArrayList<>());
+    log.addAll(Arrays.asList(4, 5));
+
+    assertThat(getElements(log)).containsExactly(1, 2, 3, 4, 5).inOrder();
+  }
+
+  @Test
+  public void testFailedAppendIsSkippedAndDoesNotBlockOtherWriters() throws Exception {
+    AppendOnlyLog<Integer> log = new AppendOnlyLog<>(Integer::longValue);
+    log.addAll(Arrays.asList(1, 2));
+    try {
+      // Fails after the first element was written.
+      log.addAll(new AbstractList<Integer>() {
+        @Override
+        public Integer get(int index) {
+          if (index > 0) {
+            throw new IllegalStateException();
+          }
+          return 3;
+        }
+
+        @Override
+        public int size() {
+          return 3;
+        }
+      });
+      fail();
+    }
+    catch (IllegalStateException expected) {
+    }
+
+    // Used to spin forever, waiting for the failed append to be published.
+    myExecutor.submit(() -> log.addAll(Arrays.asList(4, 5))).get(10, TimeUnit.SECONDS);
+    assertThat(getElements(log)).containsExactly(1, 2, 4, 5).inOrder();
+  }
+
+  @Test
+  public void testRangeQueryOnOrderedKeys() {
+    AppendOnlyLog<Integer> log = new AppendOnlyLog<>(Integer::longValue);
+    List<Integer> elements = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      elements.add(i / 2);
+    }
+    log.addAll(elements);
+
+    assertThat(getElements(log, 99, 101)).containsExactly(100, 100, 101, 101).inOrder();
+    assertThat(getElements(log, Long.MIN_VALUE, 0)).containsExactly(0, 0).inOrder();
+    assertThat(getElements(log, 4999, Long.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  public void testRangeQuerySkipsAbandonedSlots() {
+    AppendOnlyLog<Integer> log = new AppendOnlyLog<>(Integer::longValue);
+    log.addAll(Arrays.asList(1, 2));
+    try {
+      log.addAll(Arrays.asList(3, null));
+      fail();
+    }
+    catch (NullPointerException expected) {
+    }
+    log.addAll(Arrays.asList(4, 5));
+
+    assertThat(getElements(log, 1, 4)).containsExactly(2, 4).inOrder();
+    assertThat(getElements(log, 2, 5)).containsExactly(4, 5).inOrder();
+  }
+
+  @Test
+  public void testRangeQueryOnUnorderedKeys() {
+    AppendOnlyLog<Integer> log = new AppendOnlyLog<>(Integer::longValue);
+    log.addAll(Arrays.asList(1, 5, 9));
+    log.addAll(Arrays.asList(3, 7));
+
+    assertThat(getElements(log, 2, 7)).containsExactly(5, 3, 7).inOrder();
+  }
+
+  @Test
+  public void testConcurrentWritersAndReaders() throws Exception {
+    AppendOnlyLog<Integer> log = new AppendOnlyLog<>(Integer::longValue);
+    int batchCount = 2000;
+    int batchSize = 10;
+    CyclicBarrier start = new CyclicBarrier(WRITER_COUNT + 1);
+    List<Future<?>> writers = new ArrayList<>();
+    for (int writer = 0; writer < WRITER_COUNT; writer++) {
+      int writerId = writer;
+      writers.add(myExecutor.submit(() -> {
+        start.await();
+        for (int batch = 0; batch < batchCount; batch++) {
+          List<Integer> elements = new ArrayList<>();
+          for (int i = 0; i < batchSize; i++) {
+            elements.add(encode(writerId, batch * batchSize + i));
+          }
+          log.addAll(elements);
+        }
+        return null;
+      }));
+    }
+
+    start.await();
+    // Read while the writers are busy: every scan must see whole batches, in the order each writer appended them.
+    boolean writing = true;
+    while (writing) {
+      writing = writers.stream().anyMatch(writer -> !writer.isDone());
+      int[] counts = checkOrder(getElements(log));
+      for (int count : counts) {
+        assertThat(count % batchSize).isEqualTo(0);
+      }
+    }
+    for (Future<?> writer : writers) {
+      writer.get(10, TimeUnit.SECONDS);
+    }
+
+    int[] counts = checkOrder(getElements(log));
+    for (int count : counts) {
+      assertThat(count).isEqualTo(batchCount * batchSize);
+    }
+  }
+
+  /**
+   * Checks that the elements of each writer are in sequence.
+   *
+   * @return the number of elements of each writer.
+   */
+  @NotNull
+  private static int[] checkOrder(@NotNull List<Integer> elements) {
+    int[] counts = new int[WRITER_COUNT];
+    for (int element : elements) {
+      int writer = element % WRITER_COUNT;
+      assertThat(element / WRITER_COUNT).isEqualTo(counts[writer]);
+      counts[writer]++;
+    }
+    return counts;
+  }
+
+  private static int encode(int writer, int sequence) {
+    return sequence * WRITER_COUNT + writer;
+  }
+
+  @NotNull
+  private static List<Integer> getElements(@NotNull AppendOnlyLog<Integer> log) {
+    List<Integer> elements = new ArrayList<>();
+    log.forEach(elements::add);
+    return elements;
+  }
+
+  @NotNull
+  private static List<Integer> getElements(@NotNull AppendOnlyLog<Integer> log, long after, long upTo) {
+    List<Integer> elements = new ArrayList<>();
+    log.forEachInRange(after, upTo, elements::add);
+    return elements;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import com.android.tools.datastore.session.SessionReader;
+import com.android.tools.datastore.session.SessionWriter;
+import com.android.tools.datastore.storage.InMemorySeriesStorage;
+import com.android.tools.datastore.storage.MappedSeriesStorage;
+import com.android.tools.datastore.storage.RetentionPolicy;
+import com.android.tools.profiler.proto.Common;
+import com.android.tools.profiler.proto.CpuProfiler;
+import com.android.tools.profiler.proto.CpuServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CpuDataPollerTest {
+
+  private static final String SERVER_NAME = "CpuDataPollerTest";
+
+  private static final int APP_ID = 42;
+
+  private static final int SAMPLE_COUNT = 10;
+
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private Server myServer;
+
+  private ManagedChannel myChannel;
+
+  private MappedSeriesStorage myStorage;
+
+  private CpuDataPoller myPoller;
+
+  @Before
+  public void setUp() throws Exception {
+    // A device returning SAMPLE_COUNT usage samples, with a thread activity received along with every other sample.
+    myServer = InProcessServerBuilder.forName(SERVER_NAME).addService(new CpuServiceGrpc.CpuServiceImplBase() {
+      @Override
+      public void getData(CpuProfiler.CpuDataRequest request, StreamObserver<CpuProfiler.CpuDataResponse> observer) {
+        CpuProfiler.CpuDataResponse.Builder response = CpuProfiler.CpuDataResponse.newBuilder();
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+          response.addData(createUsage(i));
+          if (i % 2 == 0) {
+            response.addData(createActivity(i));
+          }
+        }
+        observer.onNext(response.build());
+        observer.onCompleted();
+      }
+    }.bindService()).build().start();
+    myChannel = InProcessChannelBuilder.forName(SERVER_NAME).usePlaintext(true).build();
+    // Small segments, so that most samples are read from mapped segments.
+    myStorage = new MappedSeriesStorage(myTemporaryFolder.newFolder(), 4, RetentionPolicy.KEEP_ALL);
+    myPoller = new CpuDataPoller(myStorage);
+    myPoller.connectService(myChannel);
+  }
+
+  @After
+  public void tearDown() {
+    myChannel.shutdownNow();
+    myServer.shutdownNow();
+    myStorage.close();
+  }
+
+  @Test
+  public void testDataIsServedFromTheSeriesStorage() {
+    assertThat(myPoller.poll()).isEqualTo(SAMPLE_COUNT + SAMPLE_COUNT / 2);
+
+    CpuProfiler.CpuDataResponse response = getData(2, 6);
+    // Samples 3 to 6, with the activities of samples 4 and 6, in the order they were received.
+    assertThat(response.getDataList())
+      .containsExactly(createUsage(3), createUsage(4), createActivity(4), createUsage(5), createUsage(6), createActivity(6))
+      .inOrder();
+  }
+
+  @Test
+  public void testSamplesAreDroppedWithTheirStorage() {
+    myPoller.poll();
+    myPoller.setSeriesStorage(new InMemorySeriesStorage());
+
+    assertThat(getData(Long.MIN_VALUE, Long.MAX_VALUE).getDataCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testRecordedSessionIsServedOnceOpened() throws Exception {
+    File file = myTemporaryFolder.newFile("session.prof");
+    try (SessionWriter writer = new SessionWriter(file)) {
+      myPoller.setSessionWriter(writer);
+      myPoller.poll();
+      myPoller.setSessionWriter(null);
+    }
+    CpuProfiler.CpuDataResponse live = getData(2, 6);
+
+    myPoller.setSeriesStorage(new InMemorySeriesStorage());
+    try (SessionReader reader = new SessionReader(file)) {
+      myPoller.setSessionReader(reader);
+      assertThat(getData(2, 6)).isEqualTo(live);
+      assertThat(getData(Long.MIN_VALUE, Long.MAX_VALUE).getDataCount()).isEqualTo(SAMPLE_COUNT + SAMPLE_COUNT / 2);
+    }
+  }
+
+  @NotNull
+  private CpuProfiler.CpuDataResponse getData(long startTimestamp, long endTimestamp) {
+    CpuProfiler.CpuDataResponse[] response = new CpuProfiler.CpuDataResponse[1];
+    myPoller.getData(CpuProfiler.CpuDataRequest.newBuilder().setStartTimestamp(startTimestamp).setEndTimestamp(endTimestamp).build(),
+                     new StreamObserver<CpuProfiler.CpuDataResponse>() {
+                       @Override
+                       public void onNext(CpuProfiler.CpuDataResponse value) {
+                         response[0] = value;
+                       }
+
+                       @Override
+                       public void onError(Throwable t) {
+                       }
+
+                       @Override
+                       public void onCompleted() {
+                       }
+                     });
+    return response[0];
+  }
+
+  @NotNull
+  private static CpuProfiler.CpuProfilerData createUsage(int index) {
+    return CpuProfiler.CpuProfilerData.newBuilder()
+      .setBasicInfo(Common.CommonData.newBuilder().setAppId(APP_ID).setEndTimestamp(index))
+      .setCpuUsage(CpuProfiler.CpuUsageData.newBuilder()
+                     .setAppCpuTimeInMillisec(index)
+                     .setSystemCpuTimeInMillisec(2 * index)
+                     .setElapsedTimeInMillisec(3 * index))
+      .build();
+  }
+
+  @NotNull
+  private static CpuProfiler.CpuProfilerData createActivity(int index) {
+    CpuProfiler.ThreadActivities activities = CpuProfiler.ThreadActivities.newBuilder()
+      .addActivities(CpuProfiler.ThreadActivity.newBuilder()
+                       .setTid(index)
+                       .setName("Thread " + index)
+                       .setNewState(CpuProfiler.ThreadActivity.State.RUNNING)
+                       .setTimestamp(index))
+      .build();
+    return CpuProfiler.CpuProfilerData.newBuilder()
+      .setBasicInfo(Common.CommonData.newBuilder().setAppId(APP_ID).setEndTimestamp(index))
+      .setThreadActivities(activities)
+      .build();
+  }
+}
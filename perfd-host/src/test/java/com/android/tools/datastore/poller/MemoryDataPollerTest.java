@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.session.SessionReader;
+import com.android.tools.datastore.session.SessionWriter;
+import com.android.tools.datastore.storage.InMemorySeriesStorage;
+import com.android.tools.profiler.proto.MemoryProfiler.MemoryData;
+import com.android.tools.profiler.proto.MemoryProfiler.MemoryData.AllocationEvent;
+import com.android.tools.profiler.proto.MemoryProfiler.MemoryRequest;
+import com.android.tools.profiler.proto.MemoryServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class MemoryDataPollerTest {
+
+  private static final String SERVER_NAME = "MemoryDataPollerTest";
+
+  private static final int BATCH_SIZE = 1000;
+
+  private static final int CLASS_COUNT = 7;
+
+  private static final int ALLOCATION_SIZE = 16;
+
+  private static final int READER_COUNT = 2;
+
+  private final ExecutorService myExecutor = Executors.newCachedThreadPool();
+
+  /**
+   * Only provides the legacy allocation tracker, which these tests don't use. Its in-process server can't be stopped, so it is shared.
+   */
+  private static DataStoreService ourDataStoreService;
+
+  private Server myServer;
+
+  private ManagedChannel myChannel;
+
+  private MemoryDataPoller myPoller;
+
+  @BeforeClass
+  public static void setUpClass() {
+    ourDataStoreService = new DataStoreService(SERVER_NAME + "DataStore");
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    // A device returning BATCH_SIZE allocation events per request, one per nanosecond after the requested start time.
+    myServer = InProcessServerBuilder.forName(SERVER_NAME).addService(new MemoryServiceGrpc.MemoryServiceImplBase() {
+      @Override
+      public void getData(MemoryRequest request, StreamObserver<MemoryData> observer) {
+        long start = Math.max(request.getStartTime(), 0);
+        MemoryData.Builder response = MemoryData.newBuilder();
+        for (int i = 1; i <= BATCH_SIZE; i++) {
+          response.addAllocationEvents(createEvent(start + i));
+        }
+        observer.onNext(response.setEndTimestamp(start + BATCH_SIZE).build());
+        observer.onCompleted();
+      }
+    }.bindService()).build().start();
+    myChannel = InProcessChannelBuilder.forName(SERVER_NAME).usePlaintext(true).build();
+    myPoller = new MemoryDataPoller(ourDataStoreService, new InMemorySeriesStorage());
+    myPoller.connectService(myChannel);
+  }
+
+  @After
+  public void tearDown() {
+    myExecutor.shutdownNow();
+    myChannel.shutdownNow();
+    myServer.shutdownNow();
+  }
+
+  @Test
+  public void testAllocationEventsAreCountedAndLookedUpByTimestamp() {
+    myPoller.poll();
+    myPoller.poll();
+
+    assertThat(getEventTimestamps(BATCH_SIZE - 3, BATCH_SIZE + 2)).containsExactly(BATCH_SIZE - 2L, BATCH_SIZE - 1L, (long)BATCH_SIZE,
+                                                                                  BATCH_SIZE + 1L, BATCH_SIZE + 2L).inOrder();
+    long total = 0;
+    for (int classId = 0; classId < CLASS_COUNT; classId++) {
+      total += myPoller.getAllocationCount(classId);
+      assertThat(myPoller.getAllocationSize(classId)).isEqualTo(myPoller.getAllocationCount(classId) * ALLOCATION_SIZE);
+    }
+    assertThat(total).isEqualTo(2 * BATCH_SIZE);
+    assertThat(myPoller.getAllocationCount(CLASS_COUNT)).isEqualTo(0);
+  }
+
+  @Test
+  public void testQueriesRunWhileAllocationEventsAreIngested() throws Exception {
+    int batchCount = 1000;
+    CyclicBarrier start = new CyclicBarrier(READER_COUNT + 1);
+    Future<?> writer = myExecutor.submit(() -> {
+      start.await();
+      for (int batch = 0; batch < batchCount; batch++) {
+        myPoller.poll();
+      }
+      return null;
+    });
+    List<Future<?>> readers = new ArrayList<>();
+    for (int reader = 0; reader < READER_COUNT; reader++) {
+      readers.add(myExecutor.submit(() -> {
+        start.await();
+        // Every query sees a contiguous range of events, as they are published in order.
+        while (!writer.isDone()) {
+          long after = ThreadLocalRandom.current().nextLong(batchCount * BATCH_SIZE);
+          List<Long> timestamps = getEventTimestamps(after, after + BATCH_SIZE);
+          for (int i = 0; i < timestamps.size(); i++) {
+            assertThat(timestamps.get(i)).isEqualTo(after + 1 + i);
+          }
+        }
+        return null;
+      }));
+    }
+
+    writer.get(60, TimeUnit.SECONDS);
+    for (Future<?> reader : readers) {
+      reader.get(10, TimeUnit.SECONDS);
+    }
+    assertThat(getEventTimestamps(Long.MIN_VALUE, Long.MAX_VALUE)).hasSize(batchCount * BATCH_SIZE);
+  }
+
+  @Test
+  public void testRecordedSessionIsServedOnceOpened() throws Exception {
+    File file = File.createTempFile("session", ".prof");
+    try {
+      try (SessionWriter writer = new SessionWriter(file)) {
+        myPoller.setSessionWriter(writer);
+        myPoller.poll();
+        myPoller.setSessionWriter(null);
+        myPoller.poll();
+      }
+
+      try (SessionReader reader = new SessionReader(file)) {
+        myPoller.setSessionReader(reader);
+        assertThat(getEventTimestamps(BATCH_SIZE - 2, BATCH_SIZE + 2)).containsExactly(BATCH_SIZE - 1L, (long)BATCH_SIZE).inOrder();
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  @NotNull
+  private List<Long> getEventTimestamps(long startTime, long endTime) {
+    List<Long> timestamps = new ArrayList<>();
+    myPoller.getData(MemoryRequest.newBuilder().setStartTime(startTime).setEndTime(endTime).build(), new StreamObserver<MemoryData>() {
+      @Override
+      public void onNext(MemoryData value) {
+        value.getAllocationEventsList().forEach(event -> timestamps.add(event.getTimestamp()));
+      }
+
+      @Override
+      public void onError(Throwable t) {
+      }
+
+      @Override
+      public void onCompleted() {
+      }
+    });
+    return timestamps;
+  }
+
+  @NotNull
+  private static AllocationEvent createEvent(long timestamp) {
+    return AllocationEvent.newBuilder()
+      .setTimestamp(timestamp)
+      .setAllocatedClassId((int)(timestamp % CLASS_COUNT))
+      .setSize(ALLOCATION_SIZE)
+      .build();
+  }
+}
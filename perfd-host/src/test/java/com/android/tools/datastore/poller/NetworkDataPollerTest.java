@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import com.android.tools.datastore.storage.InMemorySeriesStorage;
+import com.android.tools.profiler.proto.NetworkProfiler;
+import com.android.tools.profiler.proto.NetworkServiceGrpc;
+import com.google.protobuf3jarjar.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class NetworkDataPollerTest {
+
+  private static final String SERVER_NAME = "NetworkDataPollerTest";
+
+  private Server myServer;
+
+  private ManagedChannel myChannel;
+
+  private NetworkDataPoller myPoller;
+
+  private final Map<String, Integer> myPayloadRequests = new HashMap<>();
+
+  @Before
+  public void setUp() throws Exception {
+    // A device returning the id of a payload as its contents, except for the "empty" payload which isn't available yet.
+    myServer = InProcessServerBuilder.forName(SERVER_NAME).addService(new NetworkServiceGrpc.NetworkServiceImplBase() {
+      @Override
+      public void getPayload(NetworkProfiler.NetworkPayloadRequest request, StreamObserver<NetworkProfiler.NetworkPayloadResponse> observer) {
+        myPayloadRequests.merge(request.getPayloadId(), 1, Integer::sum);
+        ByteString contents = request.getPayloadId().equals("empty") ? ByteString.EMPTY : ByteString.copyFromUtf8(request.getPayloadId());
+        observer.onNext(NetworkProfiler.NetworkPayloadResponse.newBuilder().setContents(contents).build());
+        observer.onCompleted();
+      }
+
+      @Override
+      public void startMonitoringApp(NetworkProfiler.NetworkStartRequest request,
+                                     StreamObserver<NetworkProfiler.NetworkStartResponse> observer) {
+        observer.onNext(NetworkProfiler.NetworkStartResponse.getDefaultInstance());
+        observer.onCompleted();
+      }
+    }.bindService()).build().start();
+    myChannel = InProcessChannelBuilder.forName(SERVER_NAME).usePlaintext(true).build();
+    myPoller = new NetworkDataPoller(new InMemorySeriesStorage());
+    myPoller.connectService(myChannel);
+  }
+
+  @After
+  public void tearDown() {
+    myChannel.shutdownNow();
+    myServer.shutdownNow();
+  }
+
+  @Test
+  public void testPayloadIsFetchedOnceFromTheDevice() {
+    assertThat(getPayload("payload").toStringUtf8()).isEqualTo("payload");
+    assertThat(getPayload("payload").toStringUtf8()).isEqualTo("payload");
+    assertThat(getPayload("other").toStringUtf8()).isEqualTo("other");
+    assertThat(myPayloadRequests.get("payload")).isEqualTo(1);
+    assertThat(myPayloadRequests.get("other")).isEqualTo(1);
+  }
+
+  @Test
+  public void testEmptyPayloadIsFetchedAgain() {
+    assertThat(getPayload("empty").isEmpty()).isTrue();
+    assertThat(getPayload("empty").isEmpty()).isTrue();
+    assertThat(myPayloadRequests.get("empty")).isEqualTo(2);
+  }
+
+  @Test
+  public void testPayloadsAreDroppedWhenMonitoringStarts() {
+    getPayload("payload");
+    myPoller.startMonitoringApp(NetworkProfiler.NetworkStartRequest.getDefaultInstance(), new NoopObserver<>());
+
+    assertThat(getPayload("payload").toStringUtf8()).isEqualTo("payload");
+    assertThat(myPayloadRequests.get("payload")).isEqualTo(2);
+  }
+
+  @NotNull
+  private ByteString getPayload(@NotNull String payloadId) {
+    NetworkProfiler.NetworkPayloadResponse[] response = new NetworkProfiler.NetworkPayloadResponse[1];
+    myPoller.getPayload(NetworkProfiler.NetworkPayloadRequest.newBuilder().setPayloadId(payloadId).build(),
+                        new NoopObserver<NetworkProfiler.NetworkPayloadResponse>() {
+                          @Override
+                          public void onNext(NetworkProfiler.NetworkPayloadResponse value) {
+                            response[0] = value;
+                          }
+                        });
+    return response[0].getContents();
+  }
+
+  private static class NoopObserver<T> implements StreamObserver<T> {
+    @Override
+    public void onNext(T value) {
+    }
+
+    @Override
+    public void onError(Throwable t) {
+    }
+
+    @Override
+    public void onCompleted() {
+    }
+  }
+}
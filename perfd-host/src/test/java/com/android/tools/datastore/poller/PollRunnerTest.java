@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PollRunnerTest {
+
+  private final ScheduledExecutorService myExecutor = Executors.newSingleThreadScheduledExecutor();
+
+  @After
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testKeepsPollingAfterUnexpectedException() throws Exception {
+    CountDownLatch polls = new CountDownLatch(3);
+    PollRunner runner = new PollRunner(() -> {
+      polls.countDown();
+      throw new IllegalStateException("Unexpected response");
+    }, TimeUnit.MILLISECONDS.toNanos(1));
+    runner.start(myExecutor);
+
+    assertThat(polls.await(10, TimeUnit.SECONDS)).isTrue();
+    runner.stop();
+    assertThat(runner.isDone()).isTrue();
+    assertThat(runner.getStats().getErrorCount()).isAtLeast(2L);
+  }
+
+  @Test
+  public void testStopWaitsForPollInProgressEvenIfItThrows() throws Exception {
+    CountDownLatch pollStarted = new CountDownLatch(1);
+    CountDownLatch cancelled = new CountDownLatch(1);
+    PollRunner runner = new PollRunner(() -> {
+      pollStarted.countDown();
+      try {
+        cancelled.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      throw new IllegalStateException("Unexpected response");
+    }, PollRunner.POLLING_DELAY_NS);
+    runner.start(myExecutor);
+    assertThat(pollStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    runner.cancel(true);
+    assertThat(runner.isDone()).isFalse();
+    cancelled.countDown();
+
+    // Used to block forever, as the exception skipped the bookkeeping at the end of the poll.
+    Future<?> stop = myExecutor.submit(runner::stop);
+    stop.get(10, TimeUnit.SECONDS);
+    assertThat(runner.isDone()).isTrue();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import com.android.tools.datastore.storage.InMemorySeriesStorage;
+import com.android.tools.profiler.proto.Common;
+import com.android.tools.profiler.proto.CpuProfiler;
+import com.android.tools.profiler.proto.CpuServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class StreamingPollRunnerTest {
+
+  private static final String SERVER_NAME = "StreamingPollRunnerTest";
+
+  private static final int BATCH_SIZE = 100;
+
+  private final ScheduledExecutorService myExecutor = Executors.newSingleThreadScheduledExecutor();
+
+  private final AtomicInteger myCallCount = new AtomicInteger();
+
+  private final List<Long> myRequestStartTimestamps = new CopyOnWriteArrayList<>();
+
+  private Server myServer;
+
+  private ManagedChannel myChannel;
+
+  @After
+  public void tearDown() {
+    if (myChannel != null) {
+      myChannel.shutdownNow();
+    }
+    if (myServer != null) {
+      myServer.shutdownNow();
+    }
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testReopensStreamAfterEachUnaryResponse() throws Exception {
+    // A device implementing getData as a unary call, returning one batch per request.
+    startFakeDevice(new CpuServiceGrpc.CpuServiceImplBase() {
+      @Override
+      public void getData(CpuProfiler.CpuDataRequest request, StreamObserver<CpuProfiler.CpuDataResponse> observer) {
+        int batch = recordRequest(request);
+        observer.onNext(batch < 5 ? createBatch(batch) : CpuProfiler.CpuDataResponse.getDefaultInstance());
+        observer.onCompleted();
+      }
+    }.bindService());
+    CpuDataPoller poller = createPoller();
+    StreamingPollRunner runner = new StreamingPollRunner(poller, PollRunner.POLLING_DELAY_NS);
+
+    runner.start(myExecutor);
+    waitForSamples(poller, 5 * BATCH_SIZE);
+    runner.stop();
+
+    assertThat(myCallCount.get()).isAtLeast(5);
+    // Every stream starts after the last sample ingested.
+    assertThat(myRequestStartTimestamps.subList(0, 5))
+      .containsExactly(Long.MIN_VALUE, getTimestamp(0, BATCH_SIZE - 1), getTimestamp(1, BATCH_SIZE - 1), getTimestamp(2, BATCH_SIZE - 1),
+                       getTimestamp(3, BATCH_SIZE - 1))
+      .inOrder();
+    assertThat(runner.getStats().getErrorCount()).isEqualTo(0);
+  }
+
+  private void startFakeDevice(@NotNull ServerServiceDefinition service) throws Exception {
+    myServer = InProcessServerBuilder.forName(SERVER_NAME).addService(service).build().start();
+    myChannel = InProcessChannelBuilder.forName(SERVER_NAME).usePlaintext(true).build();
+  }
+
+  @NotNull
+  private CpuDataPoller createPoller() {
+    CpuDataPoller poller = new CpuDataPoller(new InMemorySeriesStorage());
+    poller.connectService(myChannel);
+    return poller;
+  }
+
+  /**
+   * @return the index of the request.
+   */
+  private int recordRequest(@NotNull CpuProfiler.CpuDataRequest request) {
+    myRequestStartTimestamps.add(request.getStartTimestamp());
+    return myCallCount.getAndIncrement();
+  }
+
+  private static void waitForSamples(@NotNull CpuDataPoller poller, int count) throws InterruptedException {
+    long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (getSampleCount(poller) < count) {
+      assertThat(System.nanoTime() < deadlineNs).isTrue();
+      Thread.sleep(10);
+    }
+    assertThat(getSampleCount(poller)).isEqualTo(count);
+  }
+
+  private static int getSampleCount(@NotNull CpuDataPoller poller) {
+    CpuProfiler.CpuDataResponse[] response = new CpuProfiler.CpuDataResponse[1];
+    poller.getData(CpuProfiler.CpuDataRequest.newBuilder().setStartTimestamp(Long.MIN_VALUE).setEndTimestamp(Long.MAX_VALUE).build(),
+                   new StreamObserver<CpuProfiler.CpuDataResponse>() {
+                     @Override
+                     public void onNext(CpuProfiler.CpuDataResponse value) {
+                       response[0] = value;
+                     }
+
+                     @Override
+                     public void onError(Throwable t) {
+                     }
+
+                     @Override
+                     public void onCompleted() {
+                     }
+                   });
+    return response[0].getDataCount();
+  }
+
+  @NotNull
+  private static CpuProfiler.CpuDataResponse createBatch(int batch) {
+    CpuProfiler.CpuDataResponse.Builder response = CpuProfiler.CpuDataResponse.newBuilder();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      response.addData(CpuProfiler.CpuProfilerData.newBuilder()
+                         .setBasicInfo(Common.CommonData.newBuilder().setEndTimestamp(getTimestamp(batch, i))));
+    }
+    return response.build();
+  }
+
+  private static long getTimestamp(int batch, int index) {
+    return 1 + batch * BATCH_SIZE + index;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.session;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class SessionReaderTest {
+
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testSamplesRoundTrip() throws IOException {
+    File file = myTemporaryFolder.newFile("session.prof");
+    try (SessionWriter writer = new SessionWriter(file)) {
+      writer.addSample("memory", 10, 100);
+      writer.addSample("memory", 20, -5);
+      writer.addSample("cpu", 15, 42);
+      writer.addSample("memory", 30, Long.MAX_VALUE);
+    }
+
+    try (SessionReader reader = new SessionReader(file)) {
+      assertThat(reader.getStreams()).containsExactly("memory", "cpu");
+      assertThat(reader.getCount("memory")).isEqualTo(3);
+      assertThat(reader.getCount("unknown")).isEqualTo(0);
+      assertThat(readSamples(reader, "memory", Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly(10L, 100L, 20L, -5L, 30L, Long.MAX_VALUE)
+        .inOrder();
+      assertThat(readSamples(reader, "memory", 15, 25)).containsExactly(20L, -5L).inOrder();
+      assertThat(readSamples(reader, "cpu", Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly(15L, 42L).inOrder();
+    }
+  }
+
+  @Test
+  public void testOutOfOrderSamplesAreFoundByRange() throws IOException {
+    File file = myTemporaryFolder.newFile("session.prof");
+    try (SessionWriter writer = new SessionWriter(file)) {
+      // The first and last samples of the chunk don't bound its time span.
+      writer.addSample("memory", 100, 1);
+      writer.addSample("memory", 50, 2);
+      writer.addSample("memory", 200, 3);
+      writer.addSample("memory", 10, 4);
+    }
+
+    try (SessionReader reader = new SessionReader(file)) {
+      assertThat(readSamples(reader, "memory", Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly(100L, 1L, 50L, 2L, 200L, 3L, 10L, 4L)
+        .inOrder();
+      assertThat(readSamples(reader, "memory", 40, 60)).containsExactly(50L, 2L).inOrder();
+      assertThat(readSamples(reader, "memory", 150, 250)).containsExactly(200L, 3L).inOrder();
+      assertThat(readSamples(reader, "memory", 300, 400)).isEmpty();
+    }
+  }
+
+  @Test
+  public void testOutOfOrderRecordsAcrossChunks() throws IOException {
+    File file = myTemporaryFolder.newFile("session.prof");
+    byte[] payload = new byte[1024];
+    int count = 3 * SessionWriter.CHUNK_SIZE / payload.length;
+    try (SessionWriter writer = new SessionWriter(file)) {
+      for (int i = 0; i < count; i++) {
+        // Every other record arrives late, with a timestamp that belongs to an earlier chunk.
+        long timestamp = i % 2 == 0 ? i : i - count / 2;
+        Arrays.fill(payload, (byte)i);
+        writer.addRecord("cpu.data", timestamp, payload);
+      }
+    }
+
+    try (SessionReader reader = new SessionReader(file)) {
+      assertThat(reader.getCount("cpu.data")).isEqualTo(count);
+
+      List<Long> timestamps = new ArrayList<>();
+      reader.forEachRecord("cpu.data", 0, 9, (timestamp, bytes) -> {
+        timestamps.add(timestamp);
+        assertThat(bytes.remaining()).isEqualTo(payload.length);
+        // The late records written for this range are also found.
+        byte expected = (byte)(timestamp % 2 == 0 ? timestamp : timestamp + count / 2);
+        assertThat(bytes.get(0)).isEqualTo(expected);
+      });
+      // Even records 0-8 from the first chunk, followed by the late odd ones from later chunks.
+      assertThat(timestamps).containsExactly(0L, 2L, 4L, 6L, 8L, 1L, 3L, 5L, 7L, 9L).inOrder();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnclosedSessionIsRejected() throws IOException {
+    File file = myTemporaryFolder.newFile("session.prof");
+    SessionWriter writer = new SessionWriter(file);
+    writer.addSample("memory", 10, 100);
+    new SessionReader(file).close();
+  }
+
+  @NotNull
+  private static List<Long> readSamples(@NotNull SessionReader reader, @NotNull String stream, long from, long to) throws IOException {
+    List<Long> samples = new ArrayList<>();
+    reader.forEachSample(stream, from, to, (timestamp, value) -> {
+      samples.add(timestamp);
+      samples.add(value);
+    });
+    return samples;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import com.android.tools.adtui.model.NumericSeriesData;
+import com.android.tools.adtui.model.Range;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class DownsampledLongSeriesTest {
+
+  private static final long SAMPLE_PERIOD_US = TimeUnit.MILLISECONDS.toMicros(100);
+
+  @Test
+  public void testRawSamplesWhenTheyFit() {
+    DownsampledLongSeries series = createSeries(20);
+
+    NumericSeriesData data = series.getDataForXRange(new Range(0, 19 * SAMPLE_PERIOD_US), 100);
+    assertThat(data.size()).isEqualTo(20);
+    for (int i = 0; i < data.size(); i++) {
+      assertThat(data.getX(i)).isEqualTo(i * SAMPLE_PERIOD_US);
+      assertThat(data.getY(i)).isWithin(0).of(getValue(i));
+    }
+  }
+
+  @Test
+  public void testEnvelopeKeepsMinAndMaxInOrder() {
+    // 3 seconds of samples, aggregated in 1 second buckets of 10 samples.
+    DownsampledLongSeries series = createSeries(30);
+
+    NumericSeriesData data = series.getDataForXRange(new Range(0, 29 * SAMPLE_PERIOD_US), 6);
+    assertThat(data.size()).isEqualTo(6);
+    for (int bucket = 0; bucket < 3; bucket++) {
+      // The min is the first sample of the bucket and the max the second one.
+      assertThat(data.getX(2 * bucket)).isEqualTo((10 * bucket) * SAMPLE_PERIOD_US);
+      assertThat(data.getY(2 * bucket)).isWithin(0).of(getValue(10 * bucket));
+      assertThat(data.getX(2 * bucket + 1)).isEqualTo((10 * bucket + 1) * SAMPLE_PERIOD_US);
+      assertThat(data.getY(2 * bucket + 1)).isWithin(0).of(getValue(10 * bucket + 1));
+    }
+  }
+
+  @Test
+  public void testDataIsNotAffectedByLaterUpdates() {
+    DownsampledLongSeries series = createSeries(30);
+    NumericSeriesData raw = series.getDataForXRange(new Range(0, 29 * SAMPLE_PERIOD_US), 100);
+    NumericSeriesData envelope = series.getDataForXRange(new Range(0, 29 * SAMPLE_PERIOD_US), 6);
+
+    series.clear();
+    series.add(0, 12345);
+
+    assertThat(raw.size()).isEqualTo(30);
+    assertThat(raw.getY(0)).isWithin(0).of(getValue(0));
+    assertThat(envelope.size()).isEqualTo(6);
+    assertThat(envelope.getY(0)).isWithin(0).of(getValue(0));
+  }
+
+  private static DownsampledLongSeries createSeries(int sampleCount) {
+    DownsampledLongSeries series = new DownsampledLongSeries(new InMemoryLongSeries());
+    for (int i = 0; i < sampleCount; i++) {
+      series.add(i * SAMPLE_PERIOD_US, getValue(i));
+    }
+    return series;
+  }
+
+  /**
+   * Alternates between 0 and high values that decrease over time, so the max of every bucket is its second sample.
+   */
+  private static long getValue(int index) {
+    return index % 2 == 0 ? 0 : 100 - index;
+  }
+}
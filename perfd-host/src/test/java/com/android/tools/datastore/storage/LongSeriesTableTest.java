@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LongSeriesTableTest {
+
+  private static final int SEGMENT_CAPACITY = 4;
+
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private MappedSeriesStorage myStorage;
+
+  @Before
+  public void setUp() throws Exception {
+    myStorage = new MappedSeriesStorage(myTemporaryFolder.newFolder(), SEGMENT_CAPACITY, new RetentionPolicy(Long.MAX_VALUE, 2));
+  }
+
+  @After
+  public void tearDown() {
+    myStorage.close();
+  }
+
+  @Test
+  public void testColumnsShareIndices() {
+    LongSeriesTable table = new LongSeriesTable(myStorage, "test", 2);
+    for (int i = 0; i < 2 * SEGMENT_CAPACITY + 1; i++) {
+      table.add(i * 10L, i, -i);
+    }
+
+    assertThat(table.getEndIndex()).isEqualTo(2 * SEGMENT_CAPACITY + 1);
+    for (int i = 0; i < table.getEndIndex(); i++) {
+      assertThat(table.getTime(i)).isEqualTo(i * 10L);
+      assertThat(table.getValue(i, 0)).isEqualTo(i);
+      assertThat(table.getValue(i, 1)).isEqualTo(-i);
+    }
+  }
+
+  @Test
+  public void testFirstIndexAfter() {
+    LongSeriesTable table = new LongSeriesTable(myStorage, "test", 1);
+    for (int i = 0; i < 3 * SEGMENT_CAPACITY + 1; i++) {
+      table.add(i * 10L, i);
+    }
+
+    // The first segment was evicted.
+    assertThat(table.getFirstIndex()).isEqualTo(SEGMENT_CAPACITY);
+    assertThat(table.getFirstIndexAfter(Long.MIN_VALUE)).isEqualTo(SEGMENT_CAPACITY);
+    assertThat(table.getFirstIndexAfter(50)).isEqualTo(SEGMENT_CAPACITY + 2);
+    assertThat(table.getFirstIndexAfter(55)).isEqualTo(SEGMENT_CAPACITY + 2);
+    assertThat(table.getFirstIndexAfter(85)).isEqualTo(9);
+    assertThat(table.getFirstIndexAfter(1000)).isEqualTo(table.getEndIndex());
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class MappedLongSeriesTest {
+
+  private static final int SEGMENT_CAPACITY = 4;
+
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private File myDirectory;
+
+  private MappedLongSeries mySeries;
+
+  @Before
+  public void setUp() throws Exception {
+    myDirectory = myTemporaryFolder.newFolder();
+  }
+
+  @After
+  public void tearDown() {
+    if (mySeries != null) {
+      mySeries.close();
+    }
+  }
+
+  @Test
+  public void testAppendWithinHotSegment() {
+    mySeries = createSeries(RetentionPolicy.KEEP_ALL);
+    addSamples(mySeries, 3);
+
+    assertThat(mySeries.getFirstIndex()).isEqualTo(0);
+    assertThat(mySeries.getEndIndex()).isEqualTo(3);
+    for (int i = 0; i < 3; i++) {
+      assertThat(mySeries.getTime(i)).isEqualTo(i * 10L);
+      assertThat(mySeries.getValue(i)).isEqualTo(i * 100L);
+    }
+    // Nothing was sealed yet.
+    assertThat(myDirectory.list()).isEmpty();
+  }
+
+  @Test
+  public void testAppendAcrossSegments() {
+    mySeries = createSeries(RetentionPolicy.KEEP_ALL);
+    addSamples(mySeries, 3 * SEGMENT_CAPACITY + 1);
+
+    assertThat(mySeries.getFirstIndex()).isEqualTo(0);
+    assertThat(mySeries.getEndIndex()).isEqualTo(3 * SEGMENT_CAPACITY + 1);
+    for (int i = 0; i < mySeries.getEndIndex(); i++) {
+      assertThat(mySeries.getTime(i)).isEqualTo(i * 10L);
+      assertThat(mySeries.getValue(i)).isEqualTo(i * 100L);
+    }
+    assertThat(myDirectory.list()).hasLength(3);
+  }
+
+  @Test
+  public void testClosestTimeIndex() {
+    mySeries = createSeries(RetentionPolicy.KEEP_ALL);
+    addSamples(mySeries, 2 * SEGMENT_CAPACITY + 2);
+
+    // Exact matches, shifted by the sample index buffer.
+    assertThat(mySeries.getClosestTimeIndex(50, true)).isEqualTo(4);
+    assertThat(mySeries.getClosestTimeIndex(50, false)).isEqualTo(6);
+    // Between two samples, one of them in a sealed segment and the other in the hot segment.
+    assertThat(mySeries.getClosestTimeIndex(75, true)).isEqualTo(6);
+    assertThat(mySeries.getClosestTimeIndex(75, false)).isEqualTo(9);
+    // Out of bounds.
+    assertThat(mySeries.getClosestTimeIndex(-10, true)).isEqualTo(0);
+    assertThat(mySeries.getClosestTimeIndex(1000, false)).isEqualTo(mySeries.getEndIndex());
+  }
+
+  @Test
+  public void testRetentionEvictsOldestSegmentsBySegmentCount() {
+    mySeries = createSeries(new RetentionPolicy(Long.MAX_VALUE, 2));
+    addSamples(mySeries, 3 * SEGMENT_CAPACITY + 1);
+
+    // The first segment was evicted, but indices keep pointing at the same samples.
+    assertThat(mySeries.getFirstIndex()).isEqualTo(SEGMENT_CAPACITY);
+    assertThat(mySeries.getEndIndex()).isEqualTo(3 * SEGMENT_CAPACITY + 1);
+    assertThat(mySeries.getTime(SEGMENT_CAPACITY)).isEqualTo(SEGMENT_CAPACITY * 10L);
+    assertThat(mySeries.getValue(3 * SEGMENT_CAPACITY)).isEqualTo(3 * SEGMENT_CAPACITY * 100L);
+    // Evicted indices resolve to the oldest sample available.
+    assertThat(mySeries.getTime(0)).isEqualTo(SEGMENT_CAPACITY * 10L);
+    assertThat(mySeries.getClosestTimeIndex(0, true)).isEqualTo(SEGMENT_CAPACITY);
+    assertThat(myDirectory.list()).hasLength(2);
+  }
+
+  @Test
+  public void testRetentionEvictsOldestSegmentsByDuration() {
+    mySeries = createSeries(new RetentionPolicy(50, Integer.MAX_VALUE));
+    addSamples(mySeries, 2 * SEGMENT_CAPACITY);
+    // Segments end at 30 and 70: both are within 50 of the newest sample.
+    assertThat(mySeries.getFirstIndex()).isEqualTo(0);
+
+    addSamples(mySeries, 2 * SEGMENT_CAPACITY, SEGMENT_CAPACITY);
+    // The newest sample is now 110, so the segment ending at 30 is too old.
+    assertThat(mySeries.getFirstIndex()).isEqualTo(SEGMENT_CAPACITY);
+    assertThat(mySeries.getTime(mySeries.getFirstIndex())).isEqualTo(40);
+    assertThat(myDirectory.list()).hasLength(2);
+  }
+
+  @Test
+  public void testClear() {
+    mySeries = createSeries(RetentionPolicy.KEEP_ALL);
+    addSamples(mySeries, 2 * SEGMENT_CAPACITY + 1);
+    mySeries.clear();
+
+    assertThat(mySeries.getFirstIndex()).isEqualTo(0);
+    assertThat(mySeries.getEndIndex()).isEqualTo(0);
+    assertThat(myDirectory.list()).isEmpty();
+
+    mySeries.add(5, 6);
+    assertThat(mySeries.getTime(0)).isEqualTo(5);
+    assertThat(mySeries.getValue(0)).isEqualTo(6);
+  }
+
+  @NotNull
+  private MappedLongSeries createSeries(@NotNull RetentionPolicy retentionPolicy) {
+    return new MappedLongSeries(myDirectory, "test", SEGMENT_CAPACITY, retentionPolicy);
+  }
+
+  private static void addSamples(@NotNull LongSeriesStore series, int count) {
+    addSamples(series, 0, count);
+  }
+
+  /**
+   * Adds {@code count} samples, the i-th sample being at time {@code i * 10} with value {@code i * 100}.
+   */
+  private static void addSamples(@NotNull LongSeriesStore series, int first, int count) {
+    for (int i = first; i < first + count; i++) {
+      series.add(i * 10L, i * 100L);
+    }
+  }
+}
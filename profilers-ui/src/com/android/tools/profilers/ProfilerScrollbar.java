@@ -19,6 +19,7 @@ import com.android.tools.adtui.Animatable;
 import com.android.tools.adtui.Choreographer;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.profilers.timeline.AnimatedPan;
+import com.android.tools.profilers.timeline.AnimatedTimeline;
 import com.android.tools.profilers.timeline.AnimatedZoom;
 import com.intellij.ui.components.JBScrollBar;
 import com.intellij.util.ui.ButtonlessScrollBarUI;
@@ -140,6 +141,14 @@ public final class ProfilerScrollbar extends JBScrollBar implements Animatable {
     }
   }
 
+  /**
+   * The scrollbar repaints itself when its values change, and moving the view range is reported by the {@link AnimatedTimeline}.
+   */
+  @Override
+  public boolean isDirty() {
+    return false;
+  }
+
   @Override
   protected void paintComponent(Graphics g) {
     super.paintComponent(g);
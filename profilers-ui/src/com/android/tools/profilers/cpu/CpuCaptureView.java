@@ -19,7 +19,7 @@ import com.android.tools.adtui.Choreographer;
 import com.android.tools.adtui.RangedTree;
 import com.android.tools.adtui.chart.hchart.HTreeChart;
 import com.android.tools.adtui.common.ColumnTreeBuilder;
-import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.HTree;
 import com.android.tools.profilers.ProfilerTimeline;
 import com.intellij.icons.AllIcons;
 import com.intellij.ui.ColoredTreeCellRenderer;
@@ -62,6 +62,7 @@ public class CpuCaptureView {
     myCaptureTreeChart = new HTreeChart<>();
     myCaptureTreeChart.setHRenderer(new SampledMethodUsageHRenderer());
     myCaptureTreeChart.setXRange(timeline.getSelectionRange());
+    myCaptureTreeChart.setTileCaching(true);
 
     myTree = new JTree();
     myTreeSorter = new CpuTraceTreeSorter(myTree);
@@ -119,10 +120,11 @@ public class CpuCaptureView {
   public void updateThread() {
     int id = myView.getStage().getSelectedThread();
     // Updates the horizontal tree displayed in capture panel
-    HNode<MethodModel> node = myCapture.getCaptureNode(id);
-    myCaptureTreeChart.setHTree(node);
+    HTree<MethodModel> tree = myCapture.getCaptureTree(id);
+    myCaptureTreeChart.setTree(tree);
     // Updates the topdown column tree displayed in capture panel
-    TopDownTreeModel model = node == null ? null : new TopDownTreeModel(new TopDownNode(node));
+    TopDownNode topDown = myCapture.getTopDownNode(id);
+    TopDownTreeModel model = topDown == null ? null : new TopDownTreeModel(topDown);
     myRangedTree.setModel(model);
     myTree.setModel(model);
     myTreeSorter.setModel(model, myDefaultSortOrder);
@@ -72,7 +72,8 @@ public class CpuProfilerStageView extends StageView<CpuProfilerStage> {
     stage.getAspect().addDependency()
       .setExecutor(ApplicationManager.getApplication()::invokeLater)
       .onChange(CpuProfilerAspect.CAPTURE, this::updateCapture)
-      .onChange(CpuProfilerAspect.SELECTED_THREADS, this::updateThreadSelection);
+      .onChange(CpuProfilerAspect.SELECTED_THREADS, this::updateThreadSelection)
+      .onChange(CpuProfilerAspect.CAPTURE_PARSING, this::updateCaptureButton);
 
     StudioProfilers profilers = stage.getStudioProfilers();
     ProfilerTimeline timeline = profilers.getTimeline();
@@ -277,7 +278,18 @@ public class CpuProfilerStageView extends StageView<CpuProfilerStage> {
       mySplitter.setSecondComponent(myCaptureView.getComponent());
     }
 
-    myCaptureButton.setText(myStage.isCapturing() ? "Stop" : "Record");
+    updateCaptureButton();
+  }
+
+  private void updateCaptureButton() {
+    if (myStage.isParsing()) {
+      myCaptureButton.setText(String.format("Parsing (%d%%)", (int)(myStage.getParsingProgress() * 100)));
+      myCaptureButton.setEnabled(false);
+    }
+    else {
+      myCaptureButton.setText(myStage.isCapturing() ? "Stop" : "Record");
+      myCaptureButton.setEnabled(true);
+    }
   }
 
   private void capture() {
@@ -26,6 +26,7 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.ui.table.JBTable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import javax.swing.event.TableModelEvent;
@@ -172,6 +173,11 @@ final class ConnectionsView {
   private final class ConnectionsTableModel extends AbstractTableModel implements RangedTableModel {
     @NotNull private List<HttpData> myDataList = new ArrayList<>();
     @NotNull private final Range myLastRange = new Range(0, 0);
+    /**
+     * Whether connections are being fetched in the background, and the range to fetch next once they are, if it changed meanwhile.
+     */
+    private boolean myFetching;
+    @Nullable private Range myPendingRange;
 
     @Override
     public int getRowCount() {
@@ -225,11 +231,46 @@ final class ConnectionsView {
     @Override
     public void update(@NotNull Range range) {
       if (myLastRange.getMin() != range.getMin() || myLastRange.getMax() != range.getMax()) {
-        myDataList = myStageView.getStage().getRequestsModel().getData(range);
-        fireTableDataChanged();
         myLastRange.set(range);
+        Range requestRange = new Range(range.getMin(), range.getMax());
+        if (myFetching) {
+          myPendingRange = requestRange;
+        }
+        else {
+          fetch(requestRange);
+        }
       }
     }
+
+    /**
+     * Fetches the connections in the given range on a pooled thread, as building them parses their response fields, then shows them.
+     * Ranges requested in the meantime are coalesced into the latest one, which is fetched next.
+     */
+    private void fetch(@NotNull Range range) {
+      myFetching = true;
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        List<HttpData> dataList = null;
+        try {
+          dataList = myStageView.getStage().getRequestsModel().getData(range);
+        }
+        finally {
+          // Even if fetching failed, so that later ranges are still fetched.
+          List<HttpData> fetched = dataList;
+          ApplicationManager.getApplication().invokeLater(() -> {
+            myFetching = false;
+            if (fetched != null) {
+              myDataList = fetched;
+              fireTableDataChanged();
+            }
+            if (myPendingRange != null) {
+              Range pendingRange = myPendingRange;
+              myPendingRange = null;
+              fetch(pendingRange);
+            }
+          });
+        }
+      });
+    }
   }
 
   private static final class SizeRenderer extends DefaultTableCellRenderer {
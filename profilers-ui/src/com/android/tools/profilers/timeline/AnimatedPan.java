@@ -98,4 +98,12 @@ public final class AnimatedPan implements Animatable {
 
     viewRange.shift(deltaUs);
   }
+
+  /**
+   * Moving the view range is reported by the {@link AnimatedTimeline}.
+   */
+  @Override
+  public boolean isDirty() {
+    return false;
+  }
 }
@@ -23,12 +23,22 @@ import org.jetbrains.annotations.NotNull;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Handles timeline streaming functionality for the Profiler UI.
+ * Handles timeline streaming functionality for the Profiler UI. It also reports the view range moving, whatever moved it, so the whole
+ * stage is repainted when skipping idle frames.
  */
 public final class AnimatedTimeline implements Animatable {
 
   @NotNull private final ProfilerTimeline myTimeline;
 
+  private double myLastViewMinUs;
+
+  private double myLastViewMaxUs;
+
+  /**
+   * Whether the view range moved during the last frame, see {@link #isDirty()}.
+   */
+  private boolean myDirty = true;
+
   public AnimatedTimeline(@NotNull ProfilerTimeline timeline) {
     myTimeline = timeline;
   }
@@ -46,4 +56,18 @@ public final class AnimatedTimeline implements Animatable {
     double deltaUs = myTimeline.clampToDataRange(viewMaxUs + frameLengthUs) - viewMaxUs;
     viewRange.shift(deltaUs);
   }
+
+  @Override
+  public void postAnimate() {
+    // Other animatables (e.g. scrolling, panning, zooming) move the view range too, so check once they all animated.
+    Range viewRange = myTimeline.getViewRange();
+    myDirty = viewRange.getMin() != myLastViewMinUs || viewRange.getMax() != myLastViewMaxUs;
+    myLastViewMinUs = viewRange.getMin();
+    myLastViewMaxUs = viewRange.getMax();
+  }
+
+  @Override
+  public boolean isDirty() {
+    return myDirty;
+  }
 }
@@ -88,4 +88,12 @@ public final class AnimatedZoom implements Animatable {
     viewRange.set(myTimeline.clampToDataRange(viewRange.getMin() - minDeltaUs),
                   myTimeline.clampToDataRange(viewRange.getMax() + maxDeltaUs));
   }
+
+  /**
+   * Moving the view range is reported by the {@link AnimatedTimeline}.
+   */
+  @Override
+  public boolean isDirty() {
+    return false;
+  }
 }
@@ -29,6 +29,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -40,6 +41,8 @@ final public class StudioProfilers extends AspectModel<ProfilerAspect> {
   public static final int INVALID_PROCESS_ID = -1;
 
   private final ProfilerClient myClient;
+  @NotNull
+  private final Executor myUiExecutor;
   @Nullable
   private String myPreferredProcessName;
 
@@ -62,7 +65,15 @@ final public class StudioProfilers extends AspectModel<ProfilerAspect> {
   private Stage myStage;
 
   public StudioProfilers(ProfilerClient service) {
+    this(service, Runnable::run);
+  }
+
+  /**
+   * @param uiExecutor runs the model updates made once background work completes on the thread the UI reads the model from.
+   */
+  public StudioProfilers(ProfilerClient service, @NotNull Executor uiExecutor) {
     myClient = service;
+    myUiExecutor = uiExecutor;
     myPreferredProcessName = null;
     myStage = null;
     myProfilers = ImmutableList.of(
@@ -82,6 +93,14 @@ final public class StudioProfilers extends AspectModel<ProfilerAspect> {
     new Thread(this::run, "Profiler poller").start();
   }
 
+  /**
+   * @return the executor to hand the results of background work back to the UI with.
+   */
+  @NotNull
+  public Executor getUiExecutor() {
+    return myUiExecutor;
+  }
+
   public List<Profiler.Device> getDevices() {
     return Lists.newArrayList(myProcesses.keySet());
   }
@@ -16,7 +16,7 @@
 package com.android.tools.profilers.cpu;
 
 import com.android.tools.adtui.model.DurationData;
-import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.HTree;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.perflib.vmtrace.ThreadInfo;
 import com.android.tools.perflib.vmtrace.VmTraceData;
@@ -29,62 +29,139 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 public class CpuCapture implements DurationData {
 
   public static final String MAIN_THREAD_NAME = "main";
 
+  /**
+   * Share of the parsing progress given to reading the trace, the rest is building the call trees.
+   */
+  private static final double READ_PROGRESS = 0.5;
+
+  /**
+   * Receives the results of a capture while it's being parsed, on the parsing thread.
+   */
+  public interface ParsingListener {
+    /**
+     * Called as soon as the call tree of a thread has been built, before the other threads are done.
+     */
+    default void threadParsed(@NotNull ThreadInfo thread, @NotNull HTree<MethodModel> tree) {
+    }
+
+    /**
+     * @param progress the fraction of the parsing done so far, between 0 and 1.
+     */
+    default void progressChanged(double progress) {
+    }
+  }
+
   private final int myMainThreadId;
 
   @NotNull
-  private final Map<ThreadInfo, HNode<MethodModel>> myCaptureTrees;
+  private final Map<ThreadInfo, HTree<MethodModel>> myCaptureTrees;
+
+  @NotNull
+  private final Map<Integer, HTree<MethodModel>> myCaptureTreesById = new HashMap<>();
+
+  /**
+   * The top-down trees of the threads, indexed by thread id.
+   */
+  @NotNull
+  private final Map<Integer, TopDownNode> myTopDownNodes;
 
   @NotNull
   private final Range myRange;
 
+  /**
+   * Parses the trace on the calling thread. Large traces can take a while, see {@link #parse} to parse them in the background instead.
+   */
   public CpuCapture(@NotNull ByteString bytes) {
+    this(parseTrees(bytes, new ParsingListener() {}));
+  }
 
-    // TODO: Move file parsing/manipulation to another thread.
-    // TODO: Remove layers, analyze whether we can keep the whole file in memory.
-    try {
-      File trace = FileUtil.createTempFile("cpu_trace", ".trace");
-      VmTraceData data;
-      try (FileOutputStream out = new FileOutputStream(trace)) {
-        out.write(bytes.toByteArray());
-        VmTraceParser parser = new VmTraceParser(trace);
-        parser.parse();
-        data = parser.getTraceData();
-      }
+  /**
+   * Parses the trace on the given executor.
+   *
+   * @param listener notified of the parsed threads and of the progress as the parsing goes.
+   * @return a future completed with the capture, or exceptionally if the trace is invalid.
+   */
+  @NotNull
+  public static CompletableFuture<CpuCapture> parse(@NotNull ByteString bytes,
+                                                    @NotNull Executor executor,
+                                                    @NotNull ParsingListener listener) {
+    return CompletableFuture.supplyAsync(() -> new CpuCapture(parseTrees(bytes, listener)), executor);
+  }
 
-      CpuTraceArt traceArt = new CpuTraceArt();
-      traceArt.parse(data);
-      myCaptureTrees = traceArt.getThreadsGraph();
-    }
-    catch (IOException e) {
-      throw new IllegalStateException(e);
-    }
+  private CpuCapture(@NotNull Map<ThreadInfo, HTree<MethodModel>> captureTrees) {
+    myCaptureTrees = captureTrees;
 
     // Try to find the main thread. The main thread is called "main" but if we fail
     // to find it we will fall back to the thread with the most information.
-    Map.Entry<ThreadInfo, HNode<MethodModel>> main = null;
+    Map.Entry<ThreadInfo, HTree<MethodModel>> main = null;
     boolean foundMainThread = false;
     myRange = new Range();
-    for (Map.Entry<ThreadInfo, HNode<MethodModel>> entry : myCaptureTrees.entrySet()) {
+    for (Map.Entry<ThreadInfo, HTree<MethodModel>> entry : myCaptureTrees.entrySet()) {
       if (entry.getKey().getName().equals(MAIN_THREAD_NAME)) {
         main = entry;
         foundMainThread = true;
       }
-      if (!foundMainThread && (main == null || main.getValue().duration() < entry.getValue().duration())) {
+      if (!foundMainThread && (main == null || main.getValue().duration(0) < entry.getValue().duration(0))) {
         main = entry;
       }
-      myRange.expand(entry.getValue().getStart(), entry.getValue().getEnd());
+      myRange.expand(entry.getValue().getStart(0), entry.getValue().getEnd(0));
+      myCaptureTreesById.put(entry.getKey().getId(), entry.getValue());
     }
     if (main == null) {
       throw new IllegalArgumentException("Invalid trace");
     }
     myMainThreadId = main.getKey().getId();
+
+    // Aggregating the calls of a thread is independent of the other threads, so the threads are aggregated in parallel.
+    myTopDownNodes = myCaptureTreesById.entrySet().parallelStream()
+      .collect(Collectors.toMap(Map.Entry::getKey, entry -> new TopDownNode(entry.getValue())));
+  }
+
+  @NotNull
+  private static Map<ThreadInfo, HTree<MethodModel>> parseTrees(@NotNull ByteString bytes, @NotNull ParsingListener listener) {
+    listener.progressChanged(0);
+    VmTraceData data;
+    File trace = null;
+    try {
+      trace = FileUtil.createTempFile("cpu_trace", ".trace");
+      try (FileOutputStream out = new FileOutputStream(trace)) {
+        // Writes the bytes straight from the ByteString, without copying the whole trace in a temporary array.
+        bytes.writeTo(out);
+      }
+      VmTraceParser parser = new VmTraceParser(trace);
+      parser.parse();
+      data = parser.getTraceData();
+    }
+    catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    finally {
+      if (trace != null) {
+        FileUtil.delete(trace);
+      }
+    }
+    listener.progressChanged(READ_PROGRESS);
+
+    int threadCount = data.getThreads().size();
+    int[] parsedCount = new int[1];
+    CpuTraceArt traceArt = new CpuTraceArt();
+    traceArt.parse(data, (thread, tree) -> {
+      listener.threadParsed(thread, tree);
+      listener.progressChanged(READ_PROGRESS + (1 - READ_PROGRESS) * ++parsedCount[0] / threadCount);
+    });
+    listener.progressChanged(1);
+    return traceArt.getThreadsGraph();
   }
 
   public int getMainThreadId() {
@@ -96,14 +173,20 @@ public class CpuCapture implements DurationData {
     return myRange;
   }
 
+  /**
+   * @return the call tree of the given thread, whose root is the thread's top level call.
+   */
   @Nullable
-  public HNode<MethodModel> getCaptureNode(int threadId) {
-    for (Map.Entry<ThreadInfo, HNode<MethodModel>> entry : myCaptureTrees.entrySet()) {
-      if (entry.getKey().getId() == threadId) {
-        return entry.getValue();
-      }
-    }
-    return null;
+  public HTree<MethodModel> getCaptureTree(int threadId) {
+    return myCaptureTreesById.get(threadId);
+  }
+
+  /**
+   * @return the top-down tree of the given thread, the same one every time.
+   */
+  @Nullable
+  TopDownNode getTopDownNode(int threadId) {
+    return myTopDownNodes.get(threadId);
   }
 
   @NotNull
@@ -112,7 +195,7 @@ public class CpuCapture implements DurationData {
   }
 
   public boolean containsThread(int threadId) {
-    return myCaptureTrees.keySet().stream().anyMatch(info -> info.getId() == threadId);
+    return myCaptureTreesById.containsKey(threadId);
   }
 
   @Override
@@ -20,14 +20,18 @@ import com.android.tools.adtui.model.*;
 import com.android.tools.profiler.proto.CpuProfiler;
 import com.android.tools.profiler.proto.CpuServiceGrpc;
 import com.android.tools.profilers.*;
+import com.google.protobuf3jarjar.ByteString;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.util.containers.ContainerUtil;
-import com.intellij.util.containers.HashMap;
 import com.intellij.util.containers.ImmutableList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class CpuProfilerStage extends Stage {
@@ -46,6 +50,15 @@ public class CpuProfilerStage extends Stage {
   }
 
   private static final Logger LOG = Logger.getInstance(CpuProfilerStage.class);
+
+  /**
+   * Parses the captures, which can take seconds for large traces, away from the UI thread.
+   */
+  private static final ExecutorService PARSING_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "CPU capture parser");
+    thread.setDaemon(true);
+    return thread;
+  });
   @NotNull
   private final CpuServiceGrpc.CpuServiceBlockingStub myCpuService;
   @NotNull
@@ -62,16 +75,21 @@ public class CpuProfilerStage extends Stage {
    * TODO: Timeouts
    */
   private boolean myCapturing;
+  /**
+   * Whether the capture just stopped is being parsed, see {@link #getParsingProgress()}.
+   */
+  private volatile boolean myParsing;
+  private volatile double myParsingProgress;
   /**
    * Id of the current selected thread.
-   * If this variable has a valid thread id, {@link #myCaptureNode} should store the value of the {@link HNode} correspondent to the thread.
+   * If this variable has a valid thread id, {@link #myCaptureNode} should store the value of the {@link HTree} correspondent to the thread.
    */
   private int mySelectedThread;
 
   /**
-   * A cache of already parsed captures, indexed by trace_id.
+   * A cache of the captures parsed or being parsed, indexed by trace_id. Captures which failed to parse are removed.
    */
-  private Map<Integer, CpuCapture> myTraceCaptures = new HashMap<>();
+  private final Map<Integer, CompletableFuture<CpuCapture>> myTraceCaptures = new ConcurrentHashMap<>();
 
   public CpuProfilerStage(@NotNull StudioProfilers profiler) {
     super(profiler);
@@ -115,22 +133,37 @@ public class CpuProfilerStage extends Stage {
       .build();
 
     CpuProfiler.CpuProfilingAppStopResponse response = myCpuService.stopProfilingApp(request);
-    CpuCapture capture = null;
 
+    myCapturing = false;
     if (!response.getStatus().equals(CpuProfiler.CpuProfilingAppStopResponse.Status.SUCCESS)) {
       LOG.error("Unable to stop tracing:" + response.getStatus());
       LOG.error(response.getErrorMessage());
+      myAspect.changed(CpuProfilerAspect.CAPTURE);
+      return;
     }
-    else {
-      capture = new CpuCapture(response.getTrace());
-      // Force parsing the capture
-      getCapture(response.getTraceId());
-    }
-    if (capture != null) {
-      setCapture(capture);
-      setSelectedThread(capture.getMainThreadId());
-    }
-    myCapturing = false;
+
+    myParsing = true;
+    myParsingProgress = 0;
+    myAspect.changed(CpuProfilerAspect.CAPTURE_PARSING);
+    CompletableFuture<CpuCapture> future = parseCapture(response.getTraceId(), response.getTrace(), new CpuCapture.ParsingListener() {
+      @Override
+      public void progressChanged(double progress) {
+        myParsingProgress = progress;
+        getStudioProfilers().getUiExecutor().execute(() -> myAspect.changed(CpuProfilerAspect.CAPTURE_PARSING));
+      }
+    });
+    // Setting the capture changes the timeline and the profiler mode, which the UI reacts to, so hand the capture back to the UI thread.
+    future.whenCompleteAsync((capture, error) -> {
+      myParsing = false;
+      if (capture != null) {
+        setCapture(capture);
+        setSelectedThread(capture.getMainThreadId());
+      }
+      else {
+        LOG.warn("Unable to parse the capture", error);
+      }
+      myAspect.changed(CpuProfilerAspect.CAPTURE_PARSING);
+    }, getStudioProfilers().getUiExecutor());
   }
 
   public void setCapture(CpuCapture capture) {
@@ -165,6 +198,20 @@ public class CpuProfilerStage extends Stage {
     return myCapturing;
   }
 
+  /**
+   * Whether the last capture is still being parsed, in which case it will be set as the current capture once parsed.
+   */
+  public boolean isParsing() {
+    return myParsing;
+  }
+
+  /**
+   * @return the fraction of the last capture parsed so far, between 0 and 1.
+   */
+  public double getParsingProgress() {
+    return myParsingProgress;
+  }
+
   public DataSeries<CpuCapture> getCpuTraceDataSeries() {
     return myCpuTraceDataSeries;
   }
@@ -175,19 +222,53 @@ public class CpuProfilerStage extends Stage {
     return new CpuThreadsModel(this, getStudioProfilers().getProcessId());
   }
 
+  /**
+   * Returns the given capture if it has already been parsed. Otherwise, starts fetching and parsing it in the background and returns null,
+   * the capture will be returned by the calls made once it's parsed.
+   */
+  @Nullable
   public CpuCapture getCapture(int traceId) {
-    CpuCapture capture = myTraceCaptures.get(traceId);
+    CompletableFuture<CpuCapture> capture = myTraceCaptures.get(traceId);
     if (capture == null) {
-      CpuProfiler.GetTraceRequest request = CpuProfiler.GetTraceRequest.newBuilder()
-        .setAppId(getStudioProfilers().getProcessId())
-        .setTraceId(traceId)
-        .build();
+      capture = fetchCapture(traceId);
+    }
+    return capture.isDone() && !capture.isCompletedExceptionally() ? capture.join() : null;
+  }
+
+  /**
+   * Fetches the trace from the device then parses it, both in the background: the captures are typically requested by data series
+   * queried from the UI thread, which must not wait for the trace to be transferred.
+   */
+  @NotNull
+  private CompletableFuture<CpuCapture> fetchCapture(int traceId) {
+    CpuProfiler.GetTraceRequest request = CpuProfiler.GetTraceRequest.newBuilder()
+      .setAppId(getStudioProfilers().getProcessId())
+      .setTraceId(traceId)
+      .build();
+    CompletableFuture<CpuCapture> capture = CompletableFuture.supplyAsync(() -> {
       CpuProfiler.GetTraceResponse trace = myCpuService.getTrace(request);
-      if (trace.getStatus() == CpuProfiler.GetTraceResponse.Status.SUCCESS) {
-        capture = new CpuCapture(trace.getData());
+      if (trace.getStatus() != CpuProfiler.GetTraceResponse.Status.SUCCESS) {
+        throw new IllegalStateException("Unable to fetch trace " + traceId + ": " + trace.getStatus());
       }
-      myTraceCaptures.put(traceId, capture);
-    }
+      return trace.getData();
+    }, PARSING_EXECUTOR).thenCompose(bytes -> CpuCapture.parse(bytes, PARSING_EXECUTOR, new CpuCapture.ParsingListener() {}));
+    return cacheCapture(traceId, capture);
+  }
+
+  @NotNull
+  private CompletableFuture<CpuCapture> parseCapture(int traceId, @NotNull ByteString bytes, @NotNull CpuCapture.ParsingListener listener) {
+    return cacheCapture(traceId, CpuCapture.parse(bytes, PARSING_EXECUTOR, listener));
+  }
+
+  @NotNull
+  private CompletableFuture<CpuCapture> cacheCapture(int traceId, @NotNull CompletableFuture<CpuCapture> capture) {
+    myTraceCaptures.put(traceId, capture);
+    // Allows parsing the trace again if it is requested again, rather than never showing it.
+    capture.whenComplete((parsed, error) -> {
+      if (error != null) {
+        myTraceCaptures.remove(traceId, capture);
+      }
+    });
     return capture;
   }
 
@@ -206,6 +287,10 @@ public class CpuProfilerStage extends Stage {
       List<SeriesData<CpuCapture>> seriesData = new ArrayList<>();
       for (CpuProfiler.TraceInfo traceInfo : response.getTraceInfoList()) {
         CpuCapture capture = getCapture(traceInfo.getTraceId());
+        if (capture == null) {
+          // Not parsed yet, it will be part of the next queries once it is.
+          continue;
+        }
         Range range = capture.getRange();
 
         seriesData.add(new SeriesData<>((long)range.getMin(), capture));
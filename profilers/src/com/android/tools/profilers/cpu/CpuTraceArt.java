@@ -15,58 +15,108 @@
  */
 package com.android.tools.profilers.cpu;
 
-import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.HTree;
 import com.android.tools.perflib.vmtrace.Call;
 import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.perflib.vmtrace.ThreadInfo;
 import com.android.tools.perflib.vmtrace.VmTraceData;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 public class CpuTraceArt {
 
   /**
    * Tree representation of ART trace (generated from perflib tree).
-   * Keys are thread ids and values are their respective {@link HNode}
+   * Keys are thread ids and values are their respective {@link HTree}
    */
-  Map<ThreadInfo, HNode<MethodModel>> myNodes;
+  Map<ThreadInfo, HTree<MethodModel>> myNodes;
+
+  /**
+   * The methods of the trace being parsed, indexed by method id. A single model is created per method, shared by all its calls.
+   */
+  private Map<Long, MethodModel> myMethods;
 
   public void parse(VmTraceData data) throws IOException {
+    parse(data, (thread, tree) -> {});
+  }
+
+  /**
+   * @param threadListener called with the tree of each thread as soon as it is built.
+   */
+  public void parse(@NotNull VmTraceData data, @NotNull BiConsumer<ThreadInfo, HTree<MethodModel>> threadListener) {
     myNodes = new HashMap<>();
+    myMethods = new HashMap<>();
 
-    // Convert perflib tree to HNode tree.
+    // Convert perflib tree to HTree.
     for (ThreadInfo threadInfo : data.getThreads()) {
       if (threadInfo.getTopLevelCall() == null) {
         continue;
       }
-      myNodes.put(threadInfo, convertCallsToNode(data, threadInfo.getTopLevelCall(), 0));
+      HTree<MethodModel> tree = convertCallsToTree(data, threadInfo.getTopLevelCall());
+      myNodes.put(threadInfo, tree);
+      threadListener.accept(threadInfo, tree);
     }
+    myMethods = null;
   }
 
-  private HNode<MethodModel> convertCallsToNode(VmTraceData data, Call call, int depth) {
-
-    HNode<MethodModel> node = new HNode<>();
-    // ART stores timestamp in a compressed fashion: All timestamp are 32 bits relative to a startTime.
-    // We need to reconstruct the full timestamp by adding each of them to startTime.
-    node.setStart((call.getEntryTime(ClockType.GLOBAL, TimeUnit.MICROSECONDS) + data.getStartTimeUs()));
-    node.setEnd((call.getExitTime(ClockType.GLOBAL, TimeUnit.MICROSECONDS) + data.getStartTimeUs()));
-    node.setDepth(depth);
-
-    MethodModel method = new MethodModel();
-    method.setName(data.getMethod(call.getMethodId()).methodName);
-    method.setNamespace(data.getMethod(call.getMethodId()).className);
-    node.setData(method);
+  /**
+   * Converts a call and all its callees. Call stacks of deep recursions can be thousands of calls deep, so the tree is walked with an
+   * explicit stack rather than recursively.
+   */
+  private HTree<MethodModel> convertCallsToTree(VmTraceData data, Call topLevelCall) {
+    HTree.Builder<MethodModel> builder = new HTree.Builder<>();
+    Deque<PendingCall> pending = new ArrayDeque<>();
+    pending.push(new PendingCall(topLevelCall, HTree.NO_NODE, 0));
+    while (!pending.isEmpty()) {
+      PendingCall call = pending.pop();
+      // ART stores timestamp in a compressed fashion: All timestamp are 32 bits relative to a startTime.
+      // We need to reconstruct the full timestamp by adding each of them to startTime.
+      int node = builder.addNode(call.myParent,
+                                 getMethod(data, call.myCall.getMethodId()),
+                                 call.myCall.getEntryTime(ClockType.GLOBAL, TimeUnit.MICROSECONDS) + data.getStartTimeUs(),
+                                 call.myCall.getExitTime(ClockType.GLOBAL, TimeUnit.MICROSECONDS) + data.getStartTimeUs(),
+                                 call.myDepth);
+      // Pushed in reverse so that the callees are added in order, right after their caller, as the tree expects.
+      List<Call> callees = call.myCall.getCallees();
+      for (int i = callees.size() - 1; i >= 0; i--) {
+        pending.push(new PendingCall(callees.get(i), node, call.myDepth + 1));
+      }
+    }
+    return builder.build();
+  }
 
-    for (Call callee : call.getCallees()) {
-      node.addHNode(convertCallsToNode(data, callee, depth + 1));
+  private MethodModel getMethod(VmTraceData data, long methodId) {
+    MethodModel method = myMethods.get(methodId);
+    if (method == null) {
+      method = new MethodModel();
+      method.setName(data.getMethod(methodId).methodName);
+      method.setNamespace(data.getMethod(methodId).className);
+      myMethods.put(methodId, method);
     }
-    return node;
+    return method;
   }
 
-  public Map<ThreadInfo, HNode<MethodModel>> getThreadsGraph() {
+  public Map<ThreadInfo, HTree<MethodModel>> getThreadsGraph() {
     return myNodes;
   }
+
+  private static final class PendingCall {
+    private final Call myCall;
+    private final int myParent;
+    private final int myDepth;
+
+    private PendingCall(Call call, int parent, int depth) {
+      myCall = call;
+      myParent = parent;
+      myDepth = depth;
+    }
+  }
 }
@@ -16,8 +16,9 @@
 package com.android.tools.profilers.cpu;
 
 import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.HTree;
 import com.android.tools.adtui.model.Range;
-import com.google.common.collect.Iterables;
+import gnu.trove.TIntArrayList;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
@@ -25,48 +26,82 @@ import java.util.*;
 /**
  * A top-down CPU usage tree. This is a node on that tree and represents all the calls that share the same callstack upto a point.
  * It's created from an execution tree by merging the nodes with the same path from the root.
+ *
+ * Calls sharing the same callstack never overlap, so once the tree is built each node indexes its calls as sorted intervals with the
+ * cumulative sum of their durations. That makes computing the total time of a node within a range, or whether it has calls in a range,
+ * logarithmic in its number of calls.
  */
 class TopDownNode {
-  private final List<HNode<MethodModel>> myNodes;
+  @NotNull private final HTree<MethodModel> myTree;
+  /**
+   * The nodes of {@link #myTree} merged into this one.
+   */
+  private final TIntArrayList myNodes;
   private final List<TopDownNode> myChildren;
   private final String myId;
   private double myTotal;
 
+  /**
+   * Start and end of the calls of this node, sorted. Built once all the calls merged into this node are known.
+   */
+  private long[] myStarts;
+  private long[] myEnds;
+  /**
+   * The sum of the durations of the calls before each index, with one extra element for the sum of all of them.
+   */
+  private long[] myCumulativeDurations;
+
   public TopDownNode(@NotNull HNode<MethodModel> node) {
-    myNodes = new LinkedList<>();
-    myChildren = new ArrayList<>();
-    myId = node.getData().getId();
-    myNodes.add(node);
-
-    Map<String, TopDownNode> children = new TreeMap<>();
-    for (HNode<MethodModel> child : node.getChildren()) {
-      TopDownNode prev = children.get(child.getData().getId());
-      TopDownNode other = new TopDownNode(child);
-      if (prev == null) {
-        children.put(child.getData().getId(), other);
-        myChildren.add(other);
-      }
-      else {
-        prev.merge(other);
+    this(HTree.fromHNode(node));
+  }
+
+  /**
+   * Builds the tree with an explicit stack rather than recursively, as call stacks can be deeper than the thread's stack allows. Each
+   * node is expanded once all the calls merged into it are known: the calls of its children are the children of its calls, grouped by
+   * method. Calls are visited in order, so each node lists its calls, and its children, in the order they first appear in the tree.
+   */
+  public TopDownNode(@NotNull HTree<MethodModel> tree) {
+    this(tree, tree.getData(0).getId());
+    myNodes.add(0);
+
+    String[] ids = new String[tree.getDataCount()];
+    Deque<TopDownNode> stack = new ArrayDeque<>();
+    stack.push(this);
+    Map<String, TopDownNode> children = new HashMap<>();
+    while (!stack.isEmpty()) {
+      TopDownNode parent = stack.pop();
+      parent.buildIndex();
+      children.clear();
+      for (int i = 0; i < parent.myNodes.size(); i++) {
+        for (int child = tree.getFirstChild(parent.myNodes.get(i)); child != HTree.NO_NODE; child = tree.getNextSibling(child)) {
+          String childId = getId(tree, child, ids);
+          TopDownNode topDownChild = children.get(childId);
+          if (topDownChild == null) {
+            topDownChild = new TopDownNode(tree, childId);
+            children.put(childId, topDownChild);
+            parent.myChildren.add(topDownChild);
+          }
+          topDownChild.myNodes.add(child);
+        }
       }
+      parent.myChildren.forEach(stack::push);
     }
   }
 
-  private void merge(TopDownNode other) {
-    myNodes.addAll(other.myNodes);
-    Map<String, TopDownNode> children = new TreeMap<>();
-    for (TopDownNode child : myChildren) {
-      children.put(child.myId, child);
-    }
-    for (TopDownNode otherChild : other.myChildren) {
-      TopDownNode existing = children.get(otherChild.myId);
-      if (existing != null) {
-        existing.merge(otherChild);
-      }
-      else {
-        myChildren.add(otherChild);
-      }
+  private TopDownNode(@NotNull HTree<MethodModel> tree, @NotNull String id) {
+    myTree = tree;
+    myNodes = new TIntArrayList();
+    myChildren = new ArrayList<>();
+    myId = id;
+  }
+
+  @NotNull
+  private static String getId(@NotNull HTree<MethodModel> tree, int node, @NotNull String[] ids) {
+    int dataId = tree.getDataId(node);
+    if (ids[dataId] == null) {
+      ids[dataId] = tree.getDataById(dataId).getId();
     }
+    return ids[dataId];
   }
 
   public String getId() {
@@ -78,16 +113,17 @@ class TopDownNode {
   }
 
   public boolean inRange(Range range) {
-    return Iterables.any(myNodes, node -> node.getStart() < range.getMax() && range.getMin() < node.getEnd());
+    int first = firstEndingAfter(range.getMin());
+    return first < myStarts.length && myStarts[first] < range.getMax();
   }
 
   public String getMethodName() {
-    MethodModel data = myNodes.get(0).getData();
+    MethodModel data = myTree.getData(myNodes.get(0));
     return data.getName();
   }
 
   public String getPackage() {
-    MethodModel data = myNodes.get(0).getData();
+    MethodModel data = myTree.getData(myNodes.get(0));
     return data.getNameSpace();
   }
 
@@ -109,13 +145,85 @@ class TopDownNode {
 
   public void update(Range range) {
     myTotal = 0.0;
-    for (HNode<MethodModel> node : myNodes) {
-      Range intersection = range.getIntersection(new Range(node.getStart(), node.getEnd()));
-      myTotal += intersection.isEmpty() ? 0 : intersection.getLength();
+    int first = firstEndingAfter(range.getMin());
+    int last = firstStartingAtOrAfter(range.getMax()) - 1;
+    if (first > last) {
+      return;
     }
+    // The calls in between are entirely in the range, only the first and the last one may need to be clipped.
+    myTotal = myCumulativeDurations[last + 1] - myCumulativeDurations[first];
+    myTotal -= Math.max(0, range.getMin() - myStarts[first]);
+    myTotal -= Math.max(0, myEnds[last] - range.getMax());
   }
 
   public void reset() {
     myTotal = 0.0;
   }
+
+  private void buildIndex() {
+    int[] nodes = myNodes.toNativeArray();
+    long[] starts = new long[nodes.length];
+    for (int i = 0; i < nodes.length; i++) {
+      starts[i] = myTree.getStart(nodes[i]);
+    }
+    // Merged calls are usually in order already.
+    for (int i = 1; i < nodes.length; i++) {
+      if (starts[i - 1] > starts[i]) {
+        Integer[] sorted = new Integer[nodes.length];
+        for (int j = 0; j < nodes.length; j++) {
+          sorted[j] = nodes[j];
+        }
+        Arrays.sort(sorted, Comparator.comparingLong(myTree::getStart));
+        for (int j = 0; j < nodes.length; j++) {
+          nodes[j] = sorted[j];
+        }
+        break;
+      }
+    }
+
+    myStarts = new long[nodes.length];
+    myEnds = new long[nodes.length];
+    myCumulativeDurations = new long[nodes.length + 1];
+    for (int i = 0; i < nodes.length; i++) {
+      myStarts[i] = myTree.getStart(nodes[i]);
+      myEnds[i] = myTree.getEnd(nodes[i]);
+      myCumulativeDurations[i + 1] = myCumulativeDurations[i] + myEnds[i] - myStarts[i];
+    }
+  }
+
+  /**
+   * @return the index of the first call ending after the given time, or the number of calls if there is none.
+   */
+  private int firstEndingAfter(double time) {
+    int low = 0;
+    int high = myEnds.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myEnds[mid] > time) {
+        high = mid;
+      }
+      else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the index of the first call starting at or after the given time, or the number of calls if there is none.
+   */
+  private int firstStartingAtOrAfter(double time) {
+    int low = 0;
+    int high = myStarts.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myStarts[mid] >= time) {
+        high = mid;
+      }
+      else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
 }
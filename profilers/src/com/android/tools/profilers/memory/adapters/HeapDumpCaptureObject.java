@@ -15,22 +15,32 @@
  */
 package com.android.tools.profilers.memory.adapters;
 
+import com.android.tools.perflib.captures.MemoryMappedFileBuffer;
 import com.android.tools.perflib.heap.ProguardMap;
 import com.android.tools.perflib.heap.Snapshot;
-import com.android.tools.perflib.heap.io.InMemoryBuffer;
 import com.android.tools.profiler.proto.MemoryProfiler.DumpDataResponse;
 import com.android.tools.profiler.proto.MemoryProfiler.HeapDumpDataRequest;
 import com.android.tools.profiler.proto.MemoryProfiler.HeapDumpInfo;
 import com.android.tools.profiler.proto.MemoryServiceGrpc;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import io.grpc.StatusRuntimeException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 // TODO finish this class for the memory detail view
 public class HeapDumpCaptureObject extends CaptureObject {
+  /**
+   * How long to wait for the datastore to respond with the dump, which includes fetching it from the device.
+   */
+  private static final long HEAP_DUMP_TIMEOUT_S = 120;
+
   @NotNull
   private final MemoryServiceGrpc.MemoryServiceBlockingStub myClient;
 
@@ -45,6 +55,12 @@ public class HeapDumpCaptureObject extends CaptureObject {
   @Nullable
   private Snapshot mySnapshot;
 
+  /**
+   * File the dump is spilled to, so that the snapshot is read from a memory-mapped file rather than from a copy of the dump on the heap.
+   */
+  @Nullable
+  private File myDumpFile;
+
   public HeapDumpCaptureObject(@NotNull MemoryServiceGrpc.MemoryServiceBlockingStub client,
                                int appId,
                                @NotNull HeapDumpInfo heapDumpInfo,
@@ -61,6 +77,10 @@ public class HeapDumpCaptureObject extends CaptureObject {
       mySnapshot.dispose();
       mySnapshot = null;
     }
+    if (myDumpFile != null) {
+      FileUtil.delete(myDumpFile);
+      myDumpFile = null;
+    }
   }
 
   @Override
@@ -77,27 +97,44 @@ public class HeapDumpCaptureObject extends CaptureObject {
   @NotNull
   @Override
   public List<HeapObject> getHeaps() {
+    if (mySnapshot == null && !loadSnapshot()) {
+      return new ArrayList<>();
+    }
+    return mySnapshot.getHeaps().stream().map(HeapDumpHeapObject::new).collect(Collectors.toList());
+  }
+
+  private boolean loadSnapshot() {
+    // The datastore only responds once the dump is available, so there is no need to poll.
+    // TODO move this to another thread and complete before we notify
     DumpDataResponse response;
-    while (true) {
-      // TODO move this to another thread and complete before we notify
-      response = myClient.getHeapDump(HeapDumpDataRequest.newBuilder().setAppId(myAppId).setDumpId(myHeapDumpInfo.getDumpId()).build());
-      if (response.getStatus() == DumpDataResponse.Status.SUCCESS) {
-        break;
-      }
-      else if (response.getStatus() == DumpDataResponse.Status.NOT_READY) {
-        try {
-          Thread.sleep(50L);
-        }
-        catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-          return new ArrayList<>();
-        }
-        continue;
+    try {
+      response = myClient.withDeadlineAfter(HEAP_DUMP_TIMEOUT_S, TimeUnit.SECONDS)
+        .getHeapDump(HeapDumpDataRequest.newBuilder().setAppId(myAppId).setDumpId(myHeapDumpInfo.getDumpId()).build());
+    }
+    catch (StatusRuntimeException e) {
+      getLogger().warn("Unable to fetch heap dump " + myHeapDumpInfo.getDumpId(), e);
+      return false;
+    }
+    if (response.getStatus() != DumpDataResponse.Status.SUCCESS) {
+      return false;
+    }
+
+    MemoryMappedFileBuffer buffer;
+    try {
+      myDumpFile = FileUtil.createTempFile("heapdump-" + myHeapDumpInfo.getDumpId(), ".hprof", true);
+      // Unbuffered, the data is written from the response's own arrays without intermediate copies.
+      try (OutputStream out = new FileOutputStream(myDumpFile)) {
+        response.getData().writeTo(out);
       }
-      return new ArrayList<>();
+      // Lets the response be collected before the dump is parsed.
+      response = null;
+      buffer = new MemoryMappedFileBuffer(myDumpFile);
+    }
+    catch (IOException e) {
+      getLogger().warn("Unable to spill heap dump " + myHeapDumpInfo.getDumpId(), e);
+      return false;
     }
 
-    InMemoryBuffer buffer = new InMemoryBuffer(response.getData().asReadOnlyByteBuffer());
     if (myProguardMap != null) {
       mySnapshot = Snapshot.createSnapshot(buffer, myProguardMap);
     }
@@ -105,7 +142,10 @@ public class HeapDumpCaptureObject extends CaptureObject {
       mySnapshot = Snapshot.createSnapshot(buffer);
     }
     mySnapshot.computeDominators();
+    return true;
+  }
 
-    return mySnapshot.getHeaps().stream().map(HeapDumpHeapObject::new).collect(Collectors.toList());
+  private static Logger getLogger() {
+    return Logger.getInstance(HeapDumpCaptureObject.class);
   }
 }
@@ -23,11 +23,8 @@ import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 /**
  * Data of http url connection. Each {@code HttpData} object matches a http connection with a unique id, and it includes both request data
@@ -49,7 +46,11 @@ public class HttpData {
   @Nullable private final String myResponsePayloadId;
 
   private int myStatusCode = -1;
-  private final Map<String, String> myResponseFields = new HashMap<>();
+  /**
+   * Response fields by name, ignoring case as HTTP does. They are parsed once when the data is built, which happens off the UI thread,
+   * so that tables can look them up on every repaint.
+   */
+  private final Map<String, String> myResponseFields = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
   // TODO: Move it to datastore, for now virtual file creation cannot select file type.
   private File myResponsePayloadFile;
 
@@ -121,27 +122,38 @@ public class HttpData {
   }
 
   private void parseResponseFields(@NotNull String fields) {
-    List<String> lines = Arrays.stream(fields.split("\\n")).filter(line -> !line.trim().isEmpty()).collect(Collectors.toList());
-    if (lines.isEmpty()) {
-      return;
-    }
-
-    String firstLine = lines.remove(0);
-    String[] tokens = firstLine.split("=", 2);
-    String status = tokens[tokens.length - 1].trim();
-    // The status-line - should be formatted as per
-    // section 6.1 of RFC 2616.
-    // https://www.w3.org/Protocols/rfc2616/rfc2616-sec6.html
-    //
-    // Status-Line = HTTP-Version SP Status-Code SP Reason-Phrase
-    assert status.startsWith("HTTP/1.") : String.format("Unexpected http response status-line (%s)", status);
-    myStatusCode = Integer.parseInt(status.split(" ")[1]);
-
     myResponseFields.clear();
-    for (String line: lines) {
-      String[] keyAndValue = line.split("=", 2);
-      assert keyAndValue.length == 2 : String.format("Unexpected http response field (%s)", line);
-      myResponseFields.put(keyAndValue[0].trim(), StringUtil.trimEnd(keyAndValue[1].trim(), ';'));
+    boolean statusLineParsed = false;
+    int lineStart = 0;
+    while (lineStart <= fields.length()) {
+      int lineEnd = fields.indexOf('\n', lineStart);
+      if (lineEnd < 0) {
+        lineEnd = fields.length();
+      }
+      String line = fields.substring(lineStart, lineEnd);
+      lineStart = lineEnd + 1;
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+
+      int separator = line.indexOf('=');
+      if (!statusLineParsed) {
+        statusLineParsed = true;
+        String status = line.substring(separator + 1).trim();
+        // The status-line - should be formatted as per
+        // section 6.1 of RFC 2616.
+        // https://www.w3.org/Protocols/rfc2616/rfc2616-sec6.html
+        //
+        // Status-Line = HTTP-Version SP Status-Code SP Reason-Phrase
+        assert status.startsWith("HTTP/1.") : String.format("Unexpected http response status-line (%s)", status);
+        int codeStart = status.indexOf(' ') + 1;
+        int codeEnd = status.indexOf(' ', codeStart);
+        myStatusCode = Integer.parseInt(codeEnd < 0 ? status.substring(codeStart) : status.substring(codeStart, codeEnd));
+        continue;
+      }
+
+      assert separator >= 0 : String.format("Unexpected http response field (%s)", line);
+      myResponseFields.put(line.substring(0, separator).trim(), StringUtil.trimEnd(line.substring(separator + 1).trim(), ';'));
     }
   }
 
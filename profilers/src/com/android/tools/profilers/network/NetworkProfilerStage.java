@@ -95,8 +95,9 @@ public class NetworkProfilerStage extends Stage {
       File file = null;
       try {
         file = FileUtil.createTempFile(data.getResponsePayloadId(), getFileSuffixFromContentType(data));
-        FileOutputStream outputStream = new FileOutputStream(file);
-        payload.writeTo(outputStream);
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+          payload.writeTo(outputStream);
+        }
       } catch (IOException e) {
         return;
       } finally {
@@ -22,22 +22,49 @@ import com.google.protobuf3jarjar.ByteString;
 import com.intellij.openapi.util.text.StringUtil;
 import io.grpc.StatusRuntimeException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link NetworkRequestsModel} that uses an RPC mechanism to complete its queries.
+ *
+ * The details of a connection never change once it has completed, so completed connections are cached by id, and each query only fetches
+ * the details of the connections that are new or still open. The request details of an open connection are cached as well, so only its
+ * response is fetched when it completes.
+ *
+ * Both caches are bounded by the connections of the latest query: open connections are dropped once they are no longer in range, and
+ * completed ones once there are more than {@link #MAX_CACHED_CONNECTIONS} of them.
  */
 public final class RpcNetworkRequestsModel implements NetworkRequestsModel {
+  /**
+   * Number of completed connections above which those out of the range queried are dropped from the cache.
+   */
+  static final int MAX_CACHED_CONNECTIONS = 10000;
+
   @NotNull
   private final NetworkServiceGrpc.NetworkServiceBlockingStub myNetworkService;
 
   private final int myPid;
 
+  private final int myMaxCachedConnections;
+
+  @NotNull
+  private final Map<Long, HttpData> myCompletedConnections = new ConcurrentHashMap<>();
+
+  @NotNull
+  private final Map<Long, NetworkProfiler.HttpDetailsResponse.Request> myOpenConnectionRequests = new ConcurrentHashMap<>();
+
   public RpcNetworkRequestsModel(@NotNull NetworkServiceGrpc.NetworkServiceBlockingStub service, int pid) {
+    this(service, pid, MAX_CACHED_CONNECTIONS);
+  }
+
+  RpcNetworkRequestsModel(@NotNull NetworkServiceGrpc.NetworkServiceBlockingStub service, int pid, int maxCachedConnections) {
     myNetworkService = service;
     myPid = pid;
+    myMaxCachedConnections = maxCachedConnections;
   }
 
   @NotNull
@@ -55,41 +82,81 @@ public final class RpcNetworkRequestsModel implements NetworkRequestsModel {
     }
 
     List<HttpData> httpDataList = new ArrayList<>(response.getDataList().size());
+    Set<Long> connectionIds = new HashSet<>(response.getDataList().size());
     for (NetworkProfiler.HttpConnectionData connection: response.getDataList()) {
+      long connectionId = connection.getConnId();
+      connectionIds.add(connectionId);
+      HttpData completedData = myCompletedConnections.get(connectionId);
+      if (completedData != null) {
+        httpDataList.add(completedData);
+        continue;
+      }
+
       long startTimeUs = TimeUnit.NANOSECONDS.toMicros(connection.getStartTimestamp());
       long endTimeUs = TimeUnit.NANOSECONDS.toMicros(connection.getEndTimestamp());
       long downloadTimeUs = TimeUnit.NANOSECONDS.toMicros(connection.getDownloadingTimestamp());
 
-      HttpData.Builder httpBuilder = new HttpData.Builder(connection.getConnId(), startTimeUs, endTimeUs, downloadTimeUs);
+      HttpData.Builder httpBuilder = new HttpData.Builder(connectionId, startTimeUs, endTimeUs, downloadTimeUs);
 
-      requestHttpRequest(connection.getConnId(), httpBuilder);
+      boolean complete = requestHttpRequest(connectionId, httpBuilder);
       if (connection.getEndTimestamp() != 0) {
-        requestHttpResponse(connection.getConnId(), httpBuilder);
-        requestHttpResponseBody(connection.getConnId(), httpBuilder);
+        complete &= requestHttpResponse(connectionId, httpBuilder);
+        complete &= requestHttpResponseBody(connectionId, httpBuilder);
+      }
+      else {
+        complete = false;
       }
-      httpDataList.add(httpBuilder.build());
+      HttpData data = httpBuilder.build();
+      if (complete) {
+        // Details that failed to be fetched are requested again by the next query.
+        myCompletedConnections.put(connectionId, data);
+        myOpenConnectionRequests.remove(connectionId);
+      }
+      httpDataList.add(data);
     }
 
+    myOpenConnectionRequests.keySet().retainAll(connectionIds);
+    if (myCompletedConnections.size() > myMaxCachedConnections) {
+      myCompletedConnections.keySet().retainAll(connectionIds);
+    }
     return httpDataList;
   }
 
-  private void requestHttpRequest(long connectionId, @NotNull HttpData.Builder httpBuilder) {
+  /**
+   * @return whether the request details were set.
+   */
+  private boolean requestHttpRequest(long connectionId, @NotNull HttpData.Builder httpBuilder) {
+    NetworkProfiler.HttpDetailsResponse.Request result = myOpenConnectionRequests.get(connectionId);
+    if (result == null) {
+      result = fetchHttpRequest(connectionId);
+      if (result == null) {
+        return false;
+      }
+      myOpenConnectionRequests.put(connectionId, result);
+    }
+    httpBuilder.setUrl(result.getUrl());
+    httpBuilder.setMethod(result.getMethod());
+    httpBuilder.setTrace(result.getTrace());
+    return true;
+  }
+
+  @Nullable
+  private NetworkProfiler.HttpDetailsResponse.Request fetchHttpRequest(long connectionId) {
     NetworkProfiler.HttpDetailsRequest request = NetworkProfiler.HttpDetailsRequest.newBuilder()
       .setConnId(connectionId)
       .setType(NetworkProfiler.HttpDetailsRequest.Type.REQUEST)
       .build();
-    NetworkProfiler.HttpDetailsResponse.Request result;
     try {
-      result = myNetworkService.getHttpDetails(request).getRequest();
+      return myNetworkService.getHttpDetails(request).getRequest();
     } catch (StatusRuntimeException e) {
-      return;
+      return null;
     }
-    httpBuilder.setUrl(result.getUrl());
-    httpBuilder.setMethod(result.getMethod());
-    httpBuilder.setTrace(result.getTrace());
   }
 
-  private void requestHttpResponseBody(long connectionId, @NotNull HttpData.Builder httpBuilder) {
+  /**
+   * @return whether the response body details were set.
+   */
+  private boolean requestHttpResponseBody(long connectionId, @NotNull HttpData.Builder httpBuilder) {
     NetworkProfiler.HttpDetailsRequest request = NetworkProfiler.HttpDetailsRequest.newBuilder()
       .setConnId(connectionId)
       .setType(NetworkProfiler.HttpDetailsRequest.Type.RESPONSE_BODY)
@@ -99,10 +166,11 @@ public final class RpcNetworkRequestsModel implements NetworkRequestsModel {
       response = myNetworkService.getHttpDetails(request);
     }
     catch (StatusRuntimeException e) {
-      return;
+      return false;
     }
     String payloadId = response.getResponseBody().getPayloadId();
     httpBuilder.setResponsePayloadId(payloadId);
+    return true;
   }
 
   @NotNull
@@ -124,7 +192,10 @@ public final class RpcNetworkRequestsModel implements NetworkRequestsModel {
     return payloadResponse.getContents();
   }
 
-  private void requestHttpResponse(long connectionId, @NotNull HttpData.Builder httpBuilder) {
+  /**
+   * @return whether the response details were set.
+   */
+  private boolean requestHttpResponse(long connectionId, @NotNull HttpData.Builder httpBuilder) {
     NetworkProfiler.HttpDetailsRequest request = NetworkProfiler.HttpDetailsRequest.newBuilder()
       .setConnId(connectionId)
       .setType(NetworkProfiler.HttpDetailsRequest.Type.RESPONSE)
@@ -134,8 +205,9 @@ public final class RpcNetworkRequestsModel implements NetworkRequestsModel {
       response = myNetworkService.getHttpDetails(request);
     }
     catch (StatusRuntimeException e) {
-      return;
+      return false;
     }
     httpBuilder.setResponseFields(response.getResponse().getFields());
+    return true;
   }
 }
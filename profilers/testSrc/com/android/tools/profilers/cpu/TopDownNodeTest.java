@@ -16,6 +16,8 @@
 package com.android.tools.profilers.cpu;
 
 import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.HTree;
+import com.android.tools.adtui.model.Range;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Assert;
 import org.junit.Test;
@@ -48,6 +50,50 @@ public class TopDownNodeTest {
     Assert.assertEquals(":F:", topDown.getChildren().get(1).getChildren().get(0).getId());
   }
 
+  @Test
+  public void testTotalInRange() throws Exception {
+    TopDownNode topDown = new TopDownNode(createTree());
+    TopDownNode nodeB = topDown.getChildren().get(0);
+    Assert.assertEquals(":B:", nodeB.getId());
+
+    // B is made of two calls, [1, 9] and [22, 29], both partially in the range.
+    nodeB.update(new Range(5, 25));
+    Assert.assertEquals(4 + 3, nodeB.getTotal(), 0);
+
+    // Entirely in the range.
+    nodeB.update(new Range(0, 30));
+    Assert.assertEquals(8 + 7, nodeB.getTotal(), 0);
+
+    // Between the two calls.
+    nodeB.update(new Range(10, 20));
+    Assert.assertEquals(0, nodeB.getTotal(), 0);
+    Assert.assertFalse(nodeB.inRange(new Range(10, 20)));
+    Assert.assertTrue(nodeB.inRange(new Range(10, 23)));
+    Assert.assertFalse(nodeB.inRange(new Range(29, 40)));
+  }
+
+  @Test
+  public void testDeepTree() throws Exception {
+    // Deep enough to overflow the stack if the tree was built recursively.
+    int depth = 100000;
+    HTree.Builder<MethodModel> builder = new HTree.Builder<>();
+    int parent = HTree.NO_NODE;
+    for (int i = 0; i < depth; i++) {
+      parent = builder.addNode(parent, new MethodModel("M" + i % 2), i, 2 * depth - i, i);
+    }
+
+    TopDownNode node = new TopDownNode(builder.build());
+    int count = 1;
+    while (!node.getChildren().isEmpty()) {
+      Assert.assertEquals(1, node.getChildren().size());
+      node = node.getChildren().get(0);
+      count++;
+    }
+    Assert.assertEquals(depth, count);
+    node.update(new Range(0, 2 * depth));
+    Assert.assertEquals(2, node.getTotal(), 0);
+  }
+
   /**
    * Creates a test to be used for testing. The shape of the tree is as follows:
    *              0123456789012345678901234567890
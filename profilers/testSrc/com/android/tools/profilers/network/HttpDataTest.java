@@ -44,6 +44,18 @@ public class HttpDataTest {
     assertThat(data.getResponseField("Content-Type"), equalTo("text/html; charset=UTF-8"));
   }
 
+  @Test
+  public void responseFieldsIgnoreCase() {
+    HttpData.Builder builder = new HttpData.Builder(1, 0, 0, 0);
+    builder.setResponseFields("null = HTTP/1.1 200 OK\n" +
+                              "content-type = text/html\n" +
+                              "CONTENT-LENGTH = 1024");
+    HttpData data = builder.build();
+    assertThat(data.getStatusCode(), equalTo(200));
+    assertThat(data.getResponseField(HttpData.FIELD_CONTENT_TYPE), equalTo("text/html"));
+    assertThat(data.getResponseField(HttpData.FIELD_CONTENT_LENGTH), equalTo("1024"));
+  }
+
   @Test
   public void testResponseStatusLineWithoutKey() {
     HttpData.Builder builder = new HttpData.Builder(1, 0, 0, 0);
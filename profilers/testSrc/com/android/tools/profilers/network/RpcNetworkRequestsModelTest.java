@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.network;
+
+import com.android.tools.adtui.model.Range;
+import com.android.tools.profiler.proto.NetworkProfiler;
+import com.android.tools.profiler.proto.NetworkServiceGrpc;
+import com.android.tools.profilers.TestGrpcChannel;
+import io.grpc.stub.StreamObserver;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RpcNetworkRequestsModelTest {
+  @Rule
+  public TestGrpcChannel<NetworkServiceMock> myGrpcChannel =
+    new TestGrpcChannel<>("NETWORK_REQUESTS_TEST_CHANNEL", new NetworkServiceMock());
+
+  private RpcNetworkRequestsModel myModel;
+
+  @Before
+  public void setUp() {
+    myModel = new RpcNetworkRequestsModel(myGrpcChannel.getClient().getNetworkClient(), 1);
+  }
+
+  @Test
+  public void testCompletedConnectionsAreFetchedOnce() {
+    NetworkServiceMock service = myGrpcChannel.getService();
+    service.addConnection(1, TimeUnit.MICROSECONDS.toNanos(2));
+    service.addConnection(2, 0);
+
+    List<HttpData> data = myModel.getData(new Range(0, 10));
+    assertEquals(2, data.size());
+    assertEquals("http://example.com/1", data.get(0).getUrl());
+    assertEquals("http://example.com/2", data.get(1).getUrl());
+    // Request, response and response body of the completed connection, request of the open one.
+    assertEquals(4, service.getDetailsRequestCount());
+
+    List<HttpData> newData = myModel.getData(new Range(0, 10));
+    assertSame(data.get(0), newData.get(0));
+    assertEquals(4, service.getDetailsRequestCount());
+
+    service.addConnection(2, TimeUnit.MICROSECONDS.toNanos(3));
+    newData = myModel.getData(new Range(0, 10));
+    assertEquals(3, newData.get(1).getEndTimeUs());
+    // Only the response and response body of the connection which just completed.
+    assertEquals(6, service.getDetailsRequestCount());
+
+    assertSame(newData.get(1), myModel.getData(new Range(0, 10)).get(1));
+    assertEquals(6, service.getDetailsRequestCount());
+  }
+
+  @Test
+  public void testCachesOnlyKeepConnectionsInRange() {
+    myModel = new RpcNetworkRequestsModel(myGrpcChannel.getClient().getNetworkClient(), 1, 1);
+    NetworkServiceMock service = myGrpcChannel.getService();
+    service.addConnection(1, TimeUnit.MICROSECONDS.toNanos(2));
+    service.addConnection(2, 0);
+    myModel.getData(new Range(0, 10));
+    assertEquals(4, service.getDetailsRequestCount());
+
+    // The open connection is out of range, so its request details are fetched again when it comes back in range. The completed one is
+    // still cached, since the cache isn't full.
+    service.removeConnection(2);
+    myModel.getData(new Range(0, 10));
+    assertEquals(4, service.getDetailsRequestCount());
+    service.addConnection(2, 0);
+    myModel.getData(new Range(0, 10));
+    assertEquals(5, service.getDetailsRequestCount());
+
+    // Once over the limit, completed connections out of range are dropped.
+    service.addConnection(2, TimeUnit.MICROSECONDS.toNanos(3));
+    myModel.getData(new Range(0, 10));
+    assertEquals(7, service.getDetailsRequestCount());
+    service.removeConnection(1);
+    myModel.getData(new Range(0, 10));
+    assertEquals(7, service.getDetailsRequestCount());
+    service.addConnection(1, TimeUnit.MICROSECONDS.toNanos(2));
+    myModel.getData(new Range(0, 10));
+    assertEquals(10, service.getDetailsRequestCount());
+  }
+
+  private static class NetworkServiceMock extends NetworkServiceGrpc.NetworkServiceImplBase {
+    private final Map<Long, NetworkProfiler.HttpConnectionData> myConnections = new TreeMap<>();
+    private int myDetailsRequestCount;
+
+    void addConnection(long id, long endTimestamp) {
+      myConnections.put(id, NetworkProfiler.HttpConnectionData.newBuilder()
+        .setConnId(id).setStartTimestamp(1).setEndTimestamp(endTimestamp).build());
+    }
+
+    void removeConnection(long id) {
+      myConnections.remove(id);
+    }
+
+    int getDetailsRequestCount() {
+      return myDetailsRequestCount;
+    }
+
+    @Override
+    public void getHttpRange(NetworkProfiler.HttpRangeRequest request, StreamObserver<NetworkProfiler.HttpRangeResponse> responseObserver) {
+      responseObserver.onNext(NetworkProfiler.HttpRangeResponse.newBuilder().addAllData(myConnections.values()).build());
+      responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getHttpDetails(NetworkProfiler.HttpDetailsRequest request,
+                               StreamObserver<NetworkProfiler.HttpDetailsResponse> responseObserver) {
+      myDetailsRequestCount++;
+      NetworkProfiler.HttpDetailsResponse.Builder response = NetworkProfiler.HttpDetailsResponse.newBuilder();
+      if (request.getType() == NetworkProfiler.HttpDetailsRequest.Type.REQUEST) {
+        response.setRequest(NetworkProfiler.HttpDetailsResponse.Request.newBuilder()
+                              .setUrl("http://example.com/" + request.getConnId()).setMethod("GET").setTrace(""));
+      }
+      responseObserver.onNext(response.build());
+      responseObserver.onCompleted();
+    }
+  }
+}